@@ -0,0 +1,129 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.benchmark.classloader;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.benchmark.classloader.support.BenchmarkClassLoaderPolicy;
+import org.jboss.benchmark.classloader.support.Exported;
+import org.jboss.classloader.spi.ClassLoaderDomain;
+import org.jboss.classloader.spi.ClassLoaderSystem;
+import org.jboss.classloader.spi.ParentPolicy;
+import org.jboss.classloader.test.support.MockClassLoaderHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading classes through a domain.<p>
+ * 
+ * The first classloader asks the domain for a class exported by the last one.
+ * The other classloaders don't expose their package names so the domain
+ * has to try each of them. With caching on, the exported class is a cache hit
+ * and the missing class is blacklisted after the first attempt; with it off
+ * every invocation scans the exports.
+ * 
+ * @version $Revision: 1.1 $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DomainLoadClassBenchmark
+{
+   /** The number of classloaders in the domain */
+   @Param({"1", "10", "100"})
+   public int loaders;
+
+   /** Whether the policies can be cached and blacklisted */
+   @Param({"true", "false"})
+   public boolean cacheable;
+
+   /** The requesting classloader */
+   private ClassLoader first;
+
+   /** The exported class name */
+   private String exported = Exported.class.getName();
+
+   /** A class name nobody has */
+   private String missing = "org.jboss.benchmark.generated.Missing";
+
+   /** A class from the parent */
+   private String parent = "java.util.ArrayList";
+
+   @Setup
+   public void setUp() throws Exception
+   {
+      ClassLoaderSystem system = MockClassLoaderHelper.createMockClassLoaderSystem();
+      ClassLoaderDomain domain = system.createAndRegisterDomain("benchmark", ParentPolicy.BEFORE_BUT_JAVA_ONLY);
+      for (int i = 0; i < loaders; ++i)
+      {
+         BenchmarkClassLoaderPolicy policy = new BenchmarkClassLoaderPolicy("loader" + i);
+         policy.setCacheable(cacheable);
+         policy.setBlackListable(cacheable);
+         policy.setImportAll(true);
+         if (i == loaders - 1)
+            policy.setPathsAndPackageNames(Exported.class);
+         ClassLoader classLoader = MockClassLoaderHelper.registerMockClassLoader(system, domain, policy);
+         if (i == 0)
+            first = classLoader;
+      }
+
+      // Define the class up front so we measure the lookup
+      first.loadClass(exported);
+   }
+
+   @Benchmark
+   public Class<?> loadExported() throws Exception
+   {
+      return first.loadClass(exported);
+   }
+
+   @Benchmark
+   public Object loadMissing()
+   {
+      try
+      {
+         return first.loadClass(missing);
+      }
+      catch (ClassNotFoundException expected)
+      {
+         return expected;
+      }
+   }
+
+   @Benchmark
+   public Class<?> loadFromParent() throws Exception
+   {
+      return first.loadClass(parent);
+   }
+}
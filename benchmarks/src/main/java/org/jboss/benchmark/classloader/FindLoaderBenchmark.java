@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.benchmark.classloader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.benchmark.classloader.support.BenchmarkClassLoaderPolicy;
+import org.jboss.benchmark.classloader.support.Exported;
+import org.jboss.classloader.spi.ClassLoaderDomain;
+import org.jboss.classloader.spi.ClassLoaderSystem;
+import org.jboss.classloader.spi.DelegateLoader;
+import org.jboss.classloader.spi.ImportType;
+import org.jboss.classloader.spi.Loader;
+import org.jboss.classloader.spi.ParentPolicy;
+import org.jboss.classloader.spi.base.BaseClassLoader;
+import org.jboss.classloader.spi.base.ClassLoaderInformation;
+import org.jboss.classloader.spi.filter.FilteredDelegateLoader;
+import org.jboss.classloader.test.support.MockClassLoaderHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ClassLoaderInformation.findLoader over the imports of a classloader.<p>
+ * 
+ * The resource is exported by the last import. The imports are not cacheable
+ * so each invocation does the lookup. When the imports expose their package
+ * names the package index is used, otherwise all the imports are tried.
+ * 
+ * @version $Revision: 1.1 $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FindLoaderBenchmark
+{
+   /** The number of imports */
+   @Param({"1", "10", "100"})
+   public int imports;
+
+   /** Whether the imports expose their package names */
+   @Param({"true", "false"})
+   public boolean indexed;
+
+   /** The information about the importing classloader */
+   private ClassLoaderInformation information;
+
+   /** The exported resource */
+   private String exported = Exported.class.getName().replace('.', '/') + ".class";
+
+   /** A resource nobody has */
+   private String missing = "org/jboss/benchmark/generated/Missing.class";
+
+   @Setup
+   public void setUp() throws Exception
+   {
+      ClassLoaderSystem system = MockClassLoaderHelper.createMockClassLoaderSystem();
+      ClassLoaderDomain domain = system.createAndRegisterDomain("benchmark", ParentPolicy.BEFORE_BUT_JAVA_ONLY);
+
+      List<DelegateLoader> delegates = new ArrayList<DelegateLoader>();
+      for (int i = 0; i < imports; ++i)
+      {
+         BenchmarkClassLoaderPolicy policy = new BenchmarkClassLoaderPolicy("import" + i);
+         policy.setCacheable(false);
+         policy.setBlackListable(false);
+         if (i == imports - 1)
+            policy.setPaths(Exported.class);
+         if (indexed)
+         {
+            if (i == imports - 1)
+               policy.setPackageNames(Exported.class);
+            else
+               policy.setPackageNames("org.jboss.benchmark.generated.p" + i);
+         }
+         MockClassLoaderHelper.registerMockClassLoader(system, domain, policy);
+         delegates.add(new FilteredDelegateLoader(policy));
+      }
+
+      BenchmarkClassLoaderPolicy policy = new BenchmarkClassLoaderPolicy("importer");
+      policy.setDelegates(delegates);
+      BaseClassLoader classLoader = (BaseClassLoader) MockClassLoaderHelper.registerMockClassLoader(system, domain, policy);
+      information = new ClassLoaderInformation(classLoader, policy, 0);
+   }
+
+   @Benchmark
+   public Loader findExported()
+   {
+      return information.findLoader(ImportType.ALL, exported);
+   }
+
+   @Benchmark
+   public Loader findMissing()
+   {
+      return information.findLoader(ImportType.ALL, missing);
+   }
+}
@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.benchmark.classloader;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.classloader.plugins.ClassLoaderUtils;
+import org.jboss.classloader.spi.base.BaseClassLoaderDomain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading byte code without a size, with the size and into a reused buffer.<p>
+ * 
+ * Run with -prof gc to compare the allocation per class.
+ * 
+ * @version $Revision: 1.1 $
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadByteCodeBenchmark
+{
+   /** The byte code of a large class */
+   private byte[] byteCode;
+
+   /** The reused buffer */
+   private ByteBuffer buffer;
+
+   @Setup
+   public void setUp() throws Exception
+   {
+      String path = ClassLoaderUtils.classNameToPath(BaseClassLoaderDomain.class);
+      byteCode = ClassLoaderUtils.loadBytes(BaseClassLoaderDomain.class.getClassLoader().getResourceAsStream(path));
+      buffer = ByteBuffer.allocate(16 * 1024);
+   }
+
+   @Benchmark
+   public byte[] unsized()
+   {
+      return ClassLoaderUtils.loadByteCode("x", new ByteArrayInputStream(byteCode));
+   }
+
+   @Benchmark
+   public byte[] sized()
+   {
+      return ClassLoaderUtils.loadByteCode("x", new ByteArrayInputStream(byteCode), byteCode.length);
+   }
+
+   @Benchmark
+   public ByteBuffer reusedBuffer()
+   {
+      buffer = ClassLoaderUtils.loadByteCode("x", new ByteArrayInputStream(byteCode), buffer);
+      return buffer;
+   }
+}
@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.benchmark.classloader.support;
+
+import org.jboss.classloader.test.support.MockClassLoaderPolicy;
+
+/**
+ * A mock policy where caching and blacklisting can be switched off
+ * so the benchmarks can measure the uncached lookups.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class BenchmarkClassLoaderPolicy extends MockClassLoaderPolicy
+{
+   /** Whether to cache */
+   private boolean cacheable = true;
+
+   /** Whether to blacklist */
+   private boolean blackListable = true;
+
+   /**
+    * Create a new BenchmarkClassLoaderPolicy.
+    * 
+    * @param name the name
+    */
+   public BenchmarkClassLoaderPolicy(String name)
+   {
+      super(name);
+   }
+
+   /**
+    * Set the cacheable.
+    * 
+    * @param cacheable the cacheable.
+    */
+   public void setCacheable(boolean cacheable)
+   {
+      this.cacheable = cacheable;
+   }
+
+   /**
+    * Set the blackListable.
+    * 
+    * @param blackListable the blackListable.
+    */
+   public void setBlackListable(boolean blackListable)
+   {
+      this.blackListable = blackListable;
+   }
+
+   @Override
+   protected boolean isCacheable()
+   {
+      return cacheable;
+   }
+
+   @Override
+   protected boolean isBlackListable()
+   {
+      return blackListable;
+   }
+}
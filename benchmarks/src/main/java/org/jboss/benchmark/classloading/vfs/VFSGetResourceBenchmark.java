@@ -0,0 +1,204 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.benchmark.classloading.vfs;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jboss.classloading.spi.vfs.policy.VFSClassLoaderPolicy;
+import org.jboss.vfs.TempFileProvider;
+import org.jboss.vfs.VFS;
+import org.jboss.vfs.VFSUtils;
+import org.jboss.vfs.VirtualFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * VFSClassLoaderPolicy.getResource over generated jars.<p>
+ * 
+ * Each jar has its own package of resources. The lookups are for
+ * a resource in the first jar, one in the last jar and one that doesn't exist.
+ * The policy cache is off so each invocation searches the roots.
+ * 
+ * @version $Revision: 1.1 $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VFSGetResourceBenchmark
+{
+   /** The number of resources in each jar */
+   private static final int RESOURCES = 20;
+
+   /** The number of jars */
+   @Param({"1", "10", "100"})
+   public int roots;
+
+   /** Whether the policy builds its directory index */
+   @Param({"false", "true"})
+   public boolean indexed;
+
+   /** The temporary directory */
+   private File directory;
+
+   /** The temp file provider */
+   private TempFileProvider provider;
+
+   /** The mounts */
+   private List<Closeable> mounts = new ArrayList<Closeable>();
+
+   /** The policy */
+   private VFSClassLoaderPolicy policy;
+
+   /** A resource in the first jar */
+   private String first;
+
+   /** A resource in the last jar */
+   private String last;
+
+   /** A resource in none of them */
+   private String missing = "generated/missing/Missing.txt";
+
+   @Setup
+   public void setUp() throws Exception
+   {
+      directory = File.createTempFile("jboss-cl-benchmark", "");
+      if (directory.delete() == false || directory.mkdir() == false)
+         throw new IOException("Unable to create " + directory);
+      provider = TempFileProvider.create("benchmark", new ScheduledThreadPoolExecutor(2));
+
+      VirtualFile[] files = new VirtualFile[roots];
+      for (int i = 0; i < roots; ++i)
+      {
+         File jar = createJar(i);
+         VirtualFile file = VFS.getChild(jar.toURI());
+         mounts.add(VFS.mountZip(file, file, provider));
+         files[i] = file;
+      }
+
+      policy = VFSClassLoaderPolicy.createVFSClassLoaderPolicy("benchmark", files);
+      policy.setCacheSize(0);
+      policy.setIndexed(indexed);
+
+      first = getResourceName(0, 0);
+      last = getResourceName(roots - 1, RESOURCES - 1);
+   }
+
+   @TearDown
+   public void tearDown() throws Exception
+   {
+      for (Closeable mount : mounts)
+         VFSUtils.safeClose(mount);
+      mounts.clear();
+      VFSUtils.safeClose(provider);
+      File[] jars = directory.listFiles();
+      if (jars != null)
+      {
+         for (File jar : jars)
+            jar.delete();
+      }
+      directory.delete();
+   }
+
+   @Benchmark
+   public URL getFirst()
+   {
+      return policy.getResource(first);
+   }
+
+   @Benchmark
+   public URL getLast()
+   {
+      return policy.getResource(last);
+   }
+
+   @Benchmark
+   public URL getMissing()
+   {
+      return policy.getResource(missing);
+   }
+
+   /**
+    * Get the name of a generated resource
+    * 
+    * @param root the root
+    * @param resource the resource
+    * @return the name
+    */
+   private static String getResourceName(int root, int resource)
+   {
+      return "generated/p" + root + "/Resource" + resource + ".txt";
+   }
+
+   /**
+    * Create a jar
+    * 
+    * @param root the root number
+    * @return the jar
+    * @throws IOException for any error
+    */
+   private File createJar(int root) throws IOException
+   {
+      File jar = new File(directory, "root" + root + ".jar");
+      ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+      try
+      {
+         out.putNextEntry(new ZipEntry("generated/"));
+         out.closeEntry();
+         out.putNextEntry(new ZipEntry("generated/p" + root + "/"));
+         out.closeEntry();
+         for (int i = 0; i < RESOURCES; ++i)
+         {
+            out.putNextEntry(new ZipEntry(getResourceName(root, i)));
+            out.write(("resource " + i).getBytes("UTF-8"));
+            out.closeEntry();
+         }
+      }
+      finally
+      {
+         out.close();
+      }
+      return jar;
+   }
+}
@@ -0,0 +1,121 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloading.spi.dependency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.classloading.spi.dependency.policy.mock.MockClassLoaderPolicyModule;
+import org.jboss.classloading.spi.dependency.policy.mock.MockClassLoadingMetaData;
+import org.jboss.classloading.spi.metadata.Capability;
+import org.jboss.classloading.spi.metadata.ClassLoadingMetaDataFactory;
+import org.jboss.classloading.spi.metadata.Requirement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Domain.resolveModule against a domain of modules.<p>
+ * 
+ * Each module has a module and a package capability. The requirements
+ * resolve against the last module added or against nothing.
+ * This is in the dependency package since resolveModule is protected.
+ * 
+ * @version $Revision: 1.1 $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DomainResolveModuleBenchmark
+{
+   /** The number of modules */
+   @Param({"1", "10", "100", "1000"})
+   public int modules;
+
+   /** The domain */
+   private Domain domain;
+
+   /** The requiring module */
+   private Module requiring;
+
+   /** Requires the last module */
+   private Requirement requireModule;
+
+   /** Requires the package of the last module */
+   private Requirement requirePackage;
+
+   /** Requires a package nobody has */
+   private Requirement requireMissing;
+
+   @Setup
+   public void setUp() throws Exception
+   {
+      ClassLoadingMetaDataFactory factory = ClassLoadingMetaDataFactory.getInstance();
+      ClassLoading classLoading = new ClassLoading();
+      for (int i = 0; i < modules; ++i)
+      {
+         MockClassLoadingMetaData metaData = new MockClassLoadingMetaData("module" + i);
+         List<Capability> capabilities = new ArrayList<Capability>();
+         capabilities.add(factory.createModule("module" + i));
+         capabilities.add(factory.createPackage("generated.p" + i));
+         metaData.setCapabilities(capabilities);
+         Module module = new MockClassLoaderPolicyModule(metaData, "module" + i);
+         classLoading.addModule(module);
+         domain = module.getDomain();
+      }
+
+      requiring = new MockClassLoaderPolicyModule(new MockClassLoadingMetaData("requiring"), "requiring");
+      requireModule = factory.createRequireModule("module" + (modules - 1));
+      requirePackage = factory.createRequirePackage("generated.p" + (modules - 1));
+      requireMissing = factory.createRequirePackage("generated.missing");
+   }
+
+   @Benchmark
+   public Module resolveModule()
+   {
+      return domain.resolveModule(requiring, requireModule);
+   }
+
+   @Benchmark
+   public Module resolvePackage()
+   {
+      return domain.resolveModule(requiring, requirePackage);
+   }
+
+   @Benchmark
+   public Module resolveMissing()
+   {
+      return domain.resolveModule(requiring, requireMissing);
+   }
+}
@@ -25,12 +25,18 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.lang.reflect.Method;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.security.AccessController;
 import java.security.CodeSource;
 import java.security.PrivilegedAction;
 import java.security.ProtectionDomain;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Set;
 
 /**
  * ClassLoaderUtils.
@@ -159,6 +165,24 @@ public class ClassLoaderUtils
       return className.substring(0, i).replace('/', '.');
    }
    
+   /**
+    * Remove the resource names that belong to one of the packages
+    * 
+    * @param resourceNames the resource names, must support removal
+    * @param packageNames the package names
+    */
+   public static final void removeResourcesInPackages(final Collection<String> resourceNames, final Set<String> packageNames)
+   {
+      if (resourceNames == null || resourceNames.isEmpty() || packageNames == null || packageNames.isEmpty())
+         return;
+
+      for (Iterator<String> i = resourceNames.iterator(); i.hasNext();)
+      {
+         if (packageNames.contains(getResourcePackageName(i.next())))
+            i.remove();
+      }
+   }
+   
    /**
     * Load bytecode from a stream
     * 
@@ -189,6 +213,101 @@ public class ClassLoaderUtils
       }
    }
    
+   /**
+    * Load bytecode from a stream whose size may be known
+    * 
+    * @param name the class name
+    * @param is the input stream
+    * @param size the size of the byte code or -1 if not known
+    * @return the byte code
+    */
+   public static final byte[] loadByteCode(String name, final InputStream is, int size)
+   {
+      try
+      {
+         if (size < 0)
+            return readBytes(is);
+         return readBytes(is, size);
+      }
+      catch (IOException e)
+      {
+         throw new RuntimeException("Unable to load class byte code " + name, e);
+      }
+      finally
+      {
+         try
+         {
+            is.close();
+         }
+         catch (IOException e)
+         {
+            // pointless
+         }
+      }
+   }
+
+   /**
+    * Load bytecode from a stream into a buffer<p>
+    * 
+    * The byte code is read from the start of the buffer,
+    * a larger buffer is allocated when it doesn't fit.
+    * 
+    * @param name the class name
+    * @param is the input stream
+    * @param buffer the buffer
+    * @return the buffer holding the byte code ready to be read
+    */
+   public static final ByteBuffer loadByteCode(String name, final InputStream is, ByteBuffer buffer)
+   {
+      if (buffer == null)
+         throw new IllegalArgumentException("Null buffer");
+      if (buffer.hasArray() == false)
+         throw new IllegalArgumentException("Buffer has no array: " + buffer);
+      try
+      {
+         if (is == null)
+            throw new IllegalArgumentException("Null input stream.");
+
+         ByteBuffer result = buffer;
+         result.clear();
+         int read;
+         while ((read = is.read(result.array(), result.arrayOffset() + result.position(), result.remaining())) >= 0)
+         {
+            result.position(result.position() + read);
+            if (result.hasRemaining() == false)
+            {
+               // Check for the end before growing
+               int next = is.read();
+               if (next < 0)
+                  break;
+               ByteBuffer bigger = ByteBuffer.allocate(Math.max(1024, result.capacity() * 2));
+               result.flip();
+               bigger.put(result);
+               bigger.put((byte) next);
+               result = bigger;
+            }
+         }
+         result.flip();
+         return result;
+      }
+      catch (IOException e)
+      {
+         throw new RuntimeException("Unable to load class byte code " + name, e);
+      }
+      finally
+      {
+         try
+         {
+            if (is != null)
+               is.close();
+         }
+         catch (IOException e)
+         {
+            // pointless
+         }
+      }
+   }
+
    /**
     * Load bytes from a stream
     * 
@@ -239,6 +358,110 @@ public class ClassLoaderUtils
       return baos.toByteArray();
    }
 
+   /**
+    * Read bytes when the size is expected.
+    * Doesn't close inputstream.
+    *
+    * @param is the input stream
+    * @param size the expected size
+    * @return the bytes, the array has the expected size unless the stream was shorter or longer
+    * @throws IOException for any error
+    * @throws IllegalArgumentException for null is parameter
+    */
+   protected static final byte[] readBytes(final InputStream is, int size) throws IOException
+   {
+      if (is == null)
+         throw new IllegalArgumentException("Null input stream.");
+
+      byte[] result = new byte[size];
+      int offset = 0;
+      int read;
+      while (offset < size && (read = is.read(result, offset, size - offset)) >= 0)
+         offset += read;
+
+      if (offset < size)
+      {
+         byte[] shorter = new byte[offset];
+         System.arraycopy(result, 0, shorter, 0, offset);
+         return shorter;
+      }
+
+      int next = is.read();
+      if (next < 0)
+         return result;
+
+      // The size was wrong
+      ByteArrayOutputStream baos = new ByteArrayOutputStream(size * 2 + 1);
+      baos.write(result, 0, size);
+      baos.write(next);
+      byte[] tmp = new byte[1024];
+      while ((read = is.read(tmp)) >= 0)
+         baos.write(tmp, 0, read);
+      return baos.toByteArray();
+   }
+
+   /**
+    * Whether a class overrides transform below the class that last overrides isTransforming(String)<p>
+    * 
+    * Such a subclass changes the byte code without saying for which classes,
+    * so the caller should assume it transforms every class.
+    * 
+    * @param clazz the class
+    * @param parameters the parameter types of transform
+    * @return true when transform is overridden without isTransforming
+    */
+   public static final boolean isTransformOverridden(final Class<?> clazz, final Class<?>... parameters)
+   {
+      SecurityManager sm = System.getSecurityManager();
+      if (sm == null)
+         return doIsTransformOverridden(clazz, parameters);
+
+      return AccessController.doPrivileged(new PrivilegedAction<Boolean>()
+      {
+         public Boolean run()
+         {
+            return doIsTransformOverridden(clazz, parameters);
+         }
+      });
+   }
+
+   /**
+    * Whether a class overrides transform below the class that last overrides isTransforming(String)
+    * 
+    * @param clazz the class
+    * @param parameters the parameter types of transform
+    * @return true when transform is overridden without isTransforming
+    */
+   private static final boolean doIsTransformOverridden(Class<?> clazz, Class<?>... parameters)
+   {
+      Class<?> transform = getDeclaringClass(clazz, "transform", parameters);
+      Class<?> isTransforming = getDeclaringClass(clazz, "isTransforming", String.class);
+      if (transform == null || isTransforming == null || transform == isTransforming)
+         return false;
+      return isTransforming.isAssignableFrom(transform);
+   }
+
+   /**
+    * Get the class that declares the most specific version of a method
+    * 
+    * @param clazz the class
+    * @param name the method name
+    * @param parameters the parameter types
+    * @return the declaring class or null if there is no such method
+    */
+   private static final Class<?> getDeclaringClass(Class<?> clazz, String name, Class<?>... parameters)
+   {
+      for (Class<?> current = clazz; current != null; current = current.getSuperclass())
+      {
+         for (Method method : current.getDeclaredMethods())
+         {
+            if (method.getName().equals(name) && Arrays.equals(method.getParameterTypes(), parameters))
+               return current;
+         }
+      }
+      return null;
+   }
+
    /**
     * Formats the class as a string
     * 
@@ -79,6 +79,28 @@ public class CombiningClassFilter implements ClassFilter
       this.and = and;
       this.filters = filters;
    }
+
+   /**
+    * Whether it is an "and" filter
+    * 
+    * @return true for an "and" filter
+    */
+   public boolean isAnd()
+   {
+      return and;
+   }
+
+   /**
+    * Get the filters.
+    * 
+    * @return a copy of the filters
+    */
+   public ClassFilter[] getFilters()
+   {
+      ClassFilter[] result = new ClassFilter[filters.length];
+      System.arraycopy(filters, 0, result, 0, filters.length);
+      return result;
+   }
    
    public boolean matchesClassName(String className)
    {
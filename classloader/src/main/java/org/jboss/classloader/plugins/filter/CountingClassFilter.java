@@ -0,0 +1,190 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloader.plugins.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.classloader.spi.filter.ClassFilter;
+
+/**
+ * A class filter that counts the matches and misses of another filter.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class CountingClassFilter implements ClassFilter
+{
+   /** The serialVersionUID */
+   private static final long serialVersionUID = -3301622497498374406L;
+
+   /** The filter */
+   private ClassFilter filter;
+
+   /** The class name matches */
+   private final AtomicLong classNameMatches = new AtomicLong();
+
+   /** The class name misses */
+   private final AtomicLong classNameMisses = new AtomicLong();
+
+   /** The resource path matches */
+   private final AtomicLong resourcePathMatches = new AtomicLong();
+
+   /** The resource path misses */
+   private final AtomicLong resourcePathMisses = new AtomicLong();
+
+   /** The package name matches */
+   private final AtomicLong packageNameMatches = new AtomicLong();
+
+   /** The package name misses */
+   private final AtomicLong packageNameMisses = new AtomicLong();
+
+   /**
+    * Create a new CountingClassFilter.
+    * 
+    * @param filter the filter to count
+    * @throws IllegalArgumentException for a null filter
+    */
+   public CountingClassFilter(ClassFilter filter)
+   {
+      if (filter == null)
+         throw new IllegalArgumentException("Null filter");
+      this.filter = filter;
+   }
+
+   /**
+    * Get the counted filter.
+    * 
+    * @return the filter
+    */
+   public ClassFilter getFilter()
+   {
+      return filter;
+   }
+
+   public boolean matchesClassName(String className)
+   {
+      boolean result = filter.matchesClassName(className);
+      if (result)
+         classNameMatches.incrementAndGet();
+      else
+         classNameMisses.incrementAndGet();
+      return result;
+   }
+
+   public boolean matchesResourcePath(String resourcePath)
+   {
+      boolean result = filter.matchesResourcePath(resourcePath);
+      if (result)
+         resourcePathMatches.incrementAndGet();
+      else
+         resourcePathMisses.incrementAndGet();
+      return result;
+   }
+
+   public boolean matchesPackageName(String packageName)
+   {
+      boolean result = filter.matchesPackageName(packageName);
+      if (result)
+         packageNameMatches.incrementAndGet();
+      else
+         packageNameMisses.incrementAndGet();
+      return result;
+   }
+
+   /**
+    * Get the number of matched class names
+    * 
+    * @return the matches
+    */
+   public long getClassNameMatches()
+   {
+      return classNameMatches.get();
+   }
+
+   /**
+    * Get the number of class names that did not match
+    * 
+    * @return the misses
+    */
+   public long getClassNameMisses()
+   {
+      return classNameMisses.get();
+   }
+
+   /**
+    * Get the number of matched resource paths
+    * 
+    * @return the matches
+    */
+   public long getResourcePathMatches()
+   {
+      return resourcePathMatches.get();
+   }
+
+   /**
+    * Get the number of resource paths that did not match
+    * 
+    * @return the misses
+    */
+   public long getResourcePathMisses()
+   {
+      return resourcePathMisses.get();
+   }
+
+   /**
+    * Get the number of matched package names
+    * 
+    * @return the matches
+    */
+   public long getPackageNameMatches()
+   {
+      return packageNameMatches.get();
+   }
+
+   /**
+    * Get the number of package names that did not match
+    * 
+    * @return the misses
+    */
+   public long getPackageNameMisses()
+   {
+      return packageNameMisses.get();
+   }
+
+   /**
+    * Reset the counters
+    */
+   public void reset()
+   {
+      classNameMatches.set(0);
+      classNameMisses.set(0);
+      resourcePathMatches.set(0);
+      resourcePathMisses.set(0);
+      packageNameMatches.set(0);
+      packageNameMisses.set(0);
+   }
+
+   @Override
+   public String toString()
+   {
+      return filter.toString();
+   }
+}
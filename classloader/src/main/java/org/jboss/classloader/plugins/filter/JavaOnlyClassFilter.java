@@ -45,6 +45,42 @@ public class JavaOnlyClassFilter extends PatternClassFilter
             new String[] { "java", "java\\..*", "javax", "javax\\..*" });
    }
 
+   @Override
+   public boolean matchesClassName(String className)
+   {
+      return matchesPrefix(className, "java.", false) || matchesPrefix(className, "javax.", false);
+   }
+
+   @Override
+   public boolean matchesResourcePath(String resourcePath)
+   {
+      return matchesPrefix(resourcePath, "java/", false) || matchesPrefix(resourcePath, "javax/", false);
+   }
+
+   @Override
+   public boolean matchesPackageName(String packageName)
+   {
+      if ("java".equals(packageName) || "javax".equals(packageName))
+         return true;
+      return matchesPrefix(packageName, "java.", true) || matchesPrefix(packageName, "javax.", true);
+   }
+
+   /**
+    * Match a prefix without going through the regular expressions,
+    * this filter is checked on every parent delegation
+    * 
+    * @param name the name
+    * @param prefix the prefix
+    * @param allowEmpty whether the name can be just the prefix
+    * @return true when it matches
+    */
+   private static boolean matchesPrefix(String name, String prefix, boolean allowEmpty)
+   {
+      if (name == null || name.startsWith(prefix) == false)
+         return false;
+      return allowEmpty || name.length() > prefix.length();
+   }
+
    public String toString()
    {
       return "JAVA_ONLY";
@@ -43,6 +43,16 @@ public class NegatingClassFilter implements ClassFilter
       this.filter = filter;
    }
 
+   /**
+    * Get the negated filter.
+    * 
+    * @return the filter
+    */
+   public ClassFilter getFilter()
+   {
+      return filter;
+   }
+
    public boolean matchesClassName(String className)
    {
       return filter.matchesClassName(className) == false;
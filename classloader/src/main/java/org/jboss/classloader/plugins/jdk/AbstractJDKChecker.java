@@ -93,10 +93,20 @@ public class AbstractJDKChecker implements JDKChecker
    
    public boolean isJDKRequest(String name)
    {
-      Class<?> requesting = getRequestingClass(hack.getClassContext());
+      Class<?> requesting = getRequestingClass(getClassContext());
       return isJDKRequestingClass(name, requesting);
    }
 
+   /**
+    * Get the classes on the stack
+    * 
+    * @return the class stack
+    */
+   protected Class<?>[] getClassContext()
+   {
+      return hack.getClassContext();
+   }
+
    /**
     * Get the  requesting class
     * 
@@ -107,18 +117,27 @@ public class AbstractJDKChecker implements JDKChecker
    {
       for (Class<?> clazz : stack)
       {
-         if (Hack.class.isAssignableFrom(clazz) == false &&
-             JDKChecker.class.isAssignableFrom(clazz) == false &&
-             BaseClassLoaderDomain.class.isAssignableFrom(clazz) == false &&
-             BaseClassLoaderPolicy.class.isAssignableFrom(clazz) == false &&
-             ClassLoader.class.isAssignableFrom(clazz) == false &&
-             Class.class.isAssignableFrom(clazz) == false)
-         {
+         if (isClassLoadingFrame(clazz) == false)
             return clazz;
-         }
       }
       throw new RuntimeException("Should not be here!");
    }
+
+   /**
+    * Whether a class on the stack is part of the classloading rather than the requester
+    * 
+    * @param clazz the class
+    * @return true when it should be skipped
+    */
+   protected boolean isClassLoadingFrame(Class<?> clazz)
+   {
+      return Hack.class.isAssignableFrom(clazz) ||
+             JDKChecker.class.isAssignableFrom(clazz) ||
+             BaseClassLoaderDomain.class.isAssignableFrom(clazz) ||
+             BaseClassLoaderPolicy.class.isAssignableFrom(clazz) ||
+             ClassLoader.class.isAssignableFrom(clazz) ||
+             Class.class.isAssignableFrom(clazz);
+   }
    
    /**
     * Whether the requesting class is from the JDK<p>
@@ -134,7 +153,18 @@ public class AbstractJDKChecker implements JDKChecker
    {
       if (isExcluded(requesting))
          return false;
-      ClassLoader cl = requesting.getClassLoader();
+      return isJDKClass(requesting);
+   }
+
+   /**
+    * Whether a class is from the JDK, i.e. it is not loaded from a {@link BaseClassLoader}
+    * 
+    * @param clazz the class
+    * @return true when it is from the JDK
+    */
+   protected boolean isJDKClass(Class<?> clazz)
+   {
+      ClassLoader cl = clazz.getClassLoader();
       if (cl == null)
          return true;
       return (cl instanceof BaseClassLoader == false);
@@ -0,0 +1,243 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloader.plugins.jdk;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Iterator;
+
+/**
+ * A JDKChecker that remembers what it decided about each class on the stack.<p>
+ * 
+ * Whether a class is part of the classloading and whether it comes from the JDK
+ * does not change, so the stack is scanned with one cache probe per frame
+ * rather than repeating the type and classloader checks.
+ * The cache is a small direct mapped table that only holds weak references
+ * to the classes. The decision about the requesting class is still made by
+ * {@link #isJDKRequestingClass(String, Class)}.<p>
+ * 
+ * When the JDK has a StackWalker it is used to stop at the requesting class
+ * rather than capturing the whole stack, otherwise the class context is used.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class CachingJDKChecker extends AbstractJDKChecker
+{
+   /** The number of cached decisions, a power of two */
+   private static final int CACHE_SIZE = 256;
+
+   /** The class is part of the classloading */
+   private static final int CLASSLOADING = 0;
+
+   /** The class is from the JDK */
+   private static final int JDK = 1;
+
+   /** The class is not from the JDK */
+   private static final int NOT_JDK = 2;
+
+   /** The stack walker or null when the JDK doesn't have one */
+   private static final Object stackWalker;
+
+   /** StackWalker.walk(Function) */
+   private static Method walk;
+
+   /** BaseStream.iterator() */
+   private static Method iterator;
+
+   /** StackWalker.StackFrame.getDeclaringClass() */
+   private static Method getDeclaringClass;
+
+   /** The constructor of a Function proxy */
+   private static Constructor<?> function;
+
+   /** The decisions */
+   private final Decision[] decisions = new Decision[CACHE_SIZE];
+
+   static
+   {
+      stackWalker = AccessController.doPrivileged(new PrivilegedAction<Object>()
+      {
+         public Object run()
+         {
+            return createStackWalker();
+         }
+      });
+   }
+
+   /**
+    * Create a stack walker that retains the classes
+    * 
+    * @return the stack walker or null when not available
+    */
+   @SuppressWarnings({"unchecked", "rawtypes"})
+   private static Object createStackWalker()
+   {
+      try
+      {
+         Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+         Class optionClass = Class.forName("java.lang.StackWalker$Option");
+         Class<?> functionClass = Class.forName("java.util.function.Function");
+         Object option = Enum.valueOf(optionClass, "RETAIN_CLASS_REFERENCE");
+         Object result = walkerClass.getMethod("getInstance", optionClass).invoke(null, option);
+         walk = walkerClass.getMethod("walk", functionClass);
+         iterator = Class.forName("java.util.stream.BaseStream").getMethod("iterator");
+         getDeclaringClass = Class.forName("java.lang.StackWalker$StackFrame").getMethod("getDeclaringClass");
+         Class<?> proxyClass = Proxy.getProxyClass(CachingJDKChecker.class.getClassLoader(), functionClass);
+         function = proxyClass.getConstructor(InvocationHandler.class);
+         return result;
+      }
+      catch (Throwable ignored)
+      {
+         // Before Java 9 or not allowed
+         return null;
+      }
+   }
+
+   @Override
+   public boolean isJDKRequest(String name)
+   {
+      Class<?> requesting = null;
+      if (stackWalker != null)
+         requesting = walkToRequestingClass();
+      if (requesting == null)
+         requesting = getRequestingClass(getClassContext());
+      return isJDKRequestingClass(name, requesting);
+   }
+
+   @Override
+   protected Class<?> getRequestingClass(Class<?>[] stack)
+   {
+      for (Class<?> clazz : stack)
+      {
+         if (getDecision(clazz) != CLASSLOADING)
+            return clazz;
+      }
+      throw new RuntimeException("Should not be here!");
+   }
+
+   @Override
+   protected boolean isJDKClass(Class<?> clazz)
+   {
+      return getDecision(clazz) == JDK;
+   }
+
+   /**
+    * Walk the stack until the requesting class<p>
+    * 
+    * This frame is skipped as part of the classloading since it is a JDKChecker.
+    * 
+    * @return the requesting class or null when the stack could not be walked
+    */
+   private Class<?> walkToRequestingClass()
+   {
+      try
+      {
+         Object finder = function.newInstance(new RequestingClassFinder());
+         return (Class<?>) walk.invoke(stackWalker, finder);
+      }
+      catch (Throwable ignored)
+      {
+         return null;
+      }
+   }
+
+   /**
+    * Get the decision for a class
+    * 
+    * @param clazz the class
+    * @return the decision
+    */
+   private int getDecision(Class<?> clazz)
+   {
+      int index = System.identityHashCode(clazz) & (CACHE_SIZE - 1);
+      Decision decision = decisions[index];
+      if (decision != null && decision.clazz.get() == clazz)
+         return decision.decision;
+
+      int result;
+      if (isClassLoadingFrame(clazz))
+         result = CLASSLOADING;
+      else if (super.isJDKClass(clazz))
+         result = JDK;
+      else
+         result = NOT_JDK;
+      // Racing writers just replace each other, the entries are immutable
+      decisions[index] = new Decision(clazz, result);
+      return result;
+   }
+
+   /**
+    * The function given to the stack walker, it returns the first class that is not part of the classloading
+    */
+   private class RequestingClassFinder implements InvocationHandler
+   {
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+      {
+         if ("apply".equals(method.getName()) == false)
+         {
+            if ("equals".equals(method.getName()))
+               return proxy == args[0];
+            if ("hashCode".equals(method.getName()))
+               return System.identityHashCode(proxy);
+            return toString();
+         }
+
+         Iterator<?> frames = (Iterator<?>) iterator.invoke(args[0]);
+         while (frames.hasNext())
+         {
+            Class<?> clazz = (Class<?>) getDeclaringClass.invoke(frames.next());
+            if (getDecision(clazz) != CLASSLOADING)
+               return clazz;
+         }
+         return null;
+      }
+   }
+
+   /**
+    * A cached decision
+    */
+   private static final class Decision
+   {
+      /** The class */
+      final WeakReference<Class<?>> clazz;
+
+      /** The decision */
+      final int decision;
+
+      /**
+       * Create a new Decision.
+       * 
+       * @param clazz the class
+       * @param decision the decision
+       */
+      Decision(Class<?> clazz, int decision)
+      {
+         this.clazz = new WeakReference<Class<?>>(clazz);
+         this.decision = decision;
+      }
+   }
+}
@@ -35,7 +35,7 @@ public interface CacheLoader extends Loader
     *
     * @param classLoader the reference classloader (possibly null)
     * @param name the name of the class
-    * @param path the path of the class resource
+    * @param path the path of the class resource (possibly null)
     * @param allExports whether to look at all exports
     * @return the class if cached
     */
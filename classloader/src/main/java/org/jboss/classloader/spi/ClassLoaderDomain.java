@@ -32,6 +32,7 @@ import java.security.PrivilegedAction;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jboss.classloader.plugins.ClassLoaderUtils;
 import org.jboss.classloader.plugins.loader.ClassLoaderToLoaderAdapter;
@@ -53,6 +54,9 @@ public class ClassLoaderDomain extends BaseClassLoaderDomain implements ClassLoa
 {
    /** The log */
    private static final Logger log = Logger.getLogger(ClassLoaderDomain.class);
+
+   /** The default maximum number of parent results cached per kind of lookup */
+   public static final int DEFAULT_PARENT_CACHE_SIZE = 1000;
    
    /** The name of the domain */
    private String name;
@@ -83,6 +87,18 @@ public class ClassLoaderDomain extends BaseClassLoaderDomain implements ClassLoa
 
    /** The class loader event handlers */
    private List<ClassLoaderEventHandler> classLoaderEventHandlers;
+
+   /** The maximum number of parent results cached per kind of lookup, zero or less disables the cache */
+   private volatile int parentCacheSize = DEFAULT_PARENT_CACHE_SIZE;
+
+   /** The parent results */
+   private final ParentResultCache parentCache = new ParentResultCache();
+
+   /** The adapter we created for a parent classloader whose answers do not change */
+   private Loader stableParent;
+
+   /** The number of times the parent or parent policy changed */
+   private final AtomicInteger parentChanges = new AtomicInteger();
    
    /**
     * Create a new ClassLoaderDomain with the {@link ParentPolicy#BEFORE} loading rules.
@@ -139,6 +155,8 @@ public class ClassLoaderDomain extends BaseClassLoaderDomain implements ClassLoa
       if (parentPolicy == null)
          throw new IllegalArgumentException("Null parent policy");
       this.parentPolicy = parentPolicy;
+      // What this domain answers to its children changes
+      parentChanges.incrementAndGet();
    }
 
    public String getParentPolicyName()
@@ -185,6 +203,126 @@ public class ClassLoaderDomain extends BaseClassLoaderDomain implements ClassLoa
    {
       this.parent = parent;
       fixUpParent();
+      parentCache.clear();
+      parentChanges.incrementAndGet();
+   }
+
+   /**
+    * Get the maximum number of parent results cached per kind of lookup
+    * 
+    * @return the size
+    */
+   public int getParentCacheMaxSize()
+   {
+      return parentCacheSize;
+   }
+
+   /**
+    * Set the maximum number of parent results cached per kind of lookup,
+    * zero or less disables the cache
+    * 
+    * @param parentCacheSize the size
+    */
+   public void setParentCacheMaxSize(int parentCacheSize)
+   {
+      this.parentCacheSize = parentCacheSize;
+      if (parentCacheSize <= 0)
+         parentCache.clear();
+   }
+
+   public int getParentCacheSize()
+   {
+      return parentCache.size();
+   }
+
+   public long getParentCacheHits()
+   {
+      return parentCache.getHits();
+   }
+
+   public long getParentCacheMisses()
+   {
+      return parentCache.getMisses();
+   }
+
+   @Override
+   public void flushCaches()
+   {
+      super.flushCaches();
+      parentCache.clear();
+   }
+
+   /**
+    * Get the version of what this domain answers,
+    * it changes when its classloaders, its parent policy or its parents change
+    * 
+    * @return the version
+    */
+   protected int getVersion()
+   {
+      return getFlushCount() + parentChanges.get() + getParentVersion();
+   }
+
+   /**
+    * Whether the answers of the parent can be cached,
+    * only when every parent up the chain is a domain whose version we know
+    * or a parent that does not change
+    * 
+    * @param parentLoader the parent
+    * @return true when they can be cached
+    */
+   private boolean isParentCacheable(Loader parentLoader)
+   {
+      if (parentLoader instanceof ClassLoaderDomain)
+         return ((ClassLoaderDomain) parentLoader).isParentChainCacheable();
+      return parentLoader == stableParent;
+   }
+
+   /**
+    * Whether the answers of this domain's parents can be cached
+    * 
+    * @return true when there is no parent or it is cacheable
+    */
+   private boolean isParentChainCacheable()
+   {
+      Loader parentLoader = getParent();
+      return parentLoader == null || isParentCacheable(parentLoader);
+   }
+
+   /**
+    * Whether an answer from the parent can be cached, the policies of every
+    * parent domain up the chain must allow caching when the parent has it
+    * and black listing when it doesn't
+    * 
+    * @param found whether the parent has it
+    * @return true when the answer can be cached
+    */
+   private boolean isParentResultCacheable(boolean found)
+   {
+      Loader parentLoader = getParent();
+      while (parentLoader instanceof ClassLoaderDomain)
+      {
+         ClassLoaderDomain parentDomain = (ClassLoaderDomain) parentLoader;
+         if (found && parentDomain.isCacheable() == false)
+            return false;
+         if (found == false && parentDomain.isBlackListable() == false)
+            return false;
+         parentLoader = parentDomain.getParent();
+      }
+      return true;
+   }
+
+   /**
+    * Get the version of the parent
+    * 
+    * @return the version, always zero when the parent is not a domain
+    */
+   private int getParentVersion()
+   {
+      Loader parentLoader = getParent();
+      if (parentLoader instanceof ClassLoaderDomain)
+         return ((ClassLoaderDomain) parentLoader).getVersion();
+      return 0;
    }
 
    /**
@@ -657,21 +795,43 @@ public class ClassLoaderDomain extends BaseClassLoaderDomain implements ClassLoa
          return null;
       }
 
+      int maxSize = isParentCacheable(parentLoader) ? parentCacheSize : 0;
+      int version = 0;
+      if (maxSize > 0)
+      {
+         version = getParentVersion();
+         parentCache.validate(version);
+         Object cached = parentCache.getLoader(name);
+         if (cached != null)
+         {
+            if (trace)
+               log.trace(this + " got parent result from cache " + name + " parent=" + parent);
+            if (ParentResultCache.isNotFound(cached))
+               return null;
+            return (Loader) cached;
+         }
+      }
+
       if (trace)
          log.trace(this + " load from parent " + name + " parent=" + parent);
 
+      Loader result = null;
+      
       // Recurse into parent domains
       if (parentLoader instanceof ClassLoaderDomain)
       {
          ClassLoaderDomain parentDomain = (ClassLoaderDomain) parentLoader;
-         return parentDomain.findLoader(name);
+         result = parentDomain.findLoader(name);
       }
-      
       // A normal loader
-      if (parentLoader.getResource(name) != null)
-         return parentLoader;
+      else if (parentLoader.getResource(name) != null)
+      {
+         result = parentLoader;
+      }
       
-      return null;
+      if (maxSize > 0 && isParentResultCacheable(result != null))
+         parentCache.putLoader(name, result, version, maxSize);
+      return result;
    }
    
    @Override
@@ -724,10 +884,29 @@ public class ClassLoaderDomain extends BaseClassLoaderDomain implements ClassLoa
          return null;
       }
 
+      int maxSize = isParentCacheable(parentLoader) ? parentCacheSize : 0;
+      int version = 0;
+      if (maxSize > 0)
+      {
+         version = getParentVersion();
+         parentCache.validate(version);
+         Object cached = parentCache.getResource(name);
+         if (cached != null)
+         {
+            if (trace)
+               log.trace(this + " got parent resource from cache " + name + " parent=" + parentLoader);
+            if (ParentResultCache.isNotFound(cached))
+               return null;
+            return (URL) cached;
+         }
+      }
+
       if (trace)
          log.trace(this + " get resource from parent " + name + " parent=" + parentLoader);
       
       URL result = parentLoader.getResource(name);
+      if (maxSize > 0 && isParentResultCacheable(result != null))
+         parentCache.putResource(name, result, version, maxSize);
 
       if (trace)
       {
@@ -933,6 +1112,9 @@ public class ClassLoaderDomain extends BaseClassLoaderDomain implements ClassLoa
                      return new ClassLoaderToLoaderAdapter(classLoader);
                   }
                });
+               // A managed classloader can answer differently as its domain changes
+               if (classLoader instanceof RealClassLoader == false)
+                  stableParent = parent;
             }
          }
       }
@@ -1059,14 +1241,19 @@ public class ClassLoaderDomain extends BaseClassLoaderDomain implements ClassLoa
     *
     * @param classLoader the classloader (possibly null)
     * @param name the name
-    * @param path the path of the class resource
+    * @param path the path of the class resource (possibly null)
     * @param allExports whether to look at all exports
     * @return cached result if found in parent
     */
    @Override
    protected Class<?> checkCacheAfter(BaseClassLoader classLoader, String name, String path, boolean allExports)
    {
-      if (parent == null || parent instanceof CacheLoader == false || isBlackListedClass(path) == false)
+      if (parent == null || parent instanceof CacheLoader == false)
+         return null;
+
+      if (path == null)
+         path = ClassLoaderUtils.classNameToPath(name);
+      if (isBlackListedClass(path) == false)
          return null;
 
       ClassFilter filter = getParentPolicy().getAfterFilter();
@@ -136,6 +136,13 @@ public interface ClassLoaderDomainMBean
     */
    Map<String, String> listClassCache();
    
+   /**
+    * Show the package cache
+    * 
+    * @return a map of package name to a loader description
+    */
+   Map<String, String> listPackageCache();
+   
    /**
     * Show the class blacklist
     * 
@@ -143,6 +150,13 @@ public interface ClassLoaderDomainMBean
     */
    Set<String> listClassBlackList();
    
+   /**
+    * Show the packages that are not exported
+    * 
+    * @return a set of package names
+    */
+   Set<String> listPackageBlackList();
+   
    /**
     * Show the resource cache
     * 
@@ -184,6 +198,41 @@ public interface ClassLoaderDomainMBean
     * @return the size
     */
    int getResourceCacheSize();
+
+   /**
+    * Get the number of resource lookups answered by the cache or black list
+    * 
+    * @return the hits
+    */
+   long getResourceCacheHits();
+
+   /**
+    * Get the number of resource lookups that were not cached
+    * 
+    * @return the misses
+    */
+   long getResourceCacheMisses();
+
+   /**
+    * Get the number of answers from the parent that are cached
+    * 
+    * @return the size
+    */
+   int getParentCacheSize();
+
+   /**
+    * Get the number of parent lookups answered from the cache
+    * 
+    * @return the hits
+    */
+   long getParentCacheHits();
+
+   /**
+    * Get the number of parent lookups that were not cached
+    * 
+    * @return the misses
+    */
+   long getParentCacheMisses();
    
    /**
     * Flush the caches
@@ -227,6 +227,24 @@ public abstract class ClassLoaderPolicy extends BaseClassLoaderPolicy implements
    {
       return true;
    }
+
+   /**
+    * Whether the classloader can load classes in parallel<p>
+    * 
+    * False by default, classes are then loaded with the classloader locked
+    * and requests from other threads are handed to the thread owning the lock.
+    * When true, only loads of the same class name are serialized, provided
+    * the classloader's class is registered as parallel capable with the JVM.<p>
+    * 
+    * Parallel and non parallel classloaders whose classes reference each other
+    * can deadlock, so this should be enabled for all classloaders in a domain.
+    * 
+    * @return true to load classes in parallel
+    */
+   protected boolean isParallelCapable()
+   {
+      return false;
+   }
    
    /**
     * Get the resource
@@ -306,7 +324,7 @@ public abstract class ClassLoaderPolicy extends BaseClassLoaderPolicy implements
    {
       return null;
    }
-   
+
    /**
     * Get the package information<p>
     * 
@@ -334,6 +352,21 @@ public abstract class ClassLoaderPolicy extends BaseClassLoaderPolicy implements
       return getPackageInformation(packageName);
    }
 
+   /**
+    * Get the package information for a class being defined<p>
+    * 
+    * The default is to invoke getClassPackageInformation for the class
+    * 
+    * @param className name the class name
+    * @param packageName the package information
+    * @param resource the class resource
+    * @return the information or null if there is none
+    */
+   public PackageInformation getClassPackageInformation(String className, String packageName, ClassResource resource)
+   {
+      return getClassPackageInformation(className, packageName);
+   }
+
    /**
     * Check whether this a request from the jdk if it is return the relevant classloader<p>
     * 
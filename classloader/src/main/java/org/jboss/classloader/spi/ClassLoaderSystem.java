@@ -32,7 +32,8 @@ import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.jboss.classloader.plugins.system.ClassLoaderSystemBuilder;
 import org.jboss.classloader.spi.base.BaseClassLoaderSystem;
-import org.jboss.classloader.spi.translator.TranslatorUtils;
+import org.jboss.classloader.spi.filter.ClassFilter;
+import org.jboss.classloader.spi.translator.TranslatorList;
 import org.jboss.logging.Logger;
 import org.jboss.util.loading.Translator;
 
@@ -58,7 +59,7 @@ public abstract class ClassLoaderSystem extends BaseClassLoaderSystem implements
    private Map<String, ClassLoaderDomain> registeredDomains = new HashMap<String, ClassLoaderDomain>();
 
    /** Any translators */
-   private List<Translator> translators;
+   private final TranslatorList translators = new TranslatorList();
    
    /** The shutdown policy */
    private ShutdownPolicy shutdownPolicy;
@@ -582,12 +583,13 @@ public abstract class ClassLoaderSystem extends BaseClassLoaderSystem implements
     * @deprecated use translator list
     */
    @Deprecated
-   public synchronized Translator getTranslator()
+   public Translator getTranslator()
    {
-      if (translators == null || translators.isEmpty())
+      List<Translator> result = translators.getTranslators();
+      if (result.isEmpty())
          return null;
 
-      return translators.get(0);
+      return result.get(0);
    }
 
    /**
@@ -597,29 +599,35 @@ public abstract class ClassLoaderSystem extends BaseClassLoaderSystem implements
     * @deprecated use translator list
     */
    @Deprecated
-   public synchronized void setTranslator(Translator translator)
+   public void setTranslator(Translator translator)
    {
       log.debug(this + " set translator to " + translator);
 
       if (translator != null)
-         translators = Collections.singletonList(translator);
+         translators.setTranslators(Collections.singletonList(translator));
       else
-         translators = null;
+         translators.setTranslators(null);
    }
 
    @Override
    protected byte[] transform(ClassLoader classLoader, String className, byte[] byteCode, ProtectionDomain protectionDomain) throws Exception
    {
-      byte[] result = TranslatorUtils.applyTranslatorsOnTransform(getTranslators(), classLoader, className, byteCode, protectionDomain);
+      byte[] result = translators.transform(classLoader, className, byteCode, protectionDomain);
       return super.transform(classLoader, className, result, protectionDomain);
    }
 
+   @Override
+   protected boolean isTransforming(String className)
+   {
+      return translators.isTransforming(className) || super.isTransforming(className);
+   }
+
    @Override
    protected void afterUnregisterClassLoader(ClassLoader classLoader)
    {
       try
       {
-         TranslatorUtils.applyTranslatorsAtUnregister(getTranslators(), classLoader);
+         translators.unregisterClassLoader(classLoader);
       }
       catch (Throwable t)
       {
@@ -929,12 +937,9 @@ public abstract class ClassLoaderSystem extends BaseClassLoaderSystem implements
     *
     * @return the translators
     */
-   public synchronized List<Translator> getTranslators()
+   public List<Translator> getTranslators()
    {
-      if (translators == null || translators.isEmpty())
-         return Collections.emptyList();
-      else
-         return Collections.unmodifiableList(translators);
+      return translators.getTranslators();
    }
 
    /**
@@ -942,9 +947,9 @@ public abstract class ClassLoaderSystem extends BaseClassLoaderSystem implements
     *
     * @param translators the translators
     */
-   public synchronized void setTranslators(List<Translator> translators)
+   public void setTranslators(List<Translator> translators)
    {
-      this.translators = translators;
+      this.translators.setTranslators(translators);
    }
 
    /**
@@ -953,29 +958,31 @@ public abstract class ClassLoaderSystem extends BaseClassLoaderSystem implements
     * @param translator the translator to add
     * @throws IllegalArgumentException for null translator
     */
-   public synchronized void addTranslator(Translator translator)
+   public void addTranslator(Translator translator)
    {
-      if (translator == null)
-         throw new IllegalArgumentException("Null translator");
-
-      if (translators == null)
-         translators = new ArrayList<Translator>();
+      translators.addTranslator(translator);
+   }
 
-      translators.add(translator);
+   /**
+    * Add the translator for some classes.
+    *
+    * @param translator the translator to add
+    * @param scope the classes to translate, null means all classes
+    * @throws IllegalArgumentException for null translator
+    */
+   public void addTranslator(Translator translator, ClassFilter scope)
+   {
+      translators.addTranslator(translator, scope);
    }
 
    /**
     * Remove the translator.
     *
-    * @param translator the translator to remove
+    * @param translator the translator to remove, also when it was added with a scope
     * @throws IllegalArgumentException for null translator
     */
-   public synchronized void removeTranslator(Translator translator)
+   public void removeTranslator(Translator translator)
    {
-      if (translator == null)
-         throw new IllegalArgumentException("Null translator");
-
-      if (translators != null)
-         translators.remove(translator);
+      translators.removeTranslator(translator);
    }
 }
@@ -0,0 +1,114 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloader.spi;
+
+import java.io.InputStream;
+
+/**
+ * ClassResource.<p>
+ * 
+ * The resource a policy resolved to define a class. Policies can extend it
+ * to remember where they found the class, so working out the protection domain
+ * and package information doesn't need another lookup.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class ClassResource
+{
+   /** The path */
+   private String path;
+
+   /** The stream */
+   private InputStream inputStream;
+
+   /** The size or -1 if not known */
+   private int size;
+
+   /**
+    * Create a new ClassResource.
+    * 
+    * @param path the path of the class resource
+    * @param inputStream the stream of the class resource
+    * @throws IllegalArgumentException for a null parameter
+    */
+   public ClassResource(String path, InputStream inputStream)
+   {
+      this(path, inputStream, -1);
+   }
+
+   /**
+    * Create a new ClassResource.
+    * 
+    * @param path the path of the class resource
+    * @param inputStream the stream of the class resource
+    * @param size the size of the class resource or -1 if not known
+    * @throws IllegalArgumentException for a null parameter
+    */
+   public ClassResource(String path, InputStream inputStream, int size)
+   {
+      if (path == null)
+         throw new IllegalArgumentException("Null path");
+      if (inputStream == null)
+         throw new IllegalArgumentException("Null input stream");
+      this.path = path;
+      this.inputStream = inputStream;
+      this.size = size;
+   }
+
+   /**
+    * Get the path.
+    * 
+    * @return the path.
+    */
+   public String getPath()
+   {
+      return path;
+   }
+
+   /**
+    * Get the inputStream.
+    * 
+    * @return the inputStream.
+    */
+   public InputStream getInputStream()
+   {
+      return inputStream;
+   }
+
+   /**
+    * Get the size.<p>
+    * 
+    * Used to size the buffer the byte code is read into.
+    * 
+    * @return the size or -1 if not known
+    */
+   public int getSize()
+   {
+      return size;
+   }
+
+   @Override
+   public String toString()
+   {
+      return getClass().getSimpleName() + "{" + path + "}";
+   }
+}
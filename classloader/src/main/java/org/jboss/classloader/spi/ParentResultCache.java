@@ -0,0 +1,207 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloader.spi;
+
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of the answers a domain got from its parent.<p>
+ * 
+ * The entries are only valid for a version of the parent,
+ * the cache is dropped when it sees a different version.
+ * 
+ * @version $Revision: 1.1 $
+ */
+class ParentResultCache
+{
+   /** Marker for a name the parent does not have */
+   private static final Object NOT_FOUND = new Object();
+
+   /** The loaders by resource path */
+   private final Map<String, Object> loaders = new ConcurrentHashMap<String, Object>();
+
+   /** The resources by name */
+   private final Map<String, Object> resources = new ConcurrentHashMap<String, Object>();
+
+   /** The hits */
+   private final AtomicLong hits = new AtomicLong();
+
+   /** The misses */
+   private final AtomicLong misses = new AtomicLong();
+
+   /** The version of the parent the entries belong to */
+   private volatile int version;
+
+   /**
+    * Check the cache is for the given version of the parent, clearing it if not
+    * 
+    * @param version the version
+    */
+   void validate(int version)
+   {
+      if (this.version != version)
+      {
+         synchronized (this)
+         {
+            if (this.version != version)
+            {
+               loaders.clear();
+               resources.clear();
+               this.version = version;
+            }
+         }
+      }
+   }
+
+   /**
+    * Clear the cache
+    */
+   void clear()
+   {
+      loaders.clear();
+      resources.clear();
+   }
+
+   /**
+    * Get a cached loader
+    * 
+    * @param name the resource path
+    * @return the loader, {@link #NOT_FOUND} when the parent does not have it or null when it is not cached
+    */
+   Object getLoader(String name)
+   {
+      return get(loaders, name);
+   }
+
+   /**
+    * Cache a loader
+    * 
+    * @param name the resource path
+    * @param loader the loader or null when the parent does not have it
+    * @param version the version of the parent it was found in
+    * @param maxSize the maximum number of entries
+    */
+   void putLoader(String name, Loader loader, int version, int maxSize)
+   {
+      put(loaders, name, loader, version, maxSize);
+   }
+
+   /**
+    * Get a cached resource
+    * 
+    * @param name the resource name
+    * @return the url, {@link #NOT_FOUND} when the parent does not have it or null when it is not cached
+    */
+   Object getResource(String name)
+   {
+      return get(resources, name);
+   }
+
+   /**
+    * Cache a resource
+    * 
+    * @param name the resource name
+    * @param url the url or null when the parent does not have it
+    * @param version the version of the parent it was found in
+    * @param maxSize the maximum number of entries
+    */
+   void putResource(String name, URL url, int version, int maxSize)
+   {
+      put(resources, name, url, version, maxSize);
+   }
+
+   /**
+    * Whether the cached value is the not found marker
+    * 
+    * @param value the value
+    * @return true when the parent does not have it
+    */
+   static boolean isNotFound(Object value)
+   {
+      return value == NOT_FOUND;
+   }
+
+   /**
+    * Get the number of entries
+    * 
+    * @return the size
+    */
+   int size()
+   {
+      return loaders.size() + resources.size();
+   }
+
+   /**
+    * Get the hits.
+    * 
+    * @return the hits.
+    */
+   long getHits()
+   {
+      return hits.get();
+   }
+
+   /**
+    * Get the misses.
+    * 
+    * @return the misses.
+    */
+   long getMisses()
+   {
+      return misses.get();
+   }
+
+   private Object get(Map<String, Object> map, String name)
+   {
+      Object result = map.get(name);
+      if (result != null)
+         hits.incrementAndGet();
+      else
+         misses.incrementAndGet();
+      return result;
+   }
+
+   private void put(Map<String, Object> map, String name, Object value, int version, int maxSize)
+   {
+      // Don't cache an answer from a different version of the parent
+      if (this.version != version)
+         return;
+      
+      // Make room by evicting an arbitrary entry, the cache is only there to save repeated lookups
+      if (map.size() >= maxSize)
+      {
+         Iterator<String> i = map.keySet().iterator();
+         if (i.hasNext())
+         {
+            i.next();
+            i.remove();
+         }
+      }
+      if (value == null)
+         value = NOT_FOUND;
+      map.put(name, value);
+   }
+}
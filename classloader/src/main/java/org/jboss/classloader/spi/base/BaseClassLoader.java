@@ -24,11 +24,14 @@ package org.jboss.classloader.spi.base;
 import javax.management.ObjectName;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.security.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -43,7 +46,14 @@ import org.jboss.util.collection.Iterators;
 /**
  * BaseClassLoader.
  * 
- * [TODO] Add meaningful javadoc
+ * [TODO] Add meaningful javadoc<p>
+ * 
+ * The classloader only loads classes in parallel when its policy is parallel capable
+ * and its class is registered as parallel capable with the JVM, otherwise the JVM
+ * holds the classloader's monitor while it resolves classes. This class registers
+ * itself when the JVM supports it (Java 7 or later). The JVM registers each class
+ * separately, so a subclass is only parallel capable when it registers itself in
+ * the same way, otherwise it keeps loading classes serially.
  *
  * @author <a href="adrian@jboss.com">Adrian Brock</a>
  * @author <a href="ales.justin@jboss.org">Ales Justin</a>
@@ -57,6 +67,9 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
    /** The lock object */
    private ReentrantLock lock = new ReentrantLock(true);
 
+   /** The thread owning the lock */
+   private final ClassLoaderManager.LockOwner lockOwner = new ClassLoaderManager.LockOwner();
+
    /** The policy for this classloader */
    private ClassLoaderPolicy policy;
 
@@ -72,6 +85,14 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
    /** Our black list */
    private Set<String> blackList;
 
+   /** The locks by class name when parallel capable */
+   private ConcurrentMap<String, Object> classLoadingLocks;
+
+   static
+   {
+      registerAsParallelCapableWithJVM();
+   }
+
    /**
     * Create a new ClassLoader with no parent.
     *
@@ -97,6 +118,14 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
       if (basePolicy.isBlackListable())
          blackList = new ConcurrentSet<String>();
 
+      if (basePolicy.isParallelCapable())
+      {
+         if (isRegisteredAsParallelCapableWithJVM(this))
+            classLoadingLocks = new ConcurrentHashMap<String, Object>();
+         else
+            log.warn(getClass().getName() + " is not registered as parallel capable with the JVM, loading classes serially for " + policy);
+      }
+
       log.debugf("Created %1s with policy %2s", this, policy);
    }
 
@@ -114,6 +143,10 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
 
    public String getName()
    {
+      // Java 9 and later invoke this from the ClassLoader constructor before there is a policy
+      ClassLoaderPolicy policy = this.policy;
+      if (policy == null)
+         return null;
       return policy.getName();
    }
 
@@ -129,6 +162,11 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
       return basePolicy.isCacheable();
    }
 
+   public boolean isParallelCapable()
+   {
+      return classLoadingLocks != null;
+   }
+
    public boolean isImportAll()
    {
       BaseClassLoaderPolicy basePolicy = policy;
@@ -342,6 +380,20 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
       return result;
    }
 
+   /**
+    * Get a class this classloader has already defined
+    *
+    * @param name the name of the class
+    * @return the class if it was defined by this classloader, null otherwise
+    */
+   Class<?> findDefinedClass(String name)
+   {
+      Class<?> result = findLoadedClass(name);
+      if (result != null && getClassLoader(result) != this)
+         return null;
+      return result;
+   }
+
    /**
     * Check the cache and blacklist
     *
@@ -495,7 +547,7 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
    {
       Class<?> result;
       
-      synchronized (this)
+      synchronized (getClassLoadingLock(name))
       {
          // JBCL-114: did we lose the race to the synchronized?
          result = isLoadedClass(name, trace);
@@ -592,7 +644,22 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
     * @param trace whether trace is enabled
     * @return the class if found
     */
-   synchronized Class<?> loadClassLocally(final String name, final boolean trace)
+   Class<?> loadClassLocally(final String name, final boolean trace)
+   {
+      synchronized (getClassLoadingLock(name))
+      {
+         return doLoadClassLocally(name, trace);
+      }
+   }
+
+   /**
+    * Load the class locally with the classloading lock for the class held
+    *
+    * @param name the class name
+    * @param trace whether trace is enabled
+    * @return the class if found
+    */
+   private Class<?> doLoadClassLocally(final String name, final boolean trace)
    {
       if (trace)
          log.trace(this + " load class locally " + name);
@@ -609,20 +676,25 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
       {
          public Class<?> run()
          {
-            InputStream is = policy.getResourceAsStream(resourcePath);
-            if (is == null)
+            // Resolve the resource once, the policy reuses it for the protection domain and package
+            BaseClassLoaderPolicy basePolicy = policy;
+            ClassResource resource = basePolicy.getClassResource(name, resourcePath);
+            if (resource == null)
             {
                if (trace)
                   BaseClassLoader.log.trace(BaseClassLoader.this + " resource not found locally " + resourcePath + " for " + name);
                return null;
             }
 
+            // Nothing transforms, define the class straight from a reused buffer
+            if (basePolicy.isTransforming(name) == false)
+               return defineClassFromBuffer(name, resource, trace);
+
             // Load the bytecode
-            byte[] byteCode = ClassLoaderUtils.loadByteCode(name, is);
+            byte[] byteCode = ClassLoaderUtils.loadByteCode(name, resource.getInputStream(), resource.getSize());
 
             // Let the policy do things before we define the class
-            BaseClassLoaderPolicy basePolicy = policy;
-            ProtectionDomain protectionDomain = basePolicy.getProtectionDomain(name, resourcePath);
+            ProtectionDomain protectionDomain = basePolicy.getProtectionDomain(name, resource);
             try
             {
                byte[] transformed = policy.transform(name, byteCode, protectionDomain);
@@ -642,7 +714,7 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
                if (codeSource != null)
                   codeSourceURL = codeSource.getLocation();
             }
-            definePackage(name, codeSourceURL);
+            definePackage(name, codeSourceURL, resource);
 
             // Finally we can define the class
             Class<?> result;
@@ -665,6 +737,45 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
       return result;
    }
 
+   /**
+    * Define a class that is not transformed from the thread's byte code buffer
+    *
+    * @param name the class name
+    * @param resource the class resource
+    * @param trace whether trace is enabled
+    * @return the class
+    */
+   private Class<?> defineClassFromBuffer(String name, ClassResource resource, boolean trace)
+   {
+      ByteBuffer buffer = ByteCodeBuffers.acquire(resource.getSize());
+      try
+      {
+         buffer = ClassLoaderUtils.loadByteCode(name, resource.getInputStream(), buffer);
+
+         BaseClassLoaderPolicy basePolicy = policy;
+         ProtectionDomain protectionDomain = basePolicy.getProtectionDomain(name, resource);
+
+         // Create the package if necessary
+         URL codeSourceURL = null;
+         if (protectionDomain != null)
+         {
+            CodeSource codeSource = protectionDomain.getCodeSource();
+            if (codeSource != null)
+               codeSourceURL = codeSource.getLocation();
+         }
+         definePackage(name, codeSourceURL, resource);
+
+         Class<?> result = defineClass(name, buffer, protectionDomain);
+         if (trace)
+            log.trace(this + " loaded class locally " + ClassLoaderUtils.classToString(result));
+         return result;
+      }
+      finally
+      {
+         ByteCodeBuffers.release(buffer);
+      }
+   }
+
    /**
     * Try to find the resource locally
     *
@@ -797,13 +908,29 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
     * @param codeSourceURL the code source url
     */
    protected void definePackage(String className, URL codeSourceURL)
+   {
+      definePackage(className, codeSourceURL, null);
+   }
+
+   /**
+    * Define the package for the class if not already done
+    *
+    * @param className the class name
+    * @param codeSourceURL the code source url
+    * @param resource the class resource or null if not known
+    */
+   protected void definePackage(String className, URL codeSourceURL, ClassResource resource)
    {
       String packageName = ClassLoaderUtils.getClassPackageName(className);
       if (packageName.length() == 0)
          return;
 
       // Ask the policy for the information
-      PackageInformation pi = policy.getClassPackageInformation(className, packageName);
+      PackageInformation pi;
+      if (resource != null)
+         pi = policy.getClassPackageInformation(className, packageName, resource);
+      else
+         pi = policy.getClassPackageInformation(className, packageName);
 
       // Already defined?
       Package pkge = getPackage(packageName);
@@ -855,7 +982,9 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
       // Additionally, acquiring the lock on the policy for this classloader
       // ensures that we don't race with somebody undeploying the classloader
       // which could cause leaks
-      acquireLockFairly(trace);
+      boolean parallel = isParallelCapable();
+      if (parallel == false)
+         acquireLockFairly(trace);
       try
       {
          // Here we have synchronized with the policy
@@ -898,7 +1027,8 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
       }
       finally
       {
-         unlock(trace, true);
+         if (parallel == false)
+            unlock(trace, true);
       }
    }
 
@@ -1027,6 +1157,132 @@ public class BaseClassLoader extends SecureClassLoader implements BaseClassLoade
       return builder.toString();
    }
 
+   /**
+    * Get the lock to hold while loading a class<p>
+    * 
+    * This is the classloader itself unless it is parallel capable,
+    * in which case there is a lock per class name.
+    *
+    * @param className the class name
+    * @return the lock
+    */
+   protected Object getClassLoadingLock(String className)
+   {
+      ConcurrentMap<String, Object> locks = classLoadingLocks;
+      if (locks == null)
+         return this;
+      Object result = locks.get(className);
+      if (result == null)
+      {
+         Object lock = new Object();
+         result = locks.putIfAbsent(className, lock);
+         if (result == null)
+            result = lock;
+      }
+      return result;
+   }
+
+   /**
+    * Register this class as parallel capable with the JVM.<p>
+    * 
+    * The method is only available from Java 7 and it registers the class that invokes it,
+    * so it is always invoked from here. Java 9 and later let a subclass invoke the protected
+    * method reflectively but don't allow it to be made accessible, Java 7 and 8 need it
+    * to be made accessible first.
+    */
+   private static void registerAsParallelCapableWithJVM()
+   {
+      final Method method;
+      try
+      {
+         method = AccessController.doPrivileged(new PrivilegedExceptionAction<Method>()
+         {
+            public Method run() throws Exception
+            {
+               return ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            }
+         });
+      }
+      catch (PrivilegedActionException e)
+      {
+         log.debug("The JVM does not support parallel capable classloaders: " + e.getCause());
+         return;
+      }
+
+      try
+      {
+         Object result;
+         try
+         {
+            result = method.invoke(null);
+         }
+         catch (IllegalAccessException e)
+         {
+            AccessController.doPrivileged(new PrivilegedAction<Object>()
+            {
+               public Object run()
+               {
+                  method.setAccessible(true);
+                  return null;
+               }
+            });
+            result = method.invoke(null);
+         }
+         if (Boolean.TRUE.equals(result) == false)
+            log.warn("The JVM did not register " + BaseClassLoader.class.getName() + " as parallel capable");
+      }
+      catch (Throwable t)
+      {
+         log.warn("Unable to register " + BaseClassLoader.class.getName() + " as parallel capable", t);
+      }
+   }
+
+   /**
+    * Whether the JVM treats the classloader as parallel capable
+    * 
+    * @param classLoader the classloader
+    * @return true when it is registered
+    */
+   private static boolean isRegisteredAsParallelCapableWithJVM(final ClassLoader classLoader)
+   {
+      try
+      {
+         return AccessController.doPrivileged(new PrivilegedExceptionAction<Boolean>()
+         {
+            public Boolean run() throws Exception
+            {
+               // Java 9 and later
+               try
+               {
+                  Method method = ClassLoader.class.getMethod("isRegisteredAsParallelCapable");
+                  return (Boolean) method.invoke(classLoader);
+               }
+               catch (NoSuchMethodException ignored)
+               {
+               }
+               // Java 7 and 8 only create the lock map for registered classloaders
+               Field field = ClassLoader.class.getDeclaredField("parallelLockMap");
+               field.setAccessible(true);
+               return field.get(classLoader) != null;
+            }
+         });
+      }
+      catch (Throwable t)
+      {
+         return false;
+      }
+   }
+
+   /**
+    * Get the lock owner
+    *
+    * @return the lock owner
+    */
+   ClassLoaderManager.LockOwner getLockOwner()
+   {
+      return lockOwner;
+   }
+
    /**
     * Attempt to lock, but don't wait
     *
@@ -27,6 +27,7 @@ import java.security.ProtectionDomain;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +35,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jboss.classloader.plugins.ClassLoaderUtils;
 import org.jboss.classloader.spi.CacheLoader;
@@ -43,7 +45,9 @@ import org.jboss.classloader.spi.DelegateLoader;
 import org.jboss.classloader.spi.ImportType;
 import org.jboss.classloader.spi.Loader;
 import org.jboss.classloader.spi.ShutdownPolicy;
-import org.jboss.classloader.spi.translator.TranslatorUtils;
+import org.jboss.classloader.spi.helpers.AbstractClassLoaderCache;
+import org.jboss.classloader.spi.filter.ClassFilter;
+import org.jboss.classloader.spi.translator.TranslatorList;
 import org.jboss.logging.Logger;
 import org.jboss.util.collection.ConcurrentSet;
 import org.jboss.util.loading.Translator;
@@ -63,11 +67,26 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
    /** The log */
    private static final Logger log = Logger.getLogger(BaseClassLoaderDomain.class);
 
+   /** The default maximum number of resources cached and black listed */
+   public static final int DEFAULT_RESOURCE_CACHE_SIZE = 10000;
+
+   /** The reusable keys for looking up the caches by class name */
+   private static final ThreadLocal<ClassNameKey> lookupKeys = new ThreadLocal<ClassNameKey>()
+   {
+      protected ClassNameKey initialValue()
+      {
+         return new ClassNameKey();
+      }
+   };
+
    /** The classloader system to which we belong */
-   private BaseClassLoaderSystem system;
+   private volatile BaseClassLoaderSystem system;
    
    /** The translators */
-   private List<Translator> translators;
+   private final TranslatorList translators = new TranslatorList();
+
+   /** Whether a subclass overrides transform without overriding isTransforming */
+   private volatile Boolean transformOverridden;
 
    /** The classloaders  in the order they were registered */
    private List<ClassLoaderInformation> classLoaders = new CopyOnWriteArrayList<ClassLoaderInformation>();
@@ -75,17 +94,29 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
    /** The classloaders by package name */
    private Map<String, List<ClassLoaderInformation>> classLoadersByPackageName = new ConcurrentHashMap<String, List<ClassLoaderInformation>>();
 
-   /** The global class cache */
-   private Map<String, ClassCacheItem> globalClassCache = new ConcurrentHashMap<String, ClassCacheItem>();
+   /** The global class cache by package name */
+   private Map<String, PackageCacheItem> globalPackageCache = new ConcurrentHashMap<String, PackageCacheItem>();
+
+   /** The global class cache for classes found in the requesting classloader */
+   private Map<String, Loader> globalClassCache = new ConcurrentHashMap<String, Loader>();
    
    /** The global class black list */
    private Set<String> globalClassBlackList = new ConcurrentSet<String>();
 
-   /** The global resource cache */
-   private Map<String, URL> globalResourceCache = new ConcurrentHashMap<String, URL>();
-   
-   /** The global resource black list */
-   private Set<String> globalResourceBlackList = new ConcurrentSet<String>();
+   /** The global resource cache, including the resources that are black listed */
+   private ResourceCache globalResourceCache = new ResourceCache(DEFAULT_RESOURCE_CACHE_SIZE);
+
+   /** The resource indexes by directory */
+   private Map<String, ResourceIndex> resourceIndexes = new ConcurrentHashMap<String, ResourceIndex>();
+
+   /** The number of times the caches were flushed */
+   private AtomicInteger flushCount = new AtomicInteger();
+
+   /** Whether all the registered policies allow caching */
+   private volatile boolean cacheable = true;
+
+   /** Whether all the registered policies allow black listing */
+   private volatile boolean blackListable = true;
    
    /** Keep track of the added order */
    private int order = 0;
@@ -95,13 +126,89 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
     */
    public void flushCaches()
    {
+      globalPackageCache.clear();
       globalClassCache.clear();
       globalClassBlackList.clear();
       globalResourceCache.clear();
-      globalResourceBlackList.clear();
+      resourceIndexes.clear();
 
       for (ClassLoaderInformation info : classLoaders)
          info.flushCaches();
+      flushCount.incrementAndGet();
+   }
+
+   /**
+    * Flush the internal caches for the given packages
+    * 
+    * @param packageNames the package names
+    */
+   protected void flushCaches(Set<String> packageNames)
+   {
+      globalPackageCache.keySet().removeAll(packageNames);
+      ClassLoaderUtils.removeResourcesInPackages(globalClassCache.keySet(), packageNames);
+      ClassLoaderUtils.removeResourcesInPackages(globalClassBlackList, packageNames);
+      globalResourceCache.removeResourcesInPackages(packageNames);
+      for (Iterator<String> i = resourceIndexes.keySet().iterator(); i.hasNext();)
+      {
+         if (packageNames.contains(ResourceIndex.getPackageName(i.next())))
+            i.remove();
+      }
+
+      for (ClassLoaderInformation info : classLoaders)
+         info.flushCaches(packageNames);
+      flushCount.incrementAndGet();
+   }
+
+   /**
+    * Get the number of times the caches were flushed,
+    * it changes whenever a classloader is registered or unregistered
+    * or an entry is removed from the black list
+    * 
+    * @return the flush count
+    */
+   protected int getFlushCount()
+   {
+      return flushCount.get();
+   }
+
+   /**
+    * Whether all the classloader policies of this domain allow their answers to be cached
+    * 
+    * @return true when they are cacheable
+    */
+   protected boolean isCacheable()
+   {
+      return cacheable;
+   }
+
+   /**
+    * Whether all the classloader policies of this domain allow their misses to be cached
+    * 
+    * @return true when they are black listable
+    */
+   protected boolean isBlackListable()
+   {
+      return blackListable;
+   }
+
+   /**
+    * Work out whether the registered policies allow caching and black listing,
+    * invoked with the classloaders locked
+    */
+   private void updateCacheable()
+   {
+      boolean canCache = true;
+      boolean canBlackList = true;
+      for (ClassLoaderInformation info : classLoaders)
+      {
+         BaseClassLoaderPolicy loaderPolicy = info.getPolicy();
+         if (loaderPolicy == null || loaderPolicy.isCacheable() == false)
+            canCache = false;
+         if (loaderPolicy == null || loaderPolicy.isBlackListable() == false)
+            canBlackList = false;
+      }
+      cacheable = canCache;
+      blackListable = canBlackList;
    }
 
    public int getClassBlackListSize()
@@ -111,17 +218,68 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
 
    public int getClassCacheSize()
    {
-      return globalClassCache.size();
+      int result = globalClassCache.size();
+      for (Map.Entry<ClassLoaderInformation, Set<String>> entry : getCachedPackagesByClassLoader().entrySet())
+      {
+         Set<String> packageNames = entry.getValue();
+         for (String className : entry.getKey().getClassLoader().listLoadedClasses())
+         {
+            if (packageNames.contains(ClassLoaderUtils.getClassPackageName(className)))
+               ++result;
+         }
+      }
+      return result;
    }
 
    public int getResourceBlackListSize()
    {
-      return globalResourceBlackList.size();
+      return globalResourceCache.getNotFoundSize();
    }
 
    public int getResourceCacheSize()
    {
-      return globalResourceCache.size();
+      return globalResourceCache.getFoundSize();
+   }
+
+   /**
+    * Get the number of resource lookups answered by the cache or black list
+    * 
+    * @return the hits
+    */
+   public long getResourceCacheHits()
+   {
+      return globalResourceCache.getHits();
+   }
+
+   /**
+    * Get the number of resource lookups that were not cached
+    * 
+    * @return the misses
+    */
+   public long getResourceCacheMisses()
+   {
+      return globalResourceCache.getMisses();
+   }
+
+   /**
+    * Get the maximum number of resources cached and black listed
+    * 
+    * @return the size
+    */
+   public int getResourceCacheMaxSize()
+   {
+      return globalResourceCache.getMaxSize();
+   }
+
+   /**
+    * Set the maximum number of resources cached and black listed,
+    * zero or less disables the cache
+    * 
+    * @param maxSize the size
+    */
+   public void setResourceCacheMaxSize(int maxSize)
+   {
+      globalResourceCache.setMaxSize(maxSize);
    }
    
    public Set<String> listClassBlackList()
@@ -131,20 +289,87 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
 
    public Map<String, String> listClassCache()
    {
-      Map<String, String> result = new HashMap<String, String>(globalClassCache.size());
-      for (Map.Entry<String, ClassCacheItem> entry : globalClassCache.entrySet())
+      Map<String, String> result = new HashMap<String, String>();
+      for (Map.Entry<String, Loader> entry : globalClassCache.entrySet())
          result.put(entry.getKey(), entry.getValue().toString());
+      for (Map.Entry<ClassLoaderInformation, Set<String>> entry : getCachedPackagesByClassLoader().entrySet())
+      {
+         Set<String> packageNames = entry.getValue();
+         String loader = entry.getKey().getExported().toString();
+         for (String className : entry.getKey().getClassLoader().listLoadedClasses())
+         {
+            if (packageNames.contains(ClassLoaderUtils.getClassPackageName(className)))
+               result.put(ClassLoaderUtils.classNameToPath(className), loader);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Show the package cache
+    * 
+    * @return a map of package name to the description of the loader exporting it
+    */
+   public Map<String, String> listPackageCache()
+   {
+      Map<String, String> result = new HashMap<String, String>(globalPackageCache.size());
+      for (Map.Entry<String, PackageCacheItem> entry : globalPackageCache.entrySet())
+      {
+         PackageCacheItem item = entry.getValue();
+         if (item.info != null)
+            result.put(entry.getKey(), item.toString());
+      }
+      return result;
+   }
+
+   /**
+    * Show the packages that are not exported by any classloader
+    * 
+    * @return a set of package names
+    */
+   public Set<String> listPackageBlackList()
+   {
+      Set<String> result = new HashSet<String>();
+      for (Map.Entry<String, PackageCacheItem> entry : globalPackageCache.entrySet())
+      {
+         if (entry.getValue().info == null)
+            result.add(entry.getKey());
+      }
+      return result;
+   }
+
+   /**
+    * Get the cached packages grouped by the classloader exporting them
+    * 
+    * @return the package names by classloader
+    */
+   private Map<ClassLoaderInformation, Set<String>> getCachedPackagesByClassLoader()
+   {
+      Map<ClassLoaderInformation, Set<String>> result = new HashMap<ClassLoaderInformation, Set<String>>();
+      for (Map.Entry<String, PackageCacheItem> entry : globalPackageCache.entrySet())
+      {
+         ClassLoaderInformation info = entry.getValue().info;
+         if (info == null)
+            continue;
+         Set<String> packageNames = result.get(info);
+         if (packageNames == null)
+         {
+            packageNames = new HashSet<String>();
+            result.put(info, packageNames);
+         }
+         packageNames.add(entry.getKey());
+      }
       return result;
    }
 
    public Set<String> listResourceBlackList()
    {
-      return Collections.unmodifiableSet(globalResourceBlackList);
+      return Collections.unmodifiableSet(globalResourceCache.getNotFound());
    }
 
    public Map<String, URL> listResourceCache()
    {
-      return Collections.unmodifiableMap(globalResourceCache);
+      return Collections.unmodifiableMap(globalResourceCache.getFound());
    }
 
    /**
@@ -152,7 +377,7 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
     * 
     * @return the classloader system
     */
-   protected synchronized BaseClassLoaderSystem getClassLoaderSystem()
+   protected BaseClassLoaderSystem getClassLoaderSystem()
    {
       return system;
    }
@@ -240,7 +465,41 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
       if (system != null)
          result = system.transform(classLoader, className, result, protectionDomain);
 
-      return TranslatorUtils.applyTranslatorsOnTransform(getTranslators(), classLoader, className, result, protectionDomain);
+      return translators.transform(classLoader, className, result, protectionDomain);
+   }
+
+   /**
+    * Whether transform can change the byte code of a class<p>
+    * 
+    * A subclass that overrides transform without overriding this is assumed to transform every class.
+    * 
+    * @param className the class name
+    * @return true when a translator here or in the classloader system applies to the class
+    */
+   protected boolean isTransforming(String className)
+   {
+      if (isTransformOverridden())
+         return true;
+      if (translators.isTransforming(className))
+         return true;
+      BaseClassLoaderSystem system = getClassLoaderSystem();
+      return system != null && system.isTransforming(className);
+   }
+
+   /**
+    * Whether a subclass overrides transform without overriding isTransforming
+    * 
+    * @return true when it does
+    */
+   private boolean isTransformOverridden()
+   {
+      Boolean result = transformOverridden;
+      if (result == null)
+      {
+         result = ClassLoaderUtils.isTransformOverridden(getClass(), ClassLoader.class, String.class, byte[].class, ProtectionDomain.class);
+         transformOverridden = result;
+      }
+      return result;
    }
 
    /**
@@ -274,14 +533,19 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
       Loader loader = findLoader(classLoader, path, allExports, findInParent);
       if (loader != null)
       {
+         // A parallel capable classloader doesn't need to be locked, so load it in this thread
+         if (isParallelCapable(loader))
+         {
+            Class<?> result = loader.loadClass(name);
+            if (result == null)
+               throw new ClassNotFoundException("Failed to load class " + name);
+            return result;
+         }
+
          Thread thread = Thread.currentThread();
          ClassLoadingTask task = new ClassLoadingTask(name, classLoader, thread);
          ClassLoaderManager.scheduleTask(task, loader, false);
-         Class<?> result = ClassLoaderManager.process(thread, task);
-         ClassCacheItem item = globalClassCache.get(path);
-         if (item != null)
-            item.clazz = result;
-         return result;
+         return ClassLoaderManager.process(thread, task);
       }
       
       // Should we directly load from the parent?
@@ -306,7 +570,6 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
             {
                if (trace)
                   log.trace(this + " loaded from hack " + hack + " " + ClassLoaderUtils.classToString(result));
-               globalClassCache.put(path, new ClassCacheItem(result));
                return result;
             }
          }
@@ -316,6 +579,23 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
       return null;
    }
 
+   /**
+    * Whether the loader is a parallel capable classloader
+    * 
+    * @param loader the loader
+    * @return true when it is
+    */
+   private static boolean isParallelCapable(Loader loader)
+   {
+      if (loader instanceof BaseDelegateLoader == false)
+         return false;
+      BaseClassLoaderPolicy policy = ((BaseDelegateLoader) loader).getPolicy();
+      if (policy == null)
+         return false;
+      BaseClassLoader classLoader = policy.getClassLoaderUnchecked();
+      return classLoader != null && classLoader.isParallelCapable();
+   }
+
    /**
     * Find a loader for a class
     * 
@@ -391,7 +671,7 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
             loader = classLoader.getLoader();
             policy = classLoader.getPolicy();
             if (policy.isCacheable())
-               globalClassCache.put(path, new ClassCacheItem(loader));
+               globalClassCache.put(path, loader);
             return loader;
          }
       }
@@ -676,16 +956,29 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
     */
    private Loader findLoaderInExports(BaseClassLoader classLoader, String name, boolean trace)
    {
-      ClassCacheItem item = globalClassCache.get(name);
-      if (item != null)
+      Loader loader = globalClassCache.get(name);
+      if (loader != null)
       {
-         Loader loader = item.loader;
-         if (loader != null)
-         {
-            if (trace)
-               log.trace(this + " found loader " + loader + " in global class cache " + name);
-            return loader;
-         }
+         if (trace)
+            log.trace(this + " found loader " + loader + " in global class cache " + name);
+         return loader;
+      }
+
+      String packageName = ClassLoaderUtils.getResourcePackageName(name);
+      PackageCacheItem item = globalPackageCache.get(packageName);
+      if (item != null && item.info == null)
+      {
+         if (trace)
+            log.trace(this + " package is not exported " + packageName);
+         return null;
+      }
+
+      // The exporter of the package already defined the class so there is no need to look for it again
+      if (item != null && isDefinedClass(item.info, name))
+      {
+         if (trace)
+            log.trace(this + " found exporter " + item + " in global class cache for " + name);
+         return item.info.getExported();
       }
 
       if (isBlackListedClass(name))
@@ -695,13 +988,23 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
          return null;
       }
 
+      List<ClassLoaderInformation> list;
+      if (item != null)
+      {
+         if (trace)
+            log.trace(this + " found exporter " + item + " in global class cache for package " + packageName);
+         list = Collections.singletonList(item.info);
+      }
+      else
+      {
+         list = classLoadersByPackageName.get(packageName);
+         if (trace)
+            log.trace(this + " trying to load " + name + " from all exports of package " + packageName + " " + list);
+      }
+
       boolean canCache = true;
       boolean canBlackList = true;
       
-      String packageName = ClassLoaderUtils.getResourcePackageName(name);
-      List<ClassLoaderInformation> list = classLoadersByPackageName.get(packageName);
-      if (trace)
-         log.trace(this + " trying to load " + name + " from all exports of package " + packageName + " " + list);
       if (list != null && list.isEmpty() == false)
       {
          for (ClassLoaderInformation info : list)
@@ -717,12 +1020,20 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
 
             if (exported.getResource(name) != null)
             {
-               if (canCache)
-                  globalClassCache.put(name, new ClassCacheItem(exported));
+               // Only a package with a single exporter has the same winner for all its classes
+               if (canCache && item == null && list.size() == 1)
+                  globalPackageCache.put(packageName, new PackageCacheItem(info));
                return exported;
             }
          }
       }
+      else
+      {
+         // Nobody exports the package so nothing in it can be found in the exports
+         globalPackageCache.put(packageName, PackageCacheItem.NOT_EXPORTED);
+         return null;
+      }
+
       // Here is not found in the exports so can we blacklist it?
       if (canBlackList)
          globalClassBlackList.add(name);
@@ -730,6 +1041,19 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
       return null;
    }
 
+   /**
+    * Whether a classloader already defined the class
+    * 
+    * @param info the classloader information
+    * @param name the class resource name
+    * @return true when it defined the class
+    */
+   private static boolean isDefinedClass(ClassLoaderInformation info, String name)
+   {
+      String className = ClassLoaderUtils.resourceNameToClassName(name);
+      return className != null && info.getClassLoader().findDefinedClass(className) != null;
+   }
+
    /**
     * Check whether this is a black listed class
     *
@@ -751,19 +1075,21 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
     */
    private URL getResourceFromExports(BaseClassLoader classLoader, String name, boolean trace)
    {
-      URL result = globalResourceCache.get(name);
-      if (result != null)
+      ResourceCache.Entry cached = globalResourceCache.get(name);
+      if (cached != null)
       {
+         if (ResourceCache.isNotFound(cached))
+         {
+            if (trace)
+               log.trace(this + " resource is black listed, not looking at exports " + name);
+            return null;
+         }
          if (trace)
             log.trace(this + " got resource from cache " + name);
+         return cached.url;
       }
-      
-      if (globalResourceBlackList.contains(name))
-      {
-         if (trace)
-            log.trace(this + " resource is black listed, not looking at exports " + name);
-         return null;
-      }
+
+      URL result;
 
       boolean canCache = true;
       boolean canBlackList = true;
@@ -796,7 +1122,7 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
       }
       // Here is not found in the exports so can we blacklist it?
       if (canBlackList)
-         globalResourceBlackList.add(name);
+         globalResourceCache.putNotFound(name);
       
       return null;
    }
@@ -814,7 +1140,12 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
    void getResourcesFromExports(BaseClassLoader classLoader, String name, Set<URL> urls, boolean trace) throws IOException
    {
       String packageName = ClassLoaderUtils.getResourcePackageName(name);
-      List<ClassLoaderInformation> list = classLoadersByPackageName.get(packageName);
+      String directory = ResourceIndex.getDirectory(name);
+      List<ClassLoaderInformation> list;
+      if (directory != null)
+         list = getResourceIndex(directory).getLoaders(name);
+      else
+         list = classLoadersByPackageName.get(packageName);
       if (trace)
          log.trace(this + " trying to get resources " + name + " from all exports " + list);
       if (list != null && list.isEmpty() == false)
@@ -827,6 +1158,29 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
       }
    }
    
+   /**
+    * Get the index of the exports for a well known resource directory
+    * 
+    * @param directory the directory
+    * @return the index
+    */
+   private ResourceIndex getResourceIndex(String directory)
+   {
+      ResourceIndex result = resourceIndexes.get(directory);
+      if (result == null)
+      {
+         // Only keep the index if nothing was registered or unregistered while building it
+         int flushes = flushCount.get();
+         List<ClassLoaderInformation> list = classLoadersByPackageName.get(ResourceIndex.getPackageName(directory));
+         if (list == null)
+            list = Collections.emptyList();
+         result = new ResourceIndex(directory, list);
+         if (flushes == flushCount.get())
+            resourceIndexes.put(directory, result);
+      }
+      return result;
+   }
+
    /**
     * Load a package from the exports
     * 
@@ -1367,6 +1721,8 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
       BaseClassLoaderPolicy basePolicy = classLoader.getPolicy();
       basePolicy.setClassLoaderDomain(this);
 
+      Set<String> affectedPackages;
+
       // FINDBUGS: This synchronization is correct - more than addIfNotPresent behaviour
       synchronized (classLoaders)
       {
@@ -1392,12 +1748,17 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
             }
          }
          
-         flushCaches();
+         updateCacheable();
+         affectedPackages = determineAffectedPackages(policy, info);
+         if (affectedPackages != null)
+            flushCaches(affectedPackages);
+         else
+            flushCaches();
       }
 
       ClassLoaderCache cache = policy.getCache();
       if (cache != null)
-         cache.flushCaches();
+         flushCache(cache, affectedPackages);
 
       try
       {
@@ -1434,6 +1795,8 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
       if (shutdownNow)
          policy.unsetClassLoaderDomain(this);
 
+      Set<String> affectedPackages;
+
       // FINDBUGS: This synchronization is correct - more than addIfNotPresent behaviour
       synchronized (classLoaders)
       {
@@ -1460,12 +1823,24 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
             }
          }
 
-         flushCaches();
+         updateCacheable();
+         affectedPackages = determineAffectedPackages(policy, info);
+         if (affectedPackages != null)
+         {
+            flushCaches(affectedPackages);
+            // Classes found in the requesting classloader are cached regardless of its exports
+            removeCachedLoader(classLoader.getLoader());
+            removeCachedLoader(info.getExported());
+         }
+         else
+         {
+            flushCaches();
+         }
       }
 
       ClassLoaderCache cache = policy.getCache();
       if (cache != null)
-         cache.flushCaches();
+         flushCache(cache, affectedPackages);
 
       try
       {
@@ -1477,6 +1852,69 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
       }
    }
 
+   /**
+    * Determine the packages whose cached lookups can be changed by
+    * registering or unregistering a classloader, i.e. its exported packages
+    * and the packages of its delegates
+    * 
+    * @param policy the classloader policy
+    * @param info the classloader information
+    * @return the package names or null when the policy doesn't expose its packages
+    */
+   private Set<String> determineAffectedPackages(BaseClassLoaderPolicy policy, ClassLoaderInformation info)
+   {
+      String[] packageNames = policy.getPackageNames();
+      if (packageNames == null)
+         return null;
+
+      Set<String> result = new HashSet<String>();
+      Collections.addAll(result, packageNames);
+      List<? extends DelegateLoader> delegates = info.getDelegates(ImportType.ALL);
+      if (delegates != null)
+      {
+         for (DelegateLoader delegate : delegates)
+         {
+            String[] delegatePackageNames = delegate.getPackageNames();
+            if (delegatePackageNames != null)
+               Collections.addAll(result, delegatePackageNames);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Remove the global class cache entries that point to a loader
+    * 
+    * @param loader the loader
+    */
+   private void removeCachedLoader(Loader loader)
+   {
+      if (loader == null)
+         return;
+
+      for (Iterator<Loader> i = globalClassCache.values().iterator(); i.hasNext();)
+      {
+         if (i.next() == loader)
+            i.remove();
+      }
+   }
+
+   /**
+    * Flush a policy's cache
+    * 
+    * @param cache the cache
+    * @param packageNames the affected packages or null to flush everything
+    */
+   private static void flushCache(ClassLoaderCache cache, Set<String> packageNames)
+   {
+      if (packageNames != null && cache instanceof AbstractClassLoaderCache)
+         ((AbstractClassLoaderCache) cache).flushCaches(packageNames);
+      else if (packageNames != null && cache instanceof ClassLoaderCacheWrapper)
+         ((ClassLoaderCacheWrapper) cache).flushCaches(packageNames);
+      else
+         cache.flushCaches();
+   }
+
    /**
     * Determine the shutdown policy for the classloader policy
     * 
@@ -1578,7 +2016,7 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
     * 
     * @param classLoader the reference classloader (possibly null)
     * @param name the name of the class
-    * @param path the path of the class resource
+    * @param path the path of the class resource, null if it has not been determined
     * @param allExports whether to look at all exports
     * @return the class if cached
     */
@@ -1586,13 +2024,16 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
    {
       if (allExports)
       {
-         ClassCacheItem item = globalClassCache.get(path);
-         if (item != null)
+         ClassNameKey key = lookupKeys.get();
+         PackageCacheItem item = globalPackageCache.get(key.toPackageName(name));
+         key.clear();
+         if (item != null && item.info != null)
          {
-            if (log.isTraceEnabled())
+            Class<?> result = item.info.getClassLoader().findDefinedClass(name);
+            if (result != null && log.isTraceEnabled())
                log.trace("Found " + name + " in global cache: " + this);
 
-            return item.clazz;
+            return result;
          }
       }
       else
@@ -1603,7 +2044,7 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
             ClassLoaderCache cache = policy.getCache();
             if (cache != null)
             {
-               Loader loader = cache.getCachedLoader(path);
+               Loader loader = getCachedLoader(cache, name, path);
                return (loader != null) ? loader.loadClass(name) : null;
             }
          }
@@ -1611,12 +2052,43 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
       return null;
    }
 
+   /**
+    * Get a loader from a classloader cache
+    * 
+    * @param cache the cache
+    * @param name the class name
+    * @param path the path of the class resource, null if it has not been determined
+    * @return the cached loader or null if it is not cached
+    */
+   private static Loader getCachedLoader(ClassLoaderCache cache, String name, String path)
+   {
+      if (path != null)
+         return cache.getCachedLoader(path);
+
+      if (cache instanceof ClassLoaderInformation || cache instanceof ClassLoaderCacheWrapper)
+      {
+         ClassNameKey key = lookupKeys.get();
+         try
+         {
+            key.toResourcePath(name);
+            if (cache instanceof ClassLoaderInformation)
+               return ((ClassLoaderInformation) cache).getCachedLoader(key);
+            return ((ClassLoaderCacheWrapper) cache).getCachedLoader(key);
+         }
+         finally
+         {
+            key.clear();
+         }
+      }
+      return cache.getCachedLoader(ClassLoaderUtils.classNameToPath(name));
+   }
+
    /**
     * Check the class blacklist
     * 
     * @param classLoader the classloader (possibly null)
     * @param name the name
-    * @param path the path of the class resource
+    * @param path the path of the class resource, null if it has not been determined
     * @param allExports whether to look at all exports
     * @param failIfBlackListed <code>true</code> if a blacklisted class should
     *                          result in ClassNotFoundException; <code>false</code>
@@ -1627,6 +2099,9 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
    {
       if (failIfBlackListed)
       {
+         if (path == null)
+            path = ClassLoaderUtils.classNameToPath(name);
+
          if (allExports)
          {
             if (isBlackListedClass(path))
@@ -1658,7 +2133,7 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
     * 
     * @param classLoader the classloader (possibly null)
     * @param name the name
-    * @param path the path of the class resource
+    * @param path the path of the class resource, null if it has not been determined
     * @param allExports whether to look at all exports
     * @param failIfBlackListed <code>true</code> if a blacklisted class should
     *                          result in ClassNotFoundException; <code>false</code>
@@ -1669,9 +2144,7 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
     */
    protected Class<?> checkClassCacheAndBlackList(BaseClassLoader classLoader, String name, String path, boolean allExports, boolean failIfBlackListed) throws ClassNotFoundException
    {
-      if (path == null)
-         path = ClassLoaderUtils.classNameToPath(name);
-
+      // The path is only built when a lookup really needs it
       Class<?> cached = checkClassCache(classLoader, name, path, allExports);
       if (cached != null)
          return cached;
@@ -1687,7 +2160,7 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
     *
     * @param classLoader the classloader (possibly null)
     * @param name the name
-    * @param path the path of the class resource
+    * @param path the path of the class resource, null if it has not been determined
     * @param allExports whether to look at all exports
     * @return the class when found in the cache
     */
@@ -1702,7 +2175,7 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
     *
     * @param classLoader the classloader (possibly null)
     * @param name the name
-    * @param path the path of the class resource
+    * @param path the path of the class resource, null if it has not been determined
     * @param allExports whether to look at all exports
     * @return the class when found in the cache
     */
@@ -1722,15 +2195,22 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
       {
          globalClassBlackList.remove(name);
       }
-      if (globalResourceBlackList != null)
+      if (globalResourceCache != null)
       {
-         globalResourceBlackList.remove(name);
+         globalResourceCache.removeNotFound(name);
       }
+      String packageName = ClassLoaderUtils.getResourcePackageName(name);
+      PackageCacheItem item = globalPackageCache.get(packageName);
+      if (item != null && item.info == null)
+         globalPackageCache.remove(packageName);
 
       // Need to clear the import caches as well
       List<ClassLoaderInformation> infos = classLoaders;
       for (ClassLoaderInformation info : infos)
          info.clearBlackList(name);
+
+      // Child domains may have cached the miss
+      flushCount.incrementAndGet();
    }
 
    /**
@@ -1738,12 +2218,9 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
     *
     * @return the translators
     */
-   public synchronized List<Translator> getTranslators()
+   public List<Translator> getTranslators()
    {
-      if (translators == null || translators.isEmpty())
-         return Collections.emptyList();
-      else
-         return Collections.unmodifiableList(translators);
+      return translators.getTranslators();
    }
 
    /**
@@ -1751,9 +2228,9 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
     *
     * @param translators the translators
     */
-   public synchronized void setTranslators(List<Translator> translators)
+   public void setTranslators(List<Translator> translators)
    {
-      this.translators = translators;
+      this.translators.setTranslators(translators);
    }
 
    /**
@@ -1762,55 +2239,55 @@ public abstract class BaseClassLoaderDomain implements CacheLoader
     * @param translator the translator to add
     * @throws IllegalArgumentException for null translator
     */
-   public synchronized void addTranslator(Translator translator)
+   public void addTranslator(Translator translator)
    {
-      if (translator == null)
-         throw new IllegalArgumentException("Null translator");
-
-      if (translators == null)
-         translators = new ArrayList<Translator>();
+      translators.addTranslator(translator);
+   }
 
-      translators.add(translator);
+   /**
+    * Add the translator for some classes.
+    *
+    * @param translator the translator to add
+    * @param scope the classes to translate, null means all classes
+    * @throws IllegalArgumentException for null translator
+    */
+   public void addTranslator(Translator translator, ClassFilter scope)
+   {
+      translators.addTranslator(translator, scope);
    }
 
    /**
     * Remove the translator.
     *
-    * @param translator the translator to remove
+    * @param translator the translator to remove, also when it was added with a scope
     * @throws IllegalArgumentException for null translator
     */
-   public synchronized void removeTranslator(Translator translator)
+   public void removeTranslator(Translator translator)
    {
-      if (translator == null)
-         throw new IllegalArgumentException("Null translator");
-
-      if (translators != null)
-         translators.remove(translator);
+      translators.removeTranslator(translator);
    }
 
    /**
-    * ClassCacheItem.
+    * PackageCacheItem.
     */
-   static class ClassCacheItem
+   static class PackageCacheItem
    {
-      Loader loader;
-      Class<?> clazz;
-      
-      public ClassCacheItem(Loader loader)
-      {
-         this.loader = loader;
-      }
-      
-      public ClassCacheItem(Class<?> clazz)
+      /** Marker for a package that is not exported by any classloader */
+      static final PackageCacheItem NOT_EXPORTED = new PackageCacheItem(null);
+
+      /** The classloader exporting the package */
+      final ClassLoaderInformation info;
+
+      PackageCacheItem(ClassLoaderInformation info)
       {
-         this.clazz = clazz;
+         this.info = info;
       }
 
       @Override
       public String toString()
       {
-         if (loader != null)
-            return loader.toString();
+         if (info != null)
+            return info.getExported().toString();
          return "";
       }
    }
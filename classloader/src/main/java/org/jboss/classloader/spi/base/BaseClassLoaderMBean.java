@@ -73,6 +73,13 @@ public interface BaseClassLoaderMBean
     * @return true to cache misses
     */
    boolean isBlackListable();
+
+   /**
+    * Whether classes are loaded in parallel
+    * 
+    * @return true when parallel capable
+    */
+   boolean isParallelCapable();
    
    /**
     * Whether the classloader is still valid
@@ -23,20 +23,23 @@ package org.jboss.classloader.spi.base;
 
 import javax.management.ObjectName;
 
+import java.io.InputStream;
 import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.ProtectionDomain;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Formattable;
 import java.util.Formatter;
 import java.util.List;
+import java.util.Set;
 
+import org.jboss.classloader.plugins.ClassLoaderUtils;
 import org.jboss.classloader.spi.ClassLoaderCache;
+import org.jboss.classloader.spi.ClassResource;
 import org.jboss.classloader.spi.ClassLoaderDomain;
 import org.jboss.classloader.spi.DelegateLoader;
 import org.jboss.classloader.spi.ShutdownPolicy;
-import org.jboss.classloader.spi.translator.TranslatorUtils;
+import org.jboss.classloader.spi.filter.ClassFilter;
+import org.jboss.classloader.spi.translator.TranslatorList;
 import org.jboss.logging.Logger;
 import org.jboss.util.loading.Translator;
 
@@ -67,11 +70,17 @@ public abstract class BaseClassLoaderPolicy implements Formattable
    /** The cache */
    private volatile ClassLoaderCache cache;
 
+   /** The wrapper of the cache and the information */
+   private volatile ClassLoaderCacheWrapper cacheWrapper;
+
    /** The access control context for this policy */
    private AccessControlContext access;
 
    /** The translators */
-   private List<Translator> translators;
+   private final TranslatorList translators = new TranslatorList();
+
+   /** Whether a subclass overrides transform without overriding isTransforming */
+   private volatile Boolean transformOverridden;
 
    /**
     * Create a new BaseClassLoaderPolicy.
@@ -144,7 +153,14 @@ public abstract class BaseClassLoaderPolicy implements Formattable
       if (clc == null)
          return information;
       
-      return new ClassLoaderCacheWrapper(clc, information);
+      ClassLoaderInformation info = information;
+      ClassLoaderCacheWrapper wrapper = cacheWrapper;
+      if (wrapper == null || wrapper.isWrapping(clc, info) == false)
+      {
+         wrapper = new ClassLoaderCacheWrapper(clc, info);
+         cacheWrapper = wrapper;
+      }
+      return wrapper;
    }
 
    /**
@@ -195,6 +211,20 @@ public abstract class BaseClassLoaderPolicy implements Formattable
     */
    public abstract String[] getPackageNames();
 
+   /**
+    * Get the resources directly inside a directory<p>
+    *
+    * Provides a hint for indexing well known resource directories like META-INF/services.
+    * The default is null meaning the policy cannot enumerate its content.
+    * 
+    * @param directory the directory path without a trailing slash
+    * @return the resource paths or null if not known
+    */
+   protected Set<String> getResourceNames(String directory)
+   {
+      return null;
+   }
+
    /**
     * Get the delegate loaders for imported stuff<p>
     * 
@@ -221,6 +251,52 @@ public abstract class BaseClassLoaderPolicy implements Formattable
     * @return the protection domain
     */
    protected abstract ProtectionDomain getProtectionDomain(String className, String path);
+
+   /**
+    * Get the protection domain for a class resource<p>
+    * 
+    * By default this uses {@link #getProtectionDomain(String, String)}<p>
+    * 
+    * NOTE: Defined as protected here for security reasons
+    * 
+    * @param className the class name
+    * @param resource the class resource
+    * @return the protection domain
+    */
+   protected ProtectionDomain getProtectionDomain(String className, ClassResource resource)
+   {
+      return getProtectionDomain(className, resource.getPath());
+   }
+
+   /**
+    * Get the resource as a stream<p>
+    * 
+    * There is no resource by default
+    * 
+    * @param path the path
+    * @return the stream or null if not found
+    */
+   protected InputStream getResourceAsStream(String path)
+   {
+      return null;
+   }
+
+   /**
+    * Get the resource to define a class from<p>
+    * 
+    * Uses {@link #getResourceAsStream(String)} by default
+    * 
+    * @param className the class name
+    * @param path the path of the class resource
+    * @return the class resource or null if not found
+    */
+   protected ClassResource getClassResource(String className, String path)
+   {
+      InputStream is = getResourceAsStream(path);
+      if (is == null)
+         return null;
+      return new ClassResource(path, is);
+   }
    
    /**
     * Transform the byte code<p>
@@ -243,11 +319,45 @@ public abstract class BaseClassLoaderPolicy implements Formattable
 
       ClassLoader classLoader = getClassLoaderUnchecked();
       if (classLoader != null)
-         result = TranslatorUtils.applyTranslatorsOnTransform(getTranslators(), classLoader, className, result, protectionDomain);
+         result = translators.transform(classLoader, className, result, protectionDomain);
 
       return result;
    }
 
+   /**
+    * Whether transform can change the byte code of a class<p>
+    * 
+    * A subclass that overrides transform without overriding this is assumed to transform every class.
+    * 
+    * @param className the class name
+    * @return true when a translator here, in the domain or in the classloader system applies to the class
+    */
+   protected boolean isTransforming(String className)
+   {
+      if (isTransformOverridden())
+         return true;
+      if (translators.isTransforming(className))
+         return true;
+      BaseClassLoaderDomain domain = getClassLoaderDomain();
+      return domain != null && domain.isTransforming(className);
+   }
+
+   /**
+    * Whether a subclass overrides transform without overriding isTransforming
+    * 
+    * @return true when it does
+    */
+   private boolean isTransformOverridden()
+   {
+      Boolean result = transformOverridden;
+      if (result == null)
+      {
+         result = ClassLoaderUtils.isTransformOverridden(getClass(), String.class, byte[].class, ProtectionDomain.class);
+         transformOverridden = result;
+      }
+      return result;
+   }
+
    /**
     * Whether to cache<p>
     * 
@@ -262,6 +372,18 @@ public abstract class BaseClassLoaderPolicy implements Formattable
     */
    protected abstract boolean isBlackListable();
 
+   /**
+    * Whether the classloader can load classes in parallel<p>
+    * 
+    * This is read once when the classloader is created
+    * 
+    * @return true to load classes in parallel, the default is false
+    */
+   protected boolean isParallelCapable()
+   {
+      return false;
+   }
+
    /**
     * Get the object name the classloader is registered in the MBeanServer with
     * 
@@ -441,7 +563,7 @@ public abstract class BaseClassLoaderPolicy implements Formattable
     * 
     * @return the classloader
     */
-   synchronized BaseClassLoader getClassLoaderUnchecked()
+   BaseClassLoader getClassLoaderUnchecked()
    {
       return classLoader;
    }
@@ -471,7 +593,7 @@ public abstract class BaseClassLoaderPolicy implements Formattable
       log.debug(toString() + " shutdown!");
       BaseClassLoader classLoader = this.classLoader;
       this.classLoader = null;
-      TranslatorUtils.applyTranslatorsAtUnregister(translators, classLoader);
+      translators.unregisterClassLoader(classLoader);
       classLoader.shutdownClassLoader();
    }
    
@@ -493,12 +615,9 @@ public abstract class BaseClassLoaderPolicy implements Formattable
     *
     * @return the translators
     */
-   public synchronized List<Translator> getTranslators()
+   public List<Translator> getTranslators()
    {
-      if (translators == null || translators.isEmpty())
-         return Collections.emptyList();
-      else
-         return Collections.unmodifiableList(translators);
+      return translators.getTranslators();
    }
 
    /**
@@ -506,9 +625,9 @@ public abstract class BaseClassLoaderPolicy implements Formattable
     *
     * @param translators the translators
     */
-   public synchronized void setTranslators(List<Translator> translators)
+   public void setTranslators(List<Translator> translators)
    {
-      this.translators = translators;
+      this.translators.setTranslators(translators);
    }
 
    /**
@@ -517,29 +636,31 @@ public abstract class BaseClassLoaderPolicy implements Formattable
     * @param translator the translator to add
     * @throws IllegalArgumentException for null translator
     */
-   public synchronized void addTranslator(Translator translator)
+   public void addTranslator(Translator translator)
    {
-      if (translator == null)
-         throw new IllegalArgumentException("Null translator");
-
-      if (translators == null)
-         translators = new ArrayList<Translator>();
+      translators.addTranslator(translator);
+   }
 
-      translators.add(translator);
+   /**
+    * Add the translator for some classes.
+    *
+    * @param translator the translator to add
+    * @param scope the classes to translate, null means all classes
+    * @throws IllegalArgumentException for null translator
+    */
+   public void addTranslator(Translator translator, ClassFilter scope)
+   {
+      translators.addTranslator(translator, scope);
    }
 
    /**
     * Remove the translator.
     *
-    * @param translator the translator to remove
+    * @param translator the translator to remove, also when it was added with a scope
     * @throws IllegalArgumentException for null translator
     */
-   public synchronized void removeTranslator(Translator translator)
+   public void removeTranslator(Translator translator)
    {
-      if (translator == null)
-         throw new IllegalArgumentException("Null translator");
-
-      if (translators != null)
-         translators.remove(translator);
+      translators.removeTranslator(translator);
    }
 }
@@ -25,6 +25,7 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.security.ProtectionDomain;
 
+import org.jboss.classloader.plugins.ClassLoaderUtils;
 import org.jboss.classloader.spi.ClassLoaderPolicy;
 import org.jboss.classloader.spi.ShutdownPolicy;
 
@@ -36,6 +37,9 @@ import org.jboss.classloader.spi.ShutdownPolicy;
  */
 public abstract class BaseClassLoaderSystem
 {
+   /** Whether a subclass overrides transform without overriding isTransforming */
+   private volatile Boolean transformOverridden;
+
    /**
     * Get the shutdownPolicy.
     * 
@@ -244,4 +248,34 @@ public abstract class BaseClassLoaderSystem
    {
       return byteCode;
    }
+
+   /**
+    * Whether transform can change the byte code of a class<p>
+    * 
+    * When nothing transforms, classes are defined straight from a reused buffer.
+    * A subclass that overrides transform without overriding this is assumed to transform every class.
+    * 
+    * @param className the class name
+    * @return false by default
+    */
+   protected boolean isTransforming(String className)
+   {
+      return isTransformOverridden();
+   }
+
+   /**
+    * Whether a subclass overrides transform without overriding isTransforming
+    * 
+    * @return true when it does
+    */
+   private boolean isTransformOverridden()
+   {
+      Boolean result = transformOverridden;
+      if (result == null)
+      {
+         result = ClassLoaderUtils.isTransformOverridden(getClass(), ClassLoader.class, String.class, byte[].class, ProtectionDomain.class);
+         transformOverridden = result;
+      }
+      return result;
+   }
 }
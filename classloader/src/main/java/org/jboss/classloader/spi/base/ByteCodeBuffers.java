@@ -0,0 +1,74 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloader.spi.base;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The buffers byte code is read into when it is defined without being transformed.<p>
+ * 
+ * Each thread keeps one buffer. It is taken out while a class is being defined,
+ * so a class loaded in the middle of that gets a buffer of its own.
+ * Buffers larger than {@link #MAX_POOLED_SIZE} are not kept.
+ * 
+ * @version $Revision: 1.1 $
+ */
+class ByteCodeBuffers
+{
+   /** The initial buffer size */
+   static final int INITIAL_SIZE = 16 * 1024;
+
+   /** The largest buffer kept */
+   static final int MAX_POOLED_SIZE = 1024 * 1024;
+
+   /** The buffer of each thread */
+   private static final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>();
+
+   /**
+    * Take the buffer of the current thread
+    * 
+    * @param size the size needed or -1 if not known
+    * @return the buffer
+    */
+   static ByteBuffer acquire(int size)
+   {
+      ByteBuffer result = buffers.get();
+      if (result != null)
+      {
+         buffers.set(null);
+         if (result.capacity() >= size)
+            return result;
+      }
+      return ByteBuffer.allocate(Math.max(INITIAL_SIZE, size));
+   }
+
+   /**
+    * Give a buffer back to the current thread
+    * 
+    * @param buffer the buffer
+    */
+   static void release(ByteBuffer buffer)
+   {
+      if (buffer.capacity() <= MAX_POOLED_SIZE)
+         buffers.set(buffer);
+   }
+}
@@ -28,6 +28,7 @@ import java.util.Set;
 import org.jboss.classloader.spi.ClassLoaderCache;
 import org.jboss.classloader.spi.ImportType;
 import org.jboss.classloader.spi.Loader;
+import org.jboss.classloader.spi.helpers.AbstractClassLoaderCache;
 
 /**
  * Wrap finder method with additional ClassLoaderInformation lookup.
@@ -65,6 +66,38 @@ class ClassLoaderCacheWrapper implements ClassLoaderCache
       return false;
    }
 
+   /**
+    * Whether this wraps the cache and information
+    *
+    * @param delegate the cache
+    * @param info the classloader information
+    * @return true when it does
+    */
+   boolean isWrapping(ClassLoaderCache delegate, ClassLoaderInformation info)
+   {
+      return this.delegate == delegate && this.info == info;
+   }
+
+   /**
+    * Get a cached loader
+    *
+    * @param key the class name viewed as its resource path
+    * @return the cached loader or null if not cached
+    */
+   Loader getCachedLoader(ClassNameKey key)
+   {
+      if (delegate instanceof AbstractClassLoaderCache == false)
+         return getCachedLoader(key.toString());
+
+      Loader loader = ((AbstractClassLoaderCache) delegate).getCachedLoaderByKey(key);
+      if (loader != null)
+      {
+         if (info == null || info.getImportedPackages().contains(key.toPackageName(key.getClassName())) == false)
+            loader = null; // should not be exposed
+      }
+      return loader;
+   }
+
    public Loader getCachedLoader(String name)
    {
       Loader loader = delegate.getCachedLoader(name);
@@ -164,6 +197,20 @@ class ClassLoaderCacheWrapper implements ClassLoaderCache
       delegate.flushCaches();
    }
 
+   /**
+    * Flush the delegate's entries for the given packages.
+    * Delegates that cannot flush per package are flushed completely.
+    *
+    * @param packageNames the package names
+    */
+   void flushCaches(Set<String> packageNames)
+   {
+      if (delegate instanceof AbstractClassLoaderCache)
+         ((AbstractClassLoaderCache) delegate).flushCaches(packageNames);
+      else
+         delegate.flushCaches();
+   }
+
    public void clearBlackList(String name)
    {
       delegate.clearBlackList(name);
@@ -24,6 +24,8 @@ package org.jboss.classloader.spi.base;
 import java.net.URL;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -70,6 +72,12 @@ public class ClassLoaderInformation extends AbstractClassLoaderCache
    /** The package to delegate index */
    private Map<ImportType, Map<String, List<Loader>>> index;
 
+   /** The resource names by directory */
+   private Map<String, Set<String>> resourceNames = new ConcurrentHashMap<String, Set<String>>();
+
+   /** Marker for a directory the policy cannot enumerate */
+   private static final Set<String> UNKNOWN = Collections.unmodifiableSet(new HashSet<String>());
+
    /**
     * Create a new ClassLoaderInformation.
     * 
@@ -178,6 +186,48 @@ public class ClassLoaderInformation extends AbstractClassLoaderCache
       return order;
    }
 
+   /**
+    * Get the resources directly inside a directory,
+    * the policy is only asked once per directory
+    * 
+    * @param directory the directory path
+    * @return the resource paths or null if the policy cannot enumerate them
+    */
+   Set<String> getResourceNames(String directory)
+   {
+      Set<String> result = resourceNames.get(directory);
+      if (result == null)
+      {
+         result = policy.getResourceNames(directory);
+         if (result == null)
+            result = UNKNOWN;
+         else
+            result = Collections.unmodifiableSet(new HashSet<String>(result));
+         resourceNames.put(directory, result);
+      }
+      if (result == UNKNOWN)
+         return null;
+      return result;
+   }
+
+   @Override
+   public void flushCaches()
+   {
+      super.flushCaches();
+      resourceNames.clear();
+   }
+
+   @Override
+   public void flushCaches(Set<String> packageNames)
+   {
+      super.flushCaches(packageNames);
+      for (Iterator<String> i = resourceNames.keySet().iterator(); i.hasNext();)
+      {
+         if (packageNames.contains(ResourceIndex.getPackageName(i.next())))
+            i.remove();
+      }
+   }
+
    /**
     * Get the exported.
     * 
@@ -350,6 +400,17 @@ public class ClassLoaderInformation extends AbstractClassLoaderCache
       return (map != null) ? map.keySet() : Collections.<String>emptySet();
    }
 
+   /**
+    * Get a cached loader
+    *
+    * @param key the class name viewed as its resource path
+    * @return the cached loader or null if not cached
+    */
+   Loader getCachedLoader(ClassNameKey key)
+   {
+      return getCachedLoaderByKey(key);
+   }
+
    /**
     * Add loader to index.
     *
@@ -21,14 +21,23 @@
  */
 package org.jboss.classloader.spi.base;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
 
 import org.jboss.classloader.spi.Loader;
 import org.jboss.classloader.spi.base.ClassLoadingTask.ThreadTask;
 import org.jboss.logging.Logger;
 
 /**
- * ClassLoaderManager.
+ * ClassLoaderManager.<p>
+ * 
+ * Each classloader records the task queue of the thread owning its lock
+ * in its own {@link LockOwner}, so scheduling for unrelated classloaders
+ * doesn't contend. Each thread consumes its own {@link TaskQueue} and
+ * is woken directly when a task is added to it or one of its tasks completes.
  * 
  * @author Scott.Stark@jboss.org
  * @author <a href="adrian@jboss.com">Adrian Brock</a>
@@ -42,41 +51,48 @@ public class ClassLoaderManager
    /** The maximum number of CCEs */
    private static final int MAX_CCE = 10;
    
-   /** The threads owning the classloader lock */
-   private static Map<BaseClassLoader, Thread> loadClassThreads = new HashMap<BaseClassLoader, Thread>();
-   
-   /** The classloading tasks by thread */
-   private static Map<Thread, List<ThreadTask>> loadTasksByThread = Collections.synchronizedMap(new WeakHashMap<Thread, List<ThreadTask>>());
+   /** The classloading tasks of each thread */
+   private static ThreadLocal<TaskQueue> taskQueues = new ThreadLocal<TaskQueue>()
+   {
+      protected TaskQueue initialValue()
+      {
+         return new TaskQueue(Thread.currentThread());
+      }
+   };
+
+   /**
+    * Get the task queue of the current thread
+    * 
+    * @return the task queue
+    */
+   static TaskQueue getTaskQueue()
+   {
+      return taskQueues.get();
+   }
 
    /** 
     * Register a thread as owning the classloader
     * 
     * @param classloader the classloader
-    * @param thread the thread
+    * @param thread the thread, it must be the current thread
     * @throws IllegalArgumentException for a null parameter
     */
    static void registerLoaderThread(BaseClassLoader classloader, Thread thread)
    {
       boolean trace = log.isTraceEnabled();
       
-      synchronized (loadClassThreads)
+      TaskQueue taskQueue = getTaskQueue();
+      if (taskQueue.getThread() != thread)
+         throw new IllegalArgumentException("Can only register the current thread " + Thread.currentThread() + " not " + thread);
+      
+      LockOwner owner = classloader.getLockOwner();
+      synchronized (owner)
       {
-         Object previousThread = loadClassThreads.put(classloader, thread);
+         TaskQueue previous = owner.taskQueue;
+         owner.taskQueue = taskQueue;
          if (trace)
-            log.trace("registerLoaderThread, classloader=" + classloader + " thread=" + thread + " previousThread=" + previousThread);
-
-         synchronized (loadTasksByThread)
-         {
-            List<ThreadTask> taskList = loadTasksByThread.get(thread);
-            if (taskList == null)
-            {
-               taskList = Collections.synchronizedList(new LinkedList<ThreadTask>());
-               loadTasksByThread.put(thread, taskList);
-               if (trace)
-                  log.trace("Created new task list for " + thread);
-            }
-         }
-         loadClassThreads.notifyAll();
+            log.trace("registerLoaderThread, classloader=" + classloader + " thread=" + thread + " previousThread=" + (previous != null ? previous.getThread() : null));
+         owner.notifyAll();
       }
    }
 
@@ -94,54 +110,54 @@ public class ClassLoaderManager
          log.trace("unregisterLoaderThread, classloader=" + classLoader + " thread=" + thread + " rescheduleTasks=" + rescheduleTasks);
 
       // Unregister as the owning thread and notify any waiting threads
-      synchronized (loadClassThreads)
+      TaskQueue taskQueue;
+      LockOwner owner = classLoader.getLockOwner();
+      synchronized (owner)
       {
-         loadClassThreads.remove(classLoader);
-         loadClassThreads.notifyAll();
+         taskQueue = owner.taskQueue;
+         owner.taskQueue = null;
+         owner.notifyAll();
+      }
+      if (taskQueue == null || taskQueue.getThread() != thread)
+      {
+         if (thread != Thread.currentThread())
+            return;
+         taskQueue = getTaskQueue();
       }
 
       // Any ThreadTasks associated with this thread must be reassigned
       if (rescheduleTasks)
       {
-         List<ThreadTask> taskList = loadTasksByThread.get(thread);
-         if (taskList != null)
+         List<ThreadTask> ourselves = null;
+         ThreadTask threadTask = taskQueue.poll();
+         while (threadTask != null)
          {
-            synchronized (taskList)
+            ClassLoadingTask loadTask = threadTask.getLoadTask();
+            TaskQueue requestingTasks = loadTask.getRequestingTasks();
+            if( trace )
+               log.trace("Reassigning task: " + threadTask+" to " + loadTask.getRequestingThread());
+            threadTask.setThread(null);
+            // Are we assigning to ourselves?
+            if (requestingTasks == taskQueue)
             {
-               List<ThreadTask> ourselves = null;
-               while (taskList.isEmpty() == false)
-               {
-                  ThreadTask threadTask = taskList.remove(0);
-                  ClassLoadingTask loadTask = threadTask.getLoadTask();
-                  Thread requestingThread = loadTask.getRequestingThread();
-                  if( trace )
-                     log.trace("Reassigning task: " + threadTask+" to " + requestingThread);
-                  threadTask.setThread(null);
-                  // Insert the task into the front of requestingThread task list
-                  List<ThreadTask> toTaskList = loadTasksByThread.get(requestingThread);
-                  // Our we assigning to ourselves?
-                  if (toTaskList == taskList)
-                  {
-                     if (ourselves == null)
-                        ourselves = new LinkedList<ThreadTask>();
-                     ourselves.add(threadTask);
-                  }
-                  else
-                  {
-                     synchronized (toTaskList)
-                     {
-                        toTaskList.add(0, threadTask);
-                        loadTask.nextEvent();
-                        toTaskList.notify();
-                     }
-                  }
-               }
-               // Any assigned back to ourselves?
-               if (ourselves != null)
-               {
-                  taskList.addAll(ourselves);
-               }
+               if (ourselves == null)
+                  ourselves = new ArrayList<ThreadTask>();
+               ourselves.add(threadTask);
+            }
+            else
+            {
+               // Insert the task into the front of requestingThread task list
+               requestingTasks.addFirst(threadTask);
+               loadTask.nextEvent();
+               requestingTasks.wakeUp();
             }
+            threadTask = taskQueue.poll();
+         }
+         // Any assigned back to ourselves?
+         if (ourselves != null)
+         {
+            for (ThreadTask task : ourselves)
+               taskQueue.add(task);
          }
       }
    }
@@ -199,48 +215,43 @@ public class ClassLoaderManager
          if (trace)
             log.trace("Next task thread=" + thread + " task=" + task);
 
-         List<ThreadTask> taskList = loadTasksByThread.get(thread);
-         synchronized (taskList)
+         TaskQueue taskQueue = getTaskQueue();
+
+         // There may not be any ThreadTasks
+         while (taskQueue.isEmpty() && task.getThreadTaskCount() != 0 )
          {
-            // There may not be any ThreadTasks
-            while (taskList.isEmpty() && task.getThreadTaskCount() != 0 )
+            /* There are no more tasks for the calling thread to execute, so the
+            calling thread must wait until the task.threadTaskCount reaches 0
+             */
+            if (trace)
+               log.trace("Begin nextTask(WAIT_ON_EVENT), task="+task);
+            task.waitOnEvent();
+            LockSupport.park(task);
+            if (Thread.interrupted())
             {
-               /* There are no more tasks for the calling thread to execute, so the
-               calling thread must wait until the task.threadTaskCount reaches 0
-                */
-               if (trace)
-                  log.trace("Begin nextTask(WAIT_ON_EVENT), task="+task);
-               try
-               {
-                  task.waitOnEvent();
-                  taskList.wait();
-                  if (trace)
-                     log.trace("nextTask(WAIT_ON_EVENT), notified, task="+task);
-               }
-               catch(InterruptedException e)
-               {
-                  if( trace )
-                     log.trace("nextTask(WAIT_ON_EVENT), interrupted, task="+task, e);
-                  intr = true;
-               }
+               if( trace )
+                  log.trace("nextTask(WAIT_ON_EVENT), interrupted, task="+task);
+               intr = true;
             }
+            else if (trace)
+               log.trace("nextTask(WAIT_ON_EVENT), woken, task="+task);
+         }
 
-            if (trace)
-               log.trace("Continue nextTask(" + taskList.size()+"), task="+task);
+         if (trace)
+            log.trace("Continue nextTask(" + taskQueue.size()+"), task="+task);
 
-            // See if the task is complete
-            if (task.getThreadTaskCount() == 0)
-            {
-               task.finish();
-               log.trace("End nextTask(FINISHED), task="+task);
-               return;
-            }
+         // See if the task is complete
+         if (task.getThreadTaskCount() == 0)
+         {
+            task.finish();
+            log.trace("End nextTask(FINISHED), task="+task);
+            return;
          }
 
-         ThreadTask threadTask = taskList.remove(0);
+         ThreadTask threadTask = taskQueue.poll();
          ClassLoadingTask loadTask = threadTask.getLoadTask();
          if (trace)
-            log.trace("Begin nextTask(" + taskList.size() + "), loadTask=" + loadTask);
+            log.trace("Begin nextTask(" + taskQueue.size() + "), loadTask=" + loadTask);
 
          try
          {
@@ -300,17 +311,13 @@ public class ClassLoaderManager
          // If the ThreadTasks are complete mark the ClassLoadingTask finished
          if (loadTask.getThreadTaskCount() == 0)
          {
-            List<ThreadTask> loadTaskThreadTasks = loadTasksByThread.get(loadTask.getRequestingThread());
-            synchronized (loadTaskThreadTasks)
-            {
-               if( trace )
-                  log.trace("Notifying task of thread completion, loadTask:"+loadTask);
-               task.finish();
-               loadTaskThreadTasks.notify();
-            }
+            if( trace )
+               log.trace("Notifying task of thread completion, loadTask:"+loadTask);
+            task.finish();
+            loadTask.getRequestingTasks().wakeUp();
          }
          if (trace)
-            log.trace("End nextTask(" + taskList.size()+ "), loadTask=" + loadTask);
+            log.trace("End nextTask(" + taskQueue.size()+ "), loadTask=" + loadTask);
       }
       finally
       {
@@ -333,10 +340,13 @@ public class ClassLoaderManager
       if (trace)
          log.trace("ScheduleTask task=" + task + " loader=" + loader + " reschedule=" + reschedule);
       
-      Thread thread;
+      // The first schedule is done by the requesting thread
+      if (task.getRequestingTasks() == null)
+         task.setRequestingTasks(getTaskQueue());
+
       boolean releaseInNextTask = false;
       ThreadTask subtask;
-      List<ThreadTask> taskList;
+      TaskQueue taskQueue;
 
       BaseClassLoader classLoader = null;
       if (loader instanceof BaseDelegateLoader)
@@ -348,82 +358,183 @@ public class ClassLoaderManager
          classLoader = policy.getClassLoader(task);
       }
       
-      synchronized (loadClassThreads)
+      if (classLoader == null)
       {
-         // Find the thread that owns the classloader
-         if (classLoader == null)
-         {
-            thread = task.getRequestingThread();
-            synchronized (loadTasksByThread)
-            {
-               List<ThreadTask> list = loadTasksByThread.get(thread);
-               if (list == null)
-               {
-                  list = Collections.synchronizedList(new LinkedList<ThreadTask>());
-                  loadTasksByThread.put(thread, list);
-                  if (trace)
-                     log.trace("Created new task list for " + thread);
-               }
-            }
-         }
-         else
-         {
-            thread = loadClassThreads.get(classLoader);
-         }
-         
-         if (thread == null)
+         // Not one of ours, the requesting thread loads it
+         taskQueue = task.getRequestingTasks();
+         subtask = task.newThreadTask(loader, taskQueue.getThread(), reschedule, releaseInNextTask);
+         taskQueue.add(subtask);
+      }
+      else
+      {
+         LockOwner owner = classLoader.getLockOwner();
+         synchronized (owner)
          {
-            boolean interrupted = Thread.interrupted();
-            int waits = 0;
-            
-            try
+            // Find the thread that owns the classloader
+            taskQueue = owner.taskQueue;
+            if (taskQueue == null)
             {
-               // No thread, try to get the lock ourselves
-               while (thread == null)
+               boolean interrupted = Thread.interrupted();
+               int waits = 0;
+               
+               try
                {
-                  try
+                  // No thread, try to get the lock ourselves
+                  while (taskQueue == null)
                   {
-                     boolean gotLock = classLoader.attemptLock();
-                     if (gotLock == false)
+                     try
                      {
-                        // Two minutes should be long enough?
-                        if (waits++ == 12)
-                           throw new IllegalStateException("Waiting too long to get the registration lock for classLoader " + classLoader);
-                        // Wait 10 seconds
-                        if (trace)
-                           log.trace(classLoader + " waiting for lock");
-                        loadClassThreads.wait(10000);
+                        boolean gotLock = classLoader.attemptLock();
+                        if (gotLock == false)
+                        {
+                           // Two minutes should be long enough?
+                           if (waits++ == 12)
+                              throw new IllegalStateException("Waiting too long to get the registration lock for classLoader " + classLoader);
+                           // Wait 10 seconds
+                           if (trace)
+                              log.trace(classLoader + " waiting for lock");
+                           owner.wait(10000);
+                        }
+                        else
+                        {
+                           releaseInNextTask = true;
+                        }
                      }
-                     else
+                     catch (InterruptedException ignored)
                      {
-                        releaseInNextTask = true;
+                        interrupted = true;
                      }
+                     taskQueue = owner.taskQueue;
                   }
-                  catch (InterruptedException ignored)
-                  {
-                     interrupted = true;
-                  }
-                  thread = loadClassThreads.get(classLoader);
+               }
+               finally
+               {
+                  if (interrupted)
+                     Thread.currentThread().interrupt();
                }
             }
-            finally
-            {
-               if (interrupted)
-                  Thread.currentThread().interrupt();
-            }
-         }
 
-         // Now that we have the owner thread, create and assign the task
-         subtask = task.newThreadTask(loader, thread, reschedule, releaseInNextTask);
-         // Add the task to the owning thread
-         taskList = loadTasksByThread.get(thread);
-         synchronized (taskList)
-         {
-            taskList.add(subtask);
-            taskList.notify();
-            if (trace)
-               log.trace("scheduleTask(" + taskList.size() + "), created subtask: " + subtask);
+            // Now that we have the owner thread, create and assign the task
+            // while holding the owner so it can't unregister before seeing it
+            subtask = task.newThreadTask(loader, taskQueue.getThread(), reschedule, releaseInNextTask);
+            taskQueue.add(subtask);
          }
       }
+      taskQueue.wakeUp();
+      if (trace)
+         log.trace("scheduleTask(" + taskQueue.size() + "), created subtask: " + subtask);
+   }
+
+   /**
+    * The thread owning a classloader's lock
+    */
+   static class LockOwner
+   {
+      /** The task queue of the owning thread, guarded by this */
+      private TaskQueue taskQueue;
+   }
+
+   /**
+    * The classloading tasks assigned to a thread<p>
+    * 
+    * Tasks are added by any thread but only run by the owning thread.
+    */
+   static class TaskQueue
+   {
+      /** The thread */
+      private final Thread thread;
+
+      /** Tasks handed back to the thread, these run first */
+      private final Queue<ThreadTask> reassigned = new ConcurrentLinkedQueue<ThreadTask>();
+
+      /** The tasks */
+      private final Queue<ThreadTask> tasks = new ConcurrentLinkedQueue<ThreadTask>();
+
+      /**
+       * Create a new TaskQueue.
+       * 
+       * @param thread the thread
+       */
+      TaskQueue(Thread thread)
+      {
+         this.thread = thread;
+      }
+
+      /**
+       * Get the thread.
+       * 
+       * @return the thread
+       */
+      Thread getThread()
+      {
+         return thread;
+      }
+
+      /**
+       * Add a task
+       * 
+       * @param task the task
+       */
+      void add(ThreadTask task)
+      {
+         tasks.add(task);
+      }
+
+      /**
+       * Add a task to run before the others
+       * 
+       * @param task the task
+       */
+      void addFirst(ThreadTask task)
+      {
+         reassigned.add(task);
+      }
+
+      /**
+       * Take the next task
+       * 
+       * @return the task or null if there are none
+       */
+      ThreadTask poll()
+      {
+         ThreadTask result = reassigned.poll();
+         if (result == null)
+            result = tasks.poll();
+         return result;
+      }
+
+      /**
+       * Whether there are no tasks
+       * 
+       * @return true when empty
+       */
+      boolean isEmpty()
+      {
+         return reassigned.isEmpty() && tasks.isEmpty();
+      }
+
+      /**
+       * The number of tasks, for logging only
+       * 
+       * @return the size
+       */
+      int size()
+      {
+         return reassigned.size() + tasks.size();
+      }
+
+      /**
+       * Wake the thread if it is waiting for tasks
+       */
+      void wakeUp()
+      {
+         LockSupport.unpark(thread);
+      }
+
+      @Override
+      public String toString()
+      {
+         return "TaskQueue{" + thread + "}";
+      }
    }
 }
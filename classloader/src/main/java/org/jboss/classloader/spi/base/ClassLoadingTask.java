@@ -73,6 +73,9 @@ public class ClassLoadingTask
    /** The reques thread */ 
    private Thread requestingThread;
    
+   /** The task queue of the requesting thread */
+   private volatile ClassLoaderManager.TaskQueue requestingTasks;
+   
    /** The requesting classloader */
    private ClassLoader classLoader;
    
@@ -158,6 +161,26 @@ public class ClassLoadingTask
       return requestingThread;
    }
 
+   /**
+    * Get the task queue of the requesting thread.
+    * 
+    * @return the task queue or null if not yet scheduled
+    */
+   ClassLoaderManager.TaskQueue getRequestingTasks()
+   {
+      return requestingTasks;
+   }
+
+   /**
+    * Set the task queue of the requesting thread.
+    * 
+    * @param requestingTasks the task queue
+    */
+   void setRequestingTasks(ClassLoaderManager.TaskQueue requestingTasks)
+   {
+      this.requestingTasks = requestingTasks;
+   }
+
    /**
     * Get the state.
     * 
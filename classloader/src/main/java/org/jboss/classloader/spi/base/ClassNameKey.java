@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloader.spi.base;
+
+/**
+ * A reusable view over a class name that can be used to look up
+ * String keyed maps by the class's package name or resource path
+ * without building those strings.<p>
+ * 
+ * The hash code is the one the String would have and the key is equal
+ * to that String. The reverse is not true, so it can only be used as the
+ * argument to get/contains and must never be stored.
+ *
+ * @version $Revision: 1.1 $
+ */
+final class ClassNameKey
+{
+   /** The class resource suffix */
+   private static final String CLASS_SUFFIX = ".class";
+
+   /** The class name */
+   private String className;
+
+   /** The length of the package name */
+   private int packageLength;
+
+   /** Whether this is the resource path or the package name */
+   private boolean path;
+
+   /** The hash code */
+   private int hash;
+
+   /**
+    * View the class name as its package name
+    * 
+    * @param className the class name
+    * @return this
+    */
+   ClassNameKey toPackageName(String className)
+   {
+      this.className = className;
+      this.path = false;
+      int end = className.lastIndexOf('.');
+      packageLength = (end == -1) ? 0 : end;
+      int h = 0;
+      for (int i = 0; i < packageLength; ++i)
+         h = 31 * h + className.charAt(i);
+      hash = h;
+      return this;
+   }
+
+   /**
+    * View the class name as its resource path
+    * 
+    * @param className the class name
+    * @return this
+    */
+   ClassNameKey toResourcePath(String className)
+   {
+      this.className = className;
+      this.path = true;
+      int h = 0;
+      for (int i = 0; i < className.length(); ++i)
+      {
+         char c = className.charAt(i);
+         h = 31 * h + (c == '.' ? '/' : c);
+      }
+      for (int i = 0; i < CLASS_SUFFIX.length(); ++i)
+         h = 31 * h + CLASS_SUFFIX.charAt(i);
+      hash = h;
+      return this;
+   }
+
+   /**
+    * Get the class name
+    * 
+    * @return the class name
+    */
+   String getClassName()
+   {
+      return className;
+   }
+
+   /**
+    * Release the class name
+    */
+   void clear()
+   {
+      className = null;
+   }
+
+   @Override
+   public int hashCode()
+   {
+      return hash;
+   }
+
+   @Override
+   public boolean equals(Object obj)
+   {
+      if (obj == this)
+         return true;
+      if (obj instanceof String == false)
+         return false;
+
+      String other = (String) obj;
+      if (path == false)
+         return other.length() == packageLength && className.regionMatches(0, other, 0, packageLength);
+
+      int length = className.length();
+      if (other.length() != length + CLASS_SUFFIX.length() || other.endsWith(CLASS_SUFFIX) == false)
+         return false;
+      for (int i = 0; i < length; ++i)
+      {
+         char c = className.charAt(i);
+         if ((c == '.' ? '/' : c) != other.charAt(i))
+            return false;
+      }
+      return true;
+   }
+
+   @Override
+   public String toString()
+   {
+      if (className == null)
+         return "";
+      if (path)
+         return className.replace('.', '/') + CLASS_SUFFIX;
+      return className.substring(0, packageLength);
+   }
+}
@@ -0,0 +1,340 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloader.spi.base;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.classloader.plugins.ClassLoaderUtils;
+
+/**
+ * The resources a domain found, or did not find, in its exports.<p>
+ * 
+ * The cache is bounded, when it is full the entries are evicted in clock order
+ * giving a second chance to the entries that were used since the hand last passed.
+ * Resources that were not found all share one entry and are evicted first.
+ * 
+ * @version $Revision: 1.1 $
+ */
+class ResourceCache
+{
+   /** The entry for a resource that is not in the exports */
+   private static final Entry NOT_FOUND = new Entry(null);
+
+   /** The entries */
+   private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+   /** The number of entries for resources that were not found */
+   private final AtomicInteger notFound = new AtomicInteger();
+
+   /** The maximum number of entries */
+   private volatile int maxSize;
+
+   /** The clock hand */
+   private Iterator<Map.Entry<String, Entry>> hand;
+
+   /** The hits */
+   private final AtomicLong hits = new AtomicLong();
+
+   /** The misses */
+   private final AtomicLong misses = new AtomicLong();
+
+   /**
+    * Create a new ResourceCache.
+    * 
+    * @param maxSize the maximum number of entries
+    */
+   ResourceCache(int maxSize)
+   {
+      this.maxSize = maxSize;
+   }
+
+   /**
+    * Get the maximum number of entries
+    * 
+    * @return the size
+    */
+   int getMaxSize()
+   {
+      return maxSize;
+   }
+
+   /**
+    * Set the maximum number of entries
+    * 
+    * @param maxSize the size
+    */
+   void setMaxSize(int maxSize)
+   {
+      this.maxSize = maxSize;
+      evict();
+   }
+
+   /**
+    * Whether the resource is known
+    * 
+    * @param name the resource name
+    * @return the entry or null if it is not cached
+    */
+   Entry get(String name)
+   {
+      Entry entry = entries.get(name);
+      if (entry == null)
+      {
+         misses.incrementAndGet();
+         return null;
+      }
+      hits.incrementAndGet();
+      if (entry != NOT_FOUND && entry.referenced == false)
+         entry.referenced = true;
+      return entry;
+   }
+
+   /**
+    * Remember a resource
+    * 
+    * @param name the resource name
+    * @param url the url
+    */
+   void put(String name, URL url)
+   {
+      put(name, new Entry(url));
+   }
+
+   /**
+    * Remember the resource is not in the exports
+    * 
+    * @param name the resource name
+    */
+   void putNotFound(String name)
+   {
+      put(name, NOT_FOUND);
+   }
+
+   private void put(String name, Entry entry)
+   {
+      if (maxSize <= 0)
+         return;
+      Entry previous = entries.put(name, entry);
+      if (entry == NOT_FOUND && previous != NOT_FOUND)
+         notFound.incrementAndGet();
+      else if (entry != NOT_FOUND && previous == NOT_FOUND)
+         notFound.decrementAndGet();
+      if (entries.size() > maxSize)
+         evict();
+   }
+
+   /**
+    * Remove an entry if it is still the one cached
+    * 
+    * @param name the resource name
+    * @param entry the entry
+    */
+   private void remove(String name, Entry entry)
+   {
+      if (entries.remove(name, entry) && entry == NOT_FOUND)
+         notFound.decrementAndGet();
+   }
+
+   /**
+    * Forget the resource was not found
+    * 
+    * @param name the resource name
+    */
+   void removeNotFound(String name)
+   {
+      remove(name, NOT_FOUND);
+   }
+
+   /**
+    * Forget everything
+    */
+   void clear()
+   {
+      for (Map.Entry<String, Entry> entry : entries.entrySet())
+         remove(entry.getKey(), entry.getValue());
+   }
+
+   /**
+    * Forget the resources in the packages
+    * 
+    * @param packageNames the package names
+    */
+   void removeResourcesInPackages(Set<String> packageNames)
+   {
+      if (packageNames == null || packageNames.isEmpty())
+         return;
+
+      for (Map.Entry<String, Entry> entry : entries.entrySet())
+      {
+         if (packageNames.contains(ClassLoaderUtils.getResourcePackageName(entry.getKey())))
+            remove(entry.getKey(), entry.getValue());
+      }
+   }
+
+   /**
+    * Get the found resources
+    * 
+    * @return a snapshot of the resources
+    */
+   Map<String, URL> getFound()
+   {
+      Map<String, URL> result = new HashMap<String, URL>();
+      for (Map.Entry<String, Entry> entry : entries.entrySet())
+      {
+         if (entry.getValue() != NOT_FOUND)
+            result.put(entry.getKey(), entry.getValue().url);
+      }
+      return result;
+   }
+
+   /**
+    * Get the resources that are not in the exports
+    * 
+    * @return a snapshot of the resource names
+    */
+   Set<String> getNotFound()
+   {
+      Set<String> result = new HashSet<String>();
+      for (Map.Entry<String, Entry> entry : entries.entrySet())
+      {
+         if (entry.getValue() == NOT_FOUND)
+            result.add(entry.getKey());
+      }
+      return result;
+   }
+
+   /**
+    * Get the number of entries
+    * 
+    * @return the size
+    */
+   int size()
+   {
+      return entries.size();
+   }
+
+   /**
+    * Get the number of resources found
+    * 
+    * @return the size
+    */
+   int getFoundSize()
+   {
+      return Math.max(0, entries.size() - notFound.get());
+   }
+
+   /**
+    * Get the number of resources that are not in the exports
+    * 
+    * @return the size
+    */
+   int getNotFoundSize()
+   {
+      return notFound.get();
+   }
+
+   /**
+    * Get the hits.
+    * 
+    * @return the hits.
+    */
+   long getHits()
+   {
+      return hits.get();
+   }
+
+   /**
+    * Get the misses.
+    * 
+    * @return the misses.
+    */
+   long getMisses()
+   {
+      return misses.get();
+   }
+
+   /**
+    * Evict entries until the cache is within its size
+    */
+   private synchronized void evict()
+   {
+      // Each entry is cleared at most once so two turns of the clock are enough
+      int steps = 2 * entries.size() + 1;
+      while (entries.size() > maxSize && steps-- > 0)
+      {
+         if (hand == null || hand.hasNext() == false)
+         {
+            hand = entries.entrySet().iterator();
+            if (hand.hasNext() == false)
+               return;
+         }
+         Map.Entry<String, Entry> next = hand.next();
+         Entry entry = next.getValue();
+         if (entry.referenced)
+            entry.referenced = false;
+         else
+            remove(next.getKey(), entry);
+      }
+   }
+
+   /**
+    * Whether the entry is for a resource that was not found
+    * 
+    * @param entry the entry
+    * @return true when not found
+    */
+   static boolean isNotFound(Entry entry)
+   {
+      return entry == NOT_FOUND;
+   }
+
+   /**
+    * A cached resource
+    */
+   static final class Entry
+   {
+      /** The url */
+      final URL url;
+
+      /** Whether it was used since the clock hand last passed */
+      volatile boolean referenced;
+
+      /**
+       * Create a new Entry.
+       * 
+       * @param url the url
+       */
+      Entry(URL url)
+      {
+         this.url = url;
+      }
+   }
+}
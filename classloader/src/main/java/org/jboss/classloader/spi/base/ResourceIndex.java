@@ -0,0 +1,162 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloader.spi.base;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of resource name to the exporting classloaders for a well known
+ * resource directory, META-INF/services or the xml files in META-INF.<p>
+ * 
+ * Classloaders whose policy cannot enumerate the directory are always candidates.
+ * The candidates are returned in the order the classloaders were registered.
+ * 
+ * @version $Revision: 1.1 $
+ */
+class ResourceIndex
+{
+   /** The services directory */
+   static final String SERVICES = "META-INF/services";
+
+   /** The META-INF directory */
+   static final String META_INF = "META-INF";
+
+   /** The classloaders by resource name */
+   private final Map<String, List<ClassLoaderInformation>> loaders = new HashMap<String, List<ClassLoaderInformation>>();
+
+   /** The classloaders that cannot enumerate the directory */
+   private final List<ClassLoaderInformation> unknown = new ArrayList<ClassLoaderInformation>();
+
+   /**
+    * Get the indexed directory of a resource
+    * 
+    * @param name the resource name
+    * @return the directory or null if the resource is not indexed
+    */
+   static String getDirectory(String name)
+   {
+      if (name.startsWith("META-INF/") == false)
+         return null;
+      int slash = name.lastIndexOf('/');
+      if (slash == name.length() - 1)
+         return null;
+      if (slash == META_INF.length())
+         return name.endsWith(".xml") ? META_INF : null;
+      if (slash == SERVICES.length() && name.startsWith(SERVICES))
+         return SERVICES;
+      return null;
+   }
+
+   /**
+    * Get the package name of an indexed directory
+    * 
+    * @param directory the directory
+    * @return the package name
+    */
+   static String getPackageName(String directory)
+   {
+      return directory.replace('/', '.');
+   }
+
+   /**
+    * Create a new ResourceIndex.
+    * 
+    * @param directory the directory
+    * @param exporters the classloaders exporting the directory in registration order
+    */
+   ResourceIndex(String directory, List<ClassLoaderInformation> exporters)
+   {
+      for (ClassLoaderInformation info : exporters)
+      {
+         Set<String> names = info.getResourceNames(directory);
+         if (names == null)
+         {
+            unknown.add(info);
+            continue;
+         }
+         for (String name : names)
+         {
+            if (directory.equals(getDirectory(name)) == false)
+               continue;
+            List<ClassLoaderInformation> list = loaders.get(name);
+            if (list == null)
+            {
+               list = new ArrayList<ClassLoaderInformation>(1);
+               loaders.put(name, list);
+            }
+            list.add(info);
+         }
+      }
+   }
+
+   /**
+    * Get the classloaders that may have the resource
+    * 
+    * @param name the resource name
+    * @return the classloaders in registration order
+    */
+   List<ClassLoaderInformation> getLoaders(String name)
+   {
+      List<ClassLoaderInformation> known = loaders.get(name);
+      if (known == null)
+         return unknown;
+      if (unknown.isEmpty())
+         return known;
+
+      // Merge keeping the registration order
+      List<ClassLoaderInformation> result = new ArrayList<ClassLoaderInformation>(known.size() + unknown.size());
+      int i = 0;
+      int j = 0;
+      while (i < known.size() && j < unknown.size())
+      {
+         if (known.get(i).getOrder() < unknown.get(j).getOrder())
+            result.add(known.get(i++));
+         else
+            result.add(unknown.get(j++));
+      }
+      while (i < known.size())
+         result.add(known.get(i++));
+      while (j < unknown.size())
+         result.add(unknown.get(j++));
+      return result;
+   }
+
+   /**
+    * Get the number of indexed resource names
+    * 
+    * @return the size
+    */
+   int size()
+   {
+      return loaders.size();
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ResourceIndex" + loaders.keySet() + " unknown=" + unknown;
+   }
+}
@@ -0,0 +1,209 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloader.spi.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jboss.classloader.plugins.filter.CombiningClassFilter;
+import org.jboss.classloader.plugins.filter.NegatingClassFilter;
+
+/**
+ * Simplifies a tree of class filters into an equivalent filter that is cheaper to evaluate.<p>
+ * 
+ * Constants are folded, nested "or" combinations are flattened, the package filters of
+ * an "or" combination are merged into one hash set and one prefix trie, and the
+ * remaining filters are ordered so the cheapest are checked first.
+ * Filters it does not know about are left alone.
+ * 
+ * @version $Revision: 1.1 $
+ */
+class ClassFilterOptimizer
+{
+   /**
+    * Optimize a filter
+    * 
+    * @param filter the filter
+    * @return the optimized filter, possibly the same filter
+    * @throws IllegalArgumentException for a null filter
+    */
+   static ClassFilter optimize(ClassFilter filter)
+   {
+      if (filter == null)
+         throw new IllegalArgumentException("Null filter");
+      
+      // Only the exact classes, a subclass might change the semantics
+      if (filter.getClass() == CombiningClassFilter.class)
+         return optimizeCombining((CombiningClassFilter) filter);
+      if (filter.getClass() == NegatingClassFilter.class)
+         return optimizeNegating((NegatingClassFilter) filter);
+      return filter;
+   }
+
+   /**
+    * Optimize a negating filter
+    * 
+    * @param filter the filter
+    * @return the optimized filter
+    */
+   private static ClassFilter optimizeNegating(NegatingClassFilter filter)
+   {
+      ClassFilter negated = optimize(filter.getFilter());
+      if (negated == ClassFilterUtils.EVERYTHING)
+         return ClassFilterUtils.NOTHING;
+      if (negated == ClassFilterUtils.NOTHING)
+         return ClassFilterUtils.EVERYTHING;
+      if (negated.getClass() == NegatingClassFilter.class)
+         return ((NegatingClassFilter) negated).getFilter();
+      if (negated == filter.getFilter())
+         return filter;
+      return new NegatingClassFilter(negated);
+   }
+
+   /**
+    * Optimize a combining filter
+    * 
+    * @param filter the filter
+    * @return the optimized filter
+    */
+   private static ClassFilter optimizeCombining(CombiningClassFilter filter)
+   {
+      ClassFilter[] filters = filter.getFilters();
+      
+      // An "and" combination answers with its first filter, see CombiningClassFilter
+      if (filter.isAnd())
+      {
+         if (filters.length == 0)
+            return ClassFilterUtils.NOTHING;
+         return optimize(filters[0]);
+      }
+      
+      List<ClassFilter> flattened = new ArrayList<ClassFilter>();
+      if (flatten(filters, flattened))
+         return ClassFilterUtils.EVERYTHING;
+
+      boolean java = false;
+      Set<String> packageNames = null;
+      PackageClassFilter packageFilter = null;
+      int packageFilters = 0;
+      Set<String> recursiveNames = null;
+      RecursivePackageClassFilter recursiveFilter = null;
+      int recursiveFilters = 0;
+      List<ClassFilter> others = new ArrayList<ClassFilter>();
+      for (ClassFilter f : flattened)
+      {
+         if (f.getClass() == PackageClassFilter.class)
+         {
+            packageFilter = (PackageClassFilter) f;
+            if (packageNames == null)
+               packageNames = new LinkedHashSet<String>();
+            packageNames.addAll(Arrays.asList(packageFilter.getPackageNames()));
+            java |= packageFilter.isIncludeJava();
+            ++packageFilters;
+         }
+         else if (f.getClass() == RecursivePackageClassFilter.class)
+         {
+            recursiveFilter = (RecursivePackageClassFilter) f;
+            if (recursiveNames == null)
+               recursiveNames = new LinkedHashSet<String>();
+            recursiveNames.addAll(Arrays.asList(recursiveFilter.getPackageNames()));
+            java |= recursiveFilter.isIncludeJava();
+            ++recursiveFilters;
+         }
+         else if (f == ClassFilterUtils.JAVA_ONLY)
+         {
+            java = true;
+         }
+         else if (others.contains(f) == false)
+         {
+            others.add(f);
+         }
+      }
+      // The java classes include everything NOTHING_BUT_JAVA matches
+      if (java)
+         others.remove(ClassFilterUtils.NOTHING_BUT_JAVA);
+
+      // Cheapest first, a hash probe, a trie walk, the java prefixes and then the rest
+      List<ClassFilter> result = new ArrayList<ClassFilter>();
+      if (packageNames != null)
+      {
+         if (packageFilters > 1 || (java && packageFilter.isIncludeJava() == false))
+         {
+            packageFilter = PackageClassFilter.createPackageClassFilter(new ArrayList<String>(packageNames));
+            packageFilter.setIncludeJava(java);
+         }
+         java = false;
+         result.add(packageFilter);
+      }
+      if (recursiveNames != null)
+      {
+         if (recursiveFilters > 1 || (java && recursiveFilter.isIncludeJava() == false))
+         {
+            recursiveFilter = RecursivePackageClassFilter.createRecursivePackageClassFilter(new ArrayList<String>(recursiveNames));
+            recursiveFilter.setIncludeJava(java);
+         }
+         java = false;
+         result.add(recursiveFilter);
+      }
+      if (java)
+         result.add(ClassFilterUtils.JAVA_ONLY);
+      result.addAll(others);
+      
+      if (result.isEmpty())
+         return ClassFilterUtils.NOTHING;
+      if (result.size() == 1)
+         return result.get(0);
+      return new CombiningClassFilter(false, result.toArray(new ClassFilter[result.size()]));
+   }
+
+   /**
+    * Optimize and flatten the filters of an "or" combination
+    * 
+    * @param filters the filters
+    * @param result the flattened filters
+    * @return true when one of the filters matches everything
+    */
+   private static boolean flatten(ClassFilter[] filters, List<ClassFilter> result)
+   {
+      for (ClassFilter filter : filters)
+      {
+         ClassFilter optimized = optimize(filter);
+         if (optimized == ClassFilterUtils.EVERYTHING)
+            return true;
+         if (optimized == ClassFilterUtils.NOTHING)
+            continue;
+         if (optimized.getClass() == CombiningClassFilter.class && ((CombiningClassFilter) optimized).isAnd() == false)
+         {
+            if (flatten(((CombiningClassFilter) optimized).getFilters(), result))
+               return true;
+         }
+         else
+         {
+            result.add(optimized);
+         }
+      }
+      return false;
+   }
+}
@@ -131,4 +131,32 @@ public class ClassFilterUtils
    {
       return new NegatingClassFilter(filter);
    }
+
+   /**
+    * Optimize a filter for evaluation<p>
+    * 
+    * The returned filter gives the same answers as the original, but "or" combinations
+    * are flattened, constants are folded and package filters are merged into a single
+    * hash set and prefix trie. The filters in the tree should not be modified afterwards.
+    *
+    * @param filter the filter
+    * @return the optimized filter, possibly the same filter
+    * @throws IllegalArgumentException for a null filter
+    */
+   public static ClassFilter optimize(ClassFilter filter)
+   {
+      return ClassFilterOptimizer.optimize(filter);
+   }
+
+   /**
+    * Create a filter that counts the matches and misses of a filter
+    *
+    * @param filter the filter
+    * @return the counting filter
+    * @throws IllegalArgumentException for a null filter
+    */
+   public static CountingClassFilter countingClassFilter(ClassFilter filter)
+   {
+      return new CountingClassFilter(filter);
+   }
 }
@@ -46,6 +46,9 @@ public class FilteredDelegateLoader extends DelegateLoader
    /** The filter */
    private ClassFilter filter;
 
+   /** The optimized filter used for matching */
+   private ClassFilter matcher;
+
    /**
     * Create a new FilteredDelegateLoader that does not filter
     * 
@@ -70,6 +73,7 @@ public class FilteredDelegateLoader extends DelegateLoader
       if (filter == null)
          throw new IllegalArgumentException("Null filter");
       this.filter = filter;
+      this.matcher = ClassFilterUtils.optimize(filter);
    }
 
    /**
@@ -96,6 +100,7 @@ public class FilteredDelegateLoader extends DelegateLoader
       if (filter == null)
          throw new IllegalArgumentException("Null filter");
       this.filter = filter;
+      this.matcher = ClassFilterUtils.optimize(filter);
    }
 
    /**
@@ -119,13 +124,14 @@ public class FilteredDelegateLoader extends DelegateLoader
          this.filter = ClassFilterUtils.EVERYTHING;
       else
          this.filter = filter;
+      this.matcher = ClassFilterUtils.optimize(this.filter);
    }
    
    @Override
    public Class<?> loadClass(String className)
    {
       boolean trace = log.isTraceEnabled();
-      if (filter.matchesClassName(className))
+      if (matcher.matchesClassName(className))
       {
          if (trace)
             log.trace(this + " " + className + " matches class filter=" + filter);
@@ -144,7 +150,7 @@ public class FilteredDelegateLoader extends DelegateLoader
    public URL getResource(String name)
    {
       boolean trace = log.isTraceEnabled();
-      if (filter.matchesResourcePath(name))
+      if (matcher.matchesResourcePath(name))
       {
          if (trace)
             log.trace(this + " " + name + " matches resource filter=" + filter);
@@ -164,7 +170,7 @@ public class FilteredDelegateLoader extends DelegateLoader
    public void getResources(String name, Set<URL> urls) throws IOException
    {
       boolean trace = log.isTraceEnabled();
-      if (filter.matchesResourcePath(name))
+      if (matcher.matchesResourcePath(name))
       {
          if (trace)
             log.trace(this + " " + name + " matches filter=" + filter);
@@ -182,7 +188,7 @@ public class FilteredDelegateLoader extends DelegateLoader
    public Package getPackage(String name)
    {
       boolean trace = log.isTraceEnabled();
-      if (filter.matchesPackageName(name))
+      if (matcher.matchesPackageName(name))
       {
          if (trace)
             log.trace(this + " " + name + " matches package filter=" + filter);
@@ -206,7 +212,7 @@ public class FilteredDelegateLoader extends DelegateLoader
       doGetPackages(allPackages);
       for (Package pkge : allPackages)
       {
-         if (filter.matchesPackageName(pkge.getName()))
+         if (matcher.matchesPackageName(pkge.getName()))
          {
             if (trace)
                log.trace(this + " " + pkge + " matches package filter=" + filter);
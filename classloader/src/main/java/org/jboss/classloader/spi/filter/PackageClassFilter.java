@@ -21,15 +21,21 @@
  */
 package org.jboss.classloader.spi.filter;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.StringTokenizer;
 
+import org.jboss.classloader.plugins.filter.JavaOnlyClassFilter;
 import org.jboss.classloader.plugins.filter.PatternClassFilter;
 
 /**
- * A class filter using regular expressions
+ * A class filter that matches the classes, resources and packages of the given packages<p>
+ * 
+ * The package names are held in a hash set, a name is matched by looking up its package
+ * in place rather than by running a regular expression per package.
  * 
  * @author <a href="adrian@jboss.com">Adrian Brock</a>
  * @version $Revision: 1.1 $
@@ -39,21 +45,27 @@ public class PackageClassFilter extends PatternClassFilter
    /** The serialVersionUID */
    private static final long serialVersionUID = 8922510385156624259L;
 
-   /** The patterns as regular expressions */
+   /** No patterns, the matching is done against the package set */
+   private static final String[] NO_PATTERNS = new String[0];
+
+   /** The package names */
    private String[] packageNames;
+
+   /** The package names as a hash set */
+   private transient PackageSet packages;
    
    /**
-    * Convert package names to class patterns
+    * Check the package names
     * 
     * @param packageNames the package names
-    * @return the patterns
+    * @return the package names
+    * @throws IllegalArgumentException for null or wildcard package names
     */
-   private static String[] convertPackageNamesToClassPatterns(String[] packageNames)
+   private static String[] checkPackageNames(String[] packageNames)
    {
       if (packageNames == null)
          throw new IllegalArgumentException("Null package names");
       
-      String[] patterns = new String[packageNames.length];
       for (int i = 0; i < packageNames.length; ++i)
       {
          if (packageNames[i] == null)
@@ -62,42 +74,8 @@ public class PackageClassFilter extends PatternClassFilter
          // Wildcards should be handled external to this
          if (packageNames[i].indexOf('*') >= 0)
             throw new IllegalArgumentException("Invalid package name: " + packageNames[i]);
-         
-         if (packageNames[i].length() == 0)
-            // Base package - it is a match if there is no . in the class name
-            patterns[i] = "[^.]*";
-         else
-            // Escape the dots in the package and match anything that has a single dot followed by non-dots
-            patterns[i] = packageNames[i].replace(".", "\\.") + "\\.[^.]+";
-      }
-      return patterns;
-   }
-   
-   /**
-    * Convert package names to resource patterns
-    * 
-    * @param packageNames the package names
-    * @return the patterns
-    */
-   private static String[] convertPackageNamesToResourcePatterns(String[] packageNames)
-   {
-      if (packageNames == null)
-         throw new IllegalArgumentException("Null package names");
-      
-      String[] patterns = new String[packageNames.length];
-      for (int i = 0; i < packageNames.length; ++i)
-      {
-         if (packageNames[i] == null)
-            throw new IllegalArgumentException("Null package name in " + Arrays.asList(packageNames));
-
-         if (packageNames[i].length() == 0)
-            // Base package - it is a match if there is no / in the path
-            patterns[i] = "[^/]*";
-         else
-            // Replace the dots with slashs and match non slashes after that
-            patterns[i] = packageNames[i].replace(".", "/") + "/[^/]+";
       }
-      return patterns;
+      return packageNames;
    }
 
    /**
@@ -154,10 +132,75 @@ public class PackageClassFilter extends PatternClassFilter
     */
    public PackageClassFilter(String[] packageNames)
    {
-      super(convertPackageNamesToClassPatterns(packageNames), 
-            convertPackageNamesToResourcePatterns(packageNames),
-            packageNames);
-      this.packageNames = packageNames;
+      super(NO_PATTERNS, NO_PATTERNS, NO_PATTERNS);
+      this.packageNames = checkPackageNames(packageNames);
+      this.packages = new PackageSet(packageNames);
+   }
+
+   /**
+    * Get the package names
+    * 
+    * @return the package names
+    */
+   String[] getPackageNames()
+   {
+      return packageNames;
+   }
+
+   @Override
+   public boolean matchesClassName(String className)
+   {
+      if (className == null)
+         return false;
+      
+      // The base package matches names without a dot, otherwise the package is everything before the last dot
+      int dot = className.lastIndexOf('.');
+      if (dot < 0)
+      {
+         if (packages.contains(className, 0, '.'))
+            return true;
+      }
+      else if (dot > 0 && dot < className.length() - 1 && packages.contains(className, dot, '.'))
+      {
+         return true;
+      }
+      if (isIncludeJava() == false)
+         return false;
+      return JavaOnlyClassFilter.INSTANCE.matchesClassName(className);
+   }
+
+   @Override
+   public boolean matchesResourcePath(String resourcePath)
+   {
+      if (resourcePath == null)
+         return false;
+      
+      int slash = resourcePath.lastIndexOf('/');
+      if (slash < 0)
+      {
+         if (packages.contains(resourcePath, 0, '/'))
+            return true;
+      }
+      else if (slash > 0 && slash < resourcePath.length() - 1 && packages.contains(resourcePath, slash, '/'))
+      {
+         return true;
+      }
+      if (isIncludeJava() == false)
+         return false;
+      return JavaOnlyClassFilter.INSTANCE.matchesResourcePath(resourcePath);
+   }
+
+   @Override
+   public boolean matchesPackageName(String packageName)
+   {
+      if (packageName == null)
+         return false;
+      
+      if (packages.contains(packageName, packageName.length(), '.'))
+         return true;
+      if (isIncludeJava() == false)
+         return false;
+      return JavaOnlyClassFilter.INSTANCE.matchesPackageName(packageName);
    }
 
    @Override
@@ -169,4 +212,97 @@ public class PackageClassFilter extends PatternClassFilter
          builder.append(" <INCLUDE_JAVA>");
       return builder.toString();
    }
+
+   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+   {
+      in.defaultReadObject();
+      packages = new PackageSet(checkPackageNames(packageNames));
+   }
+
+   /**
+    * An open addressing hash set of package names that can be probed
+    * with the leading part of a class name or resource path
+    */
+   private static final class PackageSet
+   {
+      /** The table */
+      private final String[] table;
+
+      /** The mask */
+      private final int mask;
+
+      /**
+       * Create a new PackageSet.
+       * 
+       * @param packageNames the package names
+       */
+      PackageSet(String[] packageNames)
+      {
+         int capacity = 2;
+         while (capacity < packageNames.length * 2)
+            capacity <<= 1;
+         table = new String[capacity];
+         mask = capacity - 1;
+         for (String packageName : packageNames)
+         {
+            int i = packageName.hashCode() & mask;
+            while (table[i] != null && table[i].equals(packageName) == false)
+               i = (i + 1) & mask;
+            table[i] = packageName;
+         }
+      }
+
+      /**
+       * Whether the set contains the first characters of the name
+       * 
+       * @param name the name
+       * @param length the number of characters to match
+       * @param separator the package separator used in the name, it is matched against a dot
+       * @return true when the package is in the set
+       */
+      boolean contains(String name, int length, char separator)
+      {
+         // Same hash as String.hashCode() of the dotted package name
+         int hash = 0;
+         for (int i = 0; i < length; ++i)
+         {
+            char c = name.charAt(i);
+            if (c == separator)
+               c = '.';
+            else if (c == '.')
+               return false;
+            hash = 31 * hash + c;
+         }
+         
+         int i = hash & mask;
+         for (String packageName = table[i]; packageName != null; packageName = table[i])
+         {
+            if (packageName.length() == length && matches(packageName, name, separator))
+               return true;
+            i = (i + 1) & mask;
+         }
+         return false;
+      }
+
+      /**
+       * Compare a package name with the start of the name
+       * 
+       * @param packageName the package name
+       * @param name the name
+       * @param separator the separator
+       * @return true when they match
+       */
+      private static boolean matches(String packageName, String name, char separator)
+      {
+         for (int i = 0; i < packageName.length(); ++i)
+         {
+            char c = name.charAt(i);
+            if (c == separator)
+               c = '.';
+            if (packageName.charAt(i) != c)
+               return false;
+         }
+         return true;
+      }
+   }
 }
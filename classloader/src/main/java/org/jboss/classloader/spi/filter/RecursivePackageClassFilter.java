@@ -21,15 +21,21 @@
  */
 package org.jboss.classloader.spi.filter;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.StringTokenizer;
 
+import org.jboss.classloader.plugins.filter.JavaOnlyClassFilter;
 import org.jboss.classloader.plugins.filter.PatternClassFilter;
 
 /**
- * A class filter using regular expressions that includes subpackages
+ * A class filter that matches the given packages including their subpackages<p>
+ * 
+ * The package names are held in a prefix trie, a name is matched by walking
+ * it once rather than by running a regular expression per package.
  * 
  * @author <a href="adrian@jboss.com">Adrian Brock</a>
  * @version $Revision: 1.1 $
@@ -39,23 +45,27 @@ public class RecursivePackageClassFilter extends PatternClassFilter
    /** The serialVersionUID */
    private static final long serialVersionUID = -2757199997130618510L;
 
-   private static final String[] EVERYTHING_PATTERN = { ".*" };
+   /** No patterns, the matching is done against the package trie */
+   private static final String[] NO_PATTERNS = new String[0];
    
-   /** The patterns as regular expressions */
+   /** The package names */
    private String[] packageNames;
+
+   /** The package names as a prefix trie */
+   private transient PackageTrie packages;
    
    /**
-    * Convert package names to class patterns
+    * Check the package names
     * 
     * @param packageNames the package names
-    * @return the patterns
+    * @return the package names
+    * @throws IllegalArgumentException for null or wildcard package names
     */
-   private static String[] convertPackageNamesToClassPatterns(String[] packageNames)
+   private static String[] checkPackageNames(String[] packageNames)
    {
       if (packageNames == null)
          throw new IllegalArgumentException("Null package names");
       
-      String[] patterns = new String[packageNames.length];
       for (int i = 0; i < packageNames.length; ++i)
       {
          if (packageNames[i] == null)
@@ -64,76 +74,8 @@ public class RecursivePackageClassFilter extends PatternClassFilter
          // Wildcards should be handled external to this
          if (packageNames[i].indexOf('*') >= 0)
             throw new IllegalArgumentException("Invalid package name: " + packageNames[i]);
-         
-         if (packageNames[i].length() == 0)
-            // Base package - match everything
-            return EVERYTHING_PATTERN;
-         else
-            // Escape the dots in the package and match anything that starts with a dot
-            patterns[i] = packageNames[i].replace(".", "\\.") + "\\..+";
       }
-      return patterns;
-   }
-   
-   /**
-    * Convert package names to resource patterns
-    * 
-    * @param packageNames the package names
-    * @return the patterns
-    */
-   private static String[] convertPackageNamesToResourcePatterns(String[] packageNames)
-   {
-      if (packageNames == null)
-         throw new IllegalArgumentException("Null package names");
-      
-      String[] patterns = new String[packageNames.length];
-      for (int i = 0; i < packageNames.length; ++i)
-      {
-         if (packageNames[i] == null)
-            throw new IllegalArgumentException("Null package name in " + Arrays.asList(packageNames));
-
-         if (packageNames[i].length() == 0)
-            // Base package - match everything
-            return EVERYTHING_PATTERN;
-         else
-            // Replace the dots with slashs and match anything that begins with a slash
-            patterns[i] = packageNames[i].replace(".", "/") + "/.+";
-      }
-      return patterns;
-   }
-   
-   /**
-    * Convert package names to package patterns
-    * 
-    * @param packageNames the package names
-    * @return the patterns
-    */
-   private static String[] convertPackageNamesToPackagePatterns(String[] packageNames)
-   {
-      if (packageNames == null)
-         throw new IllegalArgumentException("Null package names");
-      
-      String[] patterns = new String[2 * packageNames.length];
-      int j = 0;
-      for (int i = 0; i < packageNames.length; ++i)
-      {
-         if (packageNames[i] == null)
-            throw new IllegalArgumentException("Null package name in " + Arrays.asList(packageNames));
-
-         if (packageNames[i].length() == 0)
-         {
-            // Base package - match everything
-            return EVERYTHING_PATTERN;
-         }
-         else
-         {
-            // Use the package name
-            patterns[j++] = packageNames[i];
-            // And anything that begins with a dot
-            patterns[j++] = packageNames[i] + "\\..*";
-         }
-      }
-      return patterns;
+      return packageNames;
    }
 
    /**
@@ -190,10 +132,58 @@ public class RecursivePackageClassFilter extends PatternClassFilter
     */
    public RecursivePackageClassFilter(String[] packageNames)
    {
-      super(convertPackageNamesToClassPatterns(packageNames), 
-            convertPackageNamesToResourcePatterns(packageNames),
-            convertPackageNamesToPackagePatterns(packageNames));
-      this.packageNames = packageNames;
+      super(NO_PATTERNS, NO_PATTERNS, NO_PATTERNS);
+      this.packageNames = checkPackageNames(packageNames);
+      this.packages = new PackageTrie(packageNames);
+   }
+
+   /**
+    * Get the package names
+    * 
+    * @return the package names
+    */
+   String[] getPackageNames()
+   {
+      return packageNames;
+   }
+
+   @Override
+   public boolean matchesClassName(String className)
+   {
+      if (className == null)
+         return false;
+      
+      if (packages.matches(className, '.', false))
+         return true;
+      if (isIncludeJava() == false)
+         return false;
+      return JavaOnlyClassFilter.INSTANCE.matchesClassName(className);
+   }
+
+   @Override
+   public boolean matchesResourcePath(String resourcePath)
+   {
+      if (resourcePath == null)
+         return false;
+      
+      if (packages.matches(resourcePath, '/', false))
+         return true;
+      if (isIncludeJava() == false)
+         return false;
+      return JavaOnlyClassFilter.INSTANCE.matchesResourcePath(resourcePath);
+   }
+
+   @Override
+   public boolean matchesPackageName(String packageName)
+   {
+      if (packageName == null)
+         return false;
+      
+      if (packages.matches(packageName, '.', true))
+         return true;
+      if (isIncludeJava() == false)
+         return false;
+      return JavaOnlyClassFilter.INSTANCE.matchesPackageName(packageName);
    }
 
    @Override
@@ -205,4 +195,136 @@ public class RecursivePackageClassFilter extends PatternClassFilter
          builder.append(" <INCLUDE_JAVA>");
       return builder.toString();
    }
+
+   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+   {
+      in.defaultReadObject();
+      packages = new PackageTrie(checkPackageNames(packageNames));
+   }
+
+   /**
+    * A character trie of package names
+    */
+   private static final class PackageTrie
+   {
+      /** The root */
+      private final Node root = new Node();
+
+      /** Whether the base package is included, it matches everything */
+      private boolean everything;
+
+      /**
+       * Create a new PackageTrie.
+       * 
+       * @param packageNames the package names
+       */
+      PackageTrie(String[] packageNames)
+      {
+         for (String packageName : packageNames)
+         {
+            if (packageName.length() == 0)
+               everything = true;
+            Node node = root;
+            for (int i = 0; i < packageName.length(); ++i)
+               node = node.add(packageName.charAt(i));
+            node.terminal = true;
+         }
+      }
+
+      /**
+       * Whether the name is in one of the packages or their subpackages
+       * 
+       * @param name the name
+       * @param separator the package separator used in the name, it is matched against a dot
+       * @param packageName whether the name is a package name, it then also matches the package itself
+       *                    and nothing needs to follow the separator
+       * @return true when it matches
+       */
+      boolean matches(String name, char separator, boolean packageName)
+      {
+         if (everything)
+            return true;
+         
+         Node node = root;
+         int length = name.length();
+         for (int i = 0; i < length; ++i)
+         {
+            char c = name.charAt(i);
+            if (c == separator)
+            {
+               if (node.terminal && (packageName || i < length - 1))
+                  return true;
+               c = '.';
+            }
+            else if (c == '.')
+            {
+               return false;
+            }
+            node = node.get(c);
+            if (node == null)
+               return false;
+         }
+         return packageName && node.terminal;
+      }
+   }
+
+   /**
+    * A node in the package trie
+    */
+   private static final class Node
+   {
+      /** No children */
+      private static final char[] NO_KEYS = new char[0];
+
+      /** The characters of the children */
+      private char[] keys = NO_KEYS;
+
+      /** The children */
+      private Node[] children = new Node[0];
+
+      /** Whether a package ends here */
+      private boolean terminal;
+
+      /**
+       * Get a child
+       * 
+       * @param c the character
+       * @return the child or null if there is none
+       */
+      Node get(char c)
+      {
+         char[] keys = this.keys;
+         for (int i = 0; i < keys.length; ++i)
+         {
+            if (keys[i] == c)
+               return children[i];
+         }
+         return null;
+      }
+
+      /**
+       * Get or add a child
+       * 
+       * @param c the character
+       * @return the child
+       */
+      Node add(char c)
+      {
+         Node child = get(c);
+         if (child != null)
+            return child;
+         
+         int length = keys.length;
+         char[] newKeys = new char[length + 1];
+         System.arraycopy(keys, 0, newKeys, 0, length);
+         newKeys[length] = c;
+         Node[] newChildren = new Node[length + 1];
+         System.arraycopy(children, 0, newChildren, 0, length);
+         child = new Node();
+         newChildren[length] = child;
+         keys = newKeys;
+         children = newChildren;
+         return child;
+      }
+   }
 }
@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.jboss.classloader.plugins.ClassLoaderUtils;
 import org.jboss.classloader.spi.ClassLoaderCache;
 import org.jboss.classloader.spi.Loader;
 import org.jboss.util.collection.ConcurrentSet;
@@ -120,6 +121,23 @@ public abstract class AbstractClassLoaderCache implements ClassLoaderCache
       flushBlackLists();
    }
 
+   /**
+    * Flush the cache and black list entries for the given packages.
+    *
+    * @param packageNames the package names
+    */
+   public void flushCaches(Set<String> packageNames)
+   {
+      if (classCache != null)
+         ClassLoaderUtils.removeResourcesInPackages(classCache.keySet(), packageNames);
+      if (resourceCache != null)
+         ClassLoaderUtils.removeResourcesInPackages(resourceCache.keySet(), packageNames);
+      if (classBlackList != null)
+         ClassLoaderUtils.removeResourcesInPackages(classBlackList, packageNames);
+      if (resourceBlackList != null)
+         ClassLoaderUtils.removeResourcesInPackages(resourceBlackList, packageNames);
+   }
+
    private void flushBlackLists()
    {
       if (classBlackList != null)
@@ -136,6 +154,22 @@ public abstract class AbstractClassLoaderCache implements ClassLoaderCache
       return null;
    }
    
+   /**
+    * Get a cached loader using a lookup key that has the same hash code as
+    * the resource name and is equal to it, e.g. a view over the class name
+    * that saves building the resource path
+    * 
+    * @param key the lookup key
+    * @return the cached loader or null if not cached
+    */
+   public Loader getCachedLoaderByKey(Object key)
+   {
+      Map<String, Loader> classCache = this.classCache;
+      if (classCache != null)
+         return classCache.get(key);
+      return null;
+   }
+   
    public void cacheLoader(String name, Loader loader)
    {
       Map<String, Loader> classCache = this.classCache;
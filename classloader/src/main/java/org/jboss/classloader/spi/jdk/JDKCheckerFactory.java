@@ -25,6 +25,7 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 
 import org.jboss.classloader.plugins.jdk.AbstractJDKChecker;
+import org.jboss.classloader.plugins.jdk.CachingJDKChecker;
 
 /**
  * JDKCheckerFactory.
@@ -45,7 +46,8 @@ public class JDKCheckerFactory
          public JDKChecker run()
          {
             // Decide what default checker to use based on the JDK (not implemented - YAGNI?)
-            String defaultChecker = AbstractJDKChecker.class.getName();
+            // The uncached AbstractJDKChecker can still be selected with the system property
+            String defaultChecker = CachingJDKChecker.class.getName();
             
             String className = System.getProperty(JDKChecker.class.getName(), defaultChecker);
             try
@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloader.spi.translator;
+
+import java.security.ProtectionDomain;
+
+import org.jboss.classloader.spi.filter.ClassFilter;
+import org.jboss.util.loading.Translator;
+
+/**
+ * A translator that only sees the classes its scope matches.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class FilteredTranslator implements Translator
+{
+   /** The translator */
+   private Translator translator;
+
+   /** The scope */
+   private ClassFilter scope;
+
+   /**
+    * Create a new FilteredTranslator.
+    * 
+    * @param translator the translator
+    * @param scope the classes to translate
+    * @throws IllegalArgumentException for a null parameter
+    */
+   public FilteredTranslator(Translator translator, ClassFilter scope)
+   {
+      if (translator == null)
+         throw new IllegalArgumentException("Null translator");
+      if (scope == null)
+         throw new IllegalArgumentException("Null scope");
+      this.translator = translator;
+      this.scope = scope;
+   }
+
+   /**
+    * Get the translator.
+    * 
+    * @return the translator.
+    */
+   public Translator getTranslator()
+   {
+      return translator;
+   }
+
+   /**
+    * Get the scope.
+    * 
+    * @return the scope.
+    */
+   public ClassFilter getScope()
+   {
+      return scope;
+   }
+
+   /**
+    * Whether the class is in scope
+    * 
+    * @param className the class name
+    * @return true when the class is translated
+    */
+   public boolean matches(String className)
+   {
+      return scope.matchesClassName(className);
+   }
+
+   public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws Exception
+   {
+      if (matches(className) == false)
+         return classfileBuffer;
+      return translator.transform(loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+   }
+
+   public void unregisterClassLoader(ClassLoader loader)
+   {
+      translator.unregisterClassLoader(loader);
+   }
+
+   @Override
+   public String toString()
+   {
+      return translator + " scope=" + scope;
+   }
+}
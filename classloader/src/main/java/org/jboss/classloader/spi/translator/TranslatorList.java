@@ -0,0 +1,206 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloader.spi.translator;
+
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.classloader.spi.filter.ClassFilter;
+import org.jboss.util.loading.Translator;
+
+/**
+ * The translators registered at one level.<p>
+ * 
+ * Changes copy the list, so defining a class reads a snapshot without locking
+ * and does nothing when the list is empty or no translator's scope matches.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class TranslatorList
+{
+   /** No translators */
+   private static final Translator[] NONE = new Translator[0];
+
+   /** The translators */
+   private volatile Translator[] translators = NONE;
+
+   /**
+    * Get the translators
+    * 
+    * @return the translators
+    */
+   public List<Translator> getTranslators()
+   {
+      Translator[] snapshot = translators;
+      if (snapshot.length == 0)
+         return Collections.emptyList();
+      return Collections.unmodifiableList(Arrays.asList(snapshot));
+   }
+
+   /**
+    * Set the translators
+    * 
+    * @param translators the translators, can be null
+    */
+   public synchronized void setTranslators(List<Translator> translators)
+   {
+      if (translators == null || translators.isEmpty())
+         this.translators = NONE;
+      else
+         this.translators = translators.toArray(new Translator[translators.size()]);
+   }
+
+   /**
+    * Add a translator
+    * 
+    * @param translator the translator
+    * @throws IllegalArgumentException for a null translator
+    */
+   public synchronized void addTranslator(Translator translator)
+   {
+      if (translator == null)
+         throw new IllegalArgumentException("Null translator");
+
+      Translator[] snapshot = translators;
+      Translator[] result = new Translator[snapshot.length + 1];
+      System.arraycopy(snapshot, 0, result, 0, snapshot.length);
+      result[snapshot.length] = translator;
+      translators = result;
+   }
+
+   /**
+    * Add a translator that only sees some classes
+    * 
+    * @param translator the translator
+    * @param scope the classes to translate, null means all classes
+    * @throws IllegalArgumentException for a null translator
+    */
+   public void addTranslator(Translator translator, ClassFilter scope)
+   {
+      if (translator == null)
+         throw new IllegalArgumentException("Null translator");
+
+      if (scope == null)
+         addTranslator(translator);
+      else
+         addTranslator(new FilteredTranslator(translator, scope));
+   }
+
+   /**
+    * Remove a translator, it is also removed when it was added with a scope
+    * 
+    * @param translator the translator
+    * @throws IllegalArgumentException for a null translator
+    */
+   public synchronized void removeTranslator(Translator translator)
+   {
+      if (translator == null)
+         throw new IllegalArgumentException("Null translator");
+
+      Translator[] snapshot = translators;
+      for (int i = 0; i < snapshot.length; ++i)
+      {
+         Translator registered = snapshot[i];
+         if (translator.equals(registered) || (registered instanceof FilteredTranslator && translator.equals(((FilteredTranslator) registered).getTranslator())))
+         {
+            if (snapshot.length == 1)
+            {
+               translators = NONE;
+               return;
+            }
+            Translator[] result = new Translator[snapshot.length - 1];
+            System.arraycopy(snapshot, 0, result, 0, i);
+            System.arraycopy(snapshot, i + 1, result, i, snapshot.length - i - 1);
+            translators = result;
+            return;
+         }
+      }
+   }
+
+   /**
+    * Whether there are no translators
+    * 
+    * @return true when empty
+    */
+   public boolean isEmpty()
+   {
+      return translators.length == 0;
+   }
+
+   /**
+    * Whether any translator transforms the class
+    * 
+    * @param className the class name
+    * @return true when a translator without a scope or with a matching scope is registered
+    */
+   public boolean isTransforming(String className)
+   {
+      Translator[] snapshot = translators;
+      for (Translator translator : snapshot)
+      {
+         if (translator == null)
+            continue;
+         if (translator instanceof FilteredTranslator == false || ((FilteredTranslator) translator).matches(className))
+            return true;
+      }
+      return false;
+   }
+
+   /**
+    * Apply the translators
+    * 
+    * @param classLoader the classloader
+    * @param className the class name
+    * @param byteCode the byte code
+    * @param protectionDomain the protection domain
+    * @return the transformed byte code
+    * @throws Exception for any error
+    */
+   public byte[] transform(ClassLoader classLoader, String className, byte[] byteCode, ProtectionDomain protectionDomain) throws Exception
+   {
+      Translator[] snapshot = translators;
+      if (snapshot.length == 0)
+         return byteCode;
+      return TranslatorUtils.applyTranslatorsOnTransform(Arrays.asList(snapshot), classLoader, className, byteCode, protectionDomain);
+   }
+
+   /**
+    * Tell the translators a classloader is unregistered
+    * 
+    * @param classLoader the classloader
+    */
+   public void unregisterClassLoader(ClassLoader classLoader)
+   {
+      Translator[] snapshot = translators;
+      if (snapshot.length != 0)
+         TranslatorUtils.applyTranslatorsAtUnregister(Arrays.asList(snapshot), classLoader);
+   }
+
+   @Override
+   public String toString()
+   {
+      return Arrays.asList(translators).toString();
+   }
+}
@@ -74,6 +74,9 @@ public class MockClassLoaderPolicy extends ClassLoaderPolicy
    /** Whether to import all */
    private boolean importAll;
 
+   /** Whether to load classes in parallel */
+   private boolean parallelCapable;
+
    /** The non JDK classes filter */
    private ClassFilter nonJDKFilter;
    
@@ -350,6 +353,22 @@ public class MockClassLoaderPolicy extends ClassLoaderPolicy
       this.importAll = importAll;
    }
 
+   @Override
+   public boolean isParallelCapable()
+   {
+      return parallelCapable;
+   }
+
+   /**
+    * Set the parallelCapable.
+    * 
+    * @param parallelCapable the parallelCapable.
+    */
+   public void setParallelCapable(boolean parallelCapable)
+   {
+      this.parallelCapable = parallelCapable;
+   }
+
    @Override
    public URL getResource(String path)
    {
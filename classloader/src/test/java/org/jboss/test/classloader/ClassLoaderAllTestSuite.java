@@ -25,6 +25,7 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 import junit.textui.TestRunner;
 import org.jboss.test.classloader.bootstrap.BootstrapTestSuite;
+import org.jboss.test.classloader.cache.CacheTestSuite;
 import org.jboss.test.classloader.delegate.DelegateTestSuite;
 import org.jboss.test.classloader.domain.ClassLoaderDomainTestSuite;
 import org.jboss.test.classloader.filter.FilterTestSuite;
@@ -33,6 +34,7 @@ import org.jboss.test.classloader.jmx.JMXTestSuite;
 import org.jboss.test.classloader.junit.JUnitTestSuite;
 import org.jboss.test.classloader.notifications.ClassLoaderNotificationsTestSuite;
 import org.jboss.test.classloader.old.OldTestSuite;
+import org.jboss.test.classloader.parallel.ParallelTestSuite;
 import org.jboss.test.classloader.policy.test.ClassLoaderPolicyUnitTestCase;
 import org.jboss.test.classloader.resources.ResourceTestSuite;
 import org.jboss.test.classloader.system.ClassLoaderSystemTestSuite;
@@ -79,6 +81,8 @@ public class ClassLoaderAllTestSuite extends TestSuite
       suite.addTest(JUnitTestSuite.suite());
       suite.addTest(TransformTestSuite.suite());
       suite.addTest(ClassLoaderNotificationsTestSuite.suite());
+      suite.addTest(CacheTestSuite.suite());
+      suite.addTest(ParallelTestSuite.suite());
 
       return suite;
    }
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloader.cache;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import org.jboss.test.classloader.cache.test.DomainCacheFlushUnitTestCase;
+import org.jboss.test.classloader.cache.test.GlobalPackageCacheUnitTestCase;
+import org.jboss.test.classloader.cache.test.HotPathAllocationUnitTestCase;
+import org.jboss.test.classloader.cache.test.ParentResultCacheUnitTestCase;
+import org.jboss.test.classloader.cache.test.ResourceCacheUnitTestCase;
+import org.jboss.test.classloader.cache.test.ResourceIndexUnitTestCase;
+
+/**
+ * Cache Test Suite.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class CacheTestSuite extends TestSuite
+{
+   /**
+    * For running the testsuite from the command line
+    * 
+    * @param args the command line args
+    */
+   public static void main(String[] args)
+   {
+      TestRunner.run(suite());
+   }
+
+   /**
+    * Create the testsuite
+    * 
+    * @return the testsuite
+    */
+   public static Test suite()
+   {
+      TestSuite suite = new TestSuite("Cache Tests");
+
+      suite.addTest(DomainCacheFlushUnitTestCase.suite());
+      suite.addTest(GlobalPackageCacheUnitTestCase.suite());
+      suite.addTest(HotPathAllocationUnitTestCase.suite());
+      suite.addTest(ParentResultCacheUnitTestCase.suite());
+      suite.addTest(ResourceCacheUnitTestCase.suite());
+      suite.addTest(ResourceIndexUnitTestCase.suite());
+      
+      return suite;
+   }
+}
@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloader.cache.test;
+
+import junit.framework.Test;
+
+import org.jboss.classloader.plugins.ClassLoaderUtils;
+import org.jboss.classloader.spi.ClassLoaderDomain;
+import org.jboss.classloader.spi.ClassLoaderSystem;
+import org.jboss.classloader.test.support.MockClassLoaderPolicy;
+import org.jboss.test.classloader.AbstractClassLoaderTestWithSecurity;
+import org.jboss.test.classloader.cache.support.a.A;
+import org.jboss.test.classloader.cache.support.b.B;
+import org.jboss.test.classloader.cache.support.c.C;
+
+/**
+ * Checks that registering/unregistering a classloader only flushes
+ * the domain caches of the packages it affects.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class DomainCacheFlushUnitTestCase extends AbstractClassLoaderTestWithSecurity
+{
+   public static Test suite()
+   {
+      return suite(DomainCacheFlushUnitTestCase.class);
+   }
+
+   public DomainCacheFlushUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testUnrelatedRegisterKeepsCache() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+
+      MockClassLoaderPolicy policyA = createMockClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A.class);
+      ClassLoader clA = system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(policyB);
+
+      assertLoadClass(A.class, clB, clA);
+      assertClassCached(domain, A.class);
+
+      MockClassLoaderPolicy policyC = createMockClassLoaderPolicy("c");
+      policyC.setPathsAndPackageNames(C.class);
+      ClassLoader clC = system.registerClassLoaderPolicy(policyC);
+      assertClassCached(domain, A.class);
+
+      system.unregisterClassLoader(clC);
+      assertClassCached(domain, A.class);
+   }
+
+   public void testRelatedRegisterFlushesPackage() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+
+      MockClassLoaderPolicy policyA = createMockClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A.class);
+      ClassLoader clA = system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(policyB);
+
+      assertLoadClass(A.class, clB, clA);
+      assertClassCached(domain, A.class);
+
+      MockClassLoaderPolicy policyA2 = createMockClassLoaderPolicy("a2");
+      policyA2.setPathsAndPackageNames(A.class);
+      ClassLoader clA2 = system.registerClassLoaderPolicy(policyA2);
+      assertClassNotCached(domain, A.class);
+
+      assertLoadClass(A.class, clB, clA);
+      system.unregisterClassLoader(clA);
+      assertClassNotCached(domain, A.class);
+      assertLoadClass(A.class, clB, clA2);
+   }
+
+   public void testBlackListFlushedForNewExporter() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+
+      MockClassLoaderPolicy policyA = createMockClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A.class);
+      ClassLoader clA = system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(policyB);
+
+      assertLoadClass(A.class, clB, clA);
+      assertLoadClassFail(C.class, clB);
+      int blackListed = domain.listPackageBlackList().size();
+
+      MockClassLoaderPolicy policyC = createMockClassLoaderPolicy("c");
+      policyC.setPathsAndPackageNames(C.class);
+      ClassLoader clC = system.registerClassLoaderPolicy(policyC);
+      assertTrue("Expected blacklist to shrink " + domain.listPackageBlackList(), domain.listPackageBlackList().size() < blackListed);
+      assertClassCached(domain, A.class);
+
+      assertLoadClass(C.class, clB, clC);
+      assertLoadClassFail(B.class, clB);
+   }
+
+   protected void assertClassCached(ClassLoaderDomain domain, Class<?> clazz)
+   {
+      String path = ClassLoaderUtils.classNameToPath(clazz);
+      assertTrue("Expected " + path + " in " + domain.listClassCache(), domain.listClassCache().containsKey(path));
+   }
+
+   protected void assertClassNotCached(ClassLoaderDomain domain, Class<?> clazz)
+   {
+      String path = ClassLoaderUtils.classNameToPath(clazz);
+      assertFalse("Did not expect " + path + " in " + domain.listClassCache(), domain.listClassCache().containsKey(path));
+   }
+}
@@ -0,0 +1,178 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloader.cache.test;
+
+import junit.framework.Test;
+
+import org.jboss.classloader.plugins.ClassLoaderUtils;
+import org.jboss.classloader.spi.ClassLoaderDomain;
+import org.jboss.classloader.spi.ClassLoaderSystem;
+import org.jboss.classloader.test.support.MockClassLoaderPolicy;
+import org.jboss.test.classloader.AbstractClassLoaderTestWithSecurity;
+import org.jboss.test.classloader.cache.support.CountingClassLoaderPolicy;
+import org.jboss.test.classloader.cache.support.a.A;
+import org.jboss.test.classloader.cache.support.a.AA;
+import org.jboss.test.classloader.cache.support.c.C;
+
+/**
+ * Checks the domain's class cache is kept per package.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class GlobalPackageCacheUnitTestCase extends AbstractClassLoaderTestWithSecurity
+{
+   public static Test suite()
+   {
+      return suite(GlobalPackageCacheUnitTestCase.class);
+   }
+
+   public GlobalPackageCacheUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testOneEntryPerPackage() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+
+      MockClassLoaderPolicy policyA = createMockClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A.class);
+      ClassLoader clA = system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(policyB);
+
+      assertLoadClass(A.class, clB, clA);
+      assertLoadClass(AA.class, clB, clA);
+      assertEquals(domain.listPackageCache().toString(), 1, domain.listPackageCache().size());
+      assertTrue(domain.listPackageCache().containsKey(ClassLoaderUtils.getClassPackageName(A.class.getName())));
+
+      // The class cache still lists the classes
+      assertEquals(domain.listClassCache().toString(), 2, domain.getClassCacheSize());
+      assertTrue(domain.listClassCache().containsKey(ClassLoaderUtils.classNameToPath(A.class)));
+      assertTrue(domain.listClassCache().containsKey(ClassLoaderUtils.classNameToPath(AA.class)));
+
+      // Served from the cache
+      assertLoadClass(AA.class, clB, clA);
+   }
+
+   public void testCacheHitDoesNotLookForTheClass() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+
+      CountingClassLoaderPolicy policyA = new CountingClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A.class);
+      ClassLoader clA = system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      system.registerClassLoaderPolicy(policyB);
+
+      assertLoadClass(A.class, clA);
+      int count = policyA.getResourceCount;
+
+      // The exporter already defined the class
+      domain.findClassLoaderForClass(A.class.getName());
+      domain.findClassLoaderForClass(A.class.getName());
+      assertEquals(count, policyA.getResourceCount);
+   }
+
+   public void testRequestingClassLoaderCached() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+
+      MockClassLoaderPolicy policyA = createMockClassLoaderPolicy("a");
+      policyA.setImportAll(true);
+      policyA.setPaths(C.class);
+      ClassLoader clA = system.registerClassLoaderPolicy(policyA);
+
+      assertLoadClass(C.class, clA);
+      String path = ClassLoaderUtils.classNameToPath(C.class);
+      assertTrue(domain.listClassCache().toString(), domain.listClassCache().containsKey(path));
+
+      system.unregisterClassLoader(clA);
+      assertFalse(domain.listClassCache().toString(), domain.listClassCache().containsKey(path));
+   }
+
+   public void testSplitPackageNotCached() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+
+      MockClassLoaderPolicy policyA1 = createMockClassLoaderPolicy("a1");
+      policyA1.setPathsAndPackageNames(A.class);
+      policyA1.setExcluded(AA.class);
+      ClassLoader clA1 = system.registerClassLoaderPolicy(policyA1);
+
+      MockClassLoaderPolicy policyA2 = createMockClassLoaderPolicy("a2");
+      policyA2.setPathsAndPackageNames(A.class);
+      ClassLoader clA2 = system.registerClassLoaderPolicy(policyA2);
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(policyB);
+
+      assertLoadClass(A.class, clB, clA1);
+      assertLoadClass(AA.class, clB, clA2);
+      assertEquals(domain.listClassCache().toString(), 0, domain.getClassCacheSize());
+   }
+
+   public void testMissingClassInExportedPackage() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+
+      MockClassLoaderPolicy policyA = createMockClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A.class);
+      policyA.setExcluded(AA.class);
+      ClassLoader clA = system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(policyB);
+
+      assertLoadClass(A.class, clB, clA);
+      assertLoadClassFail(AA.class, clB);
+      assertTrue(domain.listClassBlackList().contains(ClassLoaderUtils.classNameToPath(AA.class)));
+      assertLoadClass(A.class, clB, clA);
+   }
+
+   public void testPackageNotExported() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(policyB);
+
+      assertLoadClassFail(C.class, clB);
+      String packageName = ClassLoaderUtils.getClassPackageName(C.class.getName());
+      assertTrue(domain.listPackageBlackList().toString(), domain.listPackageBlackList().contains(packageName));
+      assertTrue(domain.listClassBlackList().toString(), domain.listClassBlackList().isEmpty());
+      assertEquals(0, domain.getClassCacheSize());
+   }
+}
@@ -0,0 +1,161 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloader.cache.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+
+import junit.framework.Test;
+
+import org.jboss.classloader.spi.ClassLoaderSystem;
+import org.jboss.classloader.spi.filter.ClassFilterUtils;
+import org.jboss.classloader.spi.filter.FilteredDelegateLoader;
+import org.jboss.classloader.test.support.MockClassLoaderPolicy;
+import org.jboss.test.classloader.AbstractClassLoaderTest;
+import org.jboss.test.classloader.cache.support.a.A;
+
+/**
+ * Checks that loading an already cached class doesn't allocate.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class HotPathAllocationUnitTestCase extends AbstractClassLoaderTest
+{
+   private static final int WARMUP = 20000;
+
+   private static final int ITERATIONS = 100000;
+
+   /** The allowance for the measurement, much less than an object per load */
+   private static final long MEASUREMENT_BYTES = 16 * 1024;
+
+   public static Test suite()
+   {
+      return suite(HotPathAllocationUnitTestCase.class);
+   }
+
+   public HotPathAllocationUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testImportAllCacheHit() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      MockClassLoaderPolicy policyA = createMockClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A.class);
+      ClassLoader clA = system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(policyB);
+
+      assertLoadClass(A.class, clB, clA);
+      assertNoAllocation(clB, A.class.getName());
+   }
+
+   public void testImportCacheHit() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      MockClassLoaderPolicy policyA = createMockClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A.class);
+      ClassLoader clA = system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setDelegates(Collections.singletonList(new FilteredDelegateLoader(policyA, ClassFilterUtils.EVERYTHING)));
+      ClassLoader clB = system.registerClassLoaderPolicy(policyB);
+
+      assertLoadClass(A.class, clB, clA);
+      assertNoAllocation(clB, A.class.getName());
+   }
+
+   protected void assertNoAllocation(final ClassLoader cl, final String className) throws Exception
+   {
+      com.sun.management.ThreadMXBean threads = getThreadMXBean();
+
+      // The VM itself may allocate when looking up loaded classes by name,
+      // a cache hit does that for the requesting and the defining classloader
+      final LoadedClassProbe probe = new LoadedClassProbe();
+      long vmBytes = measure(threads, new Runnable()
+      {
+         public void run()
+         {
+            probe.isLoaded(className);
+         }
+      });
+
+      long bytes = measure(threads, new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               cl.loadClass(className);
+            }
+            catch (ClassNotFoundException e)
+            {
+               throw new RuntimeException(e);
+            }
+         }
+      });
+
+      getLog().debug("Allocated " + bytes + " bytes for " + ITERATIONS + " loads of " + className + " vm lookups=" + vmBytes);
+      // Allow for the VM lookups and the measurement itself, a single object per load is more than that
+      long limit = 2 * vmBytes + MEASUREMENT_BYTES;
+      assertTrue("Expected no allocation per load, got " + bytes + " bytes for " + ITERATIONS + " loads, limit=" + limit, bytes < limit);
+   }
+
+   private static long measure(com.sun.management.ThreadMXBean threads, Runnable runnable) throws Exception
+   {
+      for (int i = 0; i < WARMUP; ++i)
+         runnable.run();
+
+      long thread = Thread.currentThread().getId();
+      long before = threads.getThreadAllocatedBytes(thread);
+      for (int i = 0; i < ITERATIONS; ++i)
+         runnable.run();
+      return threads.getThreadAllocatedBytes(thread) - before;
+   }
+
+   private static com.sun.management.ThreadMXBean getThreadMXBean()
+   {
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      if (threads instanceof com.sun.management.ThreadMXBean == false)
+         fail("Thread allocation is not measurable on this VM: " + threads);
+      com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean) threads;
+      if (result.isThreadAllocatedMemorySupported() == false)
+         fail("Thread allocation is not supported on this VM");
+      if (result.isThreadAllocatedMemoryEnabled() == false)
+         result.setThreadAllocatedMemoryEnabled(true);
+      return result;
+   }
+
+   private static class LoadedClassProbe extends ClassLoader
+   {
+      boolean isLoaded(String className)
+      {
+         return findLoadedClass(className) != null;
+      }
+   }
+}
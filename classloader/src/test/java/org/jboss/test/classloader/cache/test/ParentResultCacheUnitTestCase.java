@@ -0,0 +1,197 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloader.cache.test;
+
+import junit.framework.Test;
+
+import org.jboss.classloader.plugins.ClassLoaderUtils;
+import org.jboss.classloader.spi.ClassLoaderDomain;
+import org.jboss.classloader.spi.ClassLoaderSystem;
+import org.jboss.classloader.spi.ParentPolicy;
+import org.jboss.classloader.spi.base.BaseClassLoader;
+import org.jboss.classloader.test.support.MockClassLoaderPolicy;
+import org.jboss.test.classloader.AbstractClassLoaderTestWithSecurity;
+import org.jboss.test.classloader.cache.support.a.A;
+import org.jboss.test.classloader.cache.support.DynamicClassLoaderPolicy;
+import org.jboss.test.classloader.cache.support.c.C;
+import org.jboss.test.classloader.domain.support.MockLoader;
+
+/**
+ * Checks the answers a domain gets from its parent domain are cached
+ * until the parent's classloaders change.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class ParentResultCacheUnitTestCase extends AbstractClassLoaderTestWithSecurity
+{
+   public static Test suite()
+   {
+      return suite(ParentResultCacheUnitTestCase.class);
+   }
+
+   public ParentResultCacheUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testParentResultCached() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain parent = system.getDefaultDomain();
+
+      MockClassLoaderPolicy policyA = createMockClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A.class);
+      system.registerClassLoaderPolicy(parent, policyA);
+
+      ClassLoaderDomain child = system.createAndRegisterDomain("child", ParentPolicy.BEFORE, parent);
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(child, policyB);
+
+      String path = ClassLoaderUtils.classNameToPath(A.class);
+      assertNotNull(clB.getResource(path));
+      long hits = child.getParentCacheHits();
+      assertTrue("Expected misses", child.getParentCacheMisses() > 0);
+      assertTrue("Expected cached entries", child.getParentCacheSize() > 0);
+
+      assertNotNull(clB.getResource(path));
+      assertTrue("Expected a hit", child.getParentCacheHits() > hits);
+   }
+
+   public void testParentRegisterInvalidates() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain parent = system.getDefaultDomain();
+
+      ClassLoaderDomain child = system.createAndRegisterDomain("child", ParentPolicy.BEFORE, parent);
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(child, policyB);
+
+      String path = ClassLoaderUtils.classNameToPath(C.class);
+      assertNull(clB.getResource(path));
+      assertNull(clB.getResource(path));
+      assertLoadClassFail(C.class, clB);
+
+      MockClassLoaderPolicy policyC = createMockClassLoaderPolicy("c");
+      policyC.setPathsAndPackageNames(C.class);
+      ClassLoader clC = system.registerClassLoaderPolicy(parent, policyC);
+      assertNotNull(clB.getResource(path));
+      assertLoadClass(C.class, clB, clC);
+
+      system.unregisterClassLoader(clC);
+      assertNull(clB.getResource(path));
+   }
+
+   public void testParentCacheDisabled() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain parent = system.getDefaultDomain();
+
+      MockClassLoaderPolicy policyA = createMockClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A.class);
+      system.registerClassLoaderPolicy(parent, policyA);
+
+      ClassLoaderDomain child = system.createAndRegisterDomain("child", ParentPolicy.BEFORE, parent);
+      child.setParentCacheMaxSize(0);
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(child, policyB);
+
+      String path = ClassLoaderUtils.classNameToPath(A.class);
+      assertNotNull(clB.getResource(path));
+      assertNotNull(clB.getResource(path));
+      assertEquals(0, child.getParentCacheHits());
+      assertEquals(0, child.getParentCacheSize());
+   }
+
+   public void testParentClearBlackListInvalidates() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain parent = system.getDefaultDomain();
+
+      MockClassLoaderPolicy policyA = createMockClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A.class);
+      BaseClassLoader clA = (BaseClassLoader) system.registerClassLoaderPolicy(parent, policyA);
+
+      ClassLoaderDomain child = system.createAndRegisterDomain("child", ParentPolicy.BEFORE, parent);
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(child, policyB);
+
+      String path = ClassLoaderUtils.classNameToPath(C.class);
+      assertNull(clB.getResource(path));
+      assertNull(clB.getResource(path));
+      long hits = child.getParentCacheHits();
+      long misses = child.getParentCacheMisses();
+
+      // The cached miss is dropped with the parent's black list entry
+      clA.clearBlackList(path);
+      assertNull(clB.getResource(path));
+      assertEquals(hits, child.getParentCacheHits());
+      assertTrue("Expected a miss", child.getParentCacheMisses() > misses);
+   }
+
+   public void testChangingParentUpTheChainNotCached() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      MockLoader loader = new MockLoader();
+      ClassLoaderDomain parent = system.createAndRegisterDomain("parent", ParentPolicy.BEFORE, loader);
+      ClassLoaderDomain child = system.createAndRegisterDomain("child", ParentPolicy.BEFORE, parent);
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(child, policyB);
+
+      String path = ClassLoaderUtils.classNameToPath(C.class);
+      clB.getResource(path);
+      clB.getResource(path);
+      assertEquals(0, child.getParentCacheHits());
+      assertEquals(0, child.getParentCacheSize());
+   }
+
+   public void testDynamicParentPolicyNotCached() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain parent = system.getDefaultDomain();
+
+      DynamicClassLoaderPolicy policyC = new DynamicClassLoaderPolicy("c");
+      policyC.setPackageNames(C.class);
+      ClassLoader clC = system.registerClassLoaderPolicy(parent, policyC);
+
+      ClassLoaderDomain child = system.createAndRegisterDomain("child", ParentPolicy.BEFORE, parent);
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(child, policyB);
+
+      String path = ClassLoaderUtils.classNameToPath(C.class);
+      assertNull(clB.getResource(path));
+      assertNull(clB.getResource(path));
+
+      // The parent's classloader gains the class without any register/unregister
+      policyC.setPaths(C.class);
+      assertNotNull(clB.getResource(path));
+      assertLoadClass(C.class, clB, clC);
+      assertEquals(0, child.getParentCacheHits());
+      assertEquals(0, child.getParentCacheSize());
+   }
+}
@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloader.cache.test;
+
+import junit.framework.Test;
+
+import org.jboss.classloader.plugins.ClassLoaderUtils;
+import org.jboss.classloader.spi.ClassLoaderDomain;
+import org.jboss.classloader.spi.ClassLoaderSystem;
+import org.jboss.classloader.test.support.MockClassLoaderPolicy;
+import org.jboss.test.classloader.AbstractClassLoaderTestWithSecurity;
+import org.jboss.test.classloader.cache.support.CountingClassLoaderPolicy;
+import org.jboss.test.classloader.cache.support.a.A;
+import org.jboss.test.classloader.cache.support.c.C;
+
+/**
+ * Checks the domain resource cache answers without asking the exports again
+ * and stays within its size.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class ResourceCacheUnitTestCase extends AbstractClassLoaderTestWithSecurity
+{
+   public static Test suite()
+   {
+      return suite(ResourceCacheUnitTestCase.class);
+   }
+
+   public ResourceCacheUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testCachedResourceNotRescanned() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+
+      CountingClassLoaderPolicy policyA = new CountingClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A.class);
+      system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(policyB);
+
+      String path = ClassLoaderUtils.classNameToPath(A.class);
+      assertNotNull(clB.getResource(path));
+      int count = policyA.getResourceCount;
+      assertTrue("Expected " + path + " in " + domain.listResourceCache(), domain.listResourceCache().containsKey(path));
+      assertEquals(1, domain.getResourceCacheSize());
+      long hits = domain.getResourceCacheHits();
+
+      assertNotNull(clB.getResource(path));
+      assertEquals(count, policyA.getResourceCount);
+      assertTrue("Expected a hit", domain.getResourceCacheHits() > hits);
+   }
+
+   public void testResourceCacheBounded() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+      domain.setResourceCacheMaxSize(2);
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(policyB);
+
+      for (int i = 0; i < 10; ++i)
+         assertNull(clB.getResource("org/jboss/test/classloader/cache/support/missing/Missing" + i + ".xml"));
+      assertTrue("Expected at most 2 " + domain.listResourceBlackList(), domain.getResourceBlackListSize() <= 2);
+      assertEquals(0, domain.getResourceCacheSize());
+      
+      domain.setResourceCacheMaxSize(0);
+      assertEquals(0, domain.getResourceBlackListSize());
+      assertNull(clB.getResource("org/jboss/test/classloader/cache/support/missing/Missing.xml"));
+      assertEquals(0, domain.getResourceBlackListSize());
+   }
+
+   public void testSizesFollowTheCache() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+
+      MockClassLoaderPolicy policyA = createMockClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A.class);
+      system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setImportAll(true);
+      ClassLoader clB = system.registerClassLoaderPolicy(policyB);
+
+      assertNotNull(clB.getResource(ClassLoaderUtils.classNameToPath(A.class)));
+      for (int i = 0; i < 3; ++i)
+         assertNull(clB.getResource("org/jboss/test/classloader/cache/support/c/Missing" + i + ".xml"));
+      assertNull(clB.getResource("org/jboss/test/classloader/cache/support/a/Missing.xml"));
+      assertSizes(domain, 1, 4);
+
+      // Looking again doesn't change them
+      assertNull(clB.getResource("org/jboss/test/classloader/cache/support/c/Missing0.xml"));
+      assertSizes(domain, 1, 4);
+
+      // A new exporter of the package forgets its misses
+      MockClassLoaderPolicy policyC = createMockClassLoaderPolicy("c");
+      policyC.setPackageNames(C.class);
+      system.registerClassLoaderPolicy(policyC);
+      assertSizes(domain, 1, 1);
+
+      domain.flushCaches();
+      assertSizes(domain, 0, 0);
+   }
+
+   protected void assertSizes(ClassLoaderDomain domain, int cached, int blackListed)
+   {
+      assertEquals(domain.listResourceCache().toString(), cached, domain.getResourceCacheSize());
+      assertEquals(domain.listResourceCache().size(), domain.getResourceCacheSize());
+      assertEquals(domain.listResourceBlackList().toString(), blackListed, domain.getResourceBlackListSize());
+      assertEquals(domain.listResourceBlackList().size(), domain.getResourceBlackListSize());
+   }
+}
@@ -0,0 +1,176 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloader.cache.test;
+
+import java.util.Collections;
+import java.util.HashSet;
+
+import junit.framework.Test;
+
+import org.jboss.classloader.spi.ClassLoaderSystem;
+import org.jboss.classloader.test.support.MockClassLoaderPolicy;
+import org.jboss.test.classloader.AbstractClassLoaderTestWithSecurity;
+import org.jboss.test.classloader.cache.support.CountingClassLoaderPolicy;
+
+/**
+ * Checks getResources for META-INF/services and META-INF/*.xml
+ * only asks the exports that have the resource.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class ResourceIndexUnitTestCase extends AbstractClassLoaderTestWithSecurity
+{
+   private static final String SERVICE = "META-INF/services/org.acme.Service";
+
+   private static final String OTHER = "META-INF/services/org.acme.Other";
+
+   private static final String XML = "META-INF/acme.xml";
+
+   public static Test suite()
+   {
+      return suite(ResourceIndexUnitTestCase.class);
+   }
+
+   public ResourceIndexUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testOnlyLoadersWithTheResourceAreAsked() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      CountingClassLoaderPolicy policyA = createPolicy("a", SERVICE, XML);
+      system.registerClassLoaderPolicy(policyA);
+      CountingClassLoaderPolicy policyB = createPolicy("b");
+      system.registerClassLoaderPolicy(policyB);
+      CountingClassLoaderPolicy policyC = createPolicy("c");
+      policyC.resourceNames = null;
+      system.registerClassLoaderPolicy(policyC);
+
+      MockClassLoaderPolicy policyD = createMockClassLoaderPolicy("d");
+      policyD.setImportAll(true);
+      ClassLoader clD = system.registerClassLoaderPolicy(policyD);
+
+      clD.getResources(SERVICE);
+      assertCounts(1, 0, 1, policyA, policyB, policyC);
+
+      clD.getResources(OTHER);
+      assertCounts(1, 0, 2, policyA, policyB, policyC);
+
+      clD.getResources(XML);
+      assertCounts(2, 0, 3, policyA, policyB, policyC);
+
+      // Not indexed
+      clD.getResources("META-INF/MANIFEST.MF");
+      assertCounts(3, 1, 4, policyA, policyB, policyC);
+      clD.getResources("META-INF/services/nested/org.acme.Service");
+      assertCounts(3, 1, 4, policyA, policyB, policyC);
+   }
+
+   public void testIndexFlushedOnRegistration() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      CountingClassLoaderPolicy policyA = createPolicy("a", SERVICE);
+      system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyD = createMockClassLoaderPolicy("d");
+      policyD.setImportAll(true);
+      ClassLoader clD = system.registerClassLoaderPolicy(policyD);
+
+      clD.getResources(OTHER);
+      assertEquals(0, policyA.getResourcesCount);
+
+      CountingClassLoaderPolicy policyB = createPolicy("b", OTHER);
+      system.registerClassLoaderPolicy(policyB);
+      clD.getResources(OTHER);
+      assertEquals(0, policyA.getResourcesCount);
+      assertEquals(1, policyB.getResourcesCount);
+
+      system.unregisterClassLoaderPolicy(policyB);
+      clD.getResources(OTHER);
+      assertEquals(1, policyB.getResourcesCount);
+      clD.getResources(SERVICE);
+      assertEquals(1, policyA.getResourcesCount);
+   }
+
+   public void testFlushSeesNewResource() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      CountingClassLoaderPolicy policyA = createPolicy("a", SERVICE);
+      system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyD = createMockClassLoaderPolicy("d");
+      policyD.setImportAll(true);
+      ClassLoader clD = system.registerClassLoaderPolicy(policyD);
+
+      clD.getResources(OTHER);
+      assertEquals(0, policyA.getResourcesCount);
+
+      // A new service file is only seen after a flush
+      policyA.resourceNames.add(OTHER);
+      clD.getResources(OTHER);
+      assertEquals(0, policyA.getResourcesCount);
+      system.getDefaultDomain().flushCaches();
+      clD.getResources(OTHER);
+      assertEquals(1, policyA.getResourcesCount);
+   }
+
+   public void testPackageFlushSeesNewResource() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      CountingClassLoaderPolicy policyA = createPolicy("a", SERVICE);
+      system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyD = createMockClassLoaderPolicy("d");
+      policyD.setImportAll(true);
+      ClassLoader clD = system.registerClassLoaderPolicy(policyD);
+
+      clD.getResources(OTHER);
+      assertEquals(0, policyA.getResourcesCount);
+
+      // Registering another classloader with the package flushes it
+      policyA.resourceNames.add(OTHER);
+      system.registerClassLoaderPolicy(createPolicy("b"));
+      clD.getResources(OTHER);
+      assertEquals(1, policyA.getResourcesCount);
+   }
+
+   protected CountingClassLoaderPolicy createPolicy(String name, String... resourceNames)
+   {
+      CountingClassLoaderPolicy policy = new CountingClassLoaderPolicy(name);
+      policy.setPackageNames("META-INF", "META-INF.services");
+      policy.resourceNames = new HashSet<String>();
+      Collections.addAll(policy.resourceNames, resourceNames);
+      return policy;
+   }
+
+   protected void assertCounts(int a, int b, int c, CountingClassLoaderPolicy... policies)
+   {
+      assertEquals(policies[0].toString(), a, policies[0].getResourcesCount);
+      assertEquals(policies[1].toString(), b, policies[1].getResourcesCount);
+      assertEquals(policies[2].toString(), c, policies[2].getResourcesCount);
+   }
+}
@@ -27,6 +27,7 @@ import junit.textui.TestRunner;
 
 import org.jboss.test.classloader.filter.test.CombiningFilterUnitTestCase;
 import org.jboss.test.classloader.filter.test.FilterUnitTestCase;
+import org.jboss.test.classloader.filter.test.OptimizeFilterUnitTestCase;
 import org.jboss.test.classloader.filter.test.PackageFilterUnitTestCase;
 import org.jboss.test.classloader.filter.test.RecursivePackageFilterUnitTestCase;
 
@@ -61,6 +62,7 @@ public class FilterTestSuite extends TestSuite
       suite.addTest(PackageFilterUnitTestCase.suite());
       suite.addTest(RecursivePackageFilterUnitTestCase.suite());
       suite.addTest(CombiningFilterUnitTestCase.suite());
+      suite.addTest(OptimizeFilterUnitTestCase.suite());
       
       return suite;
    }
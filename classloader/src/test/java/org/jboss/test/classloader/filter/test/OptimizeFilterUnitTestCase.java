@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloader.filter.test;
+
+import junit.framework.Test;
+
+import org.jboss.classloader.plugins.filter.CombiningClassFilter;
+import org.jboss.classloader.plugins.filter.CountingClassFilter;
+import org.jboss.classloader.spi.filter.ClassFilter;
+import org.jboss.classloader.spi.filter.ClassFilterUtils;
+import org.jboss.classloader.spi.filter.PackageClassFilter;
+import org.jboss.classloader.spi.filter.RecursivePackageClassFilter;
+import org.jboss.test.classloader.AbstractClassLoaderTestWithSecurity;
+
+/**
+ * OptimizeFilterUnitTestCase.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class OptimizeFilterUnitTestCase extends AbstractClassLoaderTestWithSecurity
+{
+   public static Test suite()
+   {
+      return suite(OptimizeFilterUnitTestCase.class);
+   }
+
+   public OptimizeFilterUnitTestCase(String name)
+   {
+      super(name);
+   }
+   
+   public void testConstants() throws Exception
+   {
+      ClassFilter packages = PackageClassFilter.createPackageClassFilter("java.lang");
+      assertSame(ClassFilterUtils.EVERYTHING, ClassFilterUtils.optimize(CombiningClassFilter.create(packages, ClassFilterUtils.EVERYTHING)));
+      assertSame(packages, ClassFilterUtils.optimize(CombiningClassFilter.create(ClassFilterUtils.NOTHING, packages)));
+      assertSame(ClassFilterUtils.NOTHING, ClassFilterUtils.optimize(CombiningClassFilter.create()));
+      assertSame(ClassFilterUtils.NOTHING, ClassFilterUtils.optimize(ClassFilterUtils.negatingClassFilter(ClassFilterUtils.EVERYTHING)));
+      assertSame(ClassFilterUtils.EVERYTHING, ClassFilterUtils.optimize(ClassFilterUtils.negatingClassFilter(ClassFilterUtils.NOTHING)));
+      assertSame(packages, ClassFilterUtils.optimize(ClassFilterUtils.negatingClassFilter(ClassFilterUtils.negatingClassFilter(packages))));
+      assertSame(packages, ClassFilterUtils.optimize(packages));
+   }
+   
+   public void testAnd() throws Exception
+   {
+      ClassFilter filter1 = PackageClassFilter.createPackageClassFilter("java.lang");
+      ClassFilter filter2 = PackageClassFilter.createPackageClassFilter("java.lang.reflect");
+      assertSame(filter1, ClassFilterUtils.optimize(CombiningClassFilter.create(true, filter1, filter2)));
+   }
+   
+   public void testMergePackages() throws Exception
+   {
+      ClassFilter filter = CombiningClassFilter.create(
+            PackageClassFilter.createPackageClassFilter("java.lang"),
+            CombiningClassFilter.create(
+                  PackageClassFilter.createPackageClassFilter("java.lang.reflect"),
+                  RecursivePackageClassFilter.createRecursivePackageClassFilter("org.jboss"),
+                  ClassFilterUtils.NOTHING),
+            RecursivePackageClassFilter.createRecursivePackageClassFilter("org.acme"),
+            ClassFilterUtils.JAVA_ONLY);
+      ClassFilter optimized = ClassFilterUtils.optimize(filter);
+      assertEquals("[java.lang, java.lang.reflect] <INCLUDE_JAVA>, [org.jboss, org.acme]", optimized.toString());
+      
+      String[] names = { "java.lang.Object", "java.lang.reflect.Method", "java.util.List", "org.jboss.X", "org.jboss.a.X", "org.acme.X", "com.acme.X", "X", "" };
+      for (String name : names)
+      {
+         assertEquals(name, filter.matchesClassName(name), optimized.matchesClassName(name));
+         String path = name.replace('.', '/');
+         assertEquals(path, filter.matchesResourcePath(path), optimized.matchesResourcePath(path));
+         assertEquals(name, filter.matchesPackageName(name), optimized.matchesPackageName(name));
+      }
+   }
+   
+   public void testOthersAreKept() throws Exception
+   {
+      ClassFilter negated = ClassFilterUtils.negatingClassFilter(PackageClassFilter.createPackageClassFilter("org.jboss"));
+      ClassFilter filter = CombiningClassFilter.create(negated, ClassFilterUtils.NOTHING_BUT_JAVA, PackageClassFilter.createPackageClassFilter("org.acme"));
+      ClassFilter optimized = ClassFilterUtils.optimize(filter);
+      assertEquals("[org.acme], EXCLUDE [org.jboss], NOTHING_BUT_JAVA", optimized.toString());
+      assertFilterMatchesClassName("org.acme.X", optimized);
+      assertFilterMatchesClassName("com.acme.X", optimized);
+      assertFilterNoMatchClassName("org.jboss.X", optimized);
+   }
+   
+   public void testCounting() throws Exception
+   {
+      CountingClassFilter filter = ClassFilterUtils.countingClassFilter(PackageClassFilter.createPackageClassFilter("java.lang"));
+      assertFilterMatchesClassName("java.lang.Object", filter);
+      assertFilterNoMatchClassName("java.util.List", filter);
+      assertFilterNoMatchClassName("java.util.Map", filter);
+      assertFilterMatchesResourcePath("java/lang/Object.class", filter);
+      assertFilterMatchesPackageName("java.lang", filter);
+      assertEquals(1, filter.getClassNameMatches());
+      assertEquals(2, filter.getClassNameMisses());
+      assertEquals(1, filter.getResourcePathMatches());
+      assertEquals(0, filter.getResourcePathMisses());
+      assertEquals(1, filter.getPackageNameMatches());
+      assertEquals(0, filter.getPackageNameMisses());
+      assertSame(filter, ClassFilterUtils.optimize(filter));
+      filter.reset();
+      assertEquals(0, filter.getClassNameMatches());
+      assertEquals(0, filter.getClassNameMisses());
+   }
+}
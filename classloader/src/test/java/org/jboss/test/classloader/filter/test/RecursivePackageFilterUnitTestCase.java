@@ -21,6 +21,13 @@
  */
 package org.jboss.test.classloader.filter.test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.Test;
 
 import org.jboss.classloader.spi.filter.ClassFilter;
@@ -146,4 +153,55 @@ public class RecursivePackageFilterUnitTestCase extends AbstractClassLoaderTestW
       assertFilterMatchesPackageName("java", filter);
       assertFilterNoMatchPackageName(null, filter);
    }
+   
+   public void testManyPackages() throws Exception
+   {
+      List<String> packages = new ArrayList<String>();
+      for (int i = 0; i < 300; ++i)
+         packages.add("org.jboss.test.p" + i);
+      ClassFilter filter = RecursivePackageClassFilter.createRecursivePackageClassFilter(packages);
+      for (int i = 0; i < 300; ++i)
+      {
+         assertFilterMatchesClassName("org.jboss.test.p" + i + ".X", filter);
+         assertFilterMatchesResourcePath("org/jboss/test/p" + i + "/X.class", filter);
+         assertFilterMatchesPackageName("org.jboss.test.p" + i, filter);
+      }
+      assertFilterNoMatchClassName("org.jboss.test.p300.X", filter);
+      assertFilterNoMatchClassName("org.jboss.test.X", filter);
+      assertFilterMatchesClassName("org.jboss.test.p1.sub.X", filter);
+      assertFilterNoMatchResourcePath("org/jboss/test/p300/X.class", filter);
+      assertFilterNoMatchResourcePath("org.jboss.test.p1/X.class", filter);
+      assertFilterNoMatchPackageName("org.jboss.test.p300", filter);
+      assertFilterNoMatchPackageName("org.jboss.test", filter);
+      assertEquals(packages.toString(), filter.toString());
+   }
+   
+   public void testIncludeJava() throws Exception
+   {
+      RecursivePackageClassFilter filter = RecursivePackageClassFilter.createRecursivePackageClassFilter("org.jboss.test");
+      assertFilterNoMatchClassName("java.lang.Object", filter);
+      filter.setIncludeJava(true);
+      assertFilterMatchesClassName("java.lang.Object", filter);
+      assertFilterMatchesResourcePath("java/lang/Object.class", filter);
+      assertFilterMatchesPackageName("java.lang", filter);
+      assertFilterMatchesClassName("org.jboss.test.X", filter);
+      assertFilterNoMatchClassName("org.jboss.X", filter);
+      assertEquals("[org.jboss.test] <INCLUDE_JAVA>", filter.toString());
+   }
+   
+   public void testSerialization() throws Exception
+   {
+      ClassFilter filter = RecursivePackageClassFilter.createRecursivePackageClassFilter("java.lang", "java.lang.reflect");
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(baos);
+      oos.writeObject(filter);
+      oos.close();
+      ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+      filter = (ClassFilter) ois.readObject();
+      assertFilterMatchesClassName("java.lang.Object", filter);
+      assertFilterMatchesResourcePath("java/lang/reflect/Method.class", filter);
+      assertFilterMatchesPackageName("java.lang.reflect", filter);
+      assertFilterNoMatchClassName("java.util.List", filter);
+      assertEquals("[java.lang, java.lang.reflect]", filter.toString());
+   }
 }
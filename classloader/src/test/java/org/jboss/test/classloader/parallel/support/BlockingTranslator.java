@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloader.parallel.support;
+
+import java.security.ProtectionDomain;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.util.loading.Translator;
+
+/**
+ * A translator that holds each class in its transform until
+ * the expected number of classes are being transformed at once
+ * or it times out, recording how many it saw together.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class BlockingTranslator implements Translator
+{
+   /** The classes being transformed */
+   private AtomicInteger active = new AtomicInteger();
+
+   /** The most classes transformed at once */
+   private AtomicInteger maxActive = new AtomicInteger();
+
+   /** The latch */
+   private CountDownLatch latch;
+
+   /** The time to wait for the other classes in milliseconds */
+   private long wait;
+
+   /**
+    * Create a new BlockingTranslator.
+    * 
+    * @param expected the number of classes expected at once
+    * @param wait the time to wait for them in milliseconds
+    */
+   public BlockingTranslator(int expected, long wait)
+   {
+      this.latch = new CountDownLatch(expected);
+      this.wait = wait;
+   }
+
+   public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws Exception
+   {
+      int now = active.incrementAndGet();
+      try
+      {
+         int max = maxActive.get();
+         while (now > max && maxActive.compareAndSet(max, now) == false)
+            max = maxActive.get();
+
+         latch.countDown();
+         latch.await(wait, TimeUnit.MILLISECONDS);
+         return null;
+      }
+      finally
+      {
+         active.decrementAndGet();
+      }
+   }
+
+   public void unregisterClassLoader(ClassLoader loader)
+   {
+   }
+
+   /**
+    * Get the most classes transformed at once
+    * 
+    * @return the maximum
+    */
+   public int getMaxActive()
+   {
+      return maxActive.get();
+   }
+}
@@ -0,0 +1,229 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloader.parallel.test;
+
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Test;
+
+import org.jboss.classloader.spi.ClassLoaderSystem;
+import org.jboss.classloader.test.support.MockClassLoaderPolicy;
+import org.jboss.test.classloader.AbstractClassLoaderTestWithSecurity;
+import org.jboss.test.classloader.parallel.support.P1;
+import org.jboss.test.classloader.parallel.support.P2;
+import org.jboss.test.classloader.parallel.support.P3;
+import org.jboss.test.classloader.parallel.support.P4;
+import org.jboss.test.thread.TestThread;
+import org.jboss.util.loading.Translator;
+
+/**
+ * Checks the scheduling of classloading tasks between the threads
+ * owning classloaders that are not parallel capable.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class ClassLoaderManagerUnitTestCase extends AbstractClassLoaderTestWithSecurity
+{
+   /** The number of threads */
+   private static final int THREADS = 8;
+
+   /** The number of times each thread loads the classes */
+   private static final int ITERATIONS = 20;
+
+   /** The time to wait for a thread in milliseconds */
+   private static final long TIMEOUT = 30000;
+
+   /** The classes */
+   private static final Class<?>[] CLASSES = { P1.class, P2.class, P3.class, P4.class };
+
+   public static Test suite()
+   {
+      return suite(ClassLoaderManagerUnitTestCase.class);
+   }
+
+   public ClassLoaderManagerUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testConcurrentRegistrationAndLookup() throws Exception
+   {
+      final ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      MockClassLoaderPolicy exporter = createMockClassLoaderPolicy("exporter");
+      exporter.setPathsAndPackageNames(P1.class);
+      final ClassLoader exporterClassLoader = system.registerClassLoaderPolicy(exporter);
+
+      MockClassLoaderPolicy importer = createMockClassLoaderPolicy("importer");
+      importer.setImportAll(true);
+      final ClassLoader importerClassLoader = system.registerClassLoaderPolicy(importer);
+
+      final CountDownLatch start = new CountDownLatch(1);
+      final Class<?>[][] results = new Class<?>[THREADS][CLASSES.length];
+      List<TestThread> threads = new ArrayList<TestThread>();
+      for (int i = 0; i < THREADS; ++i)
+      {
+         final int thread = i;
+         TestThread testThread = new TestThread("Load" + i)
+         {
+            public void run()
+            {
+               try
+               {
+                  start.await();
+               }
+               catch (InterruptedException ignored)
+               {
+               }
+               for (int k = 0; k < ITERATIONS; ++k)
+               {
+                  // Half the threads register their own classloader while the others look up classes
+                  ClassLoader cl;
+                  if (thread % 2 == 0)
+                  {
+                     cl = importerClassLoader;
+                  }
+                  else
+                  {
+                     MockClassLoaderPolicy policy = createMockClassLoaderPolicy("importer" + thread + "-" + k);
+                     policy.setImportAll(true);
+                     cl = system.registerClassLoaderPolicy(policy);
+                  }
+                  try
+                  {
+                     // Start at a different class in each thread
+                     for (int j = 0; j < CLASSES.length; ++j)
+                     {
+                        int index = (thread + j) % CLASSES.length;
+                        Class<?> clazz = assertLoadClass(CLASSES[index], cl, exporterClassLoader);
+                        if (results[thread][index] == null)
+                           results[thread][index] = clazz;
+                        else
+                           assertTrue(CLASSES[index] + " loaded twice", results[thread][index] == clazz);
+                     }
+                  }
+                  finally
+                  {
+                     if (cl != importerClassLoader)
+                        system.unregisterClassLoader(cl);
+                  }
+               }
+            }
+         };
+         threads.add(testThread);
+         testThread.start();
+      }
+      start.countDown();
+      for (TestThread testThread : threads)
+      {
+         testThread.join(TIMEOUT);
+         assertFalse("Deadlocked " + testThread, testThread.isAlive());
+         testThread.doJoin();
+      }
+
+      for (int i = 1; i < THREADS; ++i)
+      {
+         for (int j = 0; j < CLASSES.length; ++j)
+            assertTrue(CLASSES[j] + " loaded twice", results[0][j] == results[i][j]);
+      }
+   }
+
+   public void testUnregisterWhileLookupInProgress() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      final CountDownLatch entered = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      MockClassLoaderPolicy exporter = createMockClassLoaderPolicy("exporter");
+      exporter.setPathsAndPackageNames(P1.class);
+      exporter.addTranslator(new Translator()
+      {
+         public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws Exception
+         {
+            // Hold the classloader's lock while loading P1
+            if (P1.class.getName().equals(className.replace('/', '.')))
+            {
+               entered.countDown();
+               release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+            return null;
+         }
+
+         public void unregisterClassLoader(ClassLoader loader)
+         {
+         }
+      });
+      final ClassLoader exporterClassLoader = system.registerClassLoaderPolicy(exporter);
+
+      MockClassLoaderPolicy importer = createMockClassLoaderPolicy("importer");
+      importer.setImportAll(true);
+      final ClassLoader importerClassLoader = system.registerClassLoaderPolicy(importer);
+
+      TestThread owner = new TestThread("Owner")
+      {
+         public void run()
+         {
+            assertLoadClass(P1.class, exporterClassLoader, exporterClassLoader);
+         }
+      };
+      owner.start();
+      assertTrue("Owner did not start loading " + P1.class.getName(), entered.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+      // The lookup is queued for the owner of the exporter's lock
+      TestThread requester = new TestThread("Requester")
+      {
+         public void run()
+         {
+            assertLoadClass(P2.class, importerClassLoader, exporterClassLoader);
+         }
+      };
+      requester.start();
+      try
+      {
+         long end = System.currentTimeMillis() + TIMEOUT;
+         while (requester.getState() != Thread.State.WAITING && requester.isAlive())
+         {
+            if (System.currentTimeMillis() > end)
+               fail("Requester is not waiting for the owner: " + requester.getState());
+            Thread.sleep(10);
+         }
+      }
+      finally
+      {
+         // The owner unregisters when it unlocks and hands the lookup back
+         release.countDown();
+      }
+
+      owner.join(TIMEOUT);
+      requester.join(TIMEOUT);
+      assertFalse("Deadlocked loading " + P1.class.getName(), owner.isAlive());
+      assertFalse("Deadlocked loading " + P2.class.getName(), requester.isAlive());
+      owner.doJoin();
+      requester.doJoin();
+
+      assertLoadClass(P2.class, importerClassLoader, exporterClassLoader);
+   }
+}
@@ -0,0 +1,302 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloader.parallel.test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.Test;
+
+import org.jboss.classloader.spi.ClassLoaderSystem;
+import org.jboss.classloader.spi.base.BaseClassLoader;
+import org.jboss.classloader.test.support.MockClassLoaderPolicy;
+import org.jboss.test.classloader.AbstractClassLoaderTestWithSecurity;
+import org.jboss.test.classloader.parallel.support.BlockingTranslator;
+import org.jboss.test.classloader.parallel.support.P1;
+import org.jboss.test.classloader.parallel.support.P2;
+import org.jboss.test.classloader.parallel.support.P3;
+import org.jboss.test.classloader.parallel.support.P4;
+import org.jboss.test.classloader.parallel.support.a.A0;
+import org.jboss.test.classloader.parallel.support.a.A1;
+import org.jboss.test.classloader.parallel.support.b.B0;
+import org.jboss.test.classloader.parallel.support.b.B1;
+import org.jboss.test.thread.TestThread;
+
+/**
+ * Checks that parallel capable classloaders define different classes
+ * at the same time and still define each class once.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class ParallelClassLoadingUnitTestCase extends AbstractClassLoaderTestWithSecurity
+{
+   /** The number of threads for the stress test */
+   private static final int THREADS = 8;
+
+   /** The time to wait for the loads that could deadlock in milliseconds */
+   private static final long DEADLOCK_TIMEOUT = 30000;
+
+   /** The classes of the stress test */
+   private static final Class<?>[] CLASSES = { P1.class, P2.class, P3.class, P4.class };
+
+   public static Test suite()
+   {
+      return suite(ParallelClassLoadingUnitTestCase.class);
+   }
+
+   public ParallelClassLoadingUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testParallelCapable() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      MockClassLoaderPolicy legacy = createMockClassLoaderPolicy("legacy");
+      BaseClassLoader legacyClassLoader = (BaseClassLoader) system.registerClassLoaderPolicy(legacy);
+      assertFalse(legacyClassLoader.isParallelCapable());
+
+      MockClassLoaderPolicy parallel = createMockClassLoaderPolicy("parallel");
+      parallel.setParallelCapable(true);
+      BaseClassLoader parallelClassLoader = (BaseClassLoader) system.registerClassLoaderPolicy(parallel);
+      assertTrue(parallelClassLoader.isParallelCapable());
+   }
+
+   public void testRegisteredAsParallelCapableWithJVM() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      MockClassLoaderPolicy parallel = createMockClassLoaderPolicy("parallel");
+      parallel.setParallelCapable(true);
+      BaseClassLoader parallelClassLoader = (BaseClassLoader) system.registerClassLoaderPolicy(parallel);
+      assertTrue(parallelClassLoader.isParallelCapable());
+
+      SecurityManager sm = suspendSecurity();
+      try
+      {
+         Boolean registered;
+         try
+         {
+            // Java 9 and later
+            Method method = ClassLoader.class.getMethod("isRegisteredAsParallelCapable");
+            registered = (Boolean) method.invoke(parallelClassLoader);
+         }
+         catch (NoSuchMethodException e)
+         {
+            // Java 7 and 8 only create the lock map for registered classloaders
+            Field field = ClassLoader.class.getDeclaredField("parallelLockMap");
+            field.setAccessible(true);
+            registered = field.get(parallelClassLoader) != null;
+         }
+         assertTrue("Should be registered as parallel capable with the JVM", registered);
+      }
+      finally
+      {
+         resumeSecurity(sm);
+      }
+   }
+
+   public void testParallelDefinition() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      MockClassLoaderPolicy policy = createMockClassLoaderPolicy("parallel");
+      policy.setPathsAndPackageNames(P1.class);
+      policy.setParallelCapable(true);
+      BlockingTranslator translator = new BlockingTranslator(2, 10000);
+      policy.addTranslator(translator);
+      ClassLoader cl = system.registerClassLoaderPolicy(policy);
+
+      loadConcurrently(cl, cl, P1.class, P2.class);
+      assertEquals(2, translator.getMaxActive());
+   }
+
+   public void testLegacyDefinitionIsSerialized() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      MockClassLoaderPolicy policy = createMockClassLoaderPolicy("legacy");
+      policy.setPathsAndPackageNames(P1.class);
+      BlockingTranslator translator = new BlockingTranslator(2, 200);
+      policy.addTranslator(translator);
+      ClassLoader cl = system.registerClassLoaderPolicy(policy);
+
+      loadConcurrently(cl, cl, P1.class, P2.class);
+      assertEquals(1, translator.getMaxActive());
+   }
+
+   public void testParallelDefinitionThroughDomain() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      MockClassLoaderPolicy exporter = createMockClassLoaderPolicy("exporter");
+      exporter.setPathsAndPackageNames(P1.class);
+      exporter.setParallelCapable(true);
+      BlockingTranslator translator = new BlockingTranslator(2, 10000);
+      exporter.addTranslator(translator);
+      ClassLoader exporterClassLoader = system.registerClassLoaderPolicy(exporter);
+
+      MockClassLoaderPolicy importer = createMockClassLoaderPolicy("importer");
+      importer.setImportAll(true);
+      importer.setParallelCapable(true);
+      ClassLoader importerClassLoader = system.registerClassLoaderPolicy(importer);
+
+      loadConcurrently(importerClassLoader, exporterClassLoader, P1.class, P2.class);
+      assertEquals(2, translator.getMaxActive());
+   }
+
+   public void testConcurrentLoadsDefineOnce() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+
+      MockClassLoaderPolicy exporter = createMockClassLoaderPolicy("exporter");
+      exporter.setPathsAndPackageNames(P1.class);
+      exporter.setParallelCapable(true);
+      final ClassLoader exporterClassLoader = system.registerClassLoaderPolicy(exporter);
+
+      MockClassLoaderPolicy importer = createMockClassLoaderPolicy("importer");
+      importer.setImportAll(true);
+      importer.setParallelCapable(true);
+      final ClassLoader importerClassLoader = system.registerClassLoaderPolicy(importer);
+
+      final CountDownLatch start = new CountDownLatch(1);
+      final Class<?>[][] results = new Class<?>[THREADS][CLASSES.length];
+      List<TestThread> threads = new ArrayList<TestThread>();
+      for (int i = 0; i < THREADS; ++i)
+      {
+         final int thread = i;
+         final ClassLoader cl = (i % 2 == 0) ? importerClassLoader : exporterClassLoader;
+         TestThread testThread = new TestThread("Load" + i)
+         {
+            public void run()
+            {
+               try
+               {
+                  start.await();
+               }
+               catch (InterruptedException ignored)
+               {
+               }
+               // Start at a different class in each thread
+               for (int j = 0; j < CLASSES.length; ++j)
+               {
+                  int index = (thread + j) % CLASSES.length;
+                  results[thread][index] = assertLoadClass(CLASSES[index], cl, exporterClassLoader);
+               }
+            }
+         };
+         threads.add(testThread);
+         testThread.start();
+      }
+      start.countDown();
+      for (TestThread testThread : threads)
+         testThread.doJoin();
+
+      for (int i = 1; i < THREADS; ++i)
+      {
+         for (int j = 0; j < CLASSES.length; ++j)
+            assertTrue(CLASSES[j] + " loaded twice", results[0][j] == results[i][j]);
+      }
+   }
+
+   public void testParallelSuperclassesFromEachOther() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      BlockingTranslator translator = new BlockingTranslator(2, 10000);
+
+      MockClassLoaderPolicy policyA = createMockClassLoaderPolicy("a");
+      policyA.setPathsAndPackageNames(A0.class);
+      policyA.setImportAll(true);
+      policyA.setParallelCapable(true);
+      policyA.addTranslator(translator);
+      final ClassLoader clA = system.registerClassLoaderPolicy(policyA);
+
+      MockClassLoaderPolicy policyB = createMockClassLoaderPolicy("b");
+      policyB.setPathsAndPackageNames(B0.class);
+      policyB.setImportAll(true);
+      policyB.setParallelCapable(true);
+      policyB.addTranslator(translator);
+      final ClassLoader clB = system.registerClassLoaderPolicy(policyB);
+
+      // Each class is defined while its superclass is resolved from the other classloader
+      TestThread threadA = new TestThread("A")
+      {
+         public void run()
+         {
+            Class<?> clazz = assertLoadClass(A1.class, clA, clA);
+            assertEquals(clB, clazz.getSuperclass().getClassLoader());
+         }
+      };
+      TestThread threadB = new TestThread("B")
+      {
+         public void run()
+         {
+            Class<?> clazz = assertLoadClass(B1.class, clB, clB);
+            assertEquals(clA, clazz.getSuperclass().getClassLoader());
+         }
+      };
+      threadA.start();
+      threadB.start();
+      threadA.join(DEADLOCK_TIMEOUT);
+      threadB.join(DEADLOCK_TIMEOUT);
+      assertFalse("Deadlocked loading " + A1.class.getName(), threadA.isAlive());
+      assertFalse("Deadlocked loading " + B1.class.getName(), threadB.isAlive());
+      threadA.doJoin();
+      threadB.doJoin();
+      assertEquals(2, translator.getMaxActive());
+   }
+
+   /**
+    * Load two classes at the same time
+    * 
+    * @param start the classloader to load from
+    * @param expected the classloader expected to define the classes
+    * @param first the first class
+    * @param second the second class
+    * @throws Exception for any error
+    */
+   protected void loadConcurrently(final ClassLoader start, final ClassLoader expected, final Class<?> first, final Class<?> second) throws Exception
+   {
+      TestThread threadA = new TestThread("A")
+      {
+         public void run()
+         {
+            assertLoadClass(first, start, expected);
+         }
+      };
+      TestThread threadB = new TestThread("B")
+      {
+         public void run()
+         {
+            assertLoadClass(second, start, expected);
+         }
+      };
+      threadA.start();
+      threadB.start();
+      threadA.doJoin();
+      threadB.doJoin();
+   }
+}
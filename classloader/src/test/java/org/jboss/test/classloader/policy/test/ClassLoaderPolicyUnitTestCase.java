@@ -21,23 +21,32 @@
  */
 package org.jboss.test.classloader.policy.test;
 
+import java.io.ByteArrayInputStream;
 import java.io.FilePermission;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.security.CodeSource;
 import java.security.PermissionCollection;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import javax.naming.Context;
 
 import junit.framework.Test;
 
 import org.jboss.classloader.plugins.ClassLoaderUtils;
+import org.jboss.classloader.plugins.jdk.AbstractJDKChecker;
+import org.jboss.classloader.plugins.jdk.CachingJDKChecker;
 import org.jboss.classloader.spi.ClassLoaderDomain;
 import org.jboss.classloader.spi.ClassLoaderSystem;
 import org.jboss.classloader.spi.ParentPolicy;
 import org.jboss.classloader.spi.filter.ClassFilterUtils;
 import org.jboss.classloader.spi.filter.FilteredDelegateLoader;
+import org.jboss.classloader.spi.jdk.JDKChecker;
+import org.jboss.classloader.spi.jdk.JDKCheckerFactory;
 import org.jboss.classloader.test.support.MockClassLoaderPolicy;
 import org.jboss.test.classloader.AbstractClassLoaderTest;
 import org.jboss.test.classloader.policy.support.TestClass;
@@ -396,4 +405,141 @@ public class ClassLoaderPolicyUnitTestCase extends AbstractClassLoaderTest
       assertNull("Should NOT have tried policy1 ", policy1.getResourceInvoked);
       assertNotNull("Should have tried policy2 ", policy2.getResourceInvoked);
    }
+   
+   public void testCachingJDKChecker() throws Exception
+   {
+      final JDKChecker caching = new CachingJDKChecker();
+      final JDKChecker uncached = new AbstractJDKChecker();
+
+      // The test class is excluded
+      assertFalse(caching.isJDKRequest("x"));
+      assertFalse(caching.isJDKRequest("x"));
+      assertFalse(uncached.isJDKRequest("x"));
+
+      // A request from a runnable on its own thread is from the classpath
+      final boolean[] results = new boolean[3];
+      Thread thread = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            results[0] = caching.isJDKRequest("x");
+            results[1] = caching.isJDKRequest("x");
+            results[2] = uncached.isJDKRequest("x");
+         }
+      });
+      thread.start();
+      thread.join();
+      assertTrue(results[0]);
+      assertTrue(results[1]);
+      assertTrue(results[2]);
+      assertTrue(JDKCheckerFactory.getChecker() instanceof CachingJDKChecker);
+   }
+
+   public void testCachingJDKCheckerRequestingClassHook() throws Exception
+   {
+      final List<Class<?>> requesting = new ArrayList<Class<?>>();
+      JDKChecker checker = new CachingJDKChecker()
+      {
+         @Override
+         protected boolean isJDKRequestingClass(String name, Class<?> clazz)
+         {
+            requesting.add(clazz);
+            return "jdk".equals(name);
+         }
+      };
+
+      assertTrue(checker.isJDKRequest("jdk"));
+      assertFalse(checker.isJDKRequest("x"));
+      assertEquals(2, requesting.size());
+      assertEquals(ClassLoaderPolicyUnitTestCase.class, requesting.get(0));
+      assertEquals(ClassLoaderPolicyUnitTestCase.class, requesting.get(1));
+   }
+
+   public void testPolicyOverridingOnlyTransform() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      final List<String> transformed = new ArrayList<String>();
+      TestClassLoaderPolicy policy = new TestClassLoaderPolicy()
+      {
+         @Override
+         protected byte[] transform(String className, byte[] byteCode, ProtectionDomain protectionDomain) throws Exception
+         {
+            transformed.add(className);
+            return super.transform(className, byteCode, protectionDomain);
+         }
+      };
+      ClassLoader classLoader = system.registerClassLoaderPolicy(policy);
+
+      assertLoadClass(TestClass.class, classLoader);
+      assertEquals(Collections.singletonList(TestClass.class.getName()), transformed);
+   }
+
+   public void testDomainOverridingOnlyTransform() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      final List<String> transformed = new ArrayList<String>();
+      ClassLoaderDomain domain = new ClassLoaderDomain("transforming")
+      {
+         @Override
+         protected byte[] transform(ClassLoader classLoader, String className, byte[] byteCode, ProtectionDomain protectionDomain) throws Exception
+         {
+            transformed.add(className);
+            return super.transform(classLoader, className, byteCode, protectionDomain);
+         }
+      };
+      domain.setParentPolicy(ParentPolicy.AFTER_BUT_JAVA_BEFORE);
+      system.registerDomain(domain);
+      MockClassLoaderPolicy policy = createMockClassLoaderPolicy();
+      policy.setPathsAndPackageNames(TestClass.class);
+      ClassLoader classLoader = system.registerClassLoaderPolicy(domain, policy);
+
+      assertLoadClass(TestClass.class, classLoader);
+      assertEquals(Collections.singletonList(TestClass.class.getName()), transformed);
+   }
+
+   public void testLoadByteCodeWithSize() throws Exception
+   {
+      byte[] bytes = new byte[5000];
+      for (int i = 0; i < bytes.length; ++i)
+         bytes[i] = (byte) i;
+
+      assertTrue(Arrays.equals(bytes, ClassLoaderUtils.loadByteCode("x", new ByteArrayInputStream(bytes), -1)));
+      assertTrue(Arrays.equals(bytes, ClassLoaderUtils.loadByteCode("x", new ByteArrayInputStream(bytes), 5000)));
+      // The size is only a hint
+      assertTrue(Arrays.equals(bytes, ClassLoaderUtils.loadByteCode("x", new ByteArrayInputStream(bytes), 6000)));
+      assertTrue(Arrays.equals(bytes, ClassLoaderUtils.loadByteCode("x", new ByteArrayInputStream(bytes), 100)));
+   }
+
+   public void testLoadByteCodeIntoBuffer() throws Exception
+   {
+      byte[] bytes = new byte[5000];
+      for (int i = 0; i < bytes.length; ++i)
+         bytes[i] = (byte) i;
+
+      ByteBuffer buffer = ByteBuffer.allocate(8192);
+      ByteBuffer result = ClassLoaderUtils.loadByteCode("x", new ByteArrayInputStream(bytes), buffer);
+      assertSame(buffer, result);
+      assertBuffer(bytes, result);
+
+      // Reused from the start
+      result = ClassLoaderUtils.loadByteCode("x", new ByteArrayInputStream(bytes, 0, 10), buffer);
+      assertSame(buffer, result);
+      assertEquals(10, result.remaining());
+
+      // Exactly full
+      result = ClassLoaderUtils.loadByteCode("x", new ByteArrayInputStream(bytes), ByteBuffer.allocate(5000));
+      assertEquals(5000, result.capacity());
+      assertBuffer(bytes, result);
+
+      // Grown
+      result = ClassLoaderUtils.loadByteCode("x", new ByteArrayInputStream(bytes), ByteBuffer.allocate(10));
+      assertBuffer(bytes, result);
+   }
+
+   protected void assertBuffer(byte[] expected, ByteBuffer buffer)
+   {
+      byte[] actual = new byte[buffer.remaining()];
+      buffer.duplicate().get(actual);
+      assertTrue(Arrays.equals(expected, actual));
+   }
 }
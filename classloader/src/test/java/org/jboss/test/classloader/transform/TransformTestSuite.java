@@ -27,6 +27,7 @@ import junit.textui.TestRunner;
 import org.jboss.test.classloader.transform.test.DomainTransformUnitTestCase;
 import org.jboss.test.classloader.transform.test.MixedTransformUnitTestCase;
 import org.jboss.test.classloader.transform.test.PolicyTransformUnitTestCase;
+import org.jboss.test.classloader.transform.test.ScopedTransformUnitTestCase;
 import org.jboss.test.classloader.transform.test.SystemTransformUnitTestCase;
 
 /**
@@ -59,6 +60,7 @@ public class TransformTestSuite extends TestSuite
       suite.addTest(DomainTransformUnitTestCase.suite());
       suite.addTest(SystemTransformUnitTestCase.suite());
       suite.addTest(MixedTransformUnitTestCase.suite());
+      suite.addTest(ScopedTransformUnitTestCase.suite());
 
       return suite;
    }
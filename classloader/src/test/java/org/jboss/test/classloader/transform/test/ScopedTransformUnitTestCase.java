@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloader.transform.test;
+
+import java.util.Collections;
+
+import junit.framework.Test;
+
+import org.jboss.classloader.plugins.filter.PatternClassFilter;
+import org.jboss.classloader.spi.ClassLoaderDomain;
+import org.jboss.classloader.spi.ClassLoaderSystem;
+import org.jboss.classloader.spi.filter.ClassFilter;
+import org.jboss.classloader.spi.translator.FilteredTranslator;
+import org.jboss.classloader.test.support.MockClassLoaderPolicy;
+import org.jboss.test.classloader.AbstractClassLoaderTest;
+import org.jboss.test.classloader.transform.support.DomainTester;
+import org.jboss.test.classloader.transform.support.PolicyTester;
+import org.jboss.test.classloader.transform.support.RecordingTranslator;
+import org.jboss.test.classloader.transform.support.SystemTester;
+import org.jboss.util.loading.Translator;
+
+/**
+ * Translators registered with a scope only see the classes in the scope.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class ScopedTransformUnitTestCase extends AbstractClassLoaderTest
+{
+   public ScopedTransformUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public static Test suite()
+   {
+      return suite(ScopedTransformUnitTestCase.class);
+   }
+
+   public void testScopedTranslators() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+      MockClassLoaderPolicy policy = createMockClassLoaderPolicy();
+      policy.setPaths("org/jboss/test/classloader/transform/support");
+
+      RecordingTranslator policyTranslator = new RecordingTranslator();
+      policy.addTranslator(policyTranslator, scope(PolicyTester.class));
+      RecordingTranslator domainTranslator = new RecordingTranslator();
+      domain.addTranslator(domainTranslator, scope(DomainTester.class));
+      RecordingTranslator systemTranslator = new RecordingTranslator();
+      system.addTranslator(systemTranslator, scope(PolicyTester.class));
+
+      ClassLoader cl = system.registerClassLoaderPolicy(policy);
+      cl.loadClass(PolicyTester.class.getName());
+      cl.loadClass(DomainTester.class.getName());
+      cl.loadClass(SystemTester.class.getName());
+
+      assertEquals(Collections.singletonList(PolicyTester.class.getName()), policyTranslator.classNames);
+      assertEquals(Collections.singletonList(DomainTester.class.getName()), domainTranslator.classNames);
+      assertEquals(Collections.singletonList(PolicyTester.class.getName()), systemTranslator.classNames);
+   }
+
+   public void testUnscopedTranslatorSeesEverything() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      MockClassLoaderPolicy policy = createMockClassLoaderPolicy();
+      policy.setPaths("org/jboss/test/classloader/transform/support");
+
+      RecordingTranslator translator = new RecordingTranslator();
+      policy.addTranslator(translator, null);
+
+      ClassLoader cl = system.registerClassLoaderPolicy(policy);
+      cl.loadClass(PolicyTester.class.getName());
+      cl.loadClass(DomainTester.class.getName());
+      assertEquals(2, translator.classNames.size());
+   }
+
+   public void testRemoveScopedTranslator() throws Exception
+   {
+      ClassLoaderSystem system = createClassLoaderSystemWithModifiedBootstrap();
+      ClassLoaderDomain domain = system.getDefaultDomain();
+
+      RecordingTranslator translator = new RecordingTranslator();
+      domain.addTranslator(translator, scope(PolicyTester.class));
+      assertEquals(1, domain.getTranslators().size());
+      Translator registered = domain.getTranslators().get(0);
+      assertTrue(registered instanceof FilteredTranslator);
+      assertSame(translator, ((FilteredTranslator) registered).getTranslator());
+
+      domain.removeTranslator(translator);
+      assertTrue(domain.getTranslators().isEmpty());
+   }
+
+   protected ClassFilter scope(Class<?> clazz)
+   {
+      String pattern = clazz.getName().replace(".", "\\.");
+      return new PatternClassFilter(new String[] { pattern }, new String[0], new String[0]);
+   }
+}
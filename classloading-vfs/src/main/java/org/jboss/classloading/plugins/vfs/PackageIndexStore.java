@@ -0,0 +1,410 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloading.plugins.vfs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.classloading.spi.metadata.ExportAll;
+import org.jboss.logging.Logger;
+import org.jboss.vfs.VirtualFile;
+
+/**
+ * Remembers the packages of archive roots across restarts<p>
+ * 
+ * The packages are kept per root, export policy and last modified time of the archive
+ * before any package filters are applied, an entry is only used while the archive
+ * also has the same size. Only roots backed by an archive file are stored, directories
+ * are never stored since their timestamp doesn't change with their contents,
+ * even when they are named like an archive.<p>
+ * 
+ * Only the packages are stored, this saves scanning the archives to determine
+ * the capabilities of a module. Resource names and manifests are not stored
+ * so the classloader still looks in the roots for its resources after a restart.<p>
+ * 
+ * The file is only a cache, when it is missing, corrupt or
+ * from a different version it is ignored and rewritten. Entries for archives
+ * that no longer exist or have changed are dropped when the file is read.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class PackageIndexStore
+{
+   /** The log */
+   private static final Logger log = Logger.getLogger(PackageIndexStore.class);
+
+   /** The file header */
+   private static final int MAGIC = 0x4A424349;
+
+   /** The file format version */
+   private static final int VERSION = 2;
+
+   /** The archive suffixes */
+   private static final String[] ARCHIVE_SUFFIXES = { ".jar", ".zip" };
+
+   /** The stores by file */
+   private static final Map<File, PackageIndexStore> stores = new HashMap<File, PackageIndexStore>();
+
+   /** The file */
+   private File file;
+
+   /** The entries by root path, export policy and last modified time */
+   private ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+   /** Whether the file has been read */
+   private boolean loaded;
+
+   /** Whether there are changes to write */
+   private volatile boolean modified;
+
+   /**
+    * Get the store for a file, modules using the same file share the store
+    * 
+    * @param file the file
+    * @return the store
+    * @throws IllegalArgumentException for a null file
+    */
+   public static PackageIndexStore getInstance(File file)
+   {
+      if (file == null)
+         throw new IllegalArgumentException("Null file");
+      file = file.getAbsoluteFile();
+      synchronized (stores)
+      {
+         PackageIndexStore result = stores.get(file);
+         if (result == null)
+         {
+            result = new PackageIndexStore(file);
+            stores.put(file, result);
+         }
+         return result;
+      }
+   }
+
+   /**
+    * Create a new PackageIndexStore.
+    * 
+    * @param file the file
+    * @throws IllegalArgumentException for a null file
+    */
+   public PackageIndexStore(File file)
+   {
+      if (file == null)
+         throw new IllegalArgumentException("Null file");
+      this.file = file;
+   }
+
+   /**
+    * Get the file.
+    * 
+    * @return the file.
+    */
+   public File getFile()
+   {
+      return file;
+   }
+
+   /**
+    * Whether a root can be stored
+    * 
+    * @param root the root
+    * @return true when it is an archive file
+    */
+   public static boolean isStorable(VirtualFile root)
+   {
+      return getArchive(root) != null;
+   }
+
+   /**
+    * Get the archive file of a root
+    * 
+    * @param root the root
+    * @return the archive file or null when the root is not an archive file
+    */
+   private static File getArchive(VirtualFile root)
+   {
+      String name = root.getName().toLowerCase();
+      for (String suffix : ARCHIVE_SUFFIXES)
+      {
+         if (name.endsWith(suffix))
+         {
+            // Archives are mounted over the file itself, an exploded archive is a directory
+            File file = new File(root.getPathName());
+            if (file.isFile())
+               return file;
+            return null;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Get the packages of a root
+    * 
+    * @param root the root
+    * @param exportAll the export policy
+    * @return the unfiltered packages or null when not stored or out of date
+    */
+   public Set<String> getPackages(VirtualFile root, ExportAll exportAll)
+   {
+      File archive = getArchive(root);
+      if (archive == null)
+         return null;
+      load();
+      Entry entry = entries.get(getKey(root, exportAll, archive.lastModified()));
+      if (entry == null || entry.size != archive.length())
+         return null;
+      return entry.packages;
+   }
+
+   /**
+    * Remember the packages of a root
+    * 
+    * @param root the root
+    * @param exportAll the export policy
+    * @param packages the unfiltered packages
+    */
+   public void putPackages(VirtualFile root, ExportAll exportAll, Set<String> packages)
+   {
+      File archive = getArchive(root);
+      if (archive == null)
+         return;
+      load();
+      long lastModified = archive.lastModified();
+      Entry entry = new Entry(archive.getPath(), archive.length(), lastModified, Collections.unmodifiableSet(new HashSet<String>(packages)));
+      String key = getKey(root, exportAll, lastModified);
+      entries.put(key, entry);
+
+      // Drop the entries for previous versions of the archive
+      String prefix = getRootKey(root, exportAll) + "@";
+      for (Iterator<String> i = entries.keySet().iterator(); i.hasNext();)
+      {
+         String other = i.next();
+         if (other.startsWith(prefix) && other.equals(key) == false)
+            i.remove();
+      }
+      modified = true;
+   }
+
+   /**
+    * Get the number of entries
+    * 
+    * @return the number of entries
+    */
+   public int size()
+   {
+      load();
+      return entries.size();
+   }
+
+   /**
+    * Read the file if not already done
+    */
+   public synchronized void load()
+   {
+      if (loaded)
+         return;
+      loaded = true;
+      if (file.exists() == false)
+         return;
+
+      Map<String, Entry> read = new HashMap<String, Entry>();
+      int pruned = 0;
+      try
+      {
+         DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+         try
+         {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+               log.debug("Ignoring package index with a different format " + file);
+               return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i)
+            {
+               String key = in.readUTF();
+               String path = in.readUTF();
+               long size = in.readLong();
+               long lastModified = in.readLong();
+               int packageCount = in.readInt();
+               Set<String> packages = new HashSet<String>();
+               for (int j = 0; j < packageCount; ++j)
+                  packages.add(in.readUTF());
+
+               // Prune the archives that have gone or changed
+               File archive = new File(path);
+               if (archive.isFile() == false || archive.length() != size || archive.lastModified() != lastModified)
+                  ++pruned;
+               else
+                  read.put(key, new Entry(path, size, lastModified, Collections.unmodifiableSet(packages)));
+            }
+         }
+         finally
+         {
+            in.close();
+         }
+      }
+      catch (Exception e)
+      {
+         log.debug("Ignoring unreadable package index " + file, e);
+         return;
+      }
+      for (Map.Entry<String, Entry> entry : read.entrySet())
+         entries.putIfAbsent(entry.getKey(), entry.getValue());
+      if (pruned > 0)
+         modified = true;
+      if (log.isTraceEnabled())
+         log.trace("Read " + read.size() + " roots from package index " + file + " pruned=" + pruned);
+   }
+
+   /**
+    * Write the file when there are changes<p>
+    * 
+    * A failure is logged, the store remains usable.
+    */
+   public synchronized void store()
+   {
+      if (modified == false)
+         return;
+      modified = false;
+
+      File temp = new File(file.getPath() + ".tmp");
+      try
+      {
+         File parent = file.getParentFile();
+         if (parent != null)
+            parent.mkdirs();
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+         try
+         {
+            Map<String, Entry> snapshot = new HashMap<String, Entry>(entries);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> mapEntry : snapshot.entrySet())
+            {
+               Entry entry = mapEntry.getValue();
+               out.writeUTF(mapEntry.getKey());
+               out.writeUTF(entry.path);
+               out.writeLong(entry.size);
+               out.writeLong(entry.lastModified);
+               out.writeInt(entry.packages.size());
+               for (String pkg : entry.packages)
+                  out.writeUTF(pkg);
+            }
+         }
+         finally
+         {
+            out.close();
+         }
+         if (file.exists() && file.delete() == false)
+            throw new IOException("Unable to replace " + file);
+         if (temp.renameTo(file) == false)
+            throw new IOException("Unable to rename " + temp + " to " + file);
+      }
+      catch (IOException e)
+      {
+         log.warn("Unable to write package index " + file + ": " + e);
+         temp.delete();
+      }
+   }
+
+   /**
+    * Get the key for a root
+    * 
+    * @param root the root
+    * @param exportAll the export policy
+    * @param lastModified the last modified time of the archive
+    * @return the key
+    */
+   private static String getKey(VirtualFile root, ExportAll exportAll, long lastModified)
+   {
+      return getRootKey(root, exportAll) + "@" + lastModified;
+   }
+
+   /**
+    * Get the part of the key for a root that doesn't change with the archive
+    * 
+    * @param root the root
+    * @param exportAll the export policy
+    * @return the key
+    */
+   private static String getRootKey(VirtualFile root, ExportAll exportAll)
+   {
+      return root.getPathName() + "?" + exportAll;
+   }
+
+   @Override
+   public String toString()
+   {
+      return getClass().getSimpleName() + "{" + file + "}";
+   }
+
+   /**
+    * What we know about a root
+    */
+   private static class Entry
+   {
+      /** The path of the archive */
+      private String path;
+
+      /** The size of the archive */
+      private long size;
+
+      /** The last modified time of the archive */
+      private long lastModified;
+
+      /** The packages */
+      private Set<String> packages;
+
+      /**
+       * Create a new Entry.
+       * 
+       * @param path the path of the archive
+       * @param size the size
+       * @param lastModified the last modified time
+       * @param packages the packages
+       */
+      Entry(String path, long size, long lastModified, Set<String> packages)
+      {
+         this.path = path;
+         this.size = size;
+         this.lastModified = lastModified;
+         this.packages = packages;
+      }
+   }
+}
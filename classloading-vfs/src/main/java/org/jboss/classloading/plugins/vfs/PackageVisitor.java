@@ -21,9 +21,14 @@
  */
 package org.jboss.classloading.plugins.vfs;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jboss.classloader.spi.filter.ClassFilter;
 import org.jboss.classloading.spi.metadata.ExportAll;
@@ -70,6 +75,15 @@ public class PackageVisitor extends AbstractVirtualFileFilterWithAttributes impl
    
    /** The excluded export packages */
    private ClassFilter excludedExport;
+
+   /** The path index */
+   private PathIndex index;
+
+   /** The ordinal of the current root */
+   private int rootOrdinal;
+
+   /** The packages before filtering, only when they are to be stored */
+   private Set<String> unfiltered;
    
    /**
     * Determine the packages
@@ -84,12 +98,91 @@ public class PackageVisitor extends AbstractVirtualFileFilterWithAttributes impl
     */
    public static Set<String> determineAllPackages(VirtualFile[] roots, VirtualFile[] excludedRoots, ExportAll exportAll, ClassFilter included, ClassFilter excluded, ClassFilter excludedExport)
    {
+      return determineAllPackages(roots, excludedRoots, exportAll, included, excluded, excludedExport, null);
+   }
+
+   /**
+    * Determine the packages and index the directories of the roots
+    * 
+    * @param roots the roots
+    * @param excludedRoots the excluded roots
+    * @param exportAll the exportAll
+    * @param included the included packages
+    * @param excluded the excluded packages
+    * @param excludedExport the excluded export packages
+    * @param index the index to populate, may be null
+    * @return the packages
+    */
+   public static Set<String> determineAllPackages(VirtualFile[] roots, VirtualFile[] excludedRoots, ExportAll exportAll, ClassFilter included, ClassFilter excluded, ClassFilter excludedExport, PathIndex index)
+   {
+      return determineAllPackages(roots, excludedRoots, exportAll, included, excluded, excludedExport, index, null, 1);
+   }
+
+   /**
+    * Determine the packages visiting several roots at once<p>
+    * 
+    * The calling thread visits roots as well, so the roots are still visited
+    * when the executor rejects the work. The result is the same as visiting
+    * the roots one after the other.
+    * 
+    * @param roots the roots
+    * @param excludedRoots the excluded roots
+    * @param exportAll the exportAll
+    * @param included the included packages
+    * @param excluded the excluded packages
+    * @param excludedExport the excluded export packages
+    * @param index the index to populate, may be null
+    * @param executor the executor for the other threads, null to only use the calling thread
+    * @param parallelism the maximum number of roots visited at once
+    * @return the packages
+    * @throws IllegalArgumentException if parallelism is less than one
+    */
+   public static Set<String> determineAllPackages(VirtualFile[] roots, VirtualFile[] excludedRoots, ExportAll exportAll, ClassFilter included, ClassFilter excluded, ClassFilter excludedExport, PathIndex index, Executor executor, int parallelism)
+   {
+      return determineAllPackages(roots, excludedRoots, exportAll, included, excluded, excludedExport, index, executor, parallelism, null);
+   }
+
+   /**
+    * Determine the packages, reusing the stored packages of unchanged roots<p>
+    * 
+    * Roots are only taken from the store when there is no index to populate
+    * and no other root is nested inside them. The visited roots are stored,
+    * the store is not written.
+    * 
+    * @param roots the roots
+    * @param excludedRoots the excluded roots
+    * @param exportAll the exportAll
+    * @param included the included packages
+    * @param excluded the excluded packages
+    * @param excludedExport the excluded export packages
+    * @param index the index to populate, may be null
+    * @param executor the executor for the other threads, null to only use the calling thread
+    * @param parallelism the maximum number of roots visited at once
+    * @param store the store of packages, may be null
+    * @return the packages
+    * @throws IllegalArgumentException if parallelism is less than one
+    */
+   public static Set<String> determineAllPackages(VirtualFile[] roots, VirtualFile[] excludedRoots, ExportAll exportAll, ClassFilter included, ClassFilter excluded, ClassFilter excludedExport, PathIndex index, Executor executor, int parallelism, PackageIndexStore store)
+   {
+      if (parallelism < 1)
+         throw new IllegalArgumentException("Parallelism must be at least one: " + parallelism);
+      if (store != null && index != null)
+         store = null;
+      if (store != null || (executor != null && parallelism > 1 && roots.length > 1))
+      {
+         RootVisitor rootVisitor = new RootVisitor(roots, excludedRoots, exportAll, included, excluded, excludedExport, index != null);
+         return rootVisitor.visit(executor, parallelism, index, store);
+      }
+
       PackageVisitor visitor = new PackageVisitor(roots, excludedRoots, exportAll, included, excluded, excludedExport);
-      for (VirtualFile root : roots)
+      visitor.index = index;
+      for (int i = 0; i < roots.length; ++i)
       {
+         VirtualFile root = roots[i];
          try
          {
             visitor.setRoot(root);
+            visitor.rootOrdinal = i;
             root.visit(visitor);
          }
          catch (Exception e)
@@ -187,6 +280,9 @@ public class PackageVisitor extends AbstractVirtualFileFilterWithAttributes impl
       // We only want only directories
       if (file.isDirectory() && accepts(file))
       {
+         if (index != null)
+            index.addDirectory(getRelativePath(file), rootOrdinal);
+
          boolean empty = true;
          // Include empty directories?
          if (exportAll == ExportAll.ALL)
@@ -211,24 +307,272 @@ public class PackageVisitor extends AbstractVirtualFileFilterWithAttributes impl
          // This looks interesting
          if (empty == false)
          {
-            String path = file.getPathName();
-            if (path.equals(rootPath))
-               path = "";
-            else if (path.startsWith(rootPathWithSlash))
-               path = path.substring(rootPathWithSlash.length());
+            String path = getRelativePath(file);
             String pkg = path.replace('/', '.');
+            if (unfiltered != null)
+               unfiltered.add(pkg);
+            addPackage(pkg);
+         }
+      }
+      else if (index != null && file.isDirectory())
+      {
+         // We don't recurse into it, so nothing below it is indexed
+         index.addUnindexed(getRelativePath(file));
+      }
+   }
+
+   /**
+    * Visits the roots that are not stored, possibly using several threads,
+    * each root gets its own visitor
+    */
+   private static class RootVisitor implements Runnable
+   {
+      /** The roots */
+      private VirtualFile[] roots;
+
+      /** The excluded roots */
+      private VirtualFile[] excludedRoots;
+
+      /** The export all */
+      private ExportAll exportAll;
+
+      /** The included packages */
+      private ClassFilter included;
+
+      /** The excluded packages */
+      private ClassFilter excluded;
+
+      /** The excluded export packages */
+      private ClassFilter excludedExport;
+
+      /** Whether to index */
+      private boolean indexed;
+
+      /** Whether to record the unfiltered packages */
+      private boolean recording;
+
+      /** The ordinals of the roots to visit */
+      private int[] pending;
+
+      /** The number of roots to visit */
+      private int pendingCount;
+
+      /** The next position in pending */
+      private AtomicInteger next = new AtomicInteger();
+
+      /** Counts down the roots still to visit */
+      private CountDownLatch done;
 
-            // Check for inclusions/exclusions
-            if (included != null && included.matchesPackageName(pkg) == false)
-               return;
-            if (excluded != null && excluded.matchesPackageName(pkg))
-               return;
-            if (excludedExport != null && excludedExport.matchesPackageName(pkg))
-               return;
+      /** The visitors by root ordinal */
+      private PackageVisitor[] visitors;
 
-            // Ok this is a package for export
-            packages.add(pkg);
+      /** The errors by root ordinal */
+      private Throwable[] errors;
+
+      /**
+       * Create a new RootVisitor.
+       * 
+       * @param roots the roots
+       * @param excludedRoots the excluded roots
+       * @param exportAll the exportAll
+       * @param included the included packages
+       * @param excluded the excluded packages
+       * @param excludedExport the excluded export packages
+       * @param indexed whether to index
+       */
+      RootVisitor(VirtualFile[] roots, VirtualFile[] excludedRoots, ExportAll exportAll, ClassFilter included, ClassFilter excluded, ClassFilter excludedExport, boolean indexed)
+      {
+         this.roots = roots;
+         this.excludedRoots = excludedRoots;
+         this.exportAll = exportAll;
+         this.included = included;
+         this.excluded = excluded;
+         this.excludedExport = excludedExport;
+         this.indexed = indexed;
+         visitors = new PackageVisitor[roots.length];
+         errors = new Throwable[roots.length];
+      }
+
+      /**
+       * Visit the roots
+       * 
+       * @param executor the executor, may be null
+       * @param parallelism the maximum number of roots visited at once
+       * @param index the index to populate, may be null
+       * @param store the store, may be null
+       * @return the packages
+       */
+      Set<String> visit(Executor executor, int parallelism, PathIndex index, PackageIndexStore store)
+      {
+         recording = store != null;
+
+         // Work out which roots we need to visit
+         List<Set<String>> stored = new ArrayList<Set<String>>(roots.length);
+         pending = new int[roots.length];
+         for (int i = 0; i < roots.length; ++i)
+         {
+            Set<String> packages = null;
+            if (store != null && isNested(i) == false)
+               packages = store.getPackages(roots[i], exportAll);
+            stored.add(packages);
+            if (packages == null)
+               pending[pendingCount++] = i;
+         }
+         done = new CountDownLatch(pendingCount);
+
+         if (executor != null)
+         {
+            int others = Math.min(parallelism, pendingCount) - 1;
+            for (int i = 0; i < others; ++i)
+            {
+               try
+               {
+                  executor.execute(this);
+               }
+               catch (RejectedExecutionException e)
+               {
+                  // We will do it ourselves
+                  break;
+               }
+            }
+         }
+         run();
+
+         boolean interrupted = false;
+         try
+         {
+            while (true)
+            {
+               try
+               {
+                  done.await();
+                  break;
+               }
+               catch (InterruptedException e)
+               {
+                  interrupted = true;
+               }
+            }
+         }
+         finally
+         {
+            if (interrupted)
+               Thread.currentThread().interrupt();
+         }
+
+         // Merge in root order
+         PackageVisitor filter = new PackageVisitor(roots, excludedRoots, exportAll, included, excluded, excludedExport);
+         for (int i = 0; i < roots.length; ++i)
+         {
+            Set<String> packages = stored.get(i);
+            if (packages != null)
+            {
+               for (String pkg : packages)
+                  filter.addPackage(pkg);
+               continue;
+            }
+
+            Throwable t = errors[i];
+            if (t instanceof Error)
+               throw (Error) t;
+            if (t != null)
+               throw new Error("Error visiting " + roots[i], t);
+            PackageVisitor visitor = visitors[i];
+            filter.packages.addAll(visitor.getPackages());
+            if (index != null)
+               index.addAll(visitor.index);
+            if (store != null && isNested(i) == false)
+               store.putPackages(roots[i], exportAll, visitor.unfiltered);
          }
+         return filter.getPackages();
       }
+
+      /**
+       * Whether another root is inside a root
+       * 
+       * @param ordinal the root ordinal
+       * @return true when another root or excluded root is inside it
+       */
+      private boolean isNested(int ordinal)
+      {
+         String prefix = roots[ordinal].getPathName() + "/";
+         for (VirtualFile other : roots)
+         {
+            if (other.getPathName().startsWith(prefix))
+               return true;
+         }
+         if (excludedRoots != null)
+         {
+            for (VirtualFile other : excludedRoots)
+            {
+               if (other.getPathName().startsWith(prefix))
+                  return true;
+            }
+         }
+         return false;
+      }
+
+      public void run()
+      {
+         for (int n = next.getAndIncrement(); n < pendingCount; n = next.getAndIncrement())
+         {
+            int i = pending[n];
+            try
+            {
+               PackageVisitor visitor = new PackageVisitor(roots, excludedRoots, exportAll, included, excluded, excludedExport);
+               if (indexed)
+                  visitor.index = new PathIndex();
+               if (recording)
+                  visitor.unfiltered = new HashSet<String>();
+               visitor.setRoot(roots[i]);
+               visitor.rootOrdinal = i;
+               roots[i].visit(visitor);
+               visitors[i] = visitor;
+            }
+            catch (Throwable t)
+            {
+               errors[i] = t;
+            }
+            finally
+            {
+               done.countDown();
+            }
+         }
+      }
+   }
+
+   /**
+    * Add a package when it passes the filters
+    * 
+    * @param pkg the package name
+    */
+   private void addPackage(String pkg)
+   {
+      // Check for inclusions/exclusions
+      if (included != null && included.matchesPackageName(pkg) == false)
+         return;
+      if (excluded != null && excluded.matchesPackageName(pkg))
+         return;
+      if (excludedExport != null && excludedExport.matchesPackageName(pkg))
+         return;
+
+      // Ok this is a package for export
+      packages.add(pkg);
+   }
+
+   /**
+    * Get the path of a file relative to the current root
+    * 
+    * @param file the file
+    * @return the relative path
+    */
+   private String getRelativePath(VirtualFile file)
+   {
+      String path = file.getPathName();
+      if (path.equals(rootPath))
+         path = "";
+      else if (path.startsWith(rootPathWithSlash))
+         path = path.substring(rootPathWithSlash.length());
+      return path;
    }
-}
\ No newline at end of file
+}
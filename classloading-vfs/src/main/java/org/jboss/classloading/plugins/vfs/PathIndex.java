@@ -0,0 +1,167 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloading.plugins.vfs;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An index of the directories in a set of roots<p>
+ * 
+ * It is built once by the {@link PackageVisitor} and afterwards only read,
+ * it answers which roots can contain a path without probing each root.
+ * Directories inside nested or excluded roots are not indexed, paths
+ * below them must still be probed against all roots.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class PathIndex
+{
+   /** No roots */
+   public static final int[] NO_ROOTS = new int[0];
+
+   /** The roots containing a directory by directory path */
+   private Map<String, int[]> directories = new HashMap<String, int[]>();
+
+   /** The directory paths that were not visited */
+   private Set<String> unindexed = new HashSet<String>();
+
+   /**
+    * Add a directory
+    * 
+    * @param path the directory path relative to the root
+    * @param root the ordinal of the root
+    */
+   void addDirectory(String path, int root)
+   {
+      int[] roots = directories.get(path);
+      if (roots == null)
+      {
+         directories.put(path, new int[] { root });
+      }
+      else if (roots[roots.length - 1] != root)
+      {
+         int[] newRoots = new int[roots.length + 1];
+         System.arraycopy(roots, 0, newRoots, 0, roots.length);
+         newRoots[roots.length] = root;
+         directories.put(path, newRoots);
+      }
+   }
+
+   /**
+    * Add a directory that was not visited
+    * 
+    * @param path the directory path relative to the root
+    */
+   void addUnindexed(String path)
+   {
+      unindexed.add(path);
+   }
+
+   /**
+    * Add another index, its roots must come after ours
+    * 
+    * @param other the other index
+    */
+   void addAll(PathIndex other)
+   {
+      for (Map.Entry<String, int[]> entry : other.directories.entrySet())
+      {
+         for (int root : entry.getValue())
+            addDirectory(entry.getKey(), root);
+      }
+      unindexed.addAll(other.unindexed);
+   }
+
+   /**
+    * Get the roots that can contain a path
+    * 
+    * @param path the path relative to the roots
+    * @return the root ordinals in root order, {@link #NO_ROOTS} when no root can contain it
+    *         or null when the path is not covered by the index
+    */
+   public int[] getRoots(String path)
+   {
+      if (path == null)
+         throw new IllegalArgumentException("Null path");
+      if (path.startsWith("/"))
+         return null;
+
+      String directory;
+      int end = path.length();
+      if (end > 0 && path.charAt(end - 1) == '/')
+         --end;
+      int slash = path.lastIndexOf('/', end - 1);
+      if (slash < 0)
+         directory = "";
+      else
+         directory = path.substring(0, slash);
+
+      if (unindexed.isEmpty() == false && isUnindexed(directory))
+         return null;
+
+      int[] result = directories.get(directory);
+      if (result == null)
+         return NO_ROOTS;
+      return result;
+   }
+
+   /**
+    * Whether a directory is below a directory that was not visited
+    * 
+    * @param directory the directory path
+    * @return true when it is not indexed
+    */
+   private boolean isUnindexed(String directory)
+   {
+      String parent = directory;
+      while (parent.length() > 0)
+      {
+         if (unindexed.contains(parent))
+            return true;
+         int slash = parent.lastIndexOf('/');
+         if (slash < 0)
+            return false;
+         parent = parent.substring(0, slash);
+      }
+      return false;
+   }
+
+   /**
+    * Get the number of indexed directories
+    * 
+    * @return the number of directories
+    */
+   public int size()
+   {
+      return directories.size();
+   }
+   
+   @Override
+   public String toString()
+   {
+      return getClass().getSimpleName() + "{directories=" + directories.size() + " unindexed=" + new TreeSet<String>(unindexed) + "}";
+   }
+}
@@ -21,6 +21,7 @@
 */
 package org.jboss.classloading.spi.vfs.dependency;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -29,9 +30,16 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.jboss.classloader.spi.filter.ClassFilter;
+import org.jboss.classloading.plugins.vfs.PackageIndexStore;
 import org.jboss.classloading.plugins.vfs.PackageVisitor;
 import org.jboss.classloading.plugins.vfs.VFSResourceVisitor;
 import org.jboss.classloading.spi.dependency.policy.ClassLoaderPolicyModule;
@@ -73,6 +81,12 @@ public class VFSClassLoaderPolicyModule extends ClassLoaderPolicyModule implemen
    /** The root reg-exp pattern key */
    private static final String RE_KEY = "?root-re-pattern=";
 
+   /** The most threads scanning roots for packages across all modules */
+   private static final int MAX_PACKAGE_SCAN_THREADS = Runtime.getRuntime().availableProcessors();
+
+   /** The threads scanning roots for packages */
+   private static Executor packageScanExecutor;
+
    /**
     * Create a new VFSClassLoaderPolicyModule.
     * 
@@ -130,7 +144,18 @@ public class VFSClassLoaderPolicyModule extends ClassLoaderPolicyModule implemen
       ExportAll exportAll = getExportAll();
       if (exportAll != null)
       {
-         Set<String> exportedPackages = PackageVisitor.determineAllPackages(roots, null, exportAll, included, excluded, excludedExport);
+         Executor executor = null;
+         int parallelism = 1;
+         Integer packageScanThreads = getClassLoadingMetaData().getPackageScanThreads();
+         if (packageScanThreads != null && packageScanThreads > 1 && roots.length > 1)
+         {
+            executor = getPackageScanExecutor();
+            parallelism = Math.min(packageScanThreads, MAX_PACKAGE_SCAN_THREADS);
+         }
+         PackageIndexStore store = getPackageIndexStore();
+         Set<String> exportedPackages = PackageVisitor.determineAllPackages(roots, null, exportAll, included, excluded, excludedExport, null, executor, parallelism, store);
+         if (store != null)
+            store.store();
          for (String packageName : exportedPackages)
          {
             capability = factory.createPackage(packageName, version);
@@ -141,6 +166,47 @@ public class VFSClassLoaderPolicyModule extends ClassLoaderPolicyModule implemen
       return capabilities;
    }
 
+   /**
+    * Get the store of packages
+    * 
+    * @return the store or null if there isn't one
+    */
+   protected PackageIndexStore getPackageIndexStore()
+   {
+      String packageIndex = getClassLoadingMetaData().getPackageIndex();
+      if (packageIndex == null)
+         return null;
+      return PackageIndexStore.getInstance(new File(packageIndex));
+   }
+
+   /**
+    * Get the executor for scanning roots<p>
+    * 
+    * It is shared by all modules and never runs more than {@link #MAX_PACKAGE_SCAN_THREADS}
+    * threads, it rejects work beyond that which the deploying thread then does itself.
+    * 
+    * @return the executor
+    */
+   private static synchronized Executor getPackageScanExecutor()
+   {
+      if (packageScanExecutor == null)
+      {
+         ThreadFactory threadFactory = new ThreadFactory()
+         {
+            private AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable)
+            {
+               Thread thread = new Thread(runnable, "PackageScan-" + count.incrementAndGet());
+               thread.setDaemon(true);
+               return thread;
+            }
+         };
+         packageScanExecutor = new ThreadPoolExecutor(0, MAX_PACKAGE_SCAN_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory);
+      }
+      return packageScanExecutor;
+   }
+
    public void setKernelControllerContext(KernelControllerContext context) throws Exception
    {
       setControllerContext(context);
@@ -248,6 +314,10 @@ public class VFSClassLoaderPolicyModule extends ClassLoaderPolicyModule implemen
       policy.setCacheable(isCacheable());
       policy.setBlackListable(isBlackListable());
       policy.setDelegates(getDelegates());
+      Integer cacheSize = getClassLoadingMetaData().getCacheSize();
+      if (cacheSize != null)
+         policy.setCacheSize(cacheSize);
+      policy.setIndexed(getClassLoadingMetaData().isIndexed());
       return policy;
    }
 
@@ -263,6 +333,10 @@ public class VFSClassLoaderPolicyModule extends ClassLoaderPolicyModule implemen
     */
    public void create()
    {
+      PackageIndexStore store = getPackageIndexStore();
+      if (store != null)
+         store.load();
+
       final VirtualFile[] vfsRoots = determineVFSRoots();
       for (VirtualFile root : vfsRoots) 
       {
@@ -61,6 +61,18 @@ public class VFSClassLoaderFactory extends ClassLoadingMetaData implements BeanM
    /** The roots */
    private List<String> roots = new CopyOnWriteArrayList<String>();
 
+   /** The size of the policy's virtual file cache */
+   private Integer cacheSize;
+
+   /** The maximum number of roots scanned at once for packages */
+   private Integer packageScanThreads;
+
+   /** The file remembering the packages of the roots */
+   private String packageIndex;
+
+   /** Whether to index the paths of the roots */
+   private boolean indexed;
+
    /**
     * Create a new VFSClassLoaderFactory.
     */
@@ -171,6 +183,94 @@ public class VFSClassLoaderFactory extends ClassLoadingMetaData implements BeanM
       this.roots = roots;
    }
 
+   /**
+    * Get the cacheSize.
+    * 
+    * @return the cacheSize or null for the policy's default
+    */
+   public Integer getCacheSize()
+   {
+      return cacheSize;
+   }
+
+   /**
+    * Set the cacheSize.
+    * 
+    * @param cacheSize the cacheSize.
+    */
+   @ManagementProperty(name="cache-size")
+   @XmlAttribute(name="cache-size")
+   public void setCacheSize(Integer cacheSize)
+   {
+      this.cacheSize = cacheSize;
+   }
+
+   /**
+    * Get the packageScanThreads.
+    * 
+    * @return the packageScanThreads or null to scan the roots one at a time
+    */
+   public Integer getPackageScanThreads()
+   {
+      return packageScanThreads;
+   }
+
+   /**
+    * Set the packageScanThreads.
+    * 
+    * @param packageScanThreads the packageScanThreads.
+    */
+   @ManagementProperty(name="package-scan-threads")
+   @XmlAttribute(name="package-scan-threads")
+   public void setPackageScanThreads(Integer packageScanThreads)
+   {
+      this.packageScanThreads = packageScanThreads;
+   }
+
+   /**
+    * Get the packageIndex.
+    * 
+    * @return the packageIndex or null to always scan the roots
+    */
+   public String getPackageIndex()
+   {
+      return packageIndex;
+   }
+
+   /**
+    * Set the packageIndex.
+    * 
+    * @param packageIndex the packageIndex.
+    */
+   @ManagementProperty(name="package-index")
+   @XmlAttribute(name="package-index")
+   public void setPackageIndex(String packageIndex)
+   {
+      this.packageIndex = packageIndex;
+   }
+
+   /**
+    * Get the indexed.
+    * 
+    * @return true to only look in the roots that contain the directory of a path
+    */
+   public boolean isIndexed()
+   {
+      return indexed;
+   }
+
+   /**
+    * Set the indexed.
+    * 
+    * @param indexed the indexed.
+    */
+   @ManagementProperty(name="indexed")
+   @XmlAttribute(name="indexed")
+   public void setIndexed(boolean indexed)
+   {
+      this.indexed = indexed;
+   }
+
    /**
     * Get module class.
     *
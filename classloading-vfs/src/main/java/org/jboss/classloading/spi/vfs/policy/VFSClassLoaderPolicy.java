@@ -30,26 +30,28 @@ import java.security.PermissionCollection;
 import java.security.Policy;
 import java.security.ProtectionDomain;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.jar.Manifest;
 
 import org.jboss.classloader.plugins.ClassLoaderUtils;
 import org.jboss.classloader.spi.ClassFoundEvent;
 import org.jboss.classloader.spi.ClassFoundHandler;
 import org.jboss.classloader.spi.ClassLoaderPolicy;
+import org.jboss.classloader.spi.ClassResource;
 import org.jboss.classloader.spi.DelegateLoader;
 import org.jboss.classloader.spi.PackageInformation;
 import org.jboss.classloader.spi.filter.ClassFilter;
 import org.jboss.classloader.spi.filter.ClassFilterUtils;
 import org.jboss.classloader.spi.filter.FilteredDelegateLoader;
 import org.jboss.classloading.plugins.vfs.PackageVisitor;
+import org.jboss.classloading.plugins.vfs.PathIndex;
 import org.jboss.classloading.spi.metadata.ExportAll;
 import org.jboss.logging.Logger;
-import org.jboss.util.collection.SoftValueHashMap;
 import org.jboss.vfs.VFSUtils;
 import org.jboss.vfs.VirtualFile;
 
@@ -105,13 +107,30 @@ public class VFSClassLoaderPolicy extends ClassLoaderPolicy
    
    /** Whether we are blacklistable */
    private boolean blackListable = true;
+
+   /** Whether to load classes in parallel */
+   private boolean parallelCapable;
+
+   /** Whether to index the paths of the roots */
+   private boolean indexed;
+
+   /** The path index */
+   private volatile PathIndex pathIndex;
    
    /** Manifest cache */
    private Map<String, Manifest> manifestCache = new ConcurrentHashMap<String, Manifest>();
    
+   /** The default size of the virtual file information cache */
+   public static final int DEFAULT_CACHE_SIZE = 1000;
+
    /** Cache of virtual file information by path */
-   @SuppressWarnings({ "unchecked", "rawtypes" })
-   private Map<String, VirtualFileInfo> vfsCache = Collections.synchronizedMap(new SoftValueHashMap());
+   private VirtualFileInfoCache vfsCache = new VirtualFileInfoCache(DEFAULT_CACHE_SIZE);
+   
+   /** Cache of protection domains by root and code signers */
+   private ConcurrentMap<ProtectionDomainKey, ProtectionDomain> protectionDomainCache = new ConcurrentHashMap<ProtectionDomainKey, ProtectionDomain>();
+   
+   /** The security policy the cached protection domains were created with */
+   private volatile Policy protectionDomainPolicy;
    
    /**
     * Determine a name from the roots
@@ -361,7 +380,12 @@ public class VFSClassLoaderPolicy extends ClassLoaderPolicy
       {
          if (exportedPackages == null)
          {
-            Set<String> exported = PackageVisitor.determineAllPackages(roots, excludedRoots, exportAll, included, excluded, excludedExport);
+            PathIndex index = null;
+            if (indexed && pathIndex == null)
+               index = new PathIndex();
+            Set<String> exported = PackageVisitor.determineAllPackages(roots, excludedRoots, exportAll, included, excluded, excludedExport, index);
+            if (index != null)
+               pathIndex = index;
             exportedPackages = exported.toArray(new String[exported.size()]);
          }
       }
@@ -441,6 +465,132 @@ public class VFSClassLoaderPolicy extends ClassLoaderPolicy
       this.blackListable = blackListable;
    }
 
+   @Override
+   public boolean isParallelCapable()
+   {
+      return parallelCapable;
+   }
+
+   /**
+    * Set the parallelCapable.
+    * 
+    * @param parallelCapable the parallelCapable.
+    */
+   public void setParallelCapable(boolean parallelCapable)
+   {
+      this.parallelCapable = parallelCapable;
+   }
+
+   /**
+    * Get the maximum number of entries in the virtual file information cache
+    * 
+    * @return the cache size
+    */
+   public int getCacheSize()
+   {
+      return vfsCache.getMaxSize();
+   }
+
+   /**
+    * Set the maximum number of entries in the virtual file information cache<p>
+    * 
+    * The cache remembers where a class or resource was found between the lookup
+    * and the load, entries for classes are removed once they are defined.
+    * 
+    * @param cacheSize the cache size, zero disables the cache
+    * @throws IllegalArgumentException for a negative size
+    */
+   public void setCacheSize(int cacheSize)
+   {
+      vfsCache.setMaxSize(cacheSize);
+   }
+
+   /**
+    * Get the number of lookups answered by the virtual file information cache
+    * 
+    * @return the number of hits
+    */
+   public long getCacheHits()
+   {
+      return vfsCache.getHits();
+   }
+
+   /**
+    * Get the number of lookups not answered by the virtual file information cache
+    * 
+    * @return the number of misses
+    */
+   public long getCacheMisses()
+   {
+      return vfsCache.getMisses();
+   }
+
+   /**
+    * Get the number of entries evicted from the virtual file information cache
+    * 
+    * @return the number of evictions
+    */
+   public long getCacheEvictions()
+   {
+      return vfsCache.getEvictions();
+   }
+
+   /**
+    * Whether the paths of the roots are indexed
+    * 
+    * @return true when indexed
+    */
+   public boolean isIndexed()
+   {
+      return indexed;
+   }
+
+   /**
+    * Set whether to index the paths of the roots<p>
+    * 
+    * The index is built once, either while determining the packages for
+    * {@link #setExportAll(ExportAll)} or on the first lookup. Lookups then
+    * only probe the roots that contain the directory of the path.
+    * Files or directories added to the roots after that are not found.
+    * 
+    * @param indexed true to index
+    */
+   public void setIndexed(boolean indexed)
+   {
+      this.indexed = indexed;
+      if (indexed == false)
+         pathIndex = null;
+   }
+
+   /**
+    * Get the path index, building it when necessary
+    * 
+    * @return the index or null if the roots are not indexed
+    */
+   protected PathIndex getPathIndex()
+   {
+      if (indexed == false)
+         return null;
+
+      PathIndex result = pathIndex;
+      if (result == null)
+      {
+         synchronized (this)
+         {
+            result = pathIndex;
+            if (result == null)
+            {
+               result = new PathIndex();
+               PackageVisitor.determineAllPackages(roots, excludedRoots, ExportAll.ALL, null, null, null, result);
+               if (log.isTraceEnabled())
+                  log.trace(this + " indexed " + result);
+               pathIndex = result;
+            }
+         }
+      }
+      return result;
+   }
+
    @Override
    public DelegateLoader getExported()
    {
@@ -500,6 +650,29 @@ public class VFSClassLoaderPolicy extends ClassLoaderPolicy
       if (checkFilters(name, "getResources"))
          return;
 
+      PathIndex index = getPathIndex();
+      int[] candidates = null;
+      if (index != null)
+         candidates = index.getRoots(name);
+      if (candidates != null)
+      {
+         for (int candidate : candidates)
+         {
+            VirtualFile root = roots[candidate];
+            try
+            {
+               VirtualFile child = root.getChild(name);
+               if (child.exists())
+                  urls.add(child.toURL());
+            }
+            catch (Exception e)
+            {
+               log.debug("Error getting resources for " + root, e);
+            }
+         }
+         return;
+      }
+
       for (VirtualFile root : roots)
       {
          try
@@ -514,7 +687,54 @@ public class VFSClassLoaderPolicy extends ClassLoaderPolicy
          }
       }
    } 
+
+   @Override
+   protected Set<String> getResourceNames(String directory)
+   {
+      Set<String> result = new HashSet<String>();
+      for (VirtualFile root : roots)
+      {
+         try
+         {
+            VirtualFile child = root.getChild(directory);
+            if (child.isDirectory() == false)
+               continue;
+            for (VirtualFile file : child.getChildren())
+            {
+               String path = directory + "/" + file.getName();
+               if (file.isDirectory() == false && checkFilters(path, "getResourceNames") == false)
+                  result.add(path);
+            }
+         }
+         catch (Exception e)
+         {
+            log.debug("Error getting resource names for " + root, e);
+            return null;
+         }
+      }
+      return result;
+   }
    
+   @Override
+   protected ClassResource getClassResource(String className, String path)
+   {
+      if (checkFilters(path, "getClassResource"))
+         return null;
+
+      VirtualFileInfo vfi = findVirtualFileInfo(path);
+      if (vfi == null)
+         return null;
+      try
+      {
+         return new VirtualFileClassResource(path, vfi);
+      }
+      catch (Exception ignored)
+      {
+         log.debug("Error opening stream for " + vfi.getFile(), ignored);
+         return null;
+      }
+   }
+
    /**
     * Find a child from a path
     * 
@@ -551,6 +771,14 @@ public class VFSClassLoaderPolicy extends ClassLoaderPolicy
     */
    protected VirtualFileInfo findVirtualFileInfo(String path)
    {
+      PathIndex index = getPathIndex();
+      if (index != null)
+      {
+         int[] candidates = index.getRoots(path);
+         if (candidates != null)
+            return findVirtualFileInfo(path, candidates);
+      }
+
       VirtualFileInfo result = vfsCache.get(path);
       if (result != null)
          return result;
@@ -575,11 +803,58 @@ public class VFSClassLoaderPolicy extends ClassLoaderPolicy
       return null;
    }
    
+   /**
+    * Find the virtual file information for a path in the given roots
+    * 
+    * @param path the path
+    * @param candidates the ordinals of the roots that can contain the path
+    * @return the virtual file information
+    */
+   private VirtualFileInfo findVirtualFileInfo(String path, int[] candidates)
+   {
+      for (int candidate : candidates)
+      {
+         VirtualFile root = roots[candidate];
+         try
+         {
+            VirtualFile file = root.getChild(path);
+            if (file.exists())
+               return new VirtualFileInfo(file, root);
+         }
+         catch (Exception ignored)
+         {
+         }
+      }
+      return null;
+   }
+   
    @Override
    public PackageInformation getClassPackageInformation(String className, String packageName)
    {
       String path = ClassLoaderUtils.classNameToPath(className);
-      VirtualFile root = findRoot(path);
+      return getPackageInformation(packageName, path, findRoot(path));
+   }
+
+   @Override
+   public PackageInformation getClassPackageInformation(String className, String packageName, ClassResource resource)
+   {
+      if (resource instanceof VirtualFileClassResource == false)
+         return super.getClassPackageInformation(className, packageName, resource);
+
+      VirtualFileInfo vfi = ((VirtualFileClassResource) resource).getVirtualFileInfo();
+      return getPackageInformation(packageName, resource.getPath(), vfi.getRoot());
+   }
+
+   /**
+    * Get the package information from the root's manifest
+    * 
+    * @param packageName the package name
+    * @param path the path of the class resource
+    * @param root the root containing the class
+    * @return the package information
+    */
+   private PackageInformation getPackageInformation(String packageName, String path, VirtualFile root)
+   {
       Manifest manifest = null;
       String rootURL = null;
 
@@ -622,32 +897,85 @@ public class VFSClassLoaderPolicy extends ClassLoaderPolicy
    @Override
    protected ProtectionDomain getProtectionDomain(String className, String path)
    {
-      VirtualFile clazz = findChild(path);
-      if (clazz == null)
+      VirtualFileInfo vfi = findVirtualFileInfo(path);
+      if (vfi == null)
       {
          if (log.isTraceEnabled())
             log.trace("Unable to determine class file for " + className);
 
          return null;
       }
+      return getProtectionDomain(className, path, vfi);
+   }
+
+   @Override
+   protected ProtectionDomain getProtectionDomain(String className, ClassResource resource)
+   {
+      if (resource instanceof VirtualFileClassResource == false)
+         return super.getProtectionDomain(className, resource);
+
+      return getProtectionDomain(className, resource.getPath(), ((VirtualFileClassResource) resource).getVirtualFileInfo());
+   }
+
+   /**
+    * Get the protection domain for a class file
+    * 
+    * @param className the class name
+    * @param path the path
+    * @param vfi the virtual file information of the class
+    * @return the protection domain
+    */
+   private ProtectionDomain getProtectionDomain(String className, String path, VirtualFileInfo vfi)
+   {
+      VirtualFile clazz = vfi.getFile();
       try
       {
-         VirtualFile root = findRoot(path);
+         VirtualFile root = vfi.getRoot();
+         CodeSigner[] signers = clazz.getCodeSigners();
+
+         // A replaced security policy invalidates what we have cached
+         Policy policy = Policy.getPolicy();
+         if (policy != protectionDomainPolicy)
+         {
+            protectionDomainCache.clear();
+            protectionDomainPolicy = policy;
+         }
+
+         ProtectionDomainKey key = new ProtectionDomainKey(root, signers);
+         ProtectionDomain result = protectionDomainCache.get(key);
+         if (result != null)
+            return result;
+
          URL codeSourceURL = root.toURL();
 
          if (log.isTraceEnabled())
             log.trace("getProtectionDomain:className="+ className + " path="+ path + " codeSourceURL=" + codeSourceURL);
 
-         final CodeSigner[] signers = clazz.getCodeSigners();
-         final CodeSource cs = new CodeSource(codeSourceURL, signers);
-         final PermissionCollection permissions = Policy.getPolicy().getPermissions(cs);
-         return new ProtectionDomain(cs, permissions);
+         CodeSource cs = new CodeSource(codeSourceURL, signers);
+         PermissionCollection permissions = policy.getPermissions(cs);
+         result = new ProtectionDomain(cs, permissions);
+         ProtectionDomain previous = protectionDomainCache.putIfAbsent(key, result);
+         if (previous != null)
+            result = previous;
+         return result;
       }
       catch (Exception e)
       {
          throw new Error("Error determining protection domain for " + clazz, e);
       }
    }
+
+   /**
+    * Flush the cached protection domains<p>
+    * 
+    * The cache is flushed automatically when the security policy is replaced,
+    * this should be invoked after a {@link Policy#refresh()} so classes
+    * defined afterwards pick up the new permissions.
+    */
+   public void flushProtectionDomains()
+   {
+      protectionDomainCache.clear();
+   }
    
    /**
     * Check the filters
@@ -673,6 +1001,97 @@ public class VFSClassLoaderPolicy extends ClassLoaderPolicy
       return false;
    }
 
+   /**
+    * A class resource that remembers where the class was found
+    */
+   private static class VirtualFileClassResource extends ClassResource
+   {
+      /** The virtual file information */
+      private VirtualFileInfo vfi;
+
+      /**
+       * Create a new VirtualFileClassResource.
+       * 
+       * @param path the path of the class resource
+       * @param vfi the virtual file information
+       * @throws IOException for any error opening the stream
+       */
+      public VirtualFileClassResource(String path, VirtualFileInfo vfi) throws IOException
+      {
+         super(path, vfi.getFile().openStream(), getSize(vfi.getFile()));
+         this.vfi = vfi;
+      }
+
+      /**
+       * Get the size of a class file
+       * 
+       * @param file the file
+       * @return the size or -1 if it is not known
+       */
+      private static int getSize(VirtualFile file)
+      {
+         long size = file.getSize();
+         if (size <= 0 || size > Integer.MAX_VALUE)
+            return -1;
+         return (int) size;
+      }
+
+      /**
+       * Get the virtual file information.
+       * 
+       * @return the virtual file information
+       */
+      public VirtualFileInfo getVirtualFileInfo()
+      {
+         return vfi;
+      }
+   }
+
+   /**
+    * The key of a cached protection domain
+    */
+   private static class ProtectionDomainKey
+   {
+      /** The root */
+      private VirtualFile root;
+
+      /** The code signers */
+      private CodeSigner[] signers;
+
+      /** The hash code */
+      private int hashCode;
+
+      /**
+       * Create a new ProtectionDomainKey.
+       * 
+       * @param root the root
+       * @param signers the code signers, may be null
+       */
+      public ProtectionDomainKey(VirtualFile root, CodeSigner[] signers)
+      {
+         this.root = root;
+         this.signers = signers;
+         this.hashCode = root.hashCode() * 31 + Arrays.hashCode(signers);
+      }
+
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (obj == this)
+            return true;
+         if (obj == null || obj instanceof ProtectionDomainKey == false)
+            return false;
+         ProtectionDomainKey other = (ProtectionDomainKey) obj;
+         return root.equals(other.root) && Arrays.equals(signers, other.signers);
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return hashCode;
+      }
+   }
+
    private class VFSCacheRemove implements ClassFoundHandler
    {
       public void classFound(ClassFoundEvent event)
@@ -0,0 +1,190 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloading.spi.vfs.policy;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of virtual file information by path<p>
+ * 
+ * Lookups don't lock. When a put takes the cache over its maximum size
+ * entries are evicted until it fits again, the evicted entries are
+ * whatever the map iterates first.
+ * 
+ * @version $Revision: 1.1 $
+ */
+class VirtualFileInfoCache
+{
+   /** The entries */
+   private ConcurrentHashMap<String, VirtualFileInfo> entries = new ConcurrentHashMap<String, VirtualFileInfo>();
+
+   /** The number of entries */
+   private AtomicInteger size = new AtomicInteger();
+
+   /** The maximum number of entries */
+   private volatile int maxSize;
+
+   /** The number of hits */
+   private AtomicLong hits = new AtomicLong();
+
+   /** The number of misses */
+   private AtomicLong misses = new AtomicLong();
+
+   /** The number of evictions */
+   private AtomicLong evictions = new AtomicLong();
+
+   /**
+    * Create a new VirtualFileInfoCache.
+    * 
+    * @param maxSize the maximum number of entries
+    * @throws IllegalArgumentException for a negative size
+    */
+   VirtualFileInfoCache(int maxSize)
+   {
+      setMaxSize(maxSize);
+   }
+
+   /**
+    * Get the cached information for a path
+    * 
+    * @param path the path
+    * @return the information or null if not cached
+    */
+   VirtualFileInfo get(String path)
+   {
+      VirtualFileInfo result = entries.get(path);
+      if (result != null)
+         hits.incrementAndGet();
+      else
+         misses.incrementAndGet();
+      return result;
+   }
+
+   /**
+    * Cache the information for a path
+    * 
+    * @param path the path
+    * @param info the information
+    */
+   void put(String path, VirtualFileInfo info)
+   {
+      if (maxSize == 0)
+         return;
+      if (entries.put(path, info) == null && size.incrementAndGet() > maxSize)
+         evict();
+   }
+
+   /**
+    * Remove the information for a path
+    * 
+    * @param path the path
+    */
+   void remove(String path)
+   {
+      if (entries.remove(path) != null)
+         size.decrementAndGet();
+   }
+
+   /**
+    * Evict entries until we are within the maximum size
+    */
+   private void evict()
+   {
+      Iterator<String> i = entries.keySet().iterator();
+      while (size.get() > maxSize && i.hasNext())
+      {
+         String path = i.next();
+         if (entries.remove(path) != null)
+         {
+            size.decrementAndGet();
+            evictions.incrementAndGet();
+         }
+      }
+   }
+
+   /**
+    * Get the maximum number of entries
+    * 
+    * @return the maximum size
+    */
+   int getMaxSize()
+   {
+      return maxSize;
+   }
+
+   /**
+    * Set the maximum number of entries
+    * 
+    * @param maxSize the maximum size, zero disables caching
+    * @throws IllegalArgumentException for a negative size
+    */
+   void setMaxSize(int maxSize)
+   {
+      if (maxSize < 0)
+         throw new IllegalArgumentException("Negative cache size " + maxSize);
+      this.maxSize = maxSize;
+      evict();
+   }
+
+   /**
+    * Get the number of entries
+    * 
+    * @return the size
+    */
+   int size()
+   {
+      return size.get();
+   }
+
+   /**
+    * Get the number of hits
+    * 
+    * @return the hits
+    */
+   long getHits()
+   {
+      return hits.get();
+   }
+
+   /**
+    * Get the number of misses
+    * 
+    * @return the misses
+    */
+   long getMisses()
+   {
+      return misses.get();
+   }
+
+   /**
+    * Get the number of evictions
+    * 
+    * @return the evictions
+    */
+   long getEvictions()
+   {
+      return evictions.get();
+   }
+}
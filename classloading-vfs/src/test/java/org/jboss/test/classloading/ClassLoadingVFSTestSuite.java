@@ -40,8 +40,10 @@ import org.jboss.test.classloading.vfs.metadata.test.VFSResourceVisitorUnitTestC
 import org.jboss.test.classloading.vfs.metadata.xml.test.VFSClassLoaderFactoryXMLUnitTestCase;
 import org.jboss.test.classloading.vfs.metadata.xml.test.NoopClassLoaderFactoryXMLUnitTestCase;
 import org.jboss.test.classloading.vfs.policy.test.ExportAllUnitTestCase;
+import org.jboss.test.classloading.vfs.policy.test.PackageIndexStoreUnitTestCase;
 import org.jboss.test.classloading.vfs.policy.test.PackageInfoUnitTestCase;
 import org.jboss.test.classloading.vfs.policy.test.ShutdownUnitTestCase;
+import org.jboss.test.classloading.vfs.policy.test.VFSCacheUnitTestCase;
 import org.jboss.test.classloading.vfs.policy.test.VFSCLPolicySignedCertsUnitTestCase;
 
 /**
@@ -89,6 +91,8 @@ public class ClassLoadingVFSTestSuite extends TestSuite
       suite.addTest(GeneratedClassesUnitTestCase.suite());
       suite.addTest(VFSCLPolicySignedCertsUnitTestCase.suite());
       suite.addTest(ShutdownUnitTestCase.suite());
+      suite.addTest(VFSCacheUnitTestCase.suite());
+      suite.addTest(PackageIndexStoreUnitTestCase.suite());
 
       return suite;
    }
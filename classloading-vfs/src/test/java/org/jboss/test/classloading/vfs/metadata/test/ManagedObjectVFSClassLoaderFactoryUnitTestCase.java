@@ -73,7 +73,7 @@ public class ManagedObjectVFSClassLoaderFactoryUnitTestCase extends BaseTestCase
    {
       ManagedObject result = moFactory.initManagedObject(test, null, null);
       assertNotNull(result);
-      List<String> expectedProperties = Arrays.asList("name", "version", "context", "domain", "parentDomain", "topLevelClassLoader", "exportAll", "shutdown", "included", "includedMetaData", "excluded", "excludedMetaData", "excludedExport", "excludedExportMetaData", "importAll", "parentFirst", "cache", "blackList", "system", "roots", "capabilities", "requirements", "parentPolicy");
+      List<String> expectedProperties = Arrays.asList("name", "version", "context", "domain", "parentDomain", "topLevelClassLoader", "exportAll", "shutdown", "included", "includedMetaData", "excluded", "excludedMetaData", "excludedExport", "excludedExportMetaData", "importAll", "parentFirst", "cache", "blackList", "cache-size", "package-scan-threads", "package-index", "indexed", "system", "roots", "capabilities", "requirements", "parentPolicy");
       Set<String> actualProperties = result.getPropertyNames();
       for (String expected : expectedProperties)
       {
@@ -284,6 +284,38 @@ public class ManagedObjectVFSClassLoaderFactoryUnitTestCase extends BaseTestCase
       assertManagedProperty(mo, "blackList", boolean.class, false);
    }
 
+   public void testCacheSize() throws Exception
+   {
+      VFSClassLoaderFactory test = new VFSClassLoaderFactory();
+      test.setCacheSize(10);
+      ManagedObject mo = assertManagedObject(test);
+      assertManagedProperty(mo, "cache-size", Integer.class, 10);
+   }
+
+   public void testPackageScanThreads() throws Exception
+   {
+      VFSClassLoaderFactory test = new VFSClassLoaderFactory();
+      test.setPackageScanThreads(4);
+      ManagedObject mo = assertManagedObject(test);
+      assertManagedProperty(mo, "package-scan-threads", Integer.class, 4);
+   }
+
+   public void testPackageIndex() throws Exception
+   {
+      VFSClassLoaderFactory test = new VFSClassLoaderFactory();
+      test.setPackageIndex("packages.idx");
+      ManagedObject mo = assertManagedObject(test);
+      assertManagedProperty(mo, "package-index", String.class, "packages.idx");
+   }
+
+   public void testIndexed() throws Exception
+   {
+      VFSClassLoaderFactory test = new VFSClassLoaderFactory();
+      test.setIndexed(true);
+      ManagedObject mo = assertManagedObject(test);
+      assertManagedProperty(mo, "indexed", boolean.class, true);
+   }
+
    public void testSetSystem() throws Exception
    {
       VFSClassLoaderFactory test = new VFSClassLoaderFactory();
@@ -25,8 +25,12 @@ import java.io.Closeable;
 import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import org.jboss.classloading.spi.metadata.ExportAll;
+import org.jboss.classloading.spi.vfs.dependency.VFSClassLoaderPolicyModule;
+import org.jboss.classloading.spi.vfs.metadata.VFSClassLoaderFactory;
 import org.jboss.kernel.spi.deployment.KernelDeployment;
 import org.jboss.test.classloading.vfs.metadata.VFSClassLoadingMicrocontainerTest;
 import org.jboss.vfs.VFS;
@@ -264,4 +268,39 @@ public class VFSClassLoaderFactoryUnitTestCase extends VFSClassLoadingMicroconta
          VFSUtils.safeClose(closeables);
       }
    }
+
+   public void testIndexed() throws Exception
+   {
+      assertLookups(false);
+      assertLookups(true);
+   }
+
+   protected void assertLookups(boolean indexed) throws Exception
+   {
+      URL root = getResource("/classloader/testjar1");
+      assertNotNull(root);
+      VFSClassLoaderFactory factory = new VFSClassLoaderFactory("indexed");
+      factory.setRoots(Arrays.asList(root.toExternalForm()));
+      factory.setExportAll(ExportAll.NON_EMPTY);
+      factory.setIndexed(indexed);
+      KernelDeployment deployment = install(factory);
+      try
+      {
+         validate();
+         ClassLoader cl = assertClassLoader(factory);
+         VFSClassLoaderPolicyModule module = assertInstanceOf(assertModule(getContextName(factory)), VFSClassLoaderPolicyModule.class);
+         assertEquals(indexed, module.getPolicy().isIndexed());
+
+         assertNotNull(cl.getResource("package1/notempty"));
+         assertNotNull(cl.getResource("package2/subpackage1/notempty"));
+         assertNull(cl.getResource("package1/doesnotexist"));
+         assertNull(cl.getResource("doesnotexist/notempty"));
+      }
+      finally
+      {
+         undeploy(deployment);
+      }
+      validate();
+      assertNoClassLoader(factory);
+   }
 }
@@ -193,6 +193,30 @@ public class VFSClassLoaderFactoryXMLUnitTestCase extends AbstractJBossXBTest
       assertFalse(result.isCacheable());
    }
 
+   public void testModuleCacheSize() throws Exception
+   {
+      VFSClassLoaderFactory result = unmarshal();
+      assertEquals(new Integer(10), result.getCacheSize());
+   }
+
+   public void testModulePackageScanThreads() throws Exception
+   {
+      VFSClassLoaderFactory result = unmarshal();
+      assertEquals(new Integer(4), result.getPackageScanThreads());
+   }
+
+   public void testModulePackageIndex() throws Exception
+   {
+      VFSClassLoaderFactory result = unmarshal();
+      assertEquals("packages.idx", result.getPackageIndex());
+   }
+
+   public void testModuleIndexed() throws Exception
+   {
+      VFSClassLoaderFactory result = unmarshal();
+      assertTrue(result.isIndexed());
+   }
+
    public void testModuleBlackList() throws Exception
    {
       VFSClassLoaderFactory result = unmarshal();
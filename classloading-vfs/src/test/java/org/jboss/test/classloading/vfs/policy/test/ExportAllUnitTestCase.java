@@ -30,11 +30,15 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
 import org.jboss.classloader.plugins.system.DefaultClassLoaderSystem;
 import org.jboss.classloader.spi.ClassLoaderSystem;
+import org.jboss.classloading.plugins.vfs.PackageVisitor;
+import org.jboss.classloading.plugins.vfs.PathIndex;
 import org.jboss.classloading.spi.metadata.ExportAll;
 import org.jboss.classloading.spi.vfs.policy.VFSClassLoaderPolicy;
 import org.jboss.test.BaseTestCase;
@@ -71,8 +75,35 @@ public class ExportAllUnitTestCase extends BaseTestCase
    }
 
    protected void testExportAllCommon(ExportAll exportAll, Map<String, String> expected, Set<String> empty, VirtualFile[] files, VirtualFile[] excluded) throws Exception
+   {
+      testExportAllCommon(exportAll, expected, empty, files, excluded, false);
+      testExportAllCommon(exportAll, expected, empty, files, excluded, true);
+      testExportAllParallel(exportAll, expected, files, excluded);
+   }
+
+   protected void testExportAllParallel(ExportAll exportAll, Map<String, String> expected, VirtualFile[] files, VirtualFile[] excluded) throws Exception
+   {
+      PathIndex serialIndex = new PathIndex();
+      PackageVisitor.determineAllPackages(files, excluded, exportAll, null, null, null, serialIndex);
+
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try
+      {
+         PathIndex index = new PathIndex();
+         Set<String> actual = PackageVisitor.determineAllPackages(files, excluded, exportAll, null, null, null, index, executor, 3);
+         assertEquals(expected.keySet(), actual);
+         assertEquals(serialIndex.toString(), index.toString());
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+
+   protected void testExportAllCommon(ExportAll exportAll, Map<String, String> expected, Set<String> empty, VirtualFile[] files, VirtualFile[] excluded, boolean indexed) throws Exception
    {
       VFSClassLoaderPolicy policy = VFSClassLoaderPolicy.createVFSClassLoaderPolicy(files, excluded);
+      policy.setIndexed(indexed);
       policy.setExportAll(exportAll);
       
       String[] packageNames = policy.getPackageNames();
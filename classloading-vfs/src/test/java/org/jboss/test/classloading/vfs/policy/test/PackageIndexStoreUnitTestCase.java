@@ -0,0 +1,291 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloading.vfs.policy.test;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import junit.framework.Test;
+
+import org.jboss.classloader.spi.filter.PackageClassFilter;
+import org.jboss.classloading.plugins.vfs.PackageIndexStore;
+import org.jboss.classloading.plugins.vfs.PackageVisitor;
+import org.jboss.classloading.spi.metadata.ExportAll;
+import org.jboss.test.BaseTestCase;
+import org.jboss.vfs.TempFileProvider;
+import org.jboss.vfs.VFS;
+import org.jboss.vfs.VFSUtils;
+import org.jboss.vfs.VirtualFile;
+
+/**
+ * Tests of remembering the packages of roots across restarts
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class PackageIndexStoreUnitTestCase extends BaseTestCase
+{
+   /** The temporary directory */
+   private File directory;
+
+   /** The archive */
+   private File archive;
+
+   /** The temporary file provider */
+   private TempFileProvider provider;
+
+   /** The mount of the archive */
+   private Closeable handle;
+
+   public PackageIndexStoreUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public static Test suite()
+   {
+      return suite(PackageIndexStoreUnitTestCase.class);
+   }
+
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+      directory = File.createTempFile("packageindex", "");
+      assertTrue(directory.delete());
+      assertTrue(directory.mkdir());
+      archive = new File(directory, "lib.jar");
+      createArchive(archive, "a/A.txt", "a/b/B.txt", "empty/");
+      provider = TempFileProvider.create("test", new ScheduledThreadPoolExecutor(2));
+      VirtualFile root = VFS.getChild(archive.toURI());
+      handle = VFS.mountZip(root, root, provider);
+   }
+
+   protected void tearDown() throws Exception
+   {
+      VFSUtils.safeClose(handle);
+      VFSUtils.safeClose(provider);
+      delete(directory);
+      super.tearDown();
+   }
+
+   public void testStoredPackagesAreReused() throws Exception
+   {
+      File file = new File(directory, "packages.idx");
+      VirtualFile root = VFS.getChild(archive.toURI());
+      VirtualFile[] roots = { root };
+
+      PackageIndexStore store = new PackageIndexStore(file);
+      Set<String> packages = PackageVisitor.determineAllPackages(roots, null, ExportAll.NON_EMPTY, null, null, null, null, null, 1, store);
+      assertEquals(makeSet("a", "a.b"), packages);
+      assertEquals(1, store.size());
+      store.store();
+      assertTrue(file.exists());
+
+      // A restart reads the file
+      store = new PackageIndexStore(file);
+      assertEquals(makeSet("a", "a.b"), store.getPackages(root, ExportAll.NON_EMPTY));
+      assertNull(store.getPackages(root, ExportAll.ALL));
+
+      // Check the stored packages are used and still filtered
+      store.putPackages(root, ExportAll.NON_EMPTY, makeSet("a", "a.b", "stored"));
+      PackageClassFilter excluded = PackageClassFilter.createPackageClassFilter("a");
+      packages = PackageVisitor.determineAllPackages(roots, null, ExportAll.NON_EMPTY, null, excluded, null, null, null, 1, store);
+      assertEquals(makeSet("a.b", "stored"), packages);
+   }
+
+   public void testChangedArchiveIsScanned() throws Exception
+   {
+      File file = new File(directory, "packages.idx");
+      VirtualFile root = VFS.getChild(archive.toURI());
+      VirtualFile[] roots = { root };
+
+      PackageIndexStore store = new PackageIndexStore(file);
+      store.putPackages(root, ExportAll.NON_EMPTY, makeSet("stored"));
+      assertTrue(archive.setLastModified(archive.lastModified() - 10000));
+      assertNull(store.getPackages(root, ExportAll.NON_EMPTY));
+
+      Set<String> packages = PackageVisitor.determineAllPackages(roots, null, ExportAll.NON_EMPTY, null, null, null, null, null, 1, store);
+      assertEquals(makeSet("a", "a.b"), packages);
+      assertEquals(makeSet("a", "a.b"), store.getPackages(root, ExportAll.NON_EMPTY));
+   }
+
+   public void testChangedArchiveReplacesEntry() throws Exception
+   {
+      File file = new File(directory, "packages.idx");
+      VirtualFile root = VFS.getChild(archive.toURI());
+
+      PackageIndexStore store = new PackageIndexStore(file);
+      store.putPackages(root, ExportAll.NON_EMPTY, makeSet("old"));
+      store.putPackages(root, ExportAll.ALL, makeSet("all"));
+      assertTrue(archive.setLastModified(archive.lastModified() - 10000));
+      store.putPackages(root, ExportAll.NON_EMPTY, makeSet("new"));
+      assertEquals(2, store.size());
+      assertEquals(makeSet("new"), store.getPackages(root, ExportAll.NON_EMPTY));
+   }
+
+   public void testStaleEntriesArePrunedOnLoad() throws Exception
+   {
+      File file = new File(directory, "packages.idx");
+      VirtualFile root = VFS.getChild(archive.toURI());
+      File other = new File(directory, "other.jar");
+      createArchive(other, "o/O.txt");
+      VirtualFile otherRoot = VFS.getChild(other.toURI());
+      Closeable otherHandle = VFS.mountZip(otherRoot, otherRoot, provider);
+      try
+      {
+         PackageIndexStore store = new PackageIndexStore(file);
+         store.putPackages(root, ExportAll.NON_EMPTY, makeSet("a", "a.b"));
+         store.putPackages(otherRoot, ExportAll.NON_EMPTY, makeSet("o"));
+         store.store();
+      }
+      finally
+      {
+         VFSUtils.safeClose(otherHandle);
+      }
+
+      // The other archive is removed and ours is changed
+      assertTrue(other.delete());
+      assertTrue(archive.setLastModified(archive.lastModified() - 10000));
+      PackageIndexStore store = new PackageIndexStore(file);
+      assertEquals(0, store.size());
+      long length = file.length();
+
+      // The pruned file is rewritten
+      store.store();
+      assertTrue(file.length() < length);
+      store = new PackageIndexStore(file);
+      assertEquals(0, store.size());
+   }
+
+   public void testDirectoriesAreNotStored() throws Exception
+   {
+      File plain = new File(directory, "classes");
+      createFile(new File(plain, "c/C.txt"));
+      VirtualFile root = VFS.getChild(plain.toURI());
+
+      PackageIndexStore store = new PackageIndexStore(new File(directory, "packages.idx"));
+      Set<String> packages = PackageVisitor.determineAllPackages(new VirtualFile[] { root }, null, ExportAll.NON_EMPTY, null, null, null, null, null, 1, store);
+      assertEquals(makeSet("c"), packages);
+      assertEquals(0, store.size());
+   }
+
+   public void testExplodedArchivesAreNotStored() throws Exception
+   {
+      File exploded = new File(directory, "exploded.jar");
+      createFile(new File(exploded, "d/D.txt"));
+      VirtualFile root = VFS.getChild(exploded.toURI());
+      assertFalse(PackageIndexStore.isStorable(root));
+
+      PackageIndexStore store = new PackageIndexStore(new File(directory, "packages.idx"));
+      Set<String> packages = PackageVisitor.determineAllPackages(new VirtualFile[] { root }, null, ExportAll.NON_EMPTY, null, null, null, null, null, 1, store);
+      assertEquals(makeSet("d"), packages);
+      assertEquals(0, store.size());
+
+      // A change to the contents is seen
+      createFile(new File(exploded, "e/E.txt"));
+      packages = PackageVisitor.determineAllPackages(new VirtualFile[] { root }, null, ExportAll.NON_EMPTY, null, null, null, null, null, 1, store);
+      assertEquals(makeSet("d", "e"), packages);
+   }
+
+   public void testCorruptFileIsIgnored() throws Exception
+   {
+      File file = new File(directory, "packages.idx");
+      FileOutputStream out = new FileOutputStream(file);
+      try
+      {
+         out.write("rubbish".getBytes());
+      }
+      finally
+      {
+         out.close();
+      }
+
+      VirtualFile root = VFS.getChild(archive.toURI());
+      PackageIndexStore store = new PackageIndexStore(file);
+      assertEquals(0, store.size());
+      Set<String> packages = PackageVisitor.determineAllPackages(new VirtualFile[] { root }, null, ExportAll.NON_EMPTY, null, null, null, null, null, 1, store);
+      assertEquals(makeSet("a", "a.b"), packages);
+
+      // It is rewritten
+      store.store();
+      store = new PackageIndexStore(file);
+      assertEquals(makeSet("a", "a.b"), store.getPackages(root, ExportAll.NON_EMPTY));
+   }
+
+   protected Set<String> makeSet(String... strings)
+   {
+      Set<String> result = new HashSet<String>();
+      Collections.addAll(result, strings);
+      return result;
+   }
+
+   protected void createFile(File file) throws IOException
+   {
+      file.getParentFile().mkdirs();
+      FileOutputStream out = new FileOutputStream(file);
+      try
+      {
+         out.write(file.getName().getBytes());
+      }
+      finally
+      {
+         out.close();
+      }
+   }
+
+   protected void createArchive(File file, String... entries) throws IOException
+   {
+      JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+      try
+      {
+         for (String entry : entries)
+         {
+            out.putNextEntry(new JarEntry(entry));
+            if (entry.endsWith("/") == false)
+               out.write(entry.getBytes());
+            out.closeEntry();
+         }
+      }
+      finally
+      {
+         out.close();
+      }
+   }
+
+   protected void delete(File file)
+   {
+      File[] children = file.listFiles();
+      if (children != null)
+      {
+         for (File child : children)
+            delete(child);
+      }
+      file.delete();
+   }
+}
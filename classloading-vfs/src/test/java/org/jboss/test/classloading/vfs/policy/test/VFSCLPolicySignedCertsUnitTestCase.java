@@ -109,4 +109,40 @@ public class VFSCLPolicySignedCertsUnitTestCase extends BaseTestCase
          VFSUtils.safeClose(handle);
       }
    }
-}
\ No newline at end of file
+
+   /**
+    * Ensure classes from the same signed root share the protection domain
+    * until the cache is flushed
+    *
+    * @throws Exception for any error
+    */
+   public void testSharedProtectionDomain() throws Exception
+   {
+      URL signedJarURL = getResource("/classloader/signedjar");
+      VirtualFile signedJarRoot = VFS.getChild(signedJarURL);
+      VirtualFile signedJar = signedJarRoot.getChild("wstx.jar");
+      Closeable handle = null;
+      try 
+      {
+         handle = VFS.mountZip(signedJar, signedJar, provider);
+         VFSClassLoaderPolicy policy = VFSClassLoaderPolicy.createVFSClassLoaderPolicy(signedJar);
+         policy.setExportAll(ExportAll.ALL);
+   
+         ClassLoaderSystem system = new DefaultClassLoaderSystem();
+         ClassLoader classLoader = system.registerClassLoaderPolicy(policy);
+   
+         ProtectionDomain pd1 = classLoader.loadClass("org.codehaus.stax2.validation.XMLValidator").getProtectionDomain();
+         ProtectionDomain pd2 = classLoader.loadClass("org.codehaus.stax2.validation.XMLValidationSchema").getProtectionDomain();
+         assertSame(pd1, pd2);
+
+         policy.flushProtectionDomains();
+         ProtectionDomain pd3 = classLoader.loadClass("org.codehaus.stax2.validation.ValidatorPair").getProtectionDomain();
+         assertNotSame(pd1, pd3);
+         assertEquals(pd1.getCodeSource(), pd3.getCodeSource());
+      }
+      finally
+      {
+         VFSUtils.safeClose(handle);
+      }
+   }
+}
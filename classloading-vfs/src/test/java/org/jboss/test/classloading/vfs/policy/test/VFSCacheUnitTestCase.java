@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloading.vfs.policy.test;
+
+import java.net.URL;
+
+import junit.framework.Test;
+
+import org.jboss.classloading.spi.vfs.policy.VFSClassLoaderPolicy;
+import org.jboss.test.BaseTestCase;
+import org.jboss.vfs.VFS;
+import org.jboss.vfs.VirtualFile;
+
+/**
+ * Tests of the VFSClassLoaderPolicy virtual file cache
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class VFSCacheUnitTestCase extends BaseTestCase
+{
+   public VFSCacheUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public static Test suite()
+   {
+      return suite(VFSCacheUnitTestCase.class);
+   }
+
+   protected VFSClassLoaderPolicy createPolicy() throws Exception
+   {
+      URL testjar1URL = getResource("/classloader/testjar1");
+      assertNotNull(testjar1URL);
+      VirtualFile testjar1 = VFS.getChild(testjar1URL);
+      return VFSClassLoaderPolicy.createVFSClassLoaderPolicy(testjar1);
+   }
+
+   public void testHitsAndMisses() throws Exception
+   {
+      VFSClassLoaderPolicy policy = createPolicy();
+      assertEquals(VFSClassLoaderPolicy.DEFAULT_CACHE_SIZE, policy.getCacheSize());
+
+      assertNotNull(policy.getResource("package1/notempty"));
+      assertEquals(0, policy.getCacheHits());
+      assertEquals(1, policy.getCacheMisses());
+
+      assertNotNull(policy.getResource("package1/notempty"));
+      assertEquals(1, policy.getCacheHits());
+      assertEquals(1, policy.getCacheMisses());
+
+      assertNull(policy.getResource("package1/doesnotexist"));
+      assertEquals(1, policy.getCacheHits());
+      assertEquals(2, policy.getCacheMisses());
+      assertEquals(0, policy.getCacheEvictions());
+   }
+
+   public void testEviction() throws Exception
+   {
+      VFSClassLoaderPolicy policy = createPolicy();
+      policy.setCacheSize(2);
+
+      assertNotNull(policy.getResource("package1/notempty"));
+      assertNotNull(policy.getResource("package2/notempty"));
+      assertEquals(0, policy.getCacheEvictions());
+      assertNotNull(policy.getResource("package2/subpackage1/notempty"));
+      assertEquals(1, policy.getCacheEvictions());
+
+      policy.setCacheSize(0);
+      assertEquals(3, policy.getCacheEvictions());
+      assertNotNull(policy.getResource("package1/notempty"));
+      assertNotNull(policy.getResource("package1/notempty"));
+      assertEquals(0, policy.getCacheHits());
+      assertEquals(3, policy.getCacheEvictions());
+   }
+
+   public void testNegativeCacheSize() throws Exception
+   {
+      VFSClassLoaderPolicy policy = createPolicy();
+      try
+      {
+         policy.setCacheSize(-1);
+         fail("Should not be here!");
+      }
+      catch (Throwable t)
+      {
+         checkThrowable(IllegalArgumentException.class, t);
+      }
+   }
+}
@@ -0,0 +1,629 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.classloading.spi.dependency;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.jboss.classloading.plugins.metadata.ModuleCapability;
+import org.jboss.classloading.plugins.metadata.ModuleRequirement;
+import org.jboss.classloading.plugins.metadata.PackageCapability;
+import org.jboss.classloading.plugins.metadata.PackageRequirement;
+import org.jboss.classloading.plugins.metadata.WildcardPackageRequirement;
+import org.jboss.classloading.spi.metadata.Capability;
+import org.jboss.classloading.spi.metadata.Requirement;
+import org.jboss.classloading.spi.version.Version;
+import org.jboss.classloading.spi.version.VersionRange;
+
+/**
+ * The capabilities of the modules in a domain indexed by type and name.<p>
+ * 
+ * Module and package capabilities are indexed by name, package names are sorted
+ * so wildcard package requirements become a range lookup. The capabilities for
+ * a name are also sorted by version so the version range is a binary search.
+ * Other capabilities, including subclasses that may resolve differently,
+ * are always candidates. Candidates are returned in module registration order.<p>
+ * 
+ * A module is indexed once its capabilities are known, until then it is pending.
+ * 
+ * @version $Revision: 1.1 $
+ */
+class CapabilityIndex
+{
+   /** Compares entries by registration order */
+   private static final Comparator<Entry> ORDER = new Comparator<Entry>()
+   {
+      public int compare(Entry o1, Entry o2)
+      {
+         return o1.getOrder() - o2.getOrder();
+      }
+   };
+
+   /** Compares entries by version */
+   private static final Comparator<Entry> VERSION = new Comparator<Entry>()
+   {
+      public int compare(Entry o1, Entry o2)
+      {
+         return o1.getVersion().compareTo(o2.getVersion());
+      }
+   };
+
+   /** The modules whose capabilities are not indexed yet with their registration order */
+   private final Map<Module, Integer> pending = new IdentityHashMap<Module, Integer>();
+
+   /** The registration order of all the modules */
+   private final Map<Module, Integer> orders = new IdentityHashMap<Module, Integer>();
+
+   /** The indexed capabilities by module */
+   private final Map<Module, List<Entry>> indexed = new IdentityHashMap<Module, List<Entry>>();
+
+   /** The module capabilities by name */
+   private final Map<String, Candidates> moduleCapabilities = new HashMap<String, Candidates>();
+
+   /** The package capabilities by name */
+   private final SortedMap<String, Candidates> packageCapabilities = new TreeMap<String, Candidates>();
+
+   /** The capabilities that are not indexed by name */
+   private final List<Entry> otherCapabilities = new ArrayList<Entry>();
+
+   /** The next registration order */
+   private int nextOrder;
+
+   /**
+    * Add a module
+    * 
+    * @param module the module
+    */
+   synchronized void addModule(Module module)
+   {
+      Integer order = nextOrder++;
+      orders.put(module, order);
+      pending.put(module, order);
+   }
+
+   /**
+    * Remove a module
+    * 
+    * @param module the module
+    */
+   synchronized void removeModule(Module module)
+   {
+      orders.remove(module);
+      unindex(module);
+   }
+
+   /**
+    * Reset a module, its capabilities are indexed again once they are known
+    * 
+    * @param module the module
+    */
+   synchronized void resetModule(Module module)
+   {
+      Integer order = orders.get(module);
+      if (order == null)
+         return;
+      unindex(module);
+      pending.put(module, order);
+   }
+
+   /**
+    * Get the registration order of a module
+    * 
+    * @param module the module
+    * @return the order or null if the module is not registered
+    */
+   synchronized Integer getOrder(Module module)
+   {
+      return orders.get(module);
+   }
+
+   /**
+    * Remove the indexed capabilities of a module
+    * 
+    * @param module the module
+    */
+   private void unindex(Module module)
+   {
+      pending.remove(module);
+      List<Entry> entries = indexed.remove(module);
+      if (entries == null)
+         return;
+      for (Entry entry : entries)
+      {
+         if (entry.getKind() == Entry.MODULE)
+            remove(moduleCapabilities, entry);
+         else if (entry.getKind() == Entry.PACKAGE)
+            remove(packageCapabilities, entry);
+         else
+            otherCapabilities.remove(entry);
+      }
+   }
+
+   /**
+    * Index the pending modules
+    * 
+    * @param determine whether to determine capabilities that are not known yet
+    * @return the modules that are still pending or null if there are none
+    */
+   List<Module> indexPending(boolean determine)
+   {
+      List<Module> modules;
+      synchronized (this)
+      {
+         if (pending.isEmpty())
+            return null;
+         modules = new ArrayList<Module>(pending.keySet());
+      }
+
+      // Work out the capabilities outside the lock
+      List<List<Capability>> capabilities = new ArrayList<List<Capability>>(modules.size());
+      for (Module module : modules)
+      {
+         if (determine)
+            capabilities.add(module.getCapabilities());
+         else
+            capabilities.add(module.getCapabilitiesRaw());
+      }
+
+      List<Module> result = null;
+      synchronized (this)
+      {
+         for (int i = 0; i < modules.size(); ++i)
+         {
+            Module module = modules.get(i);
+            List<Capability> moduleCapabilities = capabilities.get(i);
+            if (pending.containsKey(module) == false)
+               continue;
+            // A module without capabilities stays pending, it is matched by name and version
+            if (moduleCapabilities == null || moduleCapabilities.isEmpty())
+            {
+               if (result == null)
+                  result = new ArrayList<Module>();
+               result.add(module);
+               continue;
+            }
+            index(module, pending.remove(module), moduleCapabilities);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Get the candidates for a requirement
+    * 
+    * @param requirement the requirement
+    * @return the candidates in registration order or null if the requirement is not indexed
+    */
+   synchronized List<Entry> getCandidates(Requirement requirement)
+   {
+      if (requirement instanceof ModuleRequirement)
+      {
+         ModuleRequirement moduleRequirement = (ModuleRequirement) requirement;
+         return select(moduleCapabilities.get(moduleRequirement.getName()), moduleRequirement.getVersionRange());
+      }
+
+      if (requirement instanceof PackageRequirement == false)
+         return null;
+
+      PackageRequirement packageRequirement = (PackageRequirement) requirement;
+      String name = packageRequirement.getName();
+      VersionRange range = packageRequirement.getVersionRange();
+      if (packageRequirement.isWildcard() == false)
+         return select(packageCapabilities.get(name), range);
+
+      // Work out the packages the wildcard can match, the capability still checks its filter
+      String prefix = null;
+      Class<?> type = requirement.getClass();
+      if (type == WildcardPackageRequirement.class)
+         prefix = name;
+      else if (type == PackageRequirement.class && name.endsWith(".*"))
+         prefix = name.substring(0, name.length() - 2);
+      else if (type == PackageRequirement.class && "*".equals(name) == false)
+         return select(packageCapabilities.get(name), range);
+
+      Collection<Candidates> matching;
+      if (prefix == null || prefix.length() == 0)
+      {
+         matching = packageCapabilities.values();
+      }
+      else
+      {
+         matching = new ArrayList<Candidates>();
+         Candidates exact = packageCapabilities.get(prefix);
+         if (exact != null)
+            matching.add(exact);
+         // '/' follows '.' so this is everything in the subpackages
+         matching.addAll(packageCapabilities.subMap(prefix + '.', prefix + '/').values());
+      }
+
+      List<Entry> result = new ArrayList<Entry>(otherCapabilities);
+      for (Candidates candidates : matching)
+         candidates.select(range, result);
+      Collections.sort(result, ORDER);
+      return result;
+   }
+
+   /**
+    * Select the candidates in a version range with the other capabilities
+    * 
+    * @param candidates the candidates, can be null
+    * @param range the version range
+    * @return the selected entries in registration order
+    */
+   private List<Entry> select(Candidates candidates, VersionRange range)
+   {
+      List<Entry> result = new ArrayList<Entry>(otherCapabilities);
+      if (candidates != null)
+      {
+         candidates.select(range, result);
+         if (otherCapabilities.isEmpty() == false || candidates.size() > 1)
+            Collections.sort(result, ORDER);
+      }
+      return result;
+   }
+
+   /**
+    * Index the capabilities of a module
+    * 
+    * @param module the module
+    * @param order the registration order
+    * @param capabilities the capabilities
+    */
+   private void index(Module module, int order, List<Capability> capabilities)
+   {
+      List<Entry> entries = new ArrayList<Entry>(capabilities.size());
+      for (Capability capability : capabilities)
+      {
+         Entry entry;
+         if (capability.getClass() == ModuleCapability.class)
+         {
+            entry = new Entry(module, capability, order, Entry.MODULE);
+            add(moduleCapabilities, ((ModuleCapability) capability).getName(), entry);
+         }
+         else if (capability.getClass() == PackageCapability.class)
+         {
+            entry = new Entry(module, capability, order, Entry.PACKAGE);
+            add(packageCapabilities, ((PackageCapability) capability).getName(), entry);
+         }
+         else
+         {
+            entry = new Entry(module, capability, order, Entry.OTHER);
+            insert(otherCapabilities, entry);
+         }
+         entries.add(entry);
+      }
+      indexed.put(module, entries);
+   }
+
+   /**
+    * Add an entry
+    * 
+    * @param map the map
+    * @param name the name
+    * @param entry the entry
+    */
+   private static void add(Map<String, Candidates> map, String name, Entry entry)
+   {
+      Candidates candidates = map.get(name);
+      if (candidates == null)
+      {
+         candidates = new Candidates();
+         map.put(name, candidates);
+      }
+      candidates.add(entry);
+   }
+
+   /**
+    * Remove an entry
+    * 
+    * @param map the map
+    * @param entry the entry
+    */
+   private static void remove(Map<String, Candidates> map, Entry entry)
+   {
+      String name = entry.getName();
+      Candidates candidates = map.get(name);
+      if (candidates != null)
+      {
+         candidates.remove(entry);
+         if (candidates.size() == 0)
+            map.remove(name);
+      }
+   }
+
+   /**
+    * Insert an entry in registration order, modules are usually indexed in order
+    * 
+    * @param entries the entries
+    * @param entry the entry
+    */
+   private static void insert(List<Entry> entries, Entry entry)
+   {
+      int i = entries.size();
+      while (i > 0 && entries.get(i - 1).getOrder() > entry.getOrder())
+         --i;
+      entries.add(i, entry);
+   }
+
+   /**
+    * Whether a version is one of the built in version types
+    * 
+    * @param version the version
+    * @return true for a Version or a String
+    */
+   private static boolean isVersion(Object version)
+   {
+      return version != null && (version.getClass() == Version.class || version.getClass() == String.class);
+   }
+
+   /**
+    * Convert a built in version type to a Version
+    * 
+    * @param version the version
+    * @return the version or null if it is not a built in type
+    */
+   private static Version toVersion(Object version)
+   {
+      if (isVersion(version) == false)
+         return null;
+      if (version instanceof Version)
+         return (Version) version;
+      try
+      {
+         return Version.parseVersion((String) version);
+      }
+      catch (RuntimeException ignored)
+      {
+         return null;
+      }
+   }
+
+   /**
+    * The capabilities with the same name sorted by version
+    */
+   private static class Candidates
+   {
+      /** The entries */
+      private final List<Entry> entries = new ArrayList<Entry>(1);
+
+      /** The entries with a built in version type sorted by version, null when it needs rebuilding */
+      private Entry[] sorted;
+
+      /** The entries whose version can only be checked by the capability */
+      private List<Entry> unsorted;
+
+      /**
+       * Add an entry
+       * 
+       * @param entry the entry
+       */
+      void add(Entry entry)
+      {
+         entries.add(entry);
+         sorted = null;
+      }
+
+      /**
+       * Remove an entry
+       * 
+       * @param entry the entry
+       */
+      void remove(Entry entry)
+      {
+         if (entries.remove(entry))
+            sorted = null;
+      }
+
+      /**
+       * The number of entries
+       * 
+       * @return the size
+       */
+      int size()
+      {
+         return entries.size();
+      }
+
+      /**
+       * Select the entries that can be in a version range
+       * 
+       * @param range the range, can be null
+       * @param result the result to add to
+       */
+      void select(VersionRange range, List<Entry> result)
+      {
+         if (range == null || range == VersionRange.ALL_VERSIONS || entries.size() == 1 || isVersion(range.getLow()) == false
+               || (range.getHigh() != null && isVersion(range.getHigh()) == false))
+         {
+            result.addAll(entries);
+            return;
+         }
+
+         if (sorted == null)
+            sort();
+
+         // The first entry that is not below the range
+         int low = 0;
+         int high = sorted.length;
+         while (low < high)
+         {
+            int mid = (low + high) >>> 1;
+            if (range.isBelowRange(sorted[mid].getVersion()))
+               low = mid + 1;
+            else
+               high = mid;
+         }
+         for (int i = low; i < sorted.length && range.isAboveRange(sorted[i].getVersion()) == false; ++i)
+            result.add(sorted[i]);
+
+         if (unsorted != null)
+            result.addAll(unsorted);
+      }
+
+      /**
+       * Sort the entries by version
+       */
+      private void sort()
+      {
+         List<Entry> versions = new ArrayList<Entry>(entries.size());
+         List<Entry> others = null;
+         for (Entry entry : entries)
+         {
+            if (entry.getVersion() != null)
+            {
+               versions.add(entry);
+            }
+            else
+            {
+               if (others == null)
+                  others = new ArrayList<Entry>(1);
+               others.add(entry);
+            }
+         }
+         Collections.sort(versions, VERSION);
+         unsorted = others;
+         sorted = versions.toArray(new Entry[versions.size()]);
+      }
+   }
+
+   /**
+    * An indexed capability
+    */
+   static class Entry
+   {
+      /** A module capability */
+      static final int MODULE = 0;
+
+      /** A package capability */
+      static final int PACKAGE = 1;
+
+      /** Another capability */
+      static final int OTHER = 2;
+
+      /** The module */
+      private final Module module;
+
+      /** The capability */
+      private final Capability capability;
+
+      /** The registration order of the module */
+      private final int order;
+
+      /** The kind */
+      private final int kind;
+
+      /** The version of a module or package capability, null if it is not a built in type */
+      private final Version version;
+
+      /**
+       * Create a new Entry.
+       * 
+       * @param module the module
+       * @param capability the capability
+       * @param order the registration order
+       * @param kind the kind
+       */
+      Entry(Module module, Capability capability, int order, int kind)
+      {
+         this.module = module;
+         this.capability = capability;
+         this.order = order;
+         this.kind = kind;
+         if (kind == MODULE)
+            version = toVersion(((ModuleCapability) capability).getVersion());
+         else if (kind == PACKAGE)
+            version = toVersion(((PackageCapability) capability).getVersion());
+         else
+            version = null;
+      }
+
+      /**
+       * Get the module.
+       * 
+       * @return the module.
+       */
+      Module getModule()
+      {
+         return module;
+      }
+
+      /**
+       * Get the capability.
+       * 
+       * @return the capability.
+       */
+      Capability getCapability()
+      {
+         return capability;
+      }
+
+      /**
+       * Get the order.
+       * 
+       * @return the order.
+       */
+      int getOrder()
+      {
+         return order;
+      }
+
+      /**
+       * Get the kind.
+       * 
+       * @return the kind.
+       */
+      int getKind()
+      {
+         return kind;
+      }
+
+      /**
+       * Get the version.
+       * 
+       * @return the version or null if it is not a built in type
+       */
+      Version getVersion()
+      {
+         return version;
+      }
+
+      /**
+       * Get the name of an indexed capability
+       * 
+       * @return the name
+       */
+      String getName()
+      {
+         if (kind == MODULE)
+            return ((ModuleCapability) capability).getName();
+         return ((PackageCapability) capability).getName();
+      }
+   }
+}
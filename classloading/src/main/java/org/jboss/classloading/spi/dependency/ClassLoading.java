@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jboss.classloader.spi.ClassLoaderSystem;
 import org.jboss.classloading.spi.metadata.Capability;
@@ -62,6 +63,9 @@ public class ClassLoading implements Resolver, ClassLoadingAdmin
    /** The resolvers */
    private List<Resolver> resolvers = null;
 
+   /** The number of times modules or domains were added or modules were reset */
+   private final AtomicInteger moduleChanges = new AtomicInteger();
+
    /**
     * Add a module
     *
@@ -210,6 +214,36 @@ public class ClassLoading implements Resolver, ClassLoadingAdmin
       return false;
    }
    
+   /**
+    * Whether there are resolvers
+    * 
+    * @return true when there are resolvers
+    */
+   boolean hasResolvers()
+   {
+      List<Resolver> resolvers = this.resolvers;
+      return resolvers != null && resolvers.isEmpty() == false;
+   }
+
+   /**
+    * Get the number of times modules or domains were added or modules were reset
+    * 
+    * @return the count
+    */
+   int getModuleChanges()
+   {
+      return moduleChanges.get();
+   }
+
+   /**
+    * Invoked when a module or domain is added or a module is reset,
+    * a requirement that could not be resolved before may resolve now
+    */
+   void moduleChanged()
+   {
+      moduleChanges.incrementAndGet();
+   }
+
    /**
     * Get or create the domain
     * 
@@ -230,6 +264,7 @@ public class ClassLoading implements Resolver, ClassLoadingAdmin
          {
             domain = createDomain(domainName, parentDomainName, parentFirst);
             domains.put(domainName, domain);
+            moduleChanged();
          }
       }
       return domain;
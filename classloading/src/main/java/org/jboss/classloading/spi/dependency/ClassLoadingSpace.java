@@ -21,6 +21,7 @@
 */
 package org.jboss.classloading.spi.dependency;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -29,9 +30,14 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.jboss.classloading.plugins.metadata.ModuleRequirement;
 import org.jboss.classloading.plugins.metadata.PackageCapability;
 import org.jboss.classloading.plugins.metadata.PackageCapability.SplitPackagePolicy;
+import org.jboss.classloading.plugins.metadata.PackageRequirement;
+import org.jboss.classloading.plugins.metadata.UsesPackageRequirement;
+import org.jboss.classloading.plugins.metadata.WildcardPackageRequirement;
 import org.jboss.classloading.spi.metadata.Requirement;
+import org.jboss.classloading.spi.metadata.helpers.AbstractRequirement;
 import org.jboss.logging.Logger;
 import org.jboss.util.collection.ConcurrentSet;
 
@@ -65,6 +71,9 @@ public class ClassLoadingSpace
    /** The requirements for all modules */
    private Map<Module, List<RequirementDependencyItem>> requirements = new ConcurrentHashMap<Module, List<RequirementDependencyItem>>();
 
+   /** The requirements for all modules by requirement name, guarded by this space */
+   private Map<String, List<RequirementDependencyItem>> requirementsByName = new HashMap<String, List<RequirementDependencyItem>>();
+
    /** The space cache */
    private ClassLoadingSpaceCache cache;
 
@@ -189,15 +198,86 @@ public class ClassLoadingSpace
       
       if (ourSize >= otherSize)
       {
-         joinAndResolve(space.getModules());
+         merge(space);
          cache.merge(space.getCache());
       }
       else
       {
-         space.joinAndResolve(getModules());
+         space.merge(this);
          space.getCache().merge(cache);
       }
    }
+
+   /**
+    * Merge the modules of another classloading space into this one.<p>
+    * 
+    * The other space's modules are already consistent with each other so only
+    * they are checked against this space before the indexes are merged in one go.
+    * 
+    * @param space the classloading space
+    */
+   private synchronized void merge(ClassLoadingSpace space)
+   {
+      List<Module> merged;
+      synchronized (space)
+      {
+         merged = new ArrayList<Module>(space.modules);
+         if (merged.isEmpty())
+            return;
+         Map<Module, List<RequirementDependencyItem>> mergedRequirements = new HashMap<Module, List<RequirementDependencyItem>>(space.requirements);
+
+         if (trace)
+            log.trace(space + " merging into " + this);
+
+         // Check everything before changing anything
+         for (Module module : merged)
+         {
+            checkPackages(module, module.determinePackageNames(false));
+            checkRequirements(module, mergedRequirements.get(module));
+         }
+
+         space.getCache().flushCaches();
+         space.modules.clear();
+         space.modulesByPackage.clear();
+         space.requirements.clear();
+         space.requirementsByName.clear();
+
+         for (Module module : merged)
+            add(module, module.determinePackageNames(false), mergedRequirements.get(module));
+      }
+
+      Module current = null;
+      try
+      {
+         for (Module module : merged)
+         {
+            current = module;
+            resolve(module);
+         }
+      }
+      catch (Throwable t)
+      {
+         // Put the modules back where they were
+         for (Module module : merged)
+         {
+            split(module);
+            try
+            {
+               space.join(module);
+            }
+            catch (Throwable t2)
+            {
+               log.error(module + " could not join " + space, t);
+               throw new RuntimeException("BUG: " + module + " could not rejoin " + space + " after failing to join " + this, t2);
+            }
+         }
+         if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+         if (t instanceof Error)
+            throw (Error) t;
+         throw new RuntimeException(current + " could not join " + this, t);
+      }
+   }
    
    /**
     * Split with a module
@@ -244,48 +324,149 @@ public class ClassLoadingSpace
       List<String> exportedPackages = module.determinePackageNames(false);
       
       // Check there are no conflicting packages
-      if (exportedPackages != null && exportedPackages.isEmpty() == false)
+      checkPackages(module, exportedPackages);
+
+      // Check our requirements are consistent with the other requirements
+      List<RequirementDependencyItem> moduleDependencies = module.getDependencies();
+      checkRequirements(module, moduleDependencies);
+      
+      // Remove from any previous space
+      if (other != null)
+         other.split(module);
+      
+      add(module, exportedPackages, moduleDependencies);
+   }
+
+   /**
+    * Check a module's exported packages don't conflict with this space
+    * 
+    * @param module the module
+    * @param exportedPackages the packages exported by the module
+    * @throws IllegalStateException for a conflict
+    */
+   private void checkPackages(Module module, List<String> exportedPackages)
+   {
+      if (exportedPackages == null || exportedPackages.isEmpty() || modulesByPackage.isEmpty())
+         return;
+
+      // Look up the smaller side in the larger one
+      if (modulesByPackage.size() < exportedPackages.size())
+      {
+         Set<String> exportedSet = module.determineRequiredPackageNamesSet();
+         for (Entry<String, Module> entry : modulesByPackage.entrySet())
+         {
+            if (exportedSet.contains(entry.getKey()))
+               checkPackage(module, entry.getKey(), entry.getValue());
+         }
+      }
+      else
       {
          for (String exportedPackage : exportedPackages)
          {
             Module otherModule = modulesByPackage.get(exportedPackage);
             if (otherModule != null)
-            {
-               PackageCapability exportCapability = module.getExportCapability(exportedPackage);
-               if (exportCapability.getSplitPackagePolicy() == SplitPackagePolicy.Error)
-               {
-                  // TODO JBCL-22 ERRORS
-                  throw new IllegalStateException(module + " cannot be added because it is exports package " + exportedPackage + " which conflicts with " + otherModule);
-               }
-            }
+               checkPackage(module, exportedPackage, otherModule);
          }
       }
+   }
 
-      // Check our requirements are consistent with the other requirements
-      List<RequirementDependencyItem> moduleDependencies = module.getDependencies();
-      if (requirements.isEmpty() == false)
+   /**
+    * Check a package exported by a module and another module in this space
+    * 
+    * @param module the module
+    * @param exportedPackage the package
+    * @param otherModule the other module exporting the package
+    * @throws IllegalStateException for a conflict
+    */
+   private void checkPackage(Module module, String exportedPackage, Module otherModule)
+   {
+      PackageCapability exportCapability = module.getExportCapability(exportedPackage);
+      if (exportCapability.getSplitPackagePolicy() == SplitPackagePolicy.Error)
+      {
+         // TODO JBCL-22 ERRORS
+         throw new IllegalStateException(module + " cannot be added because it is exports package " + exportedPackage + " which conflicts with " + otherModule);
+      }
+   }
+
+   /**
+    * Check a module's requirements are consistent with the requirements in this space
+    * 
+    * @param module the module
+    * @param moduleDependencies the module's requirement dependencies
+    * @throws IllegalStateException for an inconsistency
+    */
+   private void checkRequirements(Module module, List<RequirementDependencyItem> moduleDependencies)
+   {
+      if (requirements.isEmpty() || moduleDependencies == null || moduleDependencies.isEmpty())
+         return;
+
+      for (RequirementDependencyItem dependency : moduleDependencies)
       {
-         if (moduleDependencies != null && moduleDependencies.isEmpty() == false)
+         Requirement requirement = dependency.getRequirement();
+         if (isNameConsistent(requirement))
          {
-            for (RequirementDependencyItem dependency : moduleDependencies)
+            // Only requirements with the same name can be inconsistent
+            List<RequirementDependencyItem> dependencies = requirementsByName.get(((AbstractRequirement) requirement).getName());
+            if (dependencies != null)
             {
-               Requirement requirement = dependency.getRequirement();
-               for (Entry<Module, List<RequirementDependencyItem>> entry : requirements.entrySet())
-               {
-                  Module otherModule = entry.getKey();
-                  List<RequirementDependencyItem> dependencies = entry.getValue();
-                  for (RequirementDependencyItem otherDependency : dependencies)
-                  {
-                     Requirement otherRequirement = otherDependency.getRequirement();
-                     // TODO JBCL-22 ERRORS
-                     if (requirement.isConsistent(otherRequirement) == false)
-                        throw new IllegalStateException(module + " has a requirement " + requirement + " which is inconsistent with " + otherRequirement + " from " + otherModule);
-                  }
-               }
+               for (RequirementDependencyItem otherDependency : dependencies)
+                  checkConsistent(module, requirement, otherDependency.getModule(), otherDependency);
+            }
+         }
+         else
+         {
+            for (Entry<Module, List<RequirementDependencyItem>> entry : requirements.entrySet())
+            {
+               Module otherModule = entry.getKey();
+               List<RequirementDependencyItem> dependencies = entry.getValue();
+               for (RequirementDependencyItem otherDependency : dependencies)
+                  checkConsistent(module, requirement, otherModule, otherDependency);
             }
          }
       }
-      
+   }
+
+   /**
+    * Check a requirement is consistent with another
+    * 
+    * @param module the module
+    * @param requirement the requirement
+    * @param otherModule the other module
+    * @param otherDependency the other requirement dependency
+    * @throws IllegalStateException for an inconsistency
+    */
+   private static void checkConsistent(Module module, Requirement requirement, Module otherModule, RequirementDependencyItem otherDependency)
+   {
+      Requirement otherRequirement = otherDependency.getRequirement();
+      // TODO JBCL-22 ERRORS
+      if (requirement.isConsistent(otherRequirement) == false)
+         throw new IllegalStateException(module + " has a requirement " + requirement + " which is inconsistent with " + otherRequirement + " from " + otherModule);
+   }
+
+   /**
+    * Whether a requirement can only be inconsistent with a requirement of the same name.<p>
+    * 
+    * True for the built in requirements that use the AbstractRequirement check.
+    * 
+    * @param requirement the requirement
+    * @return true when only the requirements with the same name need checking
+    */
+   private static boolean isNameConsistent(Requirement requirement)
+   {
+      Class<?> type = requirement.getClass();
+      return type == AbstractRequirement.class || type == ModuleRequirement.class || type == PackageRequirement.class
+         || type == WildcardPackageRequirement.class || type == UsesPackageRequirement.class;
+   }
+
+   /**
+    * Add a checked module to this space
+    * 
+    * @param module the module
+    * @param exportedPackages the packages exported by the module
+    * @param moduleDependencies the module's requirement dependencies
+    */
+   private void add(Module module, List<String> exportedPackages, List<RequirementDependencyItem> moduleDependencies)
+   {
       // Update the exported packages
       if (exportedPackages != null && exportedPackages.isEmpty() == false)
       {
@@ -300,11 +481,24 @@ public class ClassLoadingSpace
       
       // Remember the module requirements
       if (moduleDependencies != null && moduleDependencies.isEmpty() == false)
+      {
          requirements.put(module, moduleDependencies);
-      
-      // Remove from any previous space
-      if (other != null)
-         other.split(module);
+         for (RequirementDependencyItem dependency : moduleDependencies)
+         {
+            Requirement requirement = dependency.getRequirement();
+            if (requirement instanceof AbstractRequirement)
+            {
+               String name = ((AbstractRequirement) requirement).getName();
+               List<RequirementDependencyItem> dependencies = requirementsByName.get(name);
+               if (dependencies == null)
+               {
+                  dependencies = new ArrayList<RequirementDependencyItem>();
+                  requirementsByName.put(name, dependencies);
+               }
+               dependencies.add(dependency);
+            }
+         }
+      }
       
       // This module is now part of our space
       modules.add(module);
@@ -334,7 +528,25 @@ public class ClassLoadingSpace
       }
 
       // Remove the module requirements from the classloading space
-      requirements.remove(module);
+      List<RequirementDependencyItem> moduleDependencies = requirements.remove(module);
+      if (moduleDependencies != null)
+      {
+         for (RequirementDependencyItem dependency : moduleDependencies)
+         {
+            Requirement requirement = dependency.getRequirement();
+            if (requirement instanceof AbstractRequirement)
+            {
+               String name = ((AbstractRequirement) requirement).getName();
+               List<RequirementDependencyItem> dependencies = requirementsByName.get(name);
+               if (dependencies != null)
+               {
+                  dependencies.remove(dependency);
+                  if (dependencies.isEmpty())
+                     requirementsByName.remove(name);
+               }
+            }
+         }
+      }
       
       // No longer part of this classloading space
       modules.remove(module);
@@ -23,6 +23,7 @@ package org.jboss.classloading.spi.dependency;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -67,6 +68,9 @@ public class Domain implements ClassLoadingAdmin
    /** The registered modules by name */
    private Map<String, Module> modulesByName = new ConcurrentHashMap<String, Module>();
 
+   /** The capabilities of the registered modules */
+   private CapabilityIndex capabilities = new CapabilityIndex();
+
    /**
     * Create a new Domain.
     *
@@ -158,6 +162,8 @@ public class Domain implements ClassLoadingAdmin
       module.setDomain(this);
       modulesByName.put(contextName, module);
       modules.add(module);
+      capabilities.addModule(module);
+      classLoading.moduleChanged();
       try
       {
          module.createDependencies();
@@ -199,11 +205,23 @@ public class Domain implements ClassLoadingAdmin
          space.split(module);
 
       module.removeDependencies();
+      capabilities.removeModule(module);
       modules.remove(module);
       modulesByName.remove(module.getContextName());
       module.setDomain(null);
    }
 
+   /**
+    * Invoked when a module is reset so its capabilities are indexed again
+    *
+    * @param module the module
+    */
+   void resetModule(Module module)
+   {
+      capabilities.resetModule(module);
+      classLoading.moduleChanged();
+   }
+
    /**
     * Get a module for a context name
     *
@@ -299,19 +317,38 @@ public class Domain implements ClassLoadingAdmin
             return result;
       }
 
-      for (Module other : modules)
+      capabilities.indexPending(true);
+      List<CapabilityIndex.Entry> candidates = capabilities.getCandidates(requirement);
+      if (candidates != null)
+      {
+         for (CapabilityIndex.Entry candidate : candidates)
+         {
+            Capability capability = candidate.getCapability();
+            if (capability.resolves(module, requirement))
+            {
+               if (log.isTraceEnabled())
+                  log.trace("Requirement " + requirement + " resolves against " + capability);
+
+               return candidate.getModule();
+            }
+         }
+      }
+      else
       {
-         List<Capability> capabilities = other.getCapabilities();
-         if (capabilities != null)
+         for (Module other : modules)
          {
-            for (Capability capability : capabilities)
+            List<Capability> capabilities = other.getCapabilities();
+            if (capabilities != null)
             {
-               if (capability.resolves(module, requirement))
+               for (Capability capability : capabilities)
                {
-                  if (log.isTraceEnabled())
-                     log.trace("Requirement " + requirement + " resolves against " + capability);
+                  if (capability.resolves(module, requirement))
+                  {
+                     if (log.isTraceEnabled())
+                        log.trace("Requirement " + requirement + " resolves against " + capability);
 
-                  return other;
+                     return other;
+                  }
                }
             }
          }
@@ -351,30 +388,43 @@ public class Domain implements ClassLoadingAdmin
       if (range == null)
          range = VersionRange.ALL_VERSIONS;
 
-      for (Module module : modules)
+      // Modules without known capabilities match on their name and version,
+      // the first one in registration order ends the search
+      Module last = null;
+      int lastOrder = Integer.MAX_VALUE;
+      List<Module> unknown = capabilities.indexPending(false);
+      if (unknown != null)
       {
-         List<Capability> capabilities = module.getCapabilitiesRaw();
-         if (capabilities != null && capabilities.isEmpty() == false)
+         for (Module module : unknown)
          {
-            ModuleRequirement requirement = new ModuleRequirement(name, range);
-            for (Capability capability : capabilities)
+            if (name.equals(module.getName()) && range.isInRange(module.getVersion()))
             {
-               if (capability.resolves(module, requirement))
+               Integer order = capabilities.getOrder(module);
+               if (order != null && order < lastOrder)
                {
-                  result.add(module);
-                  break;
+                  last = module;
+                  lastOrder = order;
                }
             }
          }
-         else
+      }
+
+      ModuleRequirement requirement = new ModuleRequirement(name, range);
+      Module previous = null;
+      for (CapabilityIndex.Entry candidate : capabilities.getCandidates(requirement))
+      {
+         if (candidate.getOrder() > lastOrder)
+            break;
+         Module module = candidate.getModule();
+         // One match per module
+         if (module != previous && candidate.getCapability().resolves(module, requirement))
          {
-            if (name.equals(module.getName()) && range.isInRange(module.getVersion()))
-            {
-               result.add(module);
-               return;
-            }
+            result.add(module);
+            previous = module;
          }
       }
+      if (last != null)
+         result.add(last);
    }
 
    public Collection<ImportModule> getImportedModules(String name, VersionRange range)
@@ -451,20 +501,22 @@ public class Domain implements ClassLoadingAdmin
       if (range == null)
          range = VersionRange.ALL_VERSIONS;
 
-      for (Module module : modules)
+      capabilities.indexPending(false);
+      PackageRequirement requirement = new PackageRequirement(name, range);
+      Map<Module, Boolean> found = null;
+      for (CapabilityIndex.Entry candidate : capabilities.getCandidates(requirement))
       {
-         List<Capability> capabilities = module.getCapabilitiesRaw();
-         if (capabilities != null && capabilities.isEmpty() == false)
+         Module module = candidate.getModule();
+         Capability capability = candidate.getCapability();
+         if (capability instanceof PackageCapability && capability.resolves(module, requirement))
          {
-            PackageRequirement requirement = new PackageRequirement(name, range);
-            for (Capability capability : capabilities)
+            // One package per module
+            if (found == null)
+               found = new IdentityHashMap<Module, Boolean>();
+            if (found.put(module, Boolean.TRUE) == null)
             {
-               if (capability instanceof PackageCapability && capability.resolves(module, requirement))
-               {
-                  ExportPackage exportPackage = new ExportPackage(module, (PackageCapability)capability);
-                  result.add(exportPackage);
-                  break;
-               }
+               ExportPackage exportPackage = new ExportPackage(module, (PackageCapability)capability);
+               result.add(exportPackage);
             }
          }
       }
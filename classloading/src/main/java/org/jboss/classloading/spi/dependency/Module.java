@@ -78,6 +78,18 @@ public abstract class Module extends NameAndVersionSupport
    /** Our cached requirements */
    private List<Requirement> requirements;
 
+   /** Our cached package names including optional packages */
+   private volatile List<String> packageNames;
+
+   /** Our cached package names excluding optional packages */
+   private volatile List<String> requiredPackageNames;
+
+   /** Our cached package names excluding optional packages as a set */
+   private volatile Set<String> requiredPackageNamesSet;
+
+   /** Our cached package names including optional packages as an array */
+   private volatile String[] packageNamesArray;
+
    /** The controller context */
    private ControllerContext context;
 
@@ -1049,18 +1061,64 @@ public abstract class Module extends NameAndVersionSupport
     */
    public String[] getPackageNames()
    {
-      List<String> packageNames = determinePackageNames(true);
-      return packageNames.toArray(new String[packageNames.size()]);
+      String[] result = packageNamesArray;
+      if (result == null)
+      {
+         List<String> packageNames = determinePackageNames(true);
+         result = packageNames.toArray(new String[packageNames.size()]);
+         packageNamesArray = result;
+      }
+      return result.clone();
    }
 
    /**
-    * Determine the package names
+    * Determine the package names, they are cached until the module is reset.<p>
+    * 
+    * The returned list is shared by all callers so it cannot be modified,
+    * callers that want to change it must take a copy.
     * 
     * TODO JBCL-23 Better handling of conflicts for optional packages
     * @param optional whether to include optional packages
-    * @return the package names
+    * @return the unmodifiable package names
     */
    public List<String> determinePackageNames(boolean optional)
+   {
+      List<String> result = optional ? packageNames : requiredPackageNames;
+      if (result == null)
+      {
+         result = Collections.unmodifiableList(computePackageNames(optional));
+         if (optional)
+            packageNames = result;
+         else
+            requiredPackageNames = result;
+      }
+      return result;
+   }
+
+   /**
+    * Determine the package names excluding optional packages as a set for lookups,
+    * it is cached until the module is reset
+    * 
+    * @return the unmodifiable package names
+    */
+   Set<String> determineRequiredPackageNamesSet()
+   {
+      Set<String> result = requiredPackageNamesSet;
+      if (result == null)
+      {
+         result = Collections.unmodifiableSet(new HashSet<String>(determinePackageNames(false)));
+         requiredPackageNamesSet = result;
+      }
+      return result;
+   }
+
+   /**
+    * Work out the package names
+    * 
+    * @param optional whether to include optional packages
+    * @return the package names
+    */
+   private List<String> computePackageNames(boolean optional)
    {
       List<String> packageNames = Collections.emptyList();
 
@@ -1083,22 +1141,38 @@ public abstract class Module extends NameAndVersionSupport
          }
       }
 
+      if (optional || packageNames.isEmpty())
+         return packageNames;
+
+      Set<String> optionalPackages = null;
       List<Requirement> requirements = getRequirements();
       if (requirements != null && requirements.isEmpty() == false)
       {
-         for (Requirement requirement : getRequirements())
+         for (Requirement requirement : requirements)
          {
-            if (optional == false && requirement instanceof OptionalPackages)
+            if (requirement instanceof OptionalPackages)
             {
                OptionalPackages exported = (OptionalPackages) requirement;
-               Set<String> optionalPackages = exported.getOptionalPackageNames(this);
-               if (optionalPackages != null && packageNames.isEmpty() == false)
-                  packageNames.removeAll(optionalPackages);
+               Set<String> names = exported.getOptionalPackageNames(this);
+               if (names != null && names.isEmpty() == false)
+               {
+                  if (optionalPackages == null)
+                     optionalPackages = new HashSet<String>();
+                  optionalPackages.addAll(names);
+               }
             }
          }
       }
+      if (optionalPackages == null)
+         return packageNames;
 
-      return packageNames;
+      List<String> result = new ArrayList<String>(packageNames.size());
+      for (String packageName : packageNames)
+      {
+         if (optionalPackages.contains(packageName) == false)
+            result.add(packageName);
+      }
+      return result;
    }
    
    /**
@@ -1407,6 +1481,13 @@ public abstract class Module extends NameAndVersionSupport
          unregisterModuleClassLoader(this, classLoader);
       this.capabilities = null;
       this.requirements = null;
+      this.packageNames = null;
+      this.requiredPackageNames = null;
+      this.requiredPackageNamesSet = null;
+      this.packageNamesArray = null;
+      Domain domain = this.domain;
+      if (domain != null)
+         domain.resetModule(this);
    }
 
    @Override
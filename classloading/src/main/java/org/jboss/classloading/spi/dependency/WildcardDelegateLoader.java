@@ -25,6 +25,8 @@ package org.jboss.classloading.spi.dependency;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.jboss.classloader.plugins.ClassLoaderUtils;
 import org.jboss.classloader.spi.ClassLoaderPolicy;
@@ -52,6 +54,12 @@ class WildcardDelegateLoader extends FilteredDelegateLoader
    private Module module;
    private VersionRange range;
 
+   /** The resolved loaders by package */
+   private final ConcurrentMap<String, DelegateLoader> resolved = new ConcurrentHashMap<String, DelegateLoader>();
+
+   /** The packages no module exported with the module changes when they were checked */
+   private final ConcurrentMap<String, Integer> missing = new ConcurrentHashMap<String, Integer>();
+
    public WildcardDelegateLoader(Controller controller, ClassLoaderPolicyFactory factory, ClassFilter filter, RequirementDependencyItem item)
    {
       super(factory, filter);
@@ -76,6 +84,25 @@ class WildcardDelegateLoader extends FilteredDelegateLoader
     */
    protected DelegateLoader resolve(String pckg)
    {
+      DelegateLoader result = resolved.get(pckg);
+      if (result != null)
+         return result;
+
+      // Nothing exported the package and no module was added since
+      ClassLoading classLoading = getClassLoading();
+      int changes = 0;
+      if (classLoading != null)
+      {
+         changes = classLoading.getModuleChanges();
+         Integer checked = missing.get(pckg);
+         if (checked != null)
+         {
+            if (checked == changes)
+               return null;
+            missing.remove(pckg, checked);
+         }
+      }
+
       Requirement requirement = new PackageRequirement(pckg, range);
       ControllerState state = module.getClassLoaderState();
       // resolve both sides of the wire at the same state
@@ -93,11 +120,29 @@ class WildcardDelegateLoader extends FilteredDelegateLoader
 
          module.addIDependOn(item);
 
+         resolved.put(pckg, loader);
          return loader;
       }
+
+      // Remember the miss when no module has the package, resolvers may install one on demand
+      if (classLoading != null && item.getResolvedModule() == null && classLoading.hasResolvers() == false && classLoading.getModuleChanges() == changes)
+         missing.put(pckg, changes);
       return null;
    }
 
+   /**
+    * Get the classloading of the module
+    * 
+    * @return the classloading or null if the module is not in a domain
+    */
+   private ClassLoading getClassLoading()
+   {
+      Domain domain = module.getDomain();
+      if (domain == null)
+         return null;
+      return domain.getClassLoading();
+   }
+
    @Override
    public String[] getPackageNames()
    {
@@ -151,6 +196,7 @@ class WildcardDelegateLoader extends FilteredDelegateLoader
          {
             ClassLoaderPolicy policy = getPolicy();
             policy.removeExtraDelegate(loader);
+            resolved.remove(((PackageRequirement) getRequirement()).getName(), loader);
          }
 
          Object iDependOn = getIDependOn();
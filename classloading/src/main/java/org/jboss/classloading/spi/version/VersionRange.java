@@ -47,6 +47,15 @@ public class VersionRange implements Serializable
    /** Whether high is inclusive */
    private boolean highInclusive;
    
+   /** Whether the bounds are versions, null until it is worked out */
+   private transient volatile Boolean versionBounds;
+   
+   /** The low range as a version */
+   private transient Version lowVersion;
+   
+   /** The high range as a version */
+   private transient Version highVersion;
+   
    /** All versions */
    public static final VersionRange ALL_VERSIONS = new VersionRange(Version.DEFAULT_VERSION);
    
@@ -257,23 +266,64 @@ public class VersionRange implements Serializable
       if (version == null)
          throw new IllegalArgumentException("Null version");
       
-      VersionComparatorRegistry comparator = VersionComparatorRegistry.getInstance();
+      version = normalize(version);
+      return isBelow(version) == false && isAbove(version) == false;
+   }
+
+   /**
+    * Test whether a version is lower than the range
+    * 
+    * @param version the version to test
+    * @return true when the version is lower than the low range
+    * @throws IllegalArgumentException for a null version
+    */
+   public boolean isBelowRange(Object version)
+   {
+      if (version == null)
+         throw new IllegalArgumentException("Null version");
       
-      int comparison = comparator.compare(low, version);
-      if (comparison > 0)
-         return false;
-      if (lowInclusive == false && comparison == 0)
-         return false;
+      return isBelow(normalize(version));
+   }
 
-      if (high != null)
-      {
-         comparison = comparator.compare(high, version);
-         if (comparison < 0)
-            return false;
-         if (highInclusive == false && comparison == 0)
-            return false;
-      }
-      return true;
+   /**
+    * Test whether a version is higher than the range
+    * 
+    * @param version the version to test
+    * @return true when the version is higher than the high range
+    * @throws IllegalArgumentException for a null version
+    */
+   public boolean isAboveRange(Object version)
+   {
+      if (version == null)
+         throw new IllegalArgumentException("Null version");
+      
+      return isAbove(normalize(version));
+   }
+
+   /**
+    * Test whether a normalized version is lower than the range
+    * 
+    * @param version the version
+    * @return true when it is lower
+    */
+   private boolean isBelow(Object version)
+   {
+      int comparison = compareLow(version);
+      return comparison > 0 || (lowInclusive == false && comparison == 0);
+   }
+
+   /**
+    * Test whether a normalized version is higher than the range
+    * 
+    * @param version the version
+    * @return true when it is higher
+    */
+   private boolean isAbove(Object version)
+   {
+      if (high == null)
+         return false;
+      int comparison = compareHigh(version);
+      return comparison < 0 || (highInclusive == false && comparison == 0);
    }
 
    /**
@@ -290,17 +340,20 @@ public class VersionRange implements Serializable
       
       Object otherLow = other.getLow();
       Object otherHigh = other.getHigh();
-      
-      VersionComparatorRegistry comparator = VersionComparatorRegistry.getInstance();
+      if (other.hasVersionBounds())
+      {
+         otherLow = other.lowVersion;
+         otherHigh = other.highVersion;
+      }
       
       // Other low is "lower"
-      int comparison = comparator.compare(low, otherLow);
+      int comparison = compareLow(otherLow);
       if (comparison > 0 || (lowInclusive == false && comparison == 0))
       {
          // Just need to check that the other high is not lower
          if (otherHigh == null)
             return true;
-         comparison = comparator.compare(low, otherHigh);
+         comparison = compareLow(otherHigh);
          return (comparison > 0 || (lowInclusive == false && comparison == 0)) == false;
       }
 
@@ -311,7 +364,7 @@ public class VersionRange implements Serializable
          return true;
       
       // Check the other low is not "bigger" than our higher
-      comparison = comparator.compare(high, otherLow);
+      comparison = compareHigh(otherLow);
       if (comparison < 0 || (highInclusive == false && comparison == 0))
          return false;
       
@@ -319,6 +372,98 @@ public class VersionRange implements Serializable
       return true;
    }
    
+   /**
+    * Compare the low range with a version
+    * 
+    * @param version the normalized version
+    * @return the compare result
+    */
+   private int compareLow(Object version)
+   {
+      if (version != null && version.getClass() == Version.class && hasVersionBounds())
+         return lowVersion.compareTo((Version) version);
+      return VersionComparatorRegistry.getInstance().compare(low, version);
+   }
+
+   /**
+    * Compare the high range with a version
+    * 
+    * @param version the normalized version
+    * @return the compare result
+    */
+   private int compareHigh(Object version)
+   {
+      if (version != null && version.getClass() == Version.class && hasVersionBounds())
+         return highVersion.compareTo((Version) version);
+      return VersionComparatorRegistry.getInstance().compare(high, version);
+   }
+
+   /**
+    * Whether the bounds are Versions or Strings.<p>
+    * 
+    * The built in comparators for those can't be replaced,
+    * so they are compared directly rather than through the registry.
+    * 
+    * @return true when the bounds can be compared as versions
+    */
+   private boolean hasVersionBounds()
+   {
+      Boolean result = versionBounds;
+      if (result == null)
+      {
+         Version lowVersion = toVersion(low);
+         Version highVersion = toVersion(high);
+         this.lowVersion = lowVersion;
+         this.highVersion = highVersion;
+         result = lowVersion != null && (high == null || highVersion != null);
+         versionBounds = result;
+      }
+      return result;
+   }
+
+   /**
+    * Normalize a version for comparison with the bounds
+    * 
+    * @param version the version
+    * @return the version as a Version if it can be compared directly or the version itself
+    */
+   private Object normalize(Object version)
+   {
+      if (hasVersionBounds())
+      {
+         Version result = toVersion(version);
+         if (result != null)
+            return result;
+      }
+      return version;
+   }
+
+   /**
+    * Convert a built in version type to a Version
+    * 
+    * @param version the version
+    * @return the version or null if it is not a built in type
+    */
+   private static Version toVersion(Object version)
+   {
+      if (version == null)
+         return null;
+      if (version.getClass() == Version.class)
+         return (Version) version;
+      if (version.getClass() == String.class)
+      {
+         try
+         {
+            return Version.parseVersion((String) version);
+         }
+         catch (RuntimeException ignored)
+         {
+            return null;
+         }
+      }
+      return null;
+   }
+
    @Override
    public boolean equals(Object obj)
    {
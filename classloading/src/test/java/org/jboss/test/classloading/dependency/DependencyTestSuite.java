@@ -73,6 +73,7 @@ public class DependencyTestSuite extends TestSuite
       suite.addTest(ClassLoadingAdminUnitTestCase.suite());
       suite.addTest(ClassLoadingAdminLazyShutdownUnitTestCase.suite());
       suite.addTest(ClassLoadingSpaceUnitTestCase.suite());
+      suite.addTest(CapabilityIndexUnitTestCase.suite());
 
       return suite;
    }
@@ -0,0 +1,253 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.classloading.dependency.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.Test;
+
+import org.jboss.classloading.spi.dependency.ExportPackage;
+import org.jboss.classloading.spi.dependency.Module;
+import org.jboss.classloading.spi.dependency.policy.mock.MockClassLoadingMetaData;
+import org.jboss.classloading.spi.metadata.Capability;
+import org.jboss.classloading.spi.metadata.ClassLoadingMetaDataFactory;
+import org.jboss.kernel.spi.dependency.KernelControllerContext;
+import org.jboss.test.classloading.dependency.support.a.A;
+
+/**
+ * Checks the lookups of modules and packages by capability
+ * as the modules of a domain come and go.
+ * 
+ * @version $Revision: 1.1 $
+ */
+public class CapabilityIndexUnitTestCase extends AbstractMockClassLoaderUnitTest
+{
+   public static Test suite()
+   {
+      return suite(CapabilityIndexUnitTestCase.class);
+   }
+
+   public CapabilityIndexUnitTestCase(String name)
+   {
+      super(name);
+   }
+
+   public void testRemoveModule() throws Exception
+   {
+      ClassLoadingMetaDataFactory factory = ClassLoadingMetaDataFactory.getInstance();
+      MockClassLoadingMetaData a = new MockClassLoadingMetaData("a");
+      a.getCapabilities().addCapability(factory.createModule("ModuleA"));
+      a.getCapabilities().addCapability(factory.createPackage("org.foo"));
+      KernelControllerContext contextA = install(a);
+      try
+      {
+         Module module = assertModule(contextA);
+         assertEquals(makeSet(module), classLoading.getModules("ModuleA", null));
+         assertEquals(makeSet(module), getExportingModules("org.foo"));
+      }
+      finally
+      {
+         uninstall(contextA);
+      }
+      assertTrue(classLoading.getModules("ModuleA", null).isEmpty());
+      assertTrue(getExportingModules("org.foo").isEmpty());
+
+      // Registered again
+      contextA = install(a);
+      try
+      {
+         Module module = assertModule(contextA);
+         assertEquals(makeSet(module), classLoading.getModules("ModuleA", null));
+         assertEquals(makeSet(module), getExportingModules("org.foo"));
+      }
+      finally
+      {
+         uninstall(contextA);
+      }
+   }
+
+   public void testResetModule() throws Exception
+   {
+      ClassLoadingMetaDataFactory factory = ClassLoadingMetaDataFactory.getInstance();
+      MockClassLoadingMetaData a = new MockClassLoadingMetaData("a");
+      Capability capability = factory.createModule("ModuleA");
+      a.getCapabilities().addCapability(capability);
+      KernelControllerContext contextA = install(a);
+      try
+      {
+         Module module = assertModule(contextA);
+         assertEquals(makeSet(module), classLoading.getModules("ModuleA", null));
+
+         // The capabilities are indexed again once they are determined
+         a.getCapabilities().removeCapability(capability);
+         a.getCapabilities().addCapability(factory.createModule("ModuleA2"));
+         module.reset();
+         module.getCapabilities();
+         assertTrue(classLoading.getModules("ModuleA", null).isEmpty());
+         assertEquals(makeSet(module), classLoading.getModules("ModuleA2", null));
+      }
+      finally
+      {
+         uninstall(contextA);
+      }
+      assertTrue(classLoading.getModules("ModuleA2", null).isEmpty());
+   }
+
+   public void testWildcardPackagePrefix() throws Exception
+   {
+      ClassLoadingMetaDataFactory factory = ClassLoadingMetaDataFactory.getInstance();
+      MockClassLoadingMetaData a = new MockClassLoadingMetaData("a");
+      a.getCapabilities().addCapability(factory.createPackage("org.foo.x"));
+      KernelControllerContext contextA = install(a);
+      try
+      {
+         MockClassLoadingMetaData b = new MockClassLoadingMetaData("b");
+         b.getCapabilities().addCapability(factory.createPackage("org.foobar"));
+         KernelControllerContext contextB = install(b);
+         try
+         {
+            Module moduleA = assertModule(contextA);
+            Module moduleB = assertModule(contextB);
+            assertEquals(makeSet(moduleA), getExportingModules("org.foo.*"));
+            assertEquals(makeSet(moduleA, moduleB), getExportingModules("*"));
+            assertEquals(makeSet(moduleB), getExportingModules("org.foobar"));
+            assertTrue(getExportingModules("org.fo.*").isEmpty());
+         }
+         finally
+         {
+            uninstall(contextB);
+         }
+         assertEquals(makeSet(assertModule(contextA)), getExportingModules("*"));
+      }
+      finally
+      {
+         uninstall(contextA);
+      }
+   }
+
+   public void testModulesWithoutCapabilities() throws Exception
+   {
+      ClassLoadingMetaDataFactory factory = ClassLoadingMetaDataFactory.getInstance();
+      MockClassLoadingMetaData x = new MockClassLoadingMetaData("x");
+      x.getCapabilities().addCapability(factory.createModule("a"));
+      KernelControllerContext contextX = install(x);
+      try
+      {
+         MockClassLoadingMetaData a = new MockClassLoadingMetaData("a");
+         a.getCapabilities().setCapabilities(new ArrayList<Capability>());
+         KernelControllerContext contextA = install(a);
+         try
+         {
+            MockClassLoadingMetaData y = new MockClassLoadingMetaData("y");
+            y.getCapabilities().addCapability(factory.createModule("a"));
+            KernelControllerContext contextY = install(y);
+            try
+            {
+               // The module without capabilities matches on its name and ends the search
+               Module moduleX = assertModule(contextX);
+               Module moduleA = assertModule(contextA);
+               assertTrue(moduleA.getCapabilities().isEmpty());
+               assertEquals(makeSet(moduleX, moduleA), classLoading.getModules("a", null));
+               assertTrue(getExportingModules("*").contains(moduleA) == false);
+            }
+            finally
+            {
+               uninstall(contextY);
+            }
+         }
+         finally
+         {
+            uninstall(contextA);
+         }
+         assertEquals(makeSet(assertModule(contextX)), classLoading.getModules("a", null));
+      }
+      finally
+      {
+         uninstall(contextX);
+      }
+      assertTrue(classLoading.getModules("a", null).isEmpty());
+   }
+
+   public void testFirstRegisteredExporterIsUsed() throws Exception
+   {
+      ClassLoadingMetaDataFactory factory = ClassLoadingMetaDataFactory.getInstance();
+      String packageName = A.class.getPackage().getName();
+
+      MockClassLoadingMetaData b = new MockClassLoadingMetaData("b");
+      b.getCapabilities().addCapability(factory.createPackage(packageName));
+      b.setPathsAndPackageNames(A.class);
+      KernelControllerContext contextB = install(b);
+      try
+      {
+         MockClassLoadingMetaData a = new MockClassLoadingMetaData("a");
+         a.getCapabilities().addCapability(factory.createPackage(packageName));
+         a.setPathsAndPackageNames(A.class);
+         KernelControllerContext contextA = install(a);
+         try
+         {
+            ClassLoader clB = assertClassLoader(contextB);
+            assertClassLoader(contextA);
+
+            MockClassLoadingMetaData c = new MockClassLoadingMetaData("c");
+            c.getRequirements().addRequirement(factory.createRequirePackage(packageName));
+            KernelControllerContext contextC = install(c);
+            try
+            {
+               ClassLoader clC = assertClassLoader(contextC);
+               assertLoadClass(A.class, clC, clB);
+            }
+            finally
+            {
+               uninstall(contextC);
+            }
+         }
+         finally
+         {
+            uninstall(contextA);
+         }
+      }
+      finally
+      {
+         uninstall(contextB);
+      }
+   }
+
+   protected Set<Module> getExportingModules(String name)
+   {
+      Set<Module> result = new HashSet<Module>();
+      Collection<ExportPackage> packages = classLoading.getExportedPackages(name, null);
+      for (ExportPackage exportPackage : packages)
+         result.add(exportPackage.getModule());
+      return result;
+   }
+
+   protected <T> Set<T> makeSet(T... objects)
+   {
+      Set<T> result = new HashSet<T>();
+      Collections.addAll(result, objects);
+      return result;
+   }
+}
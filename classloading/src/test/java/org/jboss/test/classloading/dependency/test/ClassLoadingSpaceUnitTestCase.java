@@ -21,14 +21,24 @@
  */
 package org.jboss.test.classloading.dependency.test;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.jboss.classloader.plugins.ClassLoaderUtils;
 import org.jboss.classloader.spi.ClassLoaderCache;
 import org.jboss.classloading.spi.dependency.ClassLoading;
+import org.jboss.classloading.spi.dependency.ClassLoadingSpace;
 import org.jboss.classloading.spi.dependency.Module;
+import org.jboss.classloading.spi.dependency.RequirementDependencyItem;
 import org.jboss.classloading.spi.dependency.policy.mock.MockClassLoadingMetaData;
 import org.jboss.classloading.spi.metadata.ClassLoadingMetaDataFactory;
+import org.jboss.classloading.spi.version.VersionRange;
 import org.jboss.kernel.spi.dependency.KernelControllerContext;
 import org.jboss.test.classloading.dependency.support.a.A;
 import org.jboss.test.classloading.dependency.support.b.B;
@@ -46,6 +56,8 @@ public class ClassLoadingSpaceUnitTestCase extends AbstractMockClassLoaderUnitTe
 {
    private Method getCache;
 
+   private Method getClassLoadingSpace;
+
    public static Test suite()
    {
       return suite(ClassLoadingSpaceUnitTestCase.class);
@@ -63,6 +75,9 @@ public class ClassLoadingSpaceUnitTestCase extends AbstractMockClassLoaderUnitTe
 
       getCache = Module.class.getDeclaredMethod("getCache");
       getCache.setAccessible(true);
+
+      getClassLoadingSpace = Module.class.getDeclaredMethod("getClassLoadingSpace");
+      getClassLoadingSpace.setAccessible(true);
    }
 
    @Override
@@ -73,6 +88,11 @@ public class ClassLoadingSpaceUnitTestCase extends AbstractMockClassLoaderUnitTe
          getCache.setAccessible(false);
          getCache = null;
       }
+      if (getClassLoadingSpace != null)
+      {
+         getClassLoadingSpace.setAccessible(false);
+         getClassLoadingSpace = null;
+      }
 
       super.tearDown();
    }
@@ -91,6 +111,60 @@ public class ClassLoadingSpaceUnitTestCase extends AbstractMockClassLoaderUnitTe
       }
    }
 
+   protected ClassLoadingSpace getClassLoadingSpace(Module module)
+   {
+      try
+      {
+         ClassLoadingSpace result = (ClassLoadingSpace) getClassLoadingSpace.invoke(module);
+         assertNotNull(module + " should have a classloading space", result);
+         return result;
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException(e);
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   protected Map<String, Module> getModulesByPackage(ClassLoadingSpace space)
+   {
+      return getField(space, "modulesByPackage", Map.class);
+   }
+
+   @SuppressWarnings("unchecked")
+   protected Map<String, List<RequirementDependencyItem>> getRequirementsByName(ClassLoadingSpace space)
+   {
+      return getField(space, "requirementsByName", Map.class);
+   }
+
+   protected <T> T getField(ClassLoadingSpace space, String name, Class<T> expected)
+   {
+      try
+      {
+         Field field = ClassLoadingSpace.class.getDeclaredField(name);
+         field.setAccessible(true);
+         try
+         {
+            return expected.cast(field.get(space));
+         }
+         finally
+         {
+            field.setAccessible(false);
+         }
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException(e);
+      }
+   }
+
+   protected <T> Set<T> makeSet(T... objects)
+   {
+      Set<T> result = new HashSet<T>();
+      Collections.addAll(result, objects);
+      return result;
+   }
+
    public void testCacheViaPackages() throws Exception
    {
       MockClassLoadingMetaData a = new MockClassLoadingMetaData("a");
@@ -206,4 +280,180 @@ public class ClassLoadingSpaceUnitTestCase extends AbstractMockClassLoaderUnitTe
       }
       assertNoClassLoader(contextA);
    }
+
+   public void testConflictingPackageOnMerge() throws Exception
+   {
+      ClassLoadingMetaDataFactory factory = ClassLoadingMetaDataFactory.getInstance();
+      String packageA = A.class.getPackage().getName();
+      String packageB = B.class.getPackage().getName();
+
+      MockClassLoadingMetaData x = new MockClassLoadingMetaData("x");
+      x.setPathsAndPackageNames(A.class);
+      KernelControllerContext contextX = install(x);
+      try
+      {
+         MockClassLoadingMetaData y = new MockClassLoadingMetaData("y");
+         y.setPathsAndPackageNames(A.class);
+         KernelControllerContext contextY = install(y);
+         try
+         {
+            MockClassLoadingMetaData z = new MockClassLoadingMetaData("z");
+            z.getRequirements().addRequirement(factory.createRequireModule("y"));
+            z.setPathsAndPackageNames(B.class);
+            KernelControllerContext contextZ = install(z);
+            try
+            {
+               ClassLoader clY = assertClassLoader(contextY);
+               ClassLoader clZ = assertClassLoader(contextZ);
+
+               // w joins x's space and then conflicts with y's space on package A
+               MockClassLoadingMetaData w = new MockClassLoadingMetaData("w");
+               w.getRequirements().addRequirement(factory.createRequireModule("x"));
+               w.getRequirements().addRequirement(factory.createRequireModule("y"));
+               w.setPathsAndPackageNames(C.class);
+               KernelControllerContext contextW = install(w);
+               try
+               {
+                  assertNoClassLoader(contextW);
+
+                  Module moduleX = assertModule(contextX);
+                  Module moduleY = assertModule(contextY);
+                  Module moduleZ = assertModule(contextZ);
+                  ClassLoadingSpace spaceX = getClassLoadingSpace(moduleX);
+                  ClassLoadingSpace spaceY = getClassLoadingSpace(moduleY);
+                  assertNotSame(spaceX, spaceY);
+
+                  // Both spaces are untouched by the failed merge
+                  assertEquals(makeSet(moduleX), spaceX.getModules());
+                  assertEquals(Collections.singletonMap(packageA, moduleX), getModulesByPackage(spaceX));
+                  assertTrue(getRequirementsByName(spaceX).toString(), getRequirementsByName(spaceX).isEmpty());
+
+                  assertEquals(makeSet(moduleY, moduleZ), spaceY.getModules());
+                  Map<String, Module> expected = new HashMap<String, Module>();
+                  expected.put(packageA, moduleY);
+                  expected.put(packageB, moduleZ);
+                  assertEquals(expected, getModulesByPackage(spaceY));
+                  assertEquals(makeSet("y"), getRequirementsByName(spaceY).keySet());
+
+                  // The module that failed to resolve is back in its own space
+                  Module moduleW = assertInstanceOf(contextW.getTarget(), Module.class);
+                  ClassLoadingSpace spaceW = getClassLoadingSpace(moduleW);
+                  assertNotSame(spaceX, spaceW);
+                  assertNotSame(spaceY, spaceW);
+                  assertEquals(makeSet(moduleW), spaceW.getModules());
+                  assertEquals(makeSet("x", "y"), getRequirementsByName(spaceW).keySet());
+
+                  assertLoadClass(A.class, clZ, clY);
+                  assertLoadClass(B.class, clZ);
+               }
+               finally
+               {
+                  uninstall(contextW);
+               }
+               assertNoClassLoader(contextW);
+            }
+            finally
+            {
+               uninstall(contextZ);
+            }
+
+            // The requirements go with the module
+            Module moduleY = assertModule(contextY);
+            ClassLoadingSpace spaceY = getClassLoadingSpace(moduleY);
+            assertEquals(makeSet(moduleY), spaceY.getModules());
+            assertEquals(Collections.singletonMap(packageA, moduleY), getModulesByPackage(spaceY));
+            assertTrue(getRequirementsByName(spaceY).toString(), getRequirementsByName(spaceY).isEmpty());
+         }
+         finally
+         {
+            uninstall(contextY);
+         }
+      }
+      finally
+      {
+         uninstall(contextX);
+      }
+      assertNoClassLoader(contextX);
+   }
+
+   public void testInconsistentRequirementOnMerge() throws Exception
+   {
+      ClassLoadingMetaDataFactory factory = ClassLoadingMetaDataFactory.getInstance();
+      MockClassLoadingMetaData a1 = new MockClassLoadingMetaData("a", "1.0.0");
+      a1.setPathsAndPackageNames(A.class);
+      KernelControllerContext contextA1 = install(a1);
+      try
+      {
+         MockClassLoadingMetaData a2 = new MockClassLoadingMetaData("a", "2.0.0");
+         a2.setPathsAndPackageNames(A.class);
+         KernelControllerContext contextA2 = install(a2);
+         try
+         {
+            MockClassLoadingMetaData b = new MockClassLoadingMetaData("b");
+            b.getRequirements().addRequirement(factory.createRequireModule("a", new VersionRange("2.0.0", "3.0.0")));
+            b.setPathsAndPackageNames(B.class);
+            KernelControllerContext contextB = install(b);
+            try
+            {
+               ClassLoader clA2 = assertClassLoader(contextA2);
+               ClassLoader clB = assertClassLoader(contextB);
+
+               // c's requirement on a is inconsistent with b's
+               MockClassLoadingMetaData c = new MockClassLoadingMetaData("c");
+               c.getRequirements().addRequirement(factory.createRequireModule("b"));
+               c.getRequirements().addRequirement(factory.createRequireModule("a", new VersionRange("1.0.0", "2.0.0")));
+               c.setPathsAndPackageNames(C.class);
+               KernelControllerContext contextC = install(c);
+               try
+               {
+                  assertNoClassLoader(contextC);
+
+                  Module moduleA1 = assertModule(contextA1);
+                  Module moduleA2 = assertModule(contextA2);
+                  Module moduleB = assertModule(contextB);
+                  ClassLoadingSpace spaceA1 = getClassLoadingSpace(moduleA1);
+                  ClassLoadingSpace spaceB = getClassLoadingSpace(moduleB);
+                  assertSame(spaceB, getClassLoadingSpace(moduleA2));
+
+                  assertEquals(makeSet(moduleA1), spaceA1.getModules());
+                  assertTrue(getRequirementsByName(spaceA1).toString(), getRequirementsByName(spaceA1).isEmpty());
+
+                  assertEquals(makeSet(moduleA2, moduleB), spaceB.getModules());
+                  Map<String, List<RequirementDependencyItem>> requirementsByName = getRequirementsByName(spaceB);
+                  assertEquals(makeSet("a"), requirementsByName.keySet());
+                  List<RequirementDependencyItem> dependencies = requirementsByName.get("a");
+                  assertEquals(1, dependencies.size());
+                  assertSame(moduleB, dependencies.get(0).getModule());
+
+                  assertLoadClass(A.class, clB, clA2);
+               }
+               finally
+               {
+                  uninstall(contextC);
+               }
+               assertNoClassLoader(contextC);
+            }
+            finally
+            {
+               uninstall(contextB);
+            }
+            assertNoClassLoader(contextB);
+
+            // Splitting b removes its requirements from the space
+            Module moduleA2 = assertModule(contextA2);
+            ClassLoadingSpace spaceA2 = getClassLoadingSpace(moduleA2);
+            assertEquals(makeSet(moduleA2), spaceA2.getModules());
+            assertTrue(getRequirementsByName(spaceA2).toString(), getRequirementsByName(spaceA2).isEmpty());
+         }
+         finally
+         {
+            uninstall(contextA2);
+         }
+      }
+      finally
+      {
+         uninstall(contextA1);
+      }
+      assertNoClassLoader(contextA1);
+   }
 }
@@ -22,7 +22,10 @@
 package org.jboss.test.classloading.dependency.test;
 
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 
 import junit.framework.Test;
 
@@ -521,4 +524,90 @@ public class ModuleClassLoadingUnitTestCase extends AbstractMockClassLoaderUnitT
          uninstall(contextA3);
       }
    }
+
+   public void testPackageNamesInvalidatedOnReset() throws Exception
+   {
+      MockClassLoadingMetaData a = new MockClassLoadingMetaData("a");
+      a.setPathsAndPackageNames(A.class);
+      KernelControllerContext contextA = install(a);
+      try
+      {
+         Module moduleA = assertModule(contextA);
+         List<String> expected = Collections.singletonList(A.class.getPackage().getName());
+         assertEquals(expected, moduleA.determinePackageNames(false));
+         assertEquals(expected, moduleA.determinePackageNames(true));
+         assertEquals(expected, Arrays.asList(moduleA.getPackageNames()));
+
+         // The cached package names are shared
+         try
+         {
+            moduleA.determinePackageNames(false).add(B.class.getPackage().getName());
+            fail("Should not be able to modify the package names");
+         }
+         catch (UnsupportedOperationException ignored)
+         {
+         }
+         moduleA.getPackageNames()[0] = B.class.getPackage().getName();
+         assertEquals(expected, Arrays.asList(moduleA.getPackageNames()));
+
+         // Worked out again from the changed metadata after a reset
+         a.setPathsAndPackageNames(B.class);
+         moduleA.reset();
+         expected = Collections.singletonList(B.class.getPackage().getName());
+         assertEquals(expected, moduleA.determinePackageNames(false));
+         assertEquals(expected, moduleA.determinePackageNames(true));
+         assertEquals(expected, Arrays.asList(moduleA.getPackageNames()));
+      }
+      finally
+      {
+         uninstall(contextA);
+      }
+   }
+
+   public void testPackageNamesInvalidatedOnRedeploy() throws Exception
+   {
+      ClassLoadingMetaDataFactory factory = ClassLoadingMetaDataFactory.getInstance();
+      MockClassLoadingMetaData a = new MockClassLoadingMetaData("a");
+      a.setPathsAndPackageNames(A.class);
+      KernelControllerContext contextA = install(a);
+      try
+      {
+         Module moduleA = assertModule(contextA);
+         assertEquals(Collections.singletonList(A.class.getPackage().getName()), moduleA.determinePackageNames(false));
+      }
+      finally
+      {
+         uninstall(contextA);
+      }
+
+      a.setPathsAndPackageNames(A.class, B.class);
+      contextA = install(a);
+      try
+      {
+         Module moduleA = assertModule(contextA);
+         List<String> expected = Arrays.asList(A.class.getPackage().getName(), B.class.getPackage().getName());
+         assertEquals(expected, moduleA.determinePackageNames(false));
+         assertEquals(expected, Arrays.asList(moduleA.getPackageNames()));
+
+         // The new package is visible to the classloading space of an importer
+         MockClassLoadingMetaData c = new MockClassLoadingMetaData("c");
+         c.getRequirements().addRequirement(factory.createRequirePackage(B.class.getPackage().getName()));
+         c.setPathsAndPackageNames(C.class);
+         KernelControllerContext contextC = install(c);
+         try
+         {
+            ClassLoader clA = assertClassLoader(contextA);
+            ClassLoader clC = assertClassLoader(contextC);
+            assertLoadClass(B.class, clC, clA);
+         }
+         finally
+         {
+            uninstall(contextC);
+         }
+      }
+      finally
+      {
+         uninstall(contextA);
+      }
+   }
 }
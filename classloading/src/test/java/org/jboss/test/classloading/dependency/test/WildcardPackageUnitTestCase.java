@@ -84,6 +84,46 @@ public class WildcardPackageUnitTestCase extends AbstractMockClassLoaderUnitTest
       assertNoClassLoader(contextB);
    }
 
+   public void testWildcardPackageRedeploy() throws Exception
+   {
+      ClassLoadingMetaDataFactory factory = ClassLoadingMetaDataFactory.getInstance();
+
+      MockClassLoadingMetaData b = new MockClassLoadingMetaData("b");
+      b.getRequirements().addRequirement(factory.createWildcardPackage(A.class.getPackage().getName()));
+      KernelControllerContext contextB = install(b);
+      try
+      {
+         ClassLoader clB = assertClassLoader(contextB);
+         assertLoadClassFail(A.class, clB);
+         assertLoadClassFail(A.class, clB);
+
+         for (int i = 0; i < 2; ++i)
+         {
+            MockClassLoadingMetaData a = new MockClassLoadingMetaData("a");
+            a.getCapabilities().addCapability(factory.createPackage(A.class.getPackage().getName()));
+            a.setPathsAndPackageNames(A.class);
+            KernelControllerContext contextA = install(a);
+            try
+            {
+               ClassLoader clA = assertClassLoader(contextA);
+               assertLoadClass(A.class, clB, clA);
+               assertLoadClass(A.class, clB, clA);
+            }
+            finally
+            {
+               uninstall(contextA);
+            }
+            assertNoClassLoader(contextA);
+            assertLoadClassFail(A.class, clB);
+         }
+      }
+      finally
+      {
+         uninstall(contextB);
+      }
+      assertNoClassLoader(contextB);
+   }
+
    // deploy B first, then A
    public void testWildcardImportAexportAandB2() throws Exception
    {
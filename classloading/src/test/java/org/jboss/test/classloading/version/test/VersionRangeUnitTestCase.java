@@ -197,6 +197,24 @@ public class VersionRangeUnitTestCase extends AbstractClassLoadingTestWithSecuri
       testIsInRangeFromString("1.2.3", true, "4.5.6", true, "4.5.6", true);
    }
    
+   public void testBelowAndAboveRange() throws Exception
+   {
+      VersionRange range = new VersionRange("1.2.3", true, "4.5.6", false);
+      assertTrue(range.isBelowRange("1.2.2"));
+      assertTrue(range.isBelowRange(Version.parseVersion("1.2.2")));
+      assertFalse(range.isBelowRange("1.2.3"));
+      assertFalse(range.isAboveRange("1.2.3"));
+      assertFalse(range.isBelowRange("4.5.5"));
+      assertFalse(range.isAboveRange(Version.parseVersion("4.5.5")));
+      assertTrue(range.isAboveRange("4.5.6"));
+      assertTrue(range.isAboveRange(Version.parseVersion("5.0.0")));
+
+      range = new VersionRange(Version.parseVersion("1.2.3"), false, null, false);
+      assertTrue(range.isBelowRange("1.2.3"));
+      assertFalse(range.isBelowRange("1.2.4"));
+      assertFalse(range.isAboveRange(Version.parseVersion("99.0.0")));
+   }
+   
    public void testIsConsistent() throws Exception
    {
       testIsConsistentFromString(null, null, null, null, true);